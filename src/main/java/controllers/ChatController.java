@@ -27,7 +27,6 @@ import services.ServiceCall;
 import services.ServiceChatRoom;
 import services.ServiceChatRoomMember;
 import services.ServiceMessage;
-import services.ServiceUser;
 import services.ServiceUserFollow;
 import utils.BadWordsService;
 import utils.AIAssistantService;
@@ -35,12 +34,18 @@ import utils.ApiClient;
 import utils.AudioCallService;
 import utils.CardEffects;
 import utils.DocumentExtractor;
+import utils.EventBus;
 import utils.LiveTranscriptionManager;
+import utils.MessagePush;
+import utils.Presence;
+import utils.RoomActivity;
+import utils.RoomMessageStore;
 import utils.ScreenShareService;
 import utils.AppThreadPool;
 import utils.SessionManager;
 import utils.SignalingService;
 import utils.SoundManager;
+import utils.UserDirectory;
 
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
@@ -55,6 +60,7 @@ import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.prefs.Preferences;
 import javax.imageio.ImageIO;
 
@@ -90,7 +96,6 @@ public class ChatController implements Stoppable {
     private final ServiceChatRoom serviceChat = new ServiceChatRoom();
     private final ServiceChatRoomMember serviceMember = new ServiceChatRoomMember();
     private final ServiceMessage serviceMessage = new ServiceMessage();
-    private final ServiceUser serviceUser = new ServiceUser();
     private final ServiceCall serviceCall = new ServiceCall();
     private final ServiceUserFollow serviceFollow = new ServiceUserFollow();
     private final services.ServiceReaction serviceReaction = new services.ServiceReaction();
@@ -109,7 +114,6 @@ public class ChatController implements Stoppable {
     private static final String PREF_FAVORITES = "chat_favorite_rooms";
 
     // ── Room ordering: last message timestamp per room ──
-    private final Map<Integer, java.sql.Timestamp> lastMessageTimeCache = new HashMap<>();
 
     // ── Call state ──
     private Call activeCall = null;
@@ -143,10 +147,30 @@ public class ChatController implements Stoppable {
     private static final String FILE_PREFIX = "[FILE]";
     private static final String FILE_SUFFIX = "[/FILE]";
 
-    /** Track last message count per room for change detection */
-    private int lastMessageCount = -1;
+    /** Set while {@link #moveRoom} shuffles the list, so selection events do not reopen the room. */
+    private boolean movingRoom = false;
+
     /** Track last known message id to detect truly new messages */
     private int lastMessageId = 0;
+    /** Scroll-to-top paging: a page is in flight / the open room has no older messages. */
+    private boolean loadingOlder;
+    private int olderExhaustedRoomId;
+
+    /** While the event bus is live, pollers only sweep for missed events this often. */
+    private static final long PUSH_SWEEP_MS = 30_000;
+    private static final long CALL_SWEEP_MS = 10_000;
+    private static final long ROOM_ORDER_SWEEP_MS = 60_000;
+    private final AtomicLong lastMessageSweep = new AtomicLong();
+    private final AtomicLong lastRoomOrderSweep = new AtomicLong();
+    private final AtomicLong lastIncomingCallSweep = new AtomicLong();
+    private final AtomicLong lastCallStatusSweep = new AtomicLong();
+    private static final long USER_SWEEP_MS = 5 * 60_000;
+    private final AtomicLong lastUserSweep = new AtomicLong();
+    /** Presence of the private room's other user, shown in the header while that room is open. */
+    private javafx.beans.property.ReadOnlyObjectProperty<Presence.Status> headerPresence;
+    private final javafx.beans.value.ChangeListener<Presence.Status> headerPresenceListener =
+            (obs, old, status) -> showHeaderPresence(status);
+    private final List<EventBus.Subscription> subscriptions = new ArrayList<>();
 
     // ── Typing indicator state ──
     private HBox typingIndicatorRow = null;
@@ -198,7 +222,7 @@ public class ChatController implements Stoppable {
         showEmptyState();
 
         roomsList.getSelectionModel().selectedItemProperty().addListener((obs, oldVal, newVal) -> {
-            if (newVal != null) selectRoom(newVal);
+            if (newVal != null && !movingRoom) selectRoom(newVal);
         });
 
         // ── Rich cell factory with online indicator ──
@@ -257,7 +281,14 @@ public class ChatController implements Stoppable {
                     roomsList.refresh();
                 });
 
-                cell.getChildren().addAll(avatar, textCol, starBtn);
+                cell.getChildren().addAll(avatar, textCol);
+                int unread = RoomActivity.unread(item.getId());
+                if (unread > 0) {
+                    Label unreadBadge = new Label(unread > 99 ? "99+" : String.valueOf(unread));
+                    unreadBadge.getStyleClass().add("notification-badge");
+                    cell.getChildren().add(unreadBadge);
+                }
+                cell.getChildren().add(starBtn);
                 setGraphic(cell);
                 setText(null);
             }
@@ -291,16 +322,26 @@ public class ChatController implements Stoppable {
         scheduler.scheduleAtFixedRate(this::pollMessagesBackground, 2, 3, TimeUnit.SECONDS);
         // Re-sort rooms every 15s so conversations with new messages bubble to top
         scheduler.scheduleAtFixedRate(() -> {
-            refreshRoomOrder();
+            if (EventBus.shouldPoll(lastRoomOrderSweep, ROOM_ORDER_SWEEP_MS)) refreshRoomOrder();
         }, 10, 15, TimeUnit.SECONDS);
-        // Refresh user cache (online status) every 20s
+        // Pick up new users; online dots follow presence diffs, so this is only a sweep while they are pushed
         scheduler.scheduleAtFixedRate(() -> {
-            loadUsers();
-            Platform.runLater(() -> roomsList.refresh());
+            if (EventBus.shouldPoll(lastUserSweep, USER_SWEEP_MS)) loadUsers();
         }, 15, 20, TimeUnit.SECONDS);
         // Poll for incoming calls on background thread
         scheduler.scheduleAtFixedRate(this::pollIncomingCallsBackground, 2, 3, TimeUnit.SECONDS);
 
+        // Scrolled to the top: fetch the page before the oldest message shown
+        messagesScroll.vvalueProperty().addListener((obs, o, v) -> {
+            if (v.doubleValue() <= messagesScroll.getVmin() && o.doubleValue() > v.doubleValue()) loadOlderMessages();
+        });
+
+        // ── Pushed messages: merged into the room store and rendered without waiting for a poll ──
+        subscriptions.add(EventBus.subscribe(EventBus.Topic.ROOM_ACTIVITY,
+                ev -> onMessagePush(ev.message()), this::resyncAfterMissedEvents));
+        subscriptions.add(EventBus.subscribe(EventBus.Topic.CALL_STATE,
+                ev -> onCallState(ev.data()), null));
+
         // ── Instant incoming call via signaling (no polling delay) ──
         SignalingService.getInstance().onMessage("typing", msg -> {
             try {
@@ -311,33 +352,6 @@ public class ChatController implements Stoppable {
             } catch (Exception ignored) {}
         });
 
-        SignalingService.getInstance().onMessage("call-state", msg -> {
-            try {
-                JsonObject data = msg.getAsJsonObject("data");
-                String state = data.has("state") ? data.get("state").getAsString() : "";
-                if ("incoming-call".equals(state)) {
-                    int callId = data.get("callId").getAsInt();
-                    String callerName = data.has("callerName") ? data.get("callerName").getAsString() : "Unknown";
-                    if (activeCall != null || incomingCallOverlay != null) return;
-                    // Fetch call details on background thread
-                    AppThreadPool.io(() -> {
-                        Call incoming = serviceCall.getCall(callId);
-                        if (incoming != null && "pending".equals(incoming.getStatus())) {
-                            Platform.runLater(() -> {
-                                if (incomingCallOverlay == null && activeCall == null) {
-                                    User caller = userCache.get(incoming.getCallerId());
-                                    String name = caller != null ? caller.getFirstName() + " " + caller.getLastName() : callerName;
-                                    SoundManager.getInstance().playLoop(SoundManager.INCOMING_CALL);
-                                    showIncomingCallOverlay(incoming, name, caller);
-                                }
-                            });
-                        }
-                    });
-                }
-            } catch (Exception e) {
-                System.err.println("[Chat] call-state handler error: " + e.getMessage());
-            }
-        });
 
         // ── Twemoji icons on emoji & attach buttons ──
         Platform.runLater(() -> {
@@ -413,9 +427,9 @@ public class ChatController implements Stoppable {
     }
 
     private void loadUsers() {
-        try {
-            for (User u : serviceUser.recuperer()) userCache.put(u.getId(), u);
-        } catch (SQLException e) { System.err.println("Chat: loadUsers failed — " + e.getMessage()); }
+        UserDirectory.refresh();
+        for (User u : UserDirectory.users()) userCache.put(u.getId(), u);
+        Presence.syncFromDirectory(); // changed online flags re-render their own dots
     }
 
     /**
@@ -504,17 +518,7 @@ public class ChatController implements Stoppable {
             }
 
             // Sort: favorites first, then by last message time (most recent on top)
-            visible.sort((a, b) -> {
-                boolean aFav = favoriteRoomIds.contains(a.getId());
-                boolean bFav = favoriteRoomIds.contains(b.getId());
-                if (aFav != bFav) return aFav ? -1 : 1;
-                java.sql.Timestamp aTime = lastMessageTimeCache.getOrDefault(a.getId(), a.getCreatedAt());
-                java.sql.Timestamp bTime = lastMessageTimeCache.getOrDefault(b.getId(), b.getCreatedAt());
-                if (bTime != null && aTime != null) return bTime.compareTo(aTime);
-                if (bTime != null) return 1;
-                if (aTime != null) return -1;
-                return 0;
-            });
+            visible.sort(this::compareRooms);
             if (aiRoom != null) visible.add(0, aiRoom);
             return visible;
     }
@@ -594,9 +598,10 @@ public class ChatController implements Stoppable {
                 Label emailL = new Label(u.getEmail());
                 emailL.getStyleClass().add("search-result-email");
 
-                Label statusL = new Label(u.isOnline() ? "\u25CF Online" : "\u25CF Offline");
+                boolean online = Presence.isOnline(u.getId());
+                Label statusL = new Label(online ? "\u25CF Online" : "\u25CF Offline");
                 boolean dkS = SessionManager.getInstance().isDarkTheme();
-                statusL.setStyle(u.isOnline()
+                statusL.setStyle(online
                         ? "-fx-text-fill: #4ade80; -fx-font-size: 10;"
                         : "-fx-text-fill: " + (dkS ? "#6B6B78" : "#8A7C7F") + "; -fx-font-size: 10;");
 
@@ -704,13 +709,20 @@ public class ChatController implements Stoppable {
     private void selectRoom(ChatRoom room) {
         this.currentRoom = room;
         this.isAIRoom = AIAssistantService.AI_ROOM_NAME.equals(room.getName());
-        this.lastMessageCount = -1;
         this.lastMessageId = 0;
+        this.olderExhaustedRoomId = 0;
+        if (RoomActivity.unread(room.getId()) > 0) {
+            RoomActivity.markRead(room.getId());
+            moveRoom(room.getId()); // re-render its cell without the badge
+        }
+        // Re-seed on open so edits/deletes made elsewhere show up; polling then only fetches deltas
+        RoomMessageStore.invalidate(room.getId());
         String display = getDisplayName(room);
 
         showChatContent();
 
         currentRoomLabel.setText(room.isPrivate() ? "\uD83D\uDD12 " + display : "# " + display);
+        watchHeaderPresence(null);
 
         if (isAIRoom) {
             roomMembersLabel.setText("Powered by Gemini \u2014 type any HR question");
@@ -723,10 +735,8 @@ public class ChatController implements Stoppable {
                 onlineStatusDot.setVisible(true);
                 onlineStatusDot.setManaged(true);
                 onlineStatusDot.setText("\u25CF");
-                onlineStatusDot.setStyle(other.isOnline()
-                        ? "-fx-text-fill: #4ade80; -fx-font-size: 10;"
-                        : "-fx-text-fill: #6B6B78; -fx-font-size: 10;");
-                roomMembersLabel.setText(other.isOnline() ? "Online" : "Offline");
+                watchHeaderPresence(Presence.statusProperty(other.getId()));
+                showHeaderPresence(headerPresence.get());
             } else {
                 roomMembersLabel.setText("Private conversation");
                 if (onlineStatusDot != null) { onlineStatusDot.setVisible(false); onlineStatusDot.setManaged(false); }
@@ -761,85 +771,157 @@ public class ChatController implements Stoppable {
     //  POLLING + REAL-TIME DETECT
     // ═══════════════════════════════════════════
 
-    /** Called by scheduler on background thread — only re-renders if new messages detected. */
+    /**
+     * Called by scheduler on background thread — only re-renders if new messages detected.
+     * While the event bus is live, new messages arrive as pushes and this only
+     * runs every {@link #PUSH_SWEEP_MS} to pick up anything a push missed.
+     */
     private void pollMessagesBackground() {
         if (currentRoom == null || isAIRoom) return;
         User me = SessionManager.getInstance().getCurrentUser();
         if (me == null) return;
+        if (!EventBus.shouldPoll(lastMessageSweep, PUSH_SWEEP_MS)) return;
 
         try {
-            List<Message> messages = serviceMessage.getByRoom(currentRoom.getId());
-            int count = messages.size();
-            int latestId = messages.isEmpty() ? 0 : messages.get(messages.size() - 1).getId();
-
-            if (count != lastMessageCount || latestId != lastMessageId) {
-                int prevLastId = lastMessageId;
-                lastMessageCount = count;
-                lastMessageId = latestId;
-
-                // Prefetch reactions in background
-                prefetchReactionsForRoom(messages);
+            final int roomId = currentRoom.getId();
+            List<Message> fresh = RoomMessageStore.sync(roomId);
+            // Without pushes, edits and deletes by others are only seen by re-reading the newest rows
+            boolean edited = !EventBus.isLive() && RoomMessageStore.reconcile(roomId);
+            if (fresh.isEmpty() && !edited) return;
+            List<Message> messages = RoomMessageStore.snapshot(roomId);
+            int latestId = RoomMessageStore.lastId(roomId); // snapshot may end with unsent messages (id 0)
+            int prevLastId = lastMessageId;
+            lastMessageId = latestId;
+
+            if (!fresh.isEmpty()) {
+                // Prefetch reactions for the new rows only
+                prefetchReactionsForRoom(fresh);
 
                 // Update last message time for this room
-                if (!messages.isEmpty()) {
-                    Message last = messages.get(messages.size() - 1);
-                    if (last.getTimestamp() != null) {
-                        lastMessageTimeCache.put(currentRoom.getId(), last.getTimestamp());
-                    }
+                Message last = fresh.get(fresh.size() - 1);
+                if (RoomActivity.record(roomId, last.getTimestamp(), false)) {
+                    Platform.runLater(() -> moveRoom(roomId));
                 }
+            }
 
-                Platform.runLater(() -> {
-                    if (prevLastId > 0 && latestId > prevLastId) {
-                        for (int i = messages.size() - 1; i >= 0; i--) {
-                            Message m = messages.get(i);
-                            if (m.getId() <= prevLastId) break;
-                            if (m.getSenderId() != me.getId()) {
-                                User sender = userCache.get(m.getSenderId());
-                                String senderName = sender != null ? sender.getFirstName() : "Someone";
-                                String preview = m.getContent().startsWith(IMAGE_PREFIX) ? "\uD83D\uDCF7 Image"
-                                        : m.getContent().startsWith(FILE_PREFIX) ? "\uD83D\uDCC4 File" : m.getContent();
-                                showToast(senderName, preview);
-                                SoundManager.getInstance().play(
-                                    m.getContent().startsWith(IMAGE_PREFIX) || m.getContent().startsWith(FILE_PREFIX)
-                                        ? SoundManager.IMAGE_RECEIVED
-                                        : SoundManager.NEW_MESSAGE
-                                );
-                                break;
-                            }
+            Platform.runLater(() -> {
+                if (currentRoom == null || currentRoom.getId() != roomId) return;
+                if (prevLastId > 0 && latestId > prevLastId) {
+                    for (int i = fresh.size() - 1; i >= 0; i--) {
+                        Message m = fresh.get(i);
+                        if (m.getId() <= prevLastId) break;
+                        if (m.getSenderId() != me.getId()) {
+                            announceIncoming(m);
+                            break;
                         }
                     }
-                    renderMessages(messages);
-                });
-            }
+                }
+                renderMessages(messages);
+            });
         } catch (SQLException e) { System.err.println("Chat: refreshMessages failed — " + e.getMessage()); }
     }
 
+    /** Signaling push for a new, edited or deleted message (FX thread). */
+    private void onMessagePush(JsonObject event) {
+        Message m = MessagePush.apply(event);
+        if (m == null) return;
+        boolean isNew = MessagePush.MESSAGE.equals(event.get("type").getAsString());
+        User me = SessionManager.getInstance().getCurrentUser();
+        boolean open = currentRoom != null && currentRoom.getId() == m.getRoomId();
+        if (isNew) {
+            boolean unread = !open && me != null && m.getSenderId() != me.getId();
+            // Bubble the room up (and show its unread badge) now, not on the next sweep
+            if (RoomActivity.record(m.getRoomId(), m.getTimestamp(), unread) || unread) moveRoom(m.getRoomId());
+        }
+        if (!open || isAIRoom) return;
+        if (m.getContent() == null && !MessagePush.DELETED.equals(event.get("type").getAsString())) {
+            forceRefreshMessages(); // too large to push (inline image): fetch the row
+            return;
+        }
+        if (isNew && me != null && m.getSenderId() != me.getId()) announceIncoming(m);
+        lastMessageId = RoomMessageStore.lastId(m.getRoomId());
+        renderMessages(RoomMessageStore.snapshot(m.getRoomId()));
+    }
+
+    /** Room events may have been lost (reconnect or overflow): catch up from the API now. */
+    private void resyncAfterMissedEvents() {
+        lastMessageSweep.set(0);
+        lastRoomOrderSweep.set(0);
+        AppThreadPool.io(() -> {
+            pollMessagesBackground();
+            refreshRoomOrder();
+        });
+    }
+
+    /** Toast + sound for a message from someone else in the open room. */
+    private void announceIncoming(Message m) {
+        User sender = userCache.get(m.getSenderId());
+        String senderName = sender != null ? sender.getFirstName() : "Someone";
+        boolean attachment = m.getContent() != null
+                && (m.getContent().startsWith(IMAGE_PREFIX) || m.getContent().startsWith(FILE_PREFIX));
+        String preview = m.getContent() == null || m.getContent().startsWith(IMAGE_PREFIX) ? "\uD83D\uDCF7 Image"
+                : m.getContent().startsWith(FILE_PREFIX) ? "\uD83D\uDCC4 File" : m.getContent();
+        showToast(senderName, preview);
+        SoundManager.getInstance().play(attachment ? SoundManager.IMAGE_RECEIVED : SoundManager.NEW_MESSAGE);
+    }
+
     /** Force-render right now (used on room switch). Async: DB query off-FX-thread. */
     private void forceRefreshMessages() {
         final int roomId = currentRoom.getId();
         AppThreadPool.io(() -> {
             try {
-                List<Message> messages = serviceMessage.getByRoom(roomId);
-                int count = messages.size();
-                int latestId = messages.isEmpty() ? 0 : messages.get(messages.size() - 1).getId();
+                List<Message> fresh = RoomMessageStore.sync(roomId);
+                List<Message> messages = RoomMessageStore.snapshot(roomId);
+                int latestId = RoomMessageStore.lastId(roomId);
                 java.sql.Timestamp lastTime = messages.isEmpty() ? null : messages.get(messages.size() - 1).getTimestamp();
-                // Prefetch reactions in background
-                prefetchReactionsForRoom(messages);
+                // Prefetch reactions in background (only rows not seen before)
+                prefetchReactionsForRoom(fresh);
                 Platform.runLater(() -> {
                     // Guard: room may have changed while query ran
                     if (currentRoom == null || currentRoom.getId() != roomId) return;
-                    lastMessageCount = count;
                     lastMessageId = latestId;
-                    if (lastTime != null) lastMessageTimeCache.put(roomId, lastTime);
+                    if (RoomActivity.record(roomId, lastTime, false)) moveRoom(roomId);
                     renderMessages(messages);
                 });
             } catch (SQLException e) { System.err.println("Chat: forceRefreshMessages failed — " + e.getMessage()); }
         });
     }
 
+    /** Prepend the previous page of the open room, keeping the rows on screen where they were. */
+    private void loadOlderMessages() {
+        if (currentRoom == null || isAIRoom || loadingOlder || olderExhaustedRoomId == currentRoom.getId()) return;
+        final int roomId = currentRoom.getId();
+        loadingOlder = true;
+        AppThreadPool.io(() -> {
+            try {
+                List<Message> older = RoomMessageStore.loadOlder(roomId);
+                List<Message> messages = RoomMessageStore.snapshot(roomId);
+                prefetchReactionsForRoom(older);
+                Platform.runLater(() -> {
+                    loadingOlder = false;
+                    if (currentRoom == null || currentRoom.getId() != roomId) return;
+                    if (older.isEmpty()) {
+                        olderExhaustedRoomId = roomId; // reached the first message
+                        return;
+                    }
+                    double oldHeight = messagesContainer.getHeight();
+                    renderMessages(messages, false);
+                    messagesScroll.layout();
+                    double newHeight = messagesContainer.getHeight();
+                    double scrollable = newHeight - messagesScroll.getViewportBounds().getHeight();
+                    messagesScroll.setVvalue(scrollable > 0 ? (newHeight - oldHeight) / scrollable : 0);
+                });
+            } catch (SQLException e) {
+                Platform.runLater(() -> loadingOlder = false);
+                System.err.println("Chat: loadOlder failed — " + e.getMessage());
+            }
+        });
+    }
+
     /**
-     * Background task: check all visible rooms for their latest message timestamp
-     * and re-sort the room list so the most recently active conversation is on top.
+     * Background sweep: one latest-message-per-room query folded into
+     * {@link RoomActivity}; only rooms whose activity advanced are moved.
+     * Pushed messages keep the order current in between.
      */
     private void refreshRoomOrder() {
         try {
@@ -855,40 +937,77 @@ public class ChatController implements Stoppable {
                 }
             }
 
-            // Single batch query instead of N per-room queries
             java.util.Map<Integer, java.sql.Timestamp> latestMap = serviceMessage.getLatestTimestamps(roomIds);
 
-            boolean changed = false;
+            ChatRoom open = currentRoom;
+            List<Integer> moved = new ArrayList<>();
             for (var entry : latestMap.entrySet()) {
-                java.sql.Timestamp prev = lastMessageTimeCache.get(entry.getKey());
-                if (entry.getValue() != null &&
-                    (prev == null || entry.getValue().after(prev))) {
-                    lastMessageTimeCache.put(entry.getKey(), entry.getValue());
-                    changed = true;
+                int roomId = entry.getKey();
+                // Activity we had not heard of in a room already indexed and not on screen: unread
+                boolean unread = RoomActivity.lastAt(roomId) > 0 && (open == null || open.getId() != roomId);
+                if (RoomActivity.record(roomId, entry.getValue(), false)) {
+                    if (unread) RoomActivity.record(roomId, 0, true);
+                    moved.add(roomId);
                 }
             }
+            if (!moved.isEmpty()) Platform.runLater(() -> moved.forEach(this::moveRoom));
+        } catch (Exception e) { /* ignore polling errors */ }
+    }
 
-            if (changed) {
-                try {
-                    List<ChatRoom> visible = fetchFilteredRooms();
-                    Platform.runLater(() -> {
-                        ChatRoom selected = roomsList.getSelectionModel().getSelectedItem();
-                        roomsList.getItems().setAll(visible);
-                        if (selected != null) {
-                            for (ChatRoom r : roomsList.getItems()) {
-                                if (r.getId() == selected.getId()) {
-                                    roomsList.getSelectionModel().select(r);
-                                    break;
-                                }
-                            }
-                        }
-                    });
-                } catch (SQLException ignored) {}
+    /** Room order: AI assistant pinned first, then favorites, then most recent activity. */
+    private int compareRooms(ChatRoom a, ChatRoom b) {
+        boolean aAI = AIAssistantService.AI_ROOM_NAME.equals(a.getName());
+        boolean bAI = AIAssistantService.AI_ROOM_NAME.equals(b.getName());
+        if (aAI != bAI) return aAI ? -1 : 1;
+        boolean aFav = favoriteRoomIds.contains(a.getId());
+        boolean bFav = favoriteRoomIds.contains(b.getId());
+        if (aFav != bFav) return aFav ? -1 : 1;
+        return Long.compare(activityOf(b), activityOf(a));
+    }
+
+    private static long activityOf(ChatRoom room) {
+        long at = RoomActivity.lastAt(room.getId());
+        if (at > 0) return at;
+        return room.getCreatedAt() != null ? room.getCreatedAt().getTime() : 0;
+    }
+
+    /**
+     * Move one room to its place in the sorted list and re-render only its
+     * cell (unread badge); the selection and the open conversation are kept (FX thread).
+     */
+    private void moveRoom(int roomId) {
+        List<ChatRoom> items = roomsList.getItems();
+        int from = -1;
+        for (int i = 0; i < items.size(); i++) {
+            if (items.get(i).getId() == roomId) { from = i; break; }
+        }
+        if (from < 0) return;
+        ChatRoom room = items.get(from);
+        int to = 0;
+        for (int i = 0; i < items.size(); i++) {
+            if (i != from && compareRooms(items.get(i), room) <= 0) to++;
+        }
+        boolean wasSelected = roomsList.getSelectionModel().getSelectedItem() == room;
+        movingRoom = true;
+        try {
+            if (to == from) {
+                items.set(from, room);
+            } else {
+                items.remove(from);
+                items.add(to, room);
             }
-        } catch (Exception e) { /* ignore polling errors */ }
+            if (wasSelected) roomsList.getSelectionModel().select(room);
+        } finally {
+            movingRoom = false;
+        }
     }
 
     private void renderMessages(List<Message> messages) {
+        renderMessages(messages, true);
+    }
+
+    /** Rebuild the conversation; {@code scrollToEnd} false leaves the scroll position to the caller. */
+    private void renderMessages(List<Message> messages, boolean scrollToEnd) {
         User currentUser = SessionManager.getInstance().getCurrentUser();
         if (currentUser == null) return;
 
@@ -905,7 +1024,7 @@ public class ChatController implements Stoppable {
             lastSenderId = msg.getSenderId();
         }
 
-        Platform.runLater(() -> messagesScroll.setVvalue(1.0));
+        if (scrollToEnd) Platform.runLater(() -> messagesScroll.setVvalue(1.0));
 
         // Re-append typing indicator if active for this room
         if (typingIndicatorRow != null && currentRoom != null && typingRoomId == currentRoom.getId()) {
@@ -1032,13 +1151,15 @@ public class ChatController implements Stoppable {
 
     private void prefetchReactionsForRoom(java.util.List<Message> messages) {
         if (messages == null || messages.isEmpty()) return;
-        for (Message m : messages) {
-            int reactableId = m.getId() + MSG_REACTION_OFFSET;
-            try {
-                java.util.List<Reaction> rxns = serviceReaction.getByPostId(reactableId);
-                msgReactionsCache.put(m.getId(), rxns);
-            } catch (Exception ignored) {}
-        }
+        java.util.List<Integer> reactableIds = new java.util.ArrayList<>(messages.size());
+        for (Message m : messages) reactableIds.add(m.getId() + MSG_REACTION_OFFSET);
+        try {
+            // One batched lookup for the whole page instead of a request per message
+            java.util.Map<Integer, java.util.List<Reaction>> byId = serviceReaction.getByPostIds(reactableIds);
+            for (Message m : messages) {
+                msgReactionsCache.put(m.getId(), byId.get(m.getId() + MSG_REACTION_OFFSET));
+            }
+        } catch (Exception ignored) {}
     }
 
     private HBox buildReactionBar(Message msg, boolean isMe) {
@@ -1126,7 +1247,7 @@ public class ChatController implements Stoppable {
                 msgReactionsCache.put(msg.getId(), updated);
                 // Re-render messages to show updated reaction counts
                 if (currentRoom != null) {
-                    java.util.List<Message> msgs = serviceMessage.getByRoom(currentRoom.getId());
+                    java.util.List<Message> msgs = RoomMessageStore.snapshot(currentRoom.getId());
                     Platform.runLater(() -> {
                         SoundManager.getInstance().play(SoundManager.EMOJI_POP);
                         renderMessages(msgs);
@@ -1492,7 +1613,7 @@ public class ChatController implements Stoppable {
         return w;
     }
 
-    /** Avatar with online/offline status dot. */
+    /** Avatar with a presence dot that follows the user's online / idle / offline status by itself. */
     private StackPane createAvatarWithStatus(User user, double size) {
         StackPane wrapper = new StackPane();
         wrapper.setMinSize(size + 4, size + 4);
@@ -1501,7 +1622,13 @@ public class ChatController implements Stoppable {
         StackPane inner = createAvatar(user, size);
 
         Circle dot = new Circle(5);
-        dot.setFill(user != null && user.isOnline() ? Color.web("#4ade80") : Color.web("#6B6B78"));
+        if (user != null) {
+            var presence = Presence.statusProperty(user.getId());
+            dot.fillProperty().bind(javafx.beans.binding.Bindings.createObjectBinding(
+                    () -> presenceColor(presence.get()), presence));
+        } else {
+            dot.setFill(presenceColor(Presence.Status.OFFLINE));
+        }
         dot.setStroke(Color.web("#0A090C"));
         dot.setStrokeWidth(2);
         StackPane.setAlignment(dot, Pos.BOTTOM_RIGHT);
@@ -1510,6 +1637,30 @@ public class ChatController implements Stoppable {
         return wrapper;
     }
 
+    private static Color presenceColor(Presence.Status status) {
+        switch (status) {
+            case ONLINE: return Color.web("#4ade80");
+            case IDLE:   return Color.web("#fbbf24");
+            default:     return Color.web("#6B6B78");
+        }
+    }
+
+    /** Follow one user's presence in the room header (replaces the previous room's). */
+    private void watchHeaderPresence(javafx.beans.property.ReadOnlyObjectProperty<Presence.Status> presence) {
+        if (headerPresence != null) headerPresence.removeListener(headerPresenceListener);
+        headerPresence = presence;
+        if (presence != null) presence.addListener(headerPresenceListener);
+    }
+
+    private void showHeaderPresence(Presence.Status status) {
+        if (onlineStatusDot == null || status == null) return;
+        onlineStatusDot.setStyle(status == Presence.Status.ONLINE ? "-fx-text-fill: #4ade80; -fx-font-size: 10;"
+                : status == Presence.Status.IDLE ? "-fx-text-fill: #fbbf24; -fx-font-size: 10;"
+                : "-fx-text-fill: #6B6B78; -fx-font-size: 10;");
+        roomMembersLabel.setText(status == Presence.Status.ONLINE ? "Online"
+                : status == Presence.Status.IDLE ? "Away" : "Offline");
+    }
+
     private StackPane createGroupAvatar(String name, double size) {
         StackPane w = new StackPane();
         w.setMinSize(size, size); w.setMaxSize(size, size);
@@ -1635,19 +1786,17 @@ public class ChatController implements Stoppable {
             if (editingMessage != null) {
                 editingMessage.setContent(content);
                 serviceMessage.modifier(editingMessage);
+                RoomMessageStore.update(editingMessage);
                 editingMessage = null;
                 resetInputBar();
             } else {
                 serviceMessage.ajouter(new Message(currentUser.getId(), currentRoom.getId(), content));
                 SoundManager.getInstance().play(SoundManager.MESSAGE_SENT);
-                notifyNewMessage(content);
             }
             messageArea.clear();
             // Bump this room to top of the list immediately
-            lastMessageTimeCache.put(currentRoom.getId(), new java.sql.Timestamp(System.currentTimeMillis()));
+            if (RoomActivity.record(currentRoom.getId(), System.currentTimeMillis(), false)) moveRoom(currentRoom.getId());
             forceRefreshMessages();
-            // Re-sort rooms so this one bubbles to top (async, non-blocking)
-            loadRoomsAsync(null);
         } catch (SQLException e) {
             System.err.println("Chat: sendMessage failed — " + e.getMessage());
             showInputError("Failed to send message.");
@@ -1664,24 +1813,6 @@ public class ChatController implements Stoppable {
         btnSend.setOpacity(1.0);
     }
 
-    /**
-     * Send a "new-message" signaling notification to the other user in a DM room.
-     * This triggers an instant toast on the recipient's dashboard.
-     */
-    private void notifyNewMessage(String content) {
-        if (currentRoom == null || !currentRoom.isPrivate() || isAIRoom) return;
-        User me = SessionManager.getInstance().getCurrentUser();
-        User other = getOtherUser(currentRoom);
-        if (me == null || other == null) return;
-
-        String preview = content.length() > 80 ? content.substring(0, 80) + "…" : content;
-        JsonObject data = new JsonObject();
-        data.addProperty("senderName", me.getFirstName());
-        data.addProperty("preview", preview);
-        data.addProperty("roomId", currentRoom.getId());
-        SignalingService.getInstance().send(other.getId(), "new-message", data);
-    }
-
     private void startEdit(Message msg) {
         editingMessage = msg;
         messageArea.setText(msg.getContent());
@@ -1748,7 +1879,11 @@ public class ChatController implements Stoppable {
 
     private void deleteMessage(Message msg) {
         if (utils.StyledAlert.confirm(chatOwnerWindow(), "Delete Message", "Delete this message?")) {
-            try { serviceMessage.supprimer(msg.getId()); forceRefreshMessages(); }
+            try {
+                serviceMessage.supprimer(msg.getId());
+                RoomMessageStore.remove(msg.getRoomId(), msg.getId());
+                forceRefreshMessages();
+            }
             catch (SQLException e) { System.err.println("Chat: deleteMessage failed — " + e.getMessage()); }
         }
     }
@@ -1902,7 +2037,6 @@ public class ChatController implements Stoppable {
             String content = IMAGE_PREFIX + base64 + IMAGE_SUFFIX;
             serviceMessage.ajouter(new Message(me.getId(), currentRoom.getId(), content));
             SoundManager.getInstance().play(SoundManager.MESSAGE_SENT);
-            notifyNewMessage("🖼 Image");
             forceRefreshMessages();
         } catch (Exception e) {
             showInputError("Failed to send image.");
@@ -1929,7 +2063,6 @@ public class ChatController implements Stoppable {
                     serviceMessage.ajouter(new Message(me.getId(), currentRoom.getId(), content));
                     Platform.runLater(() -> {
                         SoundManager.getInstance().play(SoundManager.MESSAGE_SENT);
-                        notifyNewMessage("📄 " + fileName);
                         forceRefreshMessages();
                     });
                 } catch (SQLException e) {
@@ -2302,7 +2435,7 @@ public class ChatController implements Stoppable {
         }
 
         // Check if other user is online
-        if (!other.isOnline()) {
+        if (!Presence.isOnline(other.getId())) {
             showToast("Call", other.getFirstName() + " is offline and cannot receive calls.");
             return;
         }
@@ -2324,7 +2457,7 @@ public class ChatController implements Stoppable {
             data.addProperty("callId", call.getId());
             data.addProperty("callerName", me.getFirstName() + " " + me.getLastName());
             data.addProperty("callType", callType);
-            SignalingService.getInstance().send(other.getId(), "call-state", data);
+            EventBus.publish(EventBus.Topic.CALL_STATE, other.getId(), data);
             // Start polling for acceptance
             pollCallStatus(call.getId());
         } else {
@@ -2377,52 +2510,123 @@ public class ChatController implements Stoppable {
         chatRootStack.getChildren().add(overlay);
     }
 
-    /** Poll call status to detect when accepted or rejected. */
+    /**
+     * Poll call status to detect when accepted or rejected. Call-state events
+     * trigger the same check at once; while they flow, ticks only run as sweeps.
+     */
     private void pollCallStatus(int callId) {
         callPollErrorCount = 0;
         callPollInFlight = false;
+        lastCallStatusSweep.set(System.currentTimeMillis());
         if (outgoingCallPoller != null) outgoingCallPoller.stop();
         outgoingCallPoller = new Timeline(new KeyFrame(Duration.seconds(2), e -> {
-            if (activeCall == null || activeCall.getId() != callId) return;
-            if (callPollInFlight) return; // skip if previous request still in flight
-            callPollInFlight = true;
-            AppThreadPool.io(() -> {
-                try {
-                    Call c = serviceCall.getCall(callId);
-                    if (c == null) {
-                        callPollErrorCount++;
-                        if (callPollErrorCount > 10) {
-                            Platform.runLater(() -> { if (outgoingCallPoller != null) outgoingCallPoller.stop(); });
-                        }
-                        return;
+            if (EventBus.shouldPoll(lastCallStatusSweep, CALL_SWEEP_MS)) checkOutgoingCall(callId);
+        }));
+        outgoingCallPoller.setCycleCount(30); // poll for up to 60s (2s interval)
+        outgoingCallPoller.play();
+    }
+
+    /** Fetch an outgoing call's status and connect or close it (FX thread). */
+    private void checkOutgoingCall(int callId) {
+        if (activeCall == null || activeCall.getId() != callId) return;
+        if (callPollInFlight) return; // skip if previous request still in flight
+        callPollInFlight = true;
+        AppThreadPool.io(() -> {
+            try {
+                Call c = serviceCall.getCall(callId);
+                if (c == null) {
+                    callPollErrorCount++;
+                    if (callPollErrorCount > 10) {
+                        Platform.runLater(() -> { if (outgoingCallPoller != null) outgoingCallPoller.stop(); });
                     }
-                    callPollErrorCount = 0;
-                    if (c.isActive()) {
-                        Platform.runLater(() -> {
-                            activeCall = c;
-                            SoundManager.getInstance().stopLoop();
-                            SoundManager.getInstance().play(SoundManager.CALL_CONNECTED);
-                            removeIncomingCallOverlay();
-                            if (outgoingCallPoller != null) { outgoingCallPoller.stop(); outgoingCallPoller = null; }
-                            startActiveCall(callId);
-                        });
-                    } else if (c.isEnded()) {
+                    return;
+                }
+                callPollErrorCount = 0;
+                if (c.isActive()) {
+                    Platform.runLater(() -> {
+                        activeCall = c;
+                        SoundManager.getInstance().stopLoop();
+                        SoundManager.getInstance().play(SoundManager.CALL_CONNECTED);
+                        removeIncomingCallOverlay();
+                        if (outgoingCallPoller != null) { outgoingCallPoller.stop(); outgoingCallPoller = null; }
+                        startActiveCall(callId);
+                    });
+                } else if (c.isEnded()) {
+                    Platform.runLater(() -> {
+                        SoundManager.getInstance().stopLoop();
+                        activeCall = null;
+                        pendingVideoCall = false;
+                        removeIncomingCallOverlay();
+                        if (outgoingCallPoller != null) { outgoingCallPoller.stop(); outgoingCallPoller = null; }
+                        showToast("Call", "Call ended.");
+                    });
+                }
+            } finally {
+                callPollInFlight = false;
+            }
+        });
+    }
+
+    /** Call-state event from the other party (FX thread). */
+    private void onCallState(JsonObject data) {
+        String state = data.has("state") ? data.get("state").getAsString() : "";
+        if (!data.has("callId")) return;
+        int callId = data.get("callId").getAsInt();
+        switch (state) {
+            case "incoming-call":
+                if (activeCall != null || incomingCallOverlay != null) return;
+                String callerName = data.has("callerName") ? data.get("callerName").getAsString() : "Unknown";
+                // Fetch call details on background thread
+                AppThreadPool.io(() -> {
+                    Call incoming = serviceCall.getCall(callId);
+                    if (incoming != null && "pending".equals(incoming.getStatus())) {
                         Platform.runLater(() -> {
-                            SoundManager.getInstance().stopLoop();
-                            activeCall = null;
-                            pendingVideoCall = false;
-                            removeIncomingCallOverlay();
-                            if (outgoingCallPoller != null) { outgoingCallPoller.stop(); outgoingCallPoller = null; }
-                            showToast("Call", "Call ended.");
+                            if (incomingCallOverlay == null && activeCall == null) {
+                                User caller = userCache.get(incoming.getCallerId());
+                                String name = caller != null ? caller.getFirstName() + " " + caller.getLastName() : callerName;
+                                SoundManager.getInstance().playLoop(SoundManager.INCOMING_CALL);
+                                showIncomingCallOverlay(incoming, name, caller);
+                            }
                         });
                     }
-                } finally {
-                    callPollInFlight = false;
+                });
+                break;
+            case "accepted":
+            case "rejected":
+            case "ended":
+                if (activeCall == null || activeCall.getId() != callId) return;
+                if (outgoingCallPoller != null) checkOutgoingCall(callId);
+                else if (activeCallPoller != null) checkActiveCall();
+                break;
+            default:
+                break;
+        }
+    }
+
+    /** Fetch the active call's status and clean up after a remote hang-up (FX thread). */
+    private void checkActiveCall() {
+        if (activeCall == null) return;
+        if (callPollInFlight) return; // skip if previous request still pending
+        callPollInFlight = true;
+        int callId = activeCall.getId();
+        AppThreadPool.io(() -> {
+            try {
+                Call c = serviceCall.getCall(callId);
+                if (c == null) {
+                    callPollErrorCount++;
+                    return; // don't stop — call may still be active
                 }
-            });
-        }));
-        outgoingCallPoller.setCycleCount(30); // poll for up to 60s (2s interval)
-        outgoingCallPoller.play();
+                callPollErrorCount = 0;
+                if (c.isEnded() || "rejected".equals(c.getStatus()) || "missed".equals(c.getStatus())) {
+                    Platform.runLater(() -> {
+                        cleanupActiveCall();
+                        showToast("Call", "Call ended.");
+                    });
+                }
+            } finally {
+                callPollInFlight = false;
+            }
+        });
     }
 
     /** Check for incoming calls on background thread. */
@@ -2430,6 +2634,7 @@ public class ChatController implements Stoppable {
         if (activeCall != null) return;
         User me = SessionManager.getInstance().getCurrentUser();
         if (me == null) return;
+        if (!EventBus.shouldPoll(lastIncomingCallSweep, CALL_SWEEP_MS)) return; // "incoming-call" events ring at once
 
         Call incoming = serviceCall.getIncomingCall(me.getId());
         if (incoming != null) {
@@ -2554,29 +2759,9 @@ public class ChatController implements Stoppable {
         callPollErrorCount = 0;
         callPollInFlight = false;
 
-        // Poll call status every 3s to detect remote hang-up
+        // Poll call status every 3s to detect remote hang-up (a sweep while call-state events flow)
         activeCallPoller = new Timeline(new KeyFrame(Duration.seconds(3), ev -> {
-            if (activeCall == null) return;
-            if (callPollInFlight) return; // skip if previous request still pending
-            callPollInFlight = true;
-            AppThreadPool.io(() -> {
-                try {
-                    Call c = serviceCall.getCall(activeCall.getId());
-                    if (c == null) {
-                        callPollErrorCount++;
-                        return; // don't stop — call may still be active
-                    }
-                    callPollErrorCount = 0;
-                    if (c.isEnded() || "rejected".equals(c.getStatus()) || "missed".equals(c.getStatus())) {
-                        Platform.runLater(() -> {
-                            cleanupActiveCall();
-                            showToast("Call", "Call ended.");
-                        });
-                    }
-                } finally {
-                    callPollInFlight = false;
-                }
-            });
+            if (EventBus.shouldPoll(lastCallStatusSweep, CALL_SWEEP_MS)) checkActiveCall();
         }));
         activeCallPoller.setCycleCount(Animation.INDEFINITE);
         activeCallPoller.play();
@@ -3127,15 +3312,7 @@ public class ChatController implements Stoppable {
     private void handleEndCall() {
         SoundManager.getInstance().play(SoundManager.BUTTON_CLICK);
         if (activeCall != null) {
-            serviceCall.endCall(activeCall.getId());
-            // Notify remote user via signaling
-            User other = currentRoom != null ? getOtherUser(currentRoom) : null;
-            if (other != null) {
-                JsonObject data = new JsonObject();
-                data.addProperty("state", "ended");
-                data.addProperty("callId", activeCall.getId());
-                SignalingService.getInstance().send(other.getId(), "call-state", data);
-            }
+            serviceCall.endCall(activeCall.getId()); // also tells the other party over the event bus
         }
         cleanupActiveCall();
     }
@@ -3196,5 +3373,8 @@ public class ChatController implements Stoppable {
         cleanupActiveCall();
         closeVideoCallPopup();
         if (scheduler != null) scheduler.shutdown();
+        subscriptions.forEach(EventBus.Subscription::cancel);
+        subscriptions.clear();
+        watchHeaderPresence(null);
     }
 }
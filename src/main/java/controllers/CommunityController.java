@@ -45,8 +45,11 @@ import entities.ChatRoom;
 import utils.AnimatedButton;
 import utils.AppThreadPool;
 import utils.BadWordsService;
+import utils.EventBus;
 import utils.SessionManager;
 import utils.SoundManager;
+import utils.UserDirectory;
+import utils.HttpClients;
 import services.ZAIService;
 
 import java.io.ByteArrayInputStream;
@@ -66,11 +69,11 @@ import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
-import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executors;
-import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.prefs.Preferences;
 import java.util.stream.Collectors;
 
@@ -161,6 +164,11 @@ public class CommunityController implements Stoppable {
     private Map<Integer, User> userCache = new HashMap<>();
     private String pendingImageBase64 = null;
     private ScheduledExecutorService scheduler;
+    /** While "feed-update" events flow, the feed poll is only a sweep this often. */
+    private static final long FEED_SWEEP_MS = 120_000;
+    private final AtomicLong lastFeedSweep = new AtomicLong();
+    private final AtomicBoolean feedRefreshQueued = new AtomicBoolean();
+    private EventBus.Subscription feedSubscription;
 
     // Track which posts have their comments expanded (in feed view)
     private Set<Integer> expandedComments = new HashSet<>();
@@ -203,11 +211,6 @@ public class CommunityController implements Stoppable {
     private static final int PAGE_SIZE = 15;
     private List<Post> allPosts = new ArrayList<>();
     private int displayedPostCount = 0;
-    private static final ExecutorService ioPool = Executors.newCachedThreadPool(r -> {
-        Thread t = new Thread(r, "community-io");
-        t.setDaemon(true);
-        return t;
-    });
 
     @FXML
     public void initialize() {
@@ -309,49 +312,64 @@ public class CommunityController implements Stoppable {
             return t;
         });
         scheduler.scheduleAtFixedRate(() -> {
-            try {
-                loadUsers();
-                List<Post> posts = filterHumanPosts(servicePost.recuperer());
+            if (EventBus.shouldPoll(lastFeedSweep, FEED_SWEEP_MS)) refreshFeedInBackground();
+        }, 30, 30, TimeUnit.SECONDS);
+        // Posts written elsewhere show up at once; bursts collapse into one reload
+        feedSubscription = EventBus.subscribe(EventBus.Topic.FEED_UPDATES,
+                ev -> queueFeedRefresh(), this::queueFeedRefresh);
+    }
 
-                // Pre-fetch reactions in parallel on this background thread
-                int limit = Math.min(posts.size(), Math.max(displayedPostCount, PAGE_SIZE));
-                List<Post> page = posts.subList(0, limit);
+    private void queueFeedRefresh() {
+        if (scheduler == null || scheduler.isShutdown() || !feedRefreshQueued.compareAndSet(false, true)) return;
+        scheduler.execute(() -> {
+            feedRefreshQueued.set(false);
+            lastFeedSweep.set(System.currentTimeMillis());
+            refreshFeedInBackground();
+        });
+    }
+
+    /** Reload the feed (or the open post) and re-render it (scheduler thread). */
+    private void refreshFeedInBackground() {
+        try {
+            loadUsers();
+            List<Post> posts = filterHumanPosts(servicePost.recuperer());
+
+            // Pre-fetch reactions in parallel on this background thread
+            int limit = Math.min(posts.size(), Math.max(displayedPostCount, PAGE_SIZE));
+            List<Post> page = posts.subList(0, limit);
+            if (detailPost != null) {
+                // Only pre-fetch for the detail post
+                for (Post p : posts) {
+                    if (p.getId() == detailPost.getId()) {
+                        prefetchReactions(Collections.singletonList(p));
+                        break;
+                    }
+                }
+            } else {
+                prefetchReactions(page);
+            }
+
+            Platform.runLater(() -> {
                 if (detailPost != null) {
-                    // Only pre-fetch for the detail post
                     for (Post p : posts) {
                         if (p.getId() == detailPost.getId()) {
-                            prefetchReactions(Collections.singletonList(p));
+                            detailPost = p;
+                            renderDetailView(p);
                             break;
                         }
                     }
                 } else {
-                    prefetchReactions(page);
+                    allPosts = posts;
+                    displayedPostCount = limit;
+                    renderFeed(page, posts.size() > limit);
                 }
-
-                Platform.runLater(() -> {
-                    if (detailPost != null) {
-                        for (Post p : posts) {
-                            if (p.getId() == detailPost.getId()) {
-                                detailPost = p;
-                                renderDetailView(p);
-                                break;
-                            }
-                        }
-                    } else {
-                        allPosts = posts;
-                        displayedPostCount = limit;
-                        renderFeed(page, posts.size() > limit);
-                    }
-                });
-            } catch (SQLException ignored) {}
-        }, 30, 30, TimeUnit.SECONDS);
+            });
+        } catch (SQLException ignored) {}
     }
 
     private void loadUsers() {
-        try {
-            List<User> users = serviceUser.recuperer();
-            for (User u : users) userCache.put(u.getId(), u);
-        } catch (SQLException e) { System.err.println(e.getClass().getSimpleName() + ": " + e.getMessage()); }
+        UserDirectory.refresh();
+        for (User u : UserDirectory.users()) userCache.put(u.getId(), u);
     }
 
     /** Estimate server→local offset by comparing a known server timestamp */
@@ -566,16 +584,13 @@ public class CommunityController implements Stoppable {
     /** Pre-fetch reactions for all given posts in parallel (call from background thread). */
     private void prefetchReactions(List<Post> posts) {
         if (posts.isEmpty()) return;
-        CompletableFuture<?>[] futures = posts.stream()
-                .map(p -> CompletableFuture.runAsync(() -> {
-                    try {
-                        reactionsCache.put(p.getId(), serviceReaction.getByPostId(p.getId()));
-                    } catch (SQLException e) {
-                        reactionsCache.put(p.getId(), Collections.emptyList());
-                    }
-                }, ioPool))
-                .toArray(CompletableFuture[]::new);
-        CompletableFuture.allOf(futures).join();
+        List<Integer> postIds = posts.stream().map(Post::getId).collect(Collectors.toList());
+        try {
+            // One batched lookup for the whole page instead of a request per post
+            reactionsCache.putAll(serviceReaction.getByPostIds(postIds));
+        } catch (SQLException e) {
+            for (int id : postIds) reactionsCache.put(id, Collections.emptyList());
+        }
     }
 
     /** Load the next page of posts (called from "Load more" button). */
@@ -800,7 +815,6 @@ public class CommunityController implements Stoppable {
                         } else {
                             serviceFollow.follow(myId, post.getAuthorId());
                         }
-                        utils.InMemoryCache.evictByPrefix("follows:");
                         Platform.runLater(() -> {
                             if (detailPost != null) renderDetailView(detailPost);
                             else if ("home".equals(activeTab)) loadHomeFeed();
@@ -1616,8 +1630,7 @@ public class CommunityController implements Stoppable {
     //  LINE TABS: FEED / WIKIPEDIA / QUOTES
     // ═══════════════════════════════════════════
 
-    private static final HttpClient sidebarHttp = HttpClient.newBuilder()
-            .followRedirects(HttpClient.Redirect.NORMAL).build();
+    private static final HttpClient sidebarHttp = HttpClients.client(HttpClients.Integration.PUBLIC_API);
 
     private static final String[] LOCAL_QUOTES = {
         "The only way to do great work is to love what you do.|Steve Jobs",
@@ -1917,7 +1930,6 @@ public class CommunityController implements Stoppable {
                     try {
                         serviceGroupMember.leave(group.getId(), myId);
                         serviceGroup.refreshMemberCount(group.getId());
-                        utils.InMemoryCache.evictByPrefix("gmembers:");
                         utils.InMemoryCache.evictByPrefix("cgroups:");
                         Platform.runLater(() -> loadGroups());
                     } catch (SQLException ex) {
@@ -1934,7 +1946,6 @@ public class CommunityController implements Stoppable {
                     try {
                         serviceGroupMember.join(group.getId(), myId, GroupMember.ROLE_MEMBER);
                         serviceGroup.refreshMemberCount(group.getId());
-                        utils.InMemoryCache.evictByPrefix("gmembers:");
                         utils.InMemoryCache.evictByPrefix("cgroups:");
                         Platform.runLater(() -> loadGroups());
                     } catch (SQLException ex) {
@@ -2009,7 +2020,6 @@ public class CommunityController implements Stoppable {
                         serviceGroupMember.join(groupId, group.getCreatorId(), GroupMember.ROLE_ADMIN);
                         serviceGroup.refreshMemberCount(groupId);
                         utils.InMemoryCache.evictByPrefix("cgroups:");
-                        utils.InMemoryCache.evictByPrefix("gmembers:");
                     }
                     Platform.runLater(() -> {
                         SoundManager.getInstance().play(SoundManager.MESSAGE_SENT);
@@ -2431,10 +2441,13 @@ public class CommunityController implements Stoppable {
             // User not in cache — try fetching
             AppThreadPool.io(() -> {
                 try {
-                    List<User> all = serviceUser.recuperer();
-                    for (User u : all) userCache.put(u.getId(), u);
-                    User fetched = userCache.get(userId);
-                    if (fetched != null) Platform.runLater(() -> showUserProfile(userId));
+                    User fetched = serviceUser.getById(userId);
+                    if (fetched != null) {
+                        Platform.runLater(() -> {
+                            userCache.put(userId, fetched);
+                            showUserProfile(userId);
+                        });
+                    }
                 } catch (Exception ignored) {}
             });
             return;
@@ -2464,6 +2477,9 @@ public class CommunityController implements Stoppable {
                 String relStatus = myId > 0 && !isOwnProfile ? serviceFollow.getRelationshipStatus(myId, userId) : null;
                 String reverseStatus = myId > 0 && !isOwnProfile ? serviceFollow.getRelationshipStatus(userId, myId) : null;
                 List<UserFollow> pendingRequests = isOwnProfile ? serviceFollow.getPendingRequests(myId) : Collections.emptyList();
+                // Cached users come from the light directory — the bio needs the full row
+                User fullUser = isOwnProfile ? me : serviceUser.getById(userId);
+                String bio = fullUser != null ? fullUser.getBio() : user.getBio();
 
                 List<Post> allUserPosts = filterHumanPosts(servicePost.recuperer());
                 List<Post> userPosts = allUserPosts.stream()
@@ -2494,7 +2510,7 @@ public class CommunityController implements Stoppable {
                     roleLabel.setStyle("-fx-font-size: 13;");
 
                     // Bio
-                    String bioText = user.getBio() != null && !user.getBio().isEmpty() ? user.getBio() : "No bio yet.";
+                    String bioText = bio != null && !bio.isEmpty() ? bio : "No bio yet.";
                     Label bioLabel = new Label(bioText);
                     bioLabel.setWrapText(true);
                     bioLabel.setMaxWidth(500);
@@ -2545,7 +2561,6 @@ public class CommunityController implements Stoppable {
                                 AppThreadPool.io(() -> {
                                     try {
                                         serviceFollow.unfollow(myId, userId);
-                                        utils.InMemoryCache.evictByPrefix("follows:");
                                         Platform.runLater(() -> loadProfile(user));
                                     } catch (SQLException ex) {
                                         Platform.runLater(() -> showToast("Action failed", true));
@@ -2569,7 +2584,6 @@ public class CommunityController implements Stoppable {
                                 AppThreadPool.io(() -> {
                                     try {
                                         serviceFollow.rejectFriendRequest(myId, userId);
-                                        utils.InMemoryCache.evictByPrefix("follows:");
                                         Platform.runLater(() -> loadProfile(user));
                                     } catch (SQLException ex) {
                                         Platform.runLater(() -> showToast("Action failed", true));
@@ -2588,7 +2602,6 @@ public class CommunityController implements Stoppable {
                                         serviceFollow.acceptFriendRequest(userId, myId);
                                         // Also follow them back
                                         serviceFollow.follow(myId, userId);
-                                        utils.InMemoryCache.evictByPrefix("follows:");
                                         User currentMe = SessionManager.getInstance().getCurrentUser();
                                         if (currentMe != null) serviceNotif.notifyFriendAccepted(userId, currentMe.getFullName(), myId);
                                         Platform.runLater(() -> loadProfile(user));
@@ -2604,7 +2617,6 @@ public class CommunityController implements Stoppable {
                                 AppThreadPool.io(() -> {
                                     try {
                                         serviceFollow.rejectFriendRequest(userId, myId);
-                                        utils.InMemoryCache.evictByPrefix("follows:");
                                         Platform.runLater(() -> loadProfile(user));
                                     } catch (SQLException ex) {
                                         Platform.runLater(() -> showToast("Action failed", true));
@@ -2621,7 +2633,6 @@ public class CommunityController implements Stoppable {
                                 AppThreadPool.io(() -> {
                                     try {
                                         serviceFollow.sendFriendRequest(myId, userId);
-                                        utils.InMemoryCache.evictByPrefix("follows:");
                                         User currentMe = SessionManager.getInstance().getCurrentUser();
                                         if (currentMe != null) serviceNotif.notifyFriendRequest(userId, currentMe.getFullName(), myId);
                                         Platform.runLater(() -> loadProfile(user));
@@ -2642,7 +2653,6 @@ public class CommunityController implements Stoppable {
                                             serviceFollow.unfollow(myId, userId);
                                         else
                                             serviceFollow.follow(myId, userId);
-                                        utils.InMemoryCache.evictByPrefix("follows:");
                                         Platform.runLater(() -> loadProfile(user));
                                     } catch (SQLException ex) {
                                         Platform.runLater(() -> showToast("Follow failed", true));
@@ -2693,7 +2703,6 @@ public class CommunityController implements Stoppable {
                                     try {
                                         serviceFollow.acceptFriendRequest(sender.getId(), myId);
                                         serviceFollow.follow(myId, sender.getId());
-                                        utils.InMemoryCache.evictByPrefix("follows:");
                                         User currentMe = SessionManager.getInstance().getCurrentUser();
                                         if (currentMe != null) serviceNotif.notifyFriendAccepted(sender.getId(), currentMe.getFullName(), myId);
                                         Platform.runLater(() -> loadProfile(user));
@@ -2710,7 +2719,6 @@ public class CommunityController implements Stoppable {
                                 AppThreadPool.io(() -> {
                                     try {
                                         serviceFollow.rejectFriendRequest(sender.getId(), myId);
-                                        utils.InMemoryCache.evictByPrefix("follows:");
                                         Platform.runLater(() -> loadProfile(user));
                                     } catch (SQLException ex) {
                                         Platform.runLater(() -> showToast("Decline failed", true));
@@ -2818,8 +2826,7 @@ public class CommunityController implements Stoppable {
                 ChatRoom room = serviceChatRoom.getOrCreateRoom(roomName);
                 if (room != null) {
                     // Ensure both users are members
-                    try { serviceChatMember.addMember(room.getId(), myId, "member"); } catch (Exception ignored) {}
-                    try { serviceChatMember.addMember(room.getId(), otherUserId, "member"); } catch (Exception ignored) {}
+                    try { serviceChatMember.addMembers(room.getId(), List.of(myId, otherUserId), "member"); } catch (Exception ignored) {}
                 }
                 Platform.runLater(() -> {
                     // Navigate to Chat via DashboardController
@@ -2854,9 +2861,9 @@ public class CommunityController implements Stoppable {
                     case "following": ids = serviceFollow.getFollowedIds(userId); break;
                     default: return;
                 }
-                List<User> allUsers = serviceUser.recuperer();
+                UserDirectory.refresh();
                 Map<Integer, User> uMap = new HashMap<>();
-                for (User u : allUsers) uMap.put(u.getId(), u);
+                for (User u : UserDirectory.users()) uMap.put(u.getId(), u);
                 List<User> people = new ArrayList<>();
                 for (int id : ids) { if (uMap.containsKey(id)) people.add(uMap.get(id)); }
                 people.sort((a, b) -> String.valueOf(a.getFullName()).compareToIgnoreCase(String.valueOf(b.getFullName())));
@@ -3422,5 +3429,9 @@ public class CommunityController implements Stoppable {
         if (scheduler != null && !scheduler.isShutdown()) {
             scheduler.shutdownNow();
         }
+        if (feedSubscription != null) {
+            feedSubscription.cancel();
+            feedSubscription = null;
+        }
     }
 }
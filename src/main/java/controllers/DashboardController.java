@@ -1,6 +1,7 @@
 package controllers;
 
 import entities.Call;
+import entities.Message;
 import entities.User;
 import entities.Interview;
 import javafx.animation.Interpolator;
@@ -36,6 +37,10 @@ import services.ServiceMessage;
 import utils.AnimatedWeatherIcons;
 import utils.AppThreadPool;
 import utils.AudioCallService;
+import utils.EventBus;
+import utils.MessagePush;
+import utils.Presence;
+import utils.RoomActivity;
 import utils.SessionManager;
 import utils.SignalingService;
 import utils.SoundManager;
@@ -56,6 +61,7 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class DashboardController {
 
@@ -189,6 +195,12 @@ public class DashboardController {
     private Call globalActiveCall;
     private Timeline callTimerTimeline;
     private Timeline globalCallStatusPoller;
+    /** While the event bus is live, call pollers only sweep for missed events this often. */
+    private static final long CALL_SWEEP_MS = 10_000;
+    private final AtomicLong lastIncomingCallSweep = new AtomicLong();
+    private final AtomicLong lastCallStatusSweep = new AtomicLong();
+    private EventBus.Subscription callStateSubscription;
+    private EventBus.Subscription roomActivitySubscription;
     private long globalCallStart;
     private volatile boolean globalCallPollInFlight = false;
 
@@ -243,6 +255,7 @@ public class DashboardController {
         // Register Ctrl+B keyboard shortcut for sidebar toggle
         sidebar.sceneProperty().addListener((obs, oldScene, newScene) -> {
             if (newScene != null) {
+                Presence.trackActivity(newScene);
                 newScene.getAccelerators().put(
                         new KeyCodeCombination(KeyCode.B, KeyCombination.CONTROL_DOWN),
                         () -> toggleSidebar()
@@ -388,68 +401,56 @@ public class DashboardController {
     }
 
     private void loadDashboardStats() {
-        // Run DB queries on background thread to avoid freezing the UI
-        AppThreadPool.io(() -> {
-            try {
-                // Fire all 4 data fetches in parallel
-                CompletableFuture<List<User>> usersFuture = CompletableFuture.supplyAsync(() -> {
-                    try { return serviceUser.recuperer(); }
-                    catch (Exception e) { return java.util.Collections.emptyList(); }
-                });
-                CompletableFuture<List<Interview>> interviewsFuture = CompletableFuture.supplyAsync(() -> {
-                    try { return serviceInterview.recuperer(); }
-                    catch (Exception e) { return java.util.Collections.emptyList(); }
-                });
-                CompletableFuture<Integer> chatRoomsFuture = CompletableFuture.supplyAsync(() -> {
-                    try { return serviceChatRoom.count(); }
-                    catch (Exception e) { return 0; }
-                });
-                CompletableFuture<Integer> messagesFuture = CompletableFuture.supplyAsync(() -> {
-                    try { return serviceMessage.count(); }
-                    catch (Exception e) { return 0; }
-                });
-
-                // Wait for all to complete (parallel, not sequential)
-                CompletableFuture.allOf(usersFuture, interviewsFuture, chatRoomsFuture, messagesFuture)
-                        .join();
-
-                List<User> allUsers = usersFuture.join();
-                int totalUsers = allUsers.size();
-
-                long employees = allUsers.stream()
-                        .filter(u -> u.getRole().equals("EMPLOYEE") || u.getRole().equals("PROJECT_OWNER"))
-                        .count();
-
-                long gigWorkers = allUsers.stream()
-                        .filter(u -> u.getRole().equals("GIG_WORKER"))
-                        .count();
-
-                List<Interview> allInterviews = interviewsFuture.join();
-                int interviewCount = allInterviews.size();
-
-                long pendingInterviews = allInterviews.stream()
-                        .filter(i -> "PENDING".equals(i.getStatus()))
-                        .count();
-
-                int chatRooms = chatRoomsFuture.join();
-                int totalMessages = messagesFuture.join();
-
-                // Update UI on FX thread
-                javafx.application.Platform.runLater(() -> {
-                    statTotalUsers.setText(String.valueOf(totalUsers));
-                    statEmployees.setText(String.valueOf(employees));
-                    statGigWorkers.setText(String.valueOf(gigWorkers));
-                    statInterviews.setText(String.valueOf(interviewCount));
-                    statPendingInterviews.setText(String.valueOf(pendingInterviews));
-                    statInterviewsTrend.setText(pendingInterviews + " pending");
-                    statChatRooms.setText(String.valueOf(chatRooms));
-                    statMessages.setText(String.valueOf(totalMessages));
+        // All 4 fetches are non-blocking and run in parallel; list loads share any in-flight cache fetch
+        CompletableFuture<List<User>> usersFuture = serviceUser.recupererAsync()
+                .exceptionally(e -> java.util.Collections.emptyList());
+        CompletableFuture<List<Interview>> interviewsFuture = serviceInterview.recupererAsync()
+                .exceptionally(e -> java.util.Collections.emptyList());
+        CompletableFuture<Integer> chatRoomsFuture = serviceChatRoom.countAsync()
+                .exceptionally(e -> 0);
+        CompletableFuture<Integer> messagesFuture = serviceMessage.countAsync()
+                .exceptionally(e -> 0);
+
+        // Nothing waits on the futures — the UI update runs once all have completed
+        CompletableFuture.allOf(usersFuture, interviewsFuture, chatRoomsFuture, messagesFuture)
+                .thenRun(() -> {
+                    List<User> allUsers = usersFuture.join();
+                    int totalUsers = allUsers.size();
+
+                    long employees = allUsers.stream()
+                            .filter(u -> u.getRole().equals("EMPLOYEE") || u.getRole().equals("PROJECT_OWNER"))
+                            .count();
+
+                    long gigWorkers = allUsers.stream()
+                            .filter(u -> u.getRole().equals("GIG_WORKER"))
+                            .count();
+
+                    List<Interview> allInterviews = interviewsFuture.join();
+                    int interviewCount = allInterviews.size();
+
+                    long pendingInterviews = allInterviews.stream()
+                            .filter(i -> "PENDING".equals(i.getStatus()))
+                            .count();
+
+                    int chatRooms = chatRoomsFuture.join();
+                    int totalMessages = messagesFuture.join();
+
+                    // Update UI on FX thread
+                    javafx.application.Platform.runLater(() -> {
+                        statTotalUsers.setText(String.valueOf(totalUsers));
+                        statEmployees.setText(String.valueOf(employees));
+                        statGigWorkers.setText(String.valueOf(gigWorkers));
+                        statInterviews.setText(String.valueOf(interviewCount));
+                        statPendingInterviews.setText(String.valueOf(pendingInterviews));
+                        statInterviewsTrend.setText(pendingInterviews + " pending");
+                        statChatRooms.setText(String.valueOf(chatRooms));
+                        statMessages.setText(String.valueOf(totalMessages));
+                    });
+                })
+                .exceptionally(e -> {
+                    System.err.println("Failed to load stats: " + e.getMessage());
+                    return null;
                 });
-
-            } catch (Exception e) {
-                System.err.println("Failed to load stats: " + e.getMessage());
-            }
-        });
     }
 
     // ========== Active Button Tracking ==========
@@ -958,8 +959,7 @@ public class DashboardController {
         AppThreadPool.io(() -> {
             try {
                 // ZenQuotes API - free, no key required
-                java.net.http.HttpClient client = java.net.http.HttpClient.newBuilder()
-                        .connectTimeout(java.time.Duration.ofSeconds(8)).build();
+                java.net.http.HttpClient client = utils.HttpClients.client(utils.HttpClients.Integration.PUBLIC_API);
                 java.net.http.HttpRequest req = java.net.http.HttpRequest.newBuilder()
                         .uri(java.net.URI.create("https://zenquotes.io/api/random"))
                         .timeout(java.time.Duration.ofSeconds(8))
@@ -1049,33 +1049,56 @@ public class DashboardController {
 
     private void connectSignaling(int userId) {
         SignalingService sig = SignalingService.getInstance();
+        Presence.start(userId); // announces us once the socket is up
         sig.connect(userId);
 
-        // Instant incoming call notification via signaling
-        sig.onMessage("call-state", msg -> {
+        // Instant call notifications: incoming calls, and hang-ups of the call in progress
+        if (callStateSubscription != null) callStateSubscription.cancel();
+        callStateSubscription = EventBus.subscribe(EventBus.Topic.CALL_STATE, ev -> {
             try {
-                JsonObject data = msg.getAsJsonObject("data");
+                JsonObject data = ev.data();
                 String state = data.has("state") ? data.get("state").getAsString() : "";
+                int callId = data.get("callId").getAsInt();
                 if ("incoming-call".equals(state)) {
-                    int callId = data.get("callId").getAsInt();
-                    String callerName = data.has("callerName") ? data.get("callerName").getAsString() : "Unknown";
                     // Skip if Chat page is active — ChatController handles incoming calls with video support
                     if ("/fxml/Chat.fxml".equals(currentPage)) return;
                     if (pendingIncomingCall == null && globalActiveCall == null) {
-                        Call incoming = serviceCall.getCall(callId);
-                        if (incoming != null && "pending".equals(incoming.getStatus())) {
-                            pendingIncomingCall = incoming;
-                            SoundManager.getInstance().playLoop(SoundManager.INCOMING_CALL);
-                            showGlobalIncomingCallToast(incoming);
-                        }
+                        AppThreadPool.io(() -> {
+                            Call incoming = serviceCall.getCall(callId);
+                            if (incoming == null || !"pending".equals(incoming.getStatus())) return;
+                            Platform.runLater(() -> {
+                                if (pendingIncomingCall != null || globalActiveCall != null) return;
+                                pendingIncomingCall = incoming;
+                                SoundManager.getInstance().playLoop(SoundManager.INCOMING_CALL);
+                                showGlobalIncomingCallToast(incoming);
+                            });
+                        });
                     }
+                } else if ("ended".equals(state) || "rejected".equals(state)) {
+                    boolean ours = (globalActiveCall != null && globalActiveCall.getId() == callId)
+                            || (pendingIncomingCall != null && pendingIncomingCall.getId() == callId);
+                    if (ours) endGlobalActiveCall();
                 }
             } catch (Exception e) {
                 System.err.println("[Signaling] call-state handler error: " + e.getMessage());
             }
-        });
-
-        // Real-time message notification
+        }, null);
+
+        // Pushed chat message: toast here; the Chat page renders and announces it itself
+        if (roomActivitySubscription != null) roomActivitySubscription.cancel();
+        roomActivitySubscription = EventBus.subscribe(EventBus.Topic.ROOM_ACTIVITY, ev -> {
+            if (!MessagePush.MESSAGE.equals(ev.type())) return;
+            if ("/fxml/Chat.fxml".equals(currentPage)) return;
+            Message pushed = MessagePush.apply(ev.message());
+            if (pushed == null) return;
+            RoomActivity.record(pushed.getRoomId(), pushed.getTimestamp(), true); // unread badge when Chat opens
+            String senderName = MessagePush.senderName(ev.message());
+            String preview = MessagePush.preview(ev.message());
+            SoundManager.getInstance().play(SoundManager.NEW_MESSAGE);
+            showMessageToast(senderName != null ? senderName : "Someone", preview != null ? preview : "New message");
+        }, null);
+
+        // Real-time message notification (older clients announce DMs this way)
         sig.onMessage("new-message", msg -> {
             try {
                 JsonObject data = msg.getAsJsonObject("data");
@@ -1154,6 +1177,9 @@ public class DashboardController {
                 // Skip if Chat page is active — ChatController handles incoming calls with video support
                 if ("/fxml/Chat.fxml".equals(currentPage)) return;
 
+                // "incoming-call" events ring at once; polling is a sweep while they flow
+                if (!EventBus.shouldPoll(lastIncomingCallSweep, CALL_SWEEP_MS)) return;
+
                 Call incoming = serviceCall.getIncomingCall(user.getId());
                 if (incoming != null) {
                     pendingIncomingCall = incoming;
@@ -1335,6 +1361,7 @@ public class DashboardController {
         globalCallPollInFlight = false;
         globalCallStatusPoller = new Timeline(new KeyFrame(Duration.seconds(3), ev -> {
             if (globalActiveCall == null) return;
+            if (!EventBus.shouldPoll(lastCallStatusSweep, CALL_SWEEP_MS)) return; // hang-ups arrive as events
             if (globalCallPollInFlight) return; // skip if previous request still pending
             globalCallPollInFlight = true;
             AppThreadPool.io(() -> {
@@ -1371,6 +1398,8 @@ public class DashboardController {
     /** Disconnect SignalingService when leaving the dashboard. */
     public void stop() {
         stopIncomingCallPoller();
+        if (callStateSubscription != null) { callStateSubscription.cancel(); callStateSubscription = null; }
+        if (roomActivitySubscription != null) { roomActivitySubscription.cancel(); roomActivitySubscription = null; }
         SignalingService.getInstance().disconnect();
         if (globalActiveCall != null) {
             serviceCall.endCall(globalActiveCall.getId());
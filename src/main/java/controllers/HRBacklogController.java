@@ -17,6 +17,7 @@ import services.*;
 import utils.ApiClient;
 import utils.SessionManager;
 import utils.SoundManager;
+import utils.UserDirectory;
 
 import java.sql.Date;
 import java.sql.SQLException;
@@ -81,7 +82,6 @@ public class HRBacklogController implements Stoppable {
 
     /* ═══════════════ Services ═══════════════ */
 
-    private final ServiceUser serviceUser = new ServiceUser();
     private final ServiceLeave serviceLeave = new ServiceLeave();
     private final ServiceAttendance serviceAttendance = new ServiceAttendance();
     private final ServicePayroll servicePayroll = new ServicePayroll();
@@ -259,7 +259,8 @@ public class HRBacklogController implements Stoppable {
                 }
 
                 // 2. Load all users
-                List<User> allUsers = serviceUser.recuperer();
+                UserDirectory.refresh();
+                List<User> allUsers = UserDirectory.users();
                 userNames.clear();
                 if (allUsers != null) {
                     for (User u : allUsers) {
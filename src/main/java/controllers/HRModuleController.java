@@ -21,6 +21,7 @@ import utils.DialogHelper;
 import utils.PayrollPdfExporter;
 import utils.SessionManager;
 import utils.SoundManager;
+import utils.HttpClients;
 import services.ZAIService;
 
 import javafx.stage.FileChooser;
@@ -67,8 +68,7 @@ public class HRModuleController {
     private List<User> allUsers = new ArrayList<>();
 
     // HTTP client for API calls
-    private static final HttpClient httpClient = HttpClient.newBuilder()
-            .connectTimeout(Duration.ofSeconds(5)).build();
+    private static final HttpClient httpClient = HttpClients.client(HttpClients.Integration.PUBLIC_API);
     private static final Gson gson = new Gson();
 
     @FXML
@@ -120,7 +120,14 @@ public class HRModuleController {
     }
 
     private void loadUserNames() {
-        allUsers = utils.UserNameCache.refresh();
+        utils.UserNameCache.refresh();
+        // Payroll needs salaries and hourly rates, which the light directory leaves out
+        try {
+            allUsers = serviceUser.recuperer();
+        } catch (SQLException e) {
+            System.err.println("HR: failed to load users — " + e.getMessage());
+            allUsers = new ArrayList<>(utils.UserNameCache.getAllUsers());
+        }
     }
 
     private String getUserName(int userId) {
@@ -2132,7 +2139,8 @@ public class HRModuleController {
                         } catch (SQLException e) { /* continue */ }
                     }
 
-                    int generated = 0, skipped = 0;
+                    int skipped = 0;
+                    List<Payroll> batch = new ArrayList<>();
 
                     for (User u : allUsers) {
                         if ("ADMIN".equals(u.getRole())) continue;
@@ -2178,13 +2186,21 @@ public class HRModuleController {
                             p.setHourlyRate(hourlyRate);
                             p.setStatus("PENDING");
 
-                            servicePayroll.ajouter(p);
-                            generated++;
+                            batch.add(p);
                         } catch (SQLException e) {
                             System.err.println("Failed to generate payroll for user " + u.getId() + ": " + e.getMessage());
                         }
                     }
 
+                    // All rows in one bulk write instead of a round-trip per employee
+                    int generated = 0;
+                    try {
+                        servicePayroll.ajouterAll(batch);
+                        generated = batch.size();
+                    } catch (SQLException e) {
+                        System.err.println("Failed to save generated payroll: " + e.getMessage());
+                    }
+
                     final int gen = generated, skip = skipped;
                     Platform.runLater(() -> {
                         contentArea.getChildren().remove(progressBox);
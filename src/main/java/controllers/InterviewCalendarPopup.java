@@ -11,10 +11,10 @@ import javafx.scene.paint.Color;
 import javafx.scene.text.Font;
 import javafx.scene.text.FontWeight;
 import services.ServiceInterview;
-import services.ServiceUser;
 import utils.DialogHelper;
 import utils.SessionManager;
 import utils.SoundManager;
+import utils.UserDirectory;
 
 import java.sql.SQLException;
 import java.sql.Timestamp;
@@ -36,7 +36,6 @@ public class InterviewCalendarPopup {
     private VBox popupContent;
 
     private final ServiceInterview serviceInterview = new ServiceInterview();
-    private final ServiceUser serviceUser = new ServiceUser();
     private Map<Integer, User> userCache = new HashMap<>();
     private List<Interview> interviews = new ArrayList<>();
 
@@ -184,8 +183,8 @@ public class InterviewCalendarPopup {
 
     private void loadData() {
         try {
-            List<User> users = serviceUser.recuperer();
-            for (User u : users) userCache.put(u.getId(), u);
+            UserDirectory.refresh();
+            for (User u : UserDirectory.users()) userCache.put(u.getId(), u);
 
             User me = SessionManager.getInstance().getCurrentUser();
             List<Interview> all = serviceInterview.recuperer();
@@ -34,6 +34,7 @@ import utils.AppConfig;
 import utils.AppThreadPool;
 import utils.SessionManager;
 import utils.SoundManager;
+import utils.HttpClients;
 
 import java.net.URI;
 import java.net.http.HttpClient;
@@ -81,10 +82,7 @@ public class JobScannerController implements Stoppable {
 
     private Timeline radarSpin;
 
-    private static final HttpClient httpClient = HttpClient.newBuilder()
-            .connectTimeout(Duration.ofSeconds(15))
-            .followRedirects(HttpClient.Redirect.NORMAL)
-            .build();
+    private static final HttpClient httpClient = HttpClients.client(HttpClients.Integration.PUBLIC_API);
     private static final Gson gson = new Gson();
 
     private volatile boolean searching = false;
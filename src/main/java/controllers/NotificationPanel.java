@@ -19,6 +19,7 @@ import services.ServiceNotification;
 import services.ServiceNotification.Notification;
 import utils.SessionManager;
 import utils.AppThreadPool;
+import utils.EventBus;
 import utils.SoundManager;
 
 import java.time.LocalDateTime;
@@ -28,6 +29,7 @@ import java.util.List;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.BiConsumer;
 
 /**
@@ -46,6 +48,10 @@ public class NotificationPanel {
     private int userId;
     private int lastUnreadCount = 0;
     private ScheduledExecutorService poller;
+    private EventBus.Subscription subscription;
+    /** While "notification" events flow, the unread-count poll is only a sweep this often. */
+    private static final long SWEEP_MS = 60_000;
+    private final AtomicLong lastSweep = new AtomicLong();
     private Runnable onNotificationClick;
     private BiConsumer<String, Integer> onNotificationAction;
 
@@ -85,20 +91,28 @@ public class NotificationPanel {
             return t;
         });
         poller.scheduleAtFixedRate(() -> {
-            try {
-                int count = service.getUnreadCount(userId);
-                Platform.runLater(() -> {
-                    if (count > lastUnreadCount && lastUnreadCount >= 0) {
-                        SoundManager.getInstance().play(SoundManager.NOTIFICATION_POP);
-                    }
-                    updateBadge(count);
-                });
-            } catch (Exception ignored) {}
+            if (EventBus.shouldPoll(lastSweep, SWEEP_MS)) pollCount();
         }, 5, 15, TimeUnit.SECONDS);
+        subscription = EventBus.subscribe(EventBus.Topic.NOTIFICATIONS,
+                ev -> AppThreadPool.io(this::pollCount), this::refreshCount);
     }
 
     public void stop() {
         if (poller != null) { poller.shutdownNow(); poller = null; }
+        if (subscription != null) { subscription.cancel(); subscription = null; }
+    }
+
+    /** Fetch the unread count; pops a sound when it grew (background thread). */
+    private void pollCount() {
+        try {
+            int count = service.getUnreadCount(userId);
+            Platform.runLater(() -> {
+                if (count > lastUnreadCount && lastUnreadCount >= 0) {
+                    SoundManager.getInstance().play(SoundManager.NOTIFICATION_POP);
+                }
+                updateBadge(count);
+            });
+        } catch (Exception ignored) {}
     }
 
     public void setOnNotificationClick(Runnable callback) {
@@ -17,7 +17,6 @@ import services.ServiceProject;
 import services.ServiceProjectMember;
 import services.ServiceNotification;
 import services.ServiceTask;
-import services.ServiceUser;
 import services.ZAIService;
 import utils.DialogHelper;
 import utils.CardEffects;
@@ -27,6 +26,7 @@ import utils.SoundManager;
 import com.google.gson.Gson;
 import utils.AppConfig;
 import utils.AppThreadPool;
+import utils.UserDirectory;
 
 import java.net.URI;
 import java.net.http.HttpClient;
@@ -69,9 +69,8 @@ public class ProjectManagementController {
     // ═══ Services ═══
     private final ServiceProject serviceProject = new ServiceProject();
     private final ServiceTask serviceTask = new ServiceTask();
-    private final ServiceUser serviceUser = new ServiceUser();
     private final ServiceNotification serviceNotification = new ServiceNotification();
-    private final HttpClient httpClient = HttpClient.newHttpClient();
+    private final HttpClient httpClient = utils.HttpClients.client(utils.HttpClients.Integration.PUBLIC_API);
     private final Gson gson = new Gson();
 
     // ═══ State ═══
@@ -117,14 +116,11 @@ public class ProjectManagementController {
 
         // Load users in background, projects already loads async
         AppThreadPool.io(() -> {
-            try {
-                List<User> users = serviceUser.recuperer();
-                Platform.runLater(() -> {
-                    for (User u : users) userCache.put(u.getId(), u);
-                });
-            } catch (SQLException e) {
-                System.err.println("⚠ Failed to load users: " + e.getMessage());
-            }
+            UserDirectory.refresh();
+            List<User> users = UserDirectory.users();
+            Platform.runLater(() -> {
+                for (User u : users) userCache.put(u.getId(), u);
+            });
         });
         loadProjects();
     }
@@ -134,12 +130,8 @@ public class ProjectManagementController {
     // ════════════════════════════════════════════════════════
 
     private void loadUsers() {
-        try {
-            List<User> users = serviceUser.recuperer();
-            for (User u : users) userCache.put(u.getId(), u);
-        } catch (SQLException e) {
-            System.err.println("⚠ Failed to load users: " + e.getMessage());
-        }
+        UserDirectory.refresh();
+        for (User u : UserDirectory.users()) userCache.put(u.getId(), u);
     }
 
     private void loadProjects() {
@@ -2457,7 +2449,7 @@ public class ProjectManagementController {
                         .GET()
                         .timeout(java.time.Duration.ofSeconds(8))
                         .build();
-                java.net.http.HttpResponse<String> resp = java.net.http.HttpClient.newHttpClient()
+                java.net.http.HttpResponse<String> resp = utils.HttpClients.client(utils.HttpClients.Integration.PUBLIC_API)
                         .send(req, java.net.http.HttpResponse.BodyHandlers.ofString());
                 if (resp.statusCode() == 200) {
                     com.google.gson.JsonArray arr = com.google.gson.JsonParser.parseString(resp.body()).getAsJsonArray();
@@ -2494,7 +2486,7 @@ public class ProjectManagementController {
                         .GET()
                         .timeout(java.time.Duration.ofSeconds(8))
                         .build();
-                java.net.http.HttpResponse<String> resp = java.net.http.HttpClient.newHttpClient()
+                java.net.http.HttpResponse<String> resp = utils.HttpClients.client(utils.HttpClients.Integration.PUBLIC_API)
                         .send(req, java.net.http.HttpResponse.BodyHandlers.ofString());
                 if (resp.statusCode() == 200) {
                     com.google.gson.JsonObject obj = com.google.gson.JsonParser.parseString(resp.body()).getAsJsonObject();
@@ -2543,7 +2535,7 @@ public class ProjectManagementController {
                         .GET()
                         .timeout(java.time.Duration.ofSeconds(8))
                         .build();
-                java.net.http.HttpResponse<String> resp = java.net.http.HttpClient.newHttpClient()
+                java.net.http.HttpResponse<String> resp = utils.HttpClients.client(utils.HttpClients.Integration.PUBLIC_API)
                         .send(req, java.net.http.HttpResponse.BodyHandlers.ofString());
                 if (resp.statusCode() == 200) {
                     com.google.gson.JsonObject json = com.google.gson.JsonParser.parseString(resp.body()).getAsJsonObject();
@@ -2597,7 +2589,7 @@ public class ProjectManagementController {
                         .GET()
                         .timeout(java.time.Duration.ofSeconds(8))
                         .build();
-                java.net.http.HttpResponse<String> resp = java.net.http.HttpClient.newHttpClient()
+                java.net.http.HttpResponse<String> resp = utils.HttpClients.client(utils.HttpClients.Integration.PUBLIC_API)
                         .send(req, java.net.http.HttpResponse.BodyHandlers.ofString());
                 if (resp.statusCode() == 200) {
                     com.google.gson.JsonArray holidays = com.google.gson.JsonParser.parseString(resp.body()).getAsJsonArray();
@@ -2651,7 +2643,7 @@ public class ProjectManagementController {
                         .GET()
                         .timeout(java.time.Duration.ofSeconds(8))
                         .build();
-                java.net.http.HttpResponse<String> resp = java.net.http.HttpClient.newHttpClient()
+                java.net.http.HttpResponse<String> resp = utils.HttpClients.client(utils.HttpClients.Integration.PUBLIC_API)
                         .send(req, java.net.http.HttpResponse.BodyHandlers.ofString());
                 if (resp.statusCode() == 200) {
                     com.google.gson.JsonObject obj = com.google.gson.JsonParser.parseString(resp.body()).getAsJsonObject();
@@ -22,6 +22,7 @@ import utils.DialogHelper;
 import utils.SessionManager;
 import utils.SoundManager;
 import utils.TrainingCertificatePdf;
+import utils.HttpClients;
 import services.ZAIService;
 
 import java.awt.Desktop;
@@ -83,8 +84,7 @@ public class TrainingController {
 
     private Map<Integer, TrainingCourse> courseMap = new HashMap<>();
 
-    private static final HttpClient httpClient = HttpClient.newBuilder()
-            .connectTimeout(Duration.ofSeconds(5)).build();
+    private static final HttpClient httpClient = HttpClients.client(HttpClients.Integration.PUBLIC_API);
     private static final Gson gson = new Gson();
 
     @FXML
@@ -2367,6 +2367,11 @@ public class TrainingController {
                         .collect(Collectors.toList());
             }
 
+            // Enrollment counts for all listed courses in one lookup (not one request per row)
+            Map<Integer, Long> enrollCounts = colVis[4]
+                    ? serviceEnrollment.countActiveByCourse(courses.stream().map(TrainingCourse::getId).collect(Collectors.toList()))
+                    : Map.of();
+
             for (TrainingCourse c : courses) {
                 HBox row = new HBox(12);
                 row.getStyleClass().add("tr-manage-row");
@@ -2408,11 +2413,7 @@ public class TrainingController {
 
                 // Col 4: Enrollment count vs capacity
                 if (colVis[4]) {
-                    long enrollCount = 0;
-                    try {
-                        enrollCount = serviceEnrollment.getByCourse(c.getId()).stream()
-                                .filter(en -> !"DROPPED".equals(en.getStatus())).count();
-                    } catch (SQLException ignored) {}
+                    long enrollCount = enrollCounts.getOrDefault(c.getId(), 0L);
                     String capStr = c.getMaxParticipants() > 0 ? (" / " + c.getMaxParticipants()) : "";
                     Label enrollLabel = new Label("👥 " + enrollCount + capStr + " enrolled");
                     if (c.getMaxParticipants() > 0 && enrollCount >= c.getMaxParticipants()) {
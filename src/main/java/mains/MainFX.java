@@ -84,10 +84,25 @@ public class MainFX extends Application {
 
     @Override
     public void stop() {
+        // Persist the warm-start snapshot before the data source goes away
+        utils.SnapshotCache.close();
+        // Notifications still in their short coalescing window
+        services.ServiceNotification.flushPending();
         // Shut down HikariCP connection pool (only if it was initialised)
         if (!utils.AppConfig.isApiMode()) {
             utils.MyDatabase.getInstance().shutdown();
+        } else {
+            // Last chance for queued writes; anything left is sent after the next login
+            utils.WriteOutbox.flush(3_000);
+            if (!utils.ApiResilience.endpoints().isEmpty()) {
+                System.out.println(utils.ApiResilience.report());
+            }
+        }
+        utils.SignalingService.Stats signaling = utils.SignalingService.getInstance().stats();
+        if (signaling.connects() > 0 || signaling.failedAttempts() > 0) {
+            System.out.println(signaling);
         }
+        utils.StandInServer.stopShared();
         // Also kill AI service on explicit JavaFX stop
         if (aiProcess != null && aiProcess.isAlive()) {
             aiProcess.destroyForcibly();
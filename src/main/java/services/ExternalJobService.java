@@ -9,6 +9,7 @@ import java.net.http.HttpResponse.BodyHandlers;
 import java.time.Duration;
 import java.util.*;
 import java.util.concurrent.*;
+import utils.HttpClients;
 
 /**
  * Fetches external job listings from 4 free, no-auth APIs:
@@ -32,10 +33,7 @@ public class ExternalJobService {
     private static List<ExternalJob> cachedJobs = null;
     private static long cacheTimestamp = 0;
 
-    private static final HttpClient client = HttpClient.newBuilder()
-            .connectTimeout(Duration.ofSeconds(10))
-            .followRedirects(HttpClient.Redirect.NORMAL)
-            .build();
+    private static final HttpClient client = HttpClients.client(HttpClients.Integration.PUBLIC_API);
 
     private static final Gson gson = new Gson();
 
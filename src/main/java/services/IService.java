@@ -1,5 +1,9 @@
 package services;
 
+import com.google.gson.JsonElement;
+import utils.ApiClient;
+
+import java.io.IOException;
 import java.sql.SQLException;
 import java.util.List;
 
@@ -11,4 +15,36 @@ public interface IService<T> {
     void supprimer(int id) throws SQLException;
 
     List<T> recuperer() throws SQLException;
+
+    // ── Bulk writes ──
+    // Defaults fall back to one call per row; services with heavy write
+    // paths override them with JDBC batches / bulk REST endpoints.
+
+    /** Insert every row; generated ids are set on the entities. */
+    default void ajouterAll(List<T> list) throws SQLException {
+        for (T t : list) ajouter(t);
+    }
+
+    default void modifierAll(List<T> list) throws SQLException {
+        for (T t : list) modifier(t);
+    }
+
+    default void supprimerAll(List<Integer> ids) throws SQLException {
+        for (int id : ids) supprimer(id);
+    }
+
+    /**
+     * {@link ApiClient#bulk(String, String, Object)} for the overrides above.
+     * Null means the backend has no bulk endpoint (fall back to one call per
+     * row); any other failure runs {@code onFailure} (drop cached reads — the
+     * write may have been applied) and is thrown, not retried row by row.
+     */
+    static JsonElement bulk(String method, String path, Object body, Runnable onFailure) throws SQLException {
+        try {
+            return ApiClient.bulk(method, path, body);
+        } catch (IOException e) {
+            onFailure.run();
+            throw new SQLException("Bulk request " + method + " " + path + " failed: " + e.getMessage(), e);
+        }
+    }
 }
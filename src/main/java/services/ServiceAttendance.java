@@ -1,11 +1,17 @@
 package services;
 
 import com.google.gson.*;
+import com.google.gson.stream.JsonReader;
 import entities.Attendance;
 import utils.ApiClient;
 import utils.AppConfig;
 import utils.MyDatabase;
 import utils.InMemoryCache;
+import utils.JdbcBatch;
+import utils.JsonStreams;
+import utils.WriteOutbox;
+
+import java.io.IOException;
 import java.sql.*;
 import java.util.*;
 
@@ -16,6 +22,9 @@ public class ServiceAttendance implements IService<Attendance> {
     private static final String CACHE_KEY = "attendance:all";
     private static final int CACHE_TTL = 60;
 
+    private static final String INSERT_SQL = "INSERT INTO attendance (user_id, date, check_in, check_out, status) VALUES (?, ?, ?, ?, ?)";
+    private static final String UPDATE_SQL = "UPDATE attendance SET user_id=?, date=?, check_in=?, check_out=?, status=? WHERE id=?";
+
     public ServiceAttendance() {
         useApi = AppConfig.isApiMode();
     }
@@ -25,20 +34,11 @@ public class ServiceAttendance implements IService<Attendance> {
     /**
      * Parse a TIME value that may arrive as "HH:mm:ss", "HH:mm", or seconds-float (timedelta serialization).
      */
-    private Time parseTime(JsonElement el) {
+    private static Time parseTime(String raw) {
         try {
-            // Try as number first (Python timedelta serialized as total seconds)
-            if (el.isJsonPrimitive() && el.getAsJsonPrimitive().isNumber()) {
-                long totalSeconds = (long) el.getAsDouble();
-                long h = totalSeconds / 3600;
-                long m = (totalSeconds % 3600) / 60;
-                long s = totalSeconds % 60;
-                return Time.valueOf(String.format("%02d:%02d:%02d", h, m, s));
-            }
-            // Try as string
-            String str = el.getAsString().trim();
-            // Handle "69064.0" style strings (float-as-string)
-            if (str.matches("\\d+\\.\\d+")) {
+            String str = raw.trim();
+            // Python timedelta serialized as total seconds, possibly "69064.0"
+            if (str.matches("\\d+(\\.\\d+)?")) {
                 long totalSeconds = (long) Double.parseDouble(str);
                 long h = totalSeconds / 3600;
                 long m = (totalSeconds % 3600) / 60;
@@ -48,47 +48,61 @@ public class ServiceAttendance implements IService<Attendance> {
             // Normal "HH:mm:ss" or "HH:mm"
             return Time.valueOf(str.length() == 5 ? str + ":00" : str);
         } catch (Exception e) {
-            System.err.println("⚠ Failed to parse time: " + el + " — " + e.getMessage());
+            System.err.println("⚠ Failed to parse time: " + raw + " — " + e.getMessage());
             return null;
         }
     }
 
-    private Attendance jsonToAttendance(JsonObject obj) {
-        Timestamp createdAt = null;
-        if (obj.has("created_at") && !obj.get("created_at").isJsonNull()) {
-            createdAt = Timestamp.valueOf(obj.get("created_at").getAsString().replace("T", " "));
-        }
-        java.sql.Date date = null;
-        if (obj.has("date") && !obj.get("date").isJsonNull()) {
-            date = java.sql.Date.valueOf(obj.get("date").getAsString());
-        }
-        Time checkIn = null;
-        if (obj.has("check_in") && !obj.get("check_in").isJsonNull()) {
-            checkIn = parseTime(obj.get("check_in"));
-        }
-        Time checkOut = null;
-        if (obj.has("check_out") && !obj.get("check_out").isJsonNull()) {
-            checkOut = parseTime(obj.get("check_out"));
+    /** Streaming decoder: one JSON attendance object straight into an Attendance. */
+    private static Attendance readAttendance(JsonReader in) throws IOException {
+        Attendance a = new Attendance();
+        a.setStatus("PRESENT");
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "id": a.setId(JsonStreams.nextInt(in, 0)); break;
+                case "user_id": a.setUserId(JsonStreams.nextInt(in, 0)); break;
+                case "date": a.setDate(JsonStreams.nextDate(in)); break;
+                case "check_in": {
+                    String t = JsonStreams.nextString(in);
+                    a.setCheckIn(t != null ? parseTime(t) : null);
+                    break;
+                }
+                case "check_out": {
+                    String t = JsonStreams.nextString(in);
+                    a.setCheckOut(t != null ? parseTime(t) : null);
+                    break;
+                }
+                case "status": {
+                    String status = JsonStreams.nextString(in);
+                    a.setStatus(status != null ? status : "PRESENT");
+                    break;
+                }
+                case "created_at": a.setCreatedAt(JsonStreams.nextTimestamp(in)); break;
+                default: in.skipValue();
+            }
         }
-        return new Attendance(
-                obj.get("id").getAsInt(),
-                obj.get("user_id").getAsInt(),
-                date,
-                checkIn,
-                checkOut,
-                obj.has("status") && !obj.get("status").isJsonNull() ? obj.get("status").getAsString() : "PRESENT",
-                createdAt
-        );
+        in.endObject();
+        return a;
     }
 
-    private List<Attendance> jsonArrayToList(JsonElement el) {
-        List<Attendance> list = new ArrayList<>();
-        if (el != null && el.isJsonArray()) {
-            for (JsonElement item : el.getAsJsonArray()) {
-                list.add(jsonToAttendance(item.getAsJsonObject()));
-            }
-        }
-        return list;
+    private Map<String, Object> attendanceToBody(Attendance a) {
+        Map<String, Object> body = new HashMap<>();
+        body.put("user_id", a.getUserId());
+        body.put("date", a.getDate() != null ? a.getDate().toString() : null);
+        body.put("check_in", a.getCheckIn() != null ? a.getCheckIn().toString() : null);
+        body.put("check_out", a.getCheckOut() != null ? a.getCheckOut().toString() : null);
+        body.put("status", a.getStatus());
+        return body;
+    }
+
+    /** Binds parameters 1–5 shared by INSERT_SQL and UPDATE_SQL. */
+    private static void bindAttendance(PreparedStatement ps, Attendance a) throws SQLException {
+        ps.setInt(1, a.getUserId());
+        ps.setDate(2, a.getDate());
+        ps.setTime(3, a.getCheckIn());
+        ps.setTime(4, a.getCheckOut());
+        ps.setString(5, a.getStatus());
     }
 
     // ==================== CRUD ====================
@@ -96,26 +110,15 @@ public class ServiceAttendance implements IService<Attendance> {
     @Override
     public void ajouter(Attendance a) throws SQLException {
         if (useApi) {
-            Map<String, Object> body = new HashMap<>();
-            body.put("user_id", a.getUserId());
-            body.put("date", a.getDate() != null ? a.getDate().toString() : null);
-            body.put("check_in", a.getCheckIn() != null ? a.getCheckIn().toString() : null);
-            body.put("check_out", a.getCheckOut() != null ? a.getCheckOut().toString() : null);
-            body.put("status", a.getStatus());
-            JsonElement resp = ApiClient.post("/attendance", body);
+            JsonElement resp = ApiClient.post("/attendance", attendanceToBody(a));
             if (resp != null && resp.isJsonObject()) {
                 a.setId(resp.getAsJsonObject().get("id").getAsInt());
             }
             return;
         }
-        String sql = "INSERT INTO attendance (user_id, date, check_in, check_out, status) VALUES (?, ?, ?, ?, ?)";
         try (Connection conn = MyDatabase.getInstance().getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-            ps.setInt(1, a.getUserId());
-            ps.setDate(2, a.getDate());
-            ps.setTime(3, a.getCheckIn());
-            ps.setTime(4, a.getCheckOut());
-            ps.setString(5, a.getStatus());
+             PreparedStatement ps = conn.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS)) {
+            bindAttendance(ps, a);
             ps.executeUpdate();
             try (ResultSet keys = ps.getGeneratedKeys()) {
                 if (keys.next()) a.setId(keys.getInt(1));
@@ -127,23 +130,13 @@ public class ServiceAttendance implements IService<Attendance> {
     @Override
     public void modifier(Attendance a) throws SQLException {
         if (useApi) {
-            Map<String, Object> body = new HashMap<>();
-            body.put("user_id", a.getUserId());
-            body.put("date", a.getDate() != null ? a.getDate().toString() : null);
-            body.put("check_in", a.getCheckIn() != null ? a.getCheckIn().toString() : null);
-            body.put("check_out", a.getCheckOut() != null ? a.getCheckOut().toString() : null);
-            body.put("status", a.getStatus());
-            ApiClient.put("/attendance/" + a.getId(), body);
+            WriteOutbox.sendOrQueue("PUT", "/attendance/" + a.getId(), attendanceToBody(a));
+            InMemoryCache.evictByPrefix("attendance:");
             return;
         }
-        String sql = "UPDATE attendance SET user_id=?, date=?, check_in=?, check_out=?, status=? WHERE id=?";
         try (Connection conn = MyDatabase.getInstance().getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setInt(1, a.getUserId());
-            ps.setDate(2, a.getDate());
-            ps.setTime(3, a.getCheckIn());
-            ps.setTime(4, a.getCheckOut());
-            ps.setString(5, a.getStatus());
+             PreparedStatement ps = conn.prepareStatement(UPDATE_SQL)) {
+            bindAttendance(ps, a);
             ps.setInt(6, a.getId());
             ps.executeUpdate();
         }
@@ -164,11 +157,77 @@ public class ServiceAttendance implements IService<Attendance> {
         InMemoryCache.evictByPrefix("attendance:");
     }
 
+    // ==================== BULK ====================
+
+    /** Imports: one bulk request (API) or one batched transaction (JDBC). */
+    @Override
+    public void ajouterAll(List<Attendance> list) throws SQLException {
+        if (list.isEmpty()) return;
+        if (useApi) {
+            List<Map<String, Object>> bodies = new ArrayList<>();
+            for (Attendance a : list) bodies.add(attendanceToBody(a));
+            JsonElement resp = IService.bulk("POST", "/attendance/bulk", bodies,
+                    () -> InMemoryCache.evictByPrefix("attendance:"));
+            if (resp == null) {
+                IService.super.ajouterAll(list); // backend without the bulk endpoint
+                return;
+            }
+            if (resp.isJsonArray()) {
+                JsonArray created = resp.getAsJsonArray();
+                for (int i = 0; i < created.size() && i < list.size(); i++) {
+                    list.get(i).setId(created.get(i).getAsJsonObject().get("id").getAsInt());
+                }
+            }
+            InMemoryCache.evictByPrefix("attendance:");
+            return;
+        }
+        JdbcBatch.insert(INSERT_SQL, list, ServiceAttendance::bindAttendance, Attendance::setId);
+        InMemoryCache.evictByPrefix("attendance:");
+    }
+
+    /** Same for updates: one bulk request or one batched transaction. */
+    @Override
+    public void modifierAll(List<Attendance> list) throws SQLException {
+        if (list.isEmpty()) return;
+        if (useApi) {
+            List<Map<String, Object>> bodies = new ArrayList<>();
+            for (Attendance a : list) {
+                Map<String, Object> body = attendanceToBody(a);
+                body.put("id", a.getId());
+                bodies.add(body);
+            }
+            JsonElement resp = IService.bulk("PUT", "/attendance/bulk", bodies,
+                    () -> InMemoryCache.evictByPrefix("attendance:"));
+            if (resp == null) IService.super.modifierAll(list);
+            InMemoryCache.evictByPrefix("attendance:");
+            return;
+        }
+        JdbcBatch.execute(UPDATE_SQL, list, (ps, a) -> {
+            bindAttendance(ps, a);
+            ps.setInt(6, a.getId());
+        });
+        InMemoryCache.evictByPrefix("attendance:");
+    }
+
+    @Override
+    public void supprimerAll(List<Integer> ids) throws SQLException {
+        if (ids.isEmpty()) return;
+        if (useApi) {
+            JsonElement resp = IService.bulk("POST", "/attendance/bulk-delete", Map.of("ids", ids),
+                    () -> InMemoryCache.evictByPrefix("attendance:"));
+            if (resp == null) IService.super.supprimerAll(ids);
+            InMemoryCache.evictByPrefix("attendance:");
+            return;
+        }
+        JdbcBatch.execute("DELETE FROM attendance WHERE id=?", ids, (ps, id) -> ps.setInt(1, id));
+        InMemoryCache.evictByPrefix("attendance:");
+    }
+
     @Override
     public List<Attendance> recuperer() throws SQLException {
         if (useApi) {
             return InMemoryCache.getOrLoad(CACHE_KEY, CACHE_TTL,
-                    () -> jsonArrayToList(ApiClient.get("/attendance")));
+                    () -> ApiClient.getList("/attendance", ServiceAttendance::readAttendance));
         }
         return InMemoryCache.getOrLoadChecked(CACHE_KEY, CACHE_TTL,
                 () -> recupererFromDb());
@@ -186,7 +245,7 @@ public class ServiceAttendance implements IService<Attendance> {
 
     public List<Attendance> getByUser(int userId) throws SQLException {
         if (useApi) {
-            return jsonArrayToList(ApiClient.get("/attendance/user/" + userId));
+            return ApiClient.getList("/attendance/user/" + userId, ServiceAttendance::readAttendance);
         }
         List<Attendance> list = new ArrayList<>();
         try (Connection conn = MyDatabase.getInstance().getConnection();
@@ -201,7 +260,7 @@ public class ServiceAttendance implements IService<Attendance> {
 
     public List<Attendance> getByDate(java.sql.Date date) throws SQLException {
         if (useApi) {
-            return jsonArrayToList(ApiClient.get("/attendance/date/" + date.toString()));
+            return ApiClient.getList("/attendance/date/" + date.toString(), ServiceAttendance::readAttendance);
         }
         List<Attendance> list = new ArrayList<>();
         try (Connection conn = MyDatabase.getInstance().getConnection();
@@ -220,7 +279,7 @@ public class ServiceAttendance implements IService<Attendance> {
     public Attendance getTodayForUser(int userId) throws SQLException {
         java.sql.Date today = java.sql.Date.valueOf(java.time.LocalDate.now());
         if (useApi) {
-            List<Attendance> todayList = jsonArrayToList(ApiClient.get("/attendance/date/" + today.toString()));
+            List<Attendance> todayList = ApiClient.getList("/attendance/date/" + today.toString(), ServiceAttendance::readAttendance);
             return todayList.stream().filter(a -> a.getUserId() == userId).findFirst().orElse(null);
         }
         try (Connection conn = MyDatabase.getInstance().getConnection();
@@ -239,6 +298,7 @@ public class ServiceAttendance implements IService<Attendance> {
      */
     public void autoCheckIn(int userId) {
         try {
+            if (useApi && hasQueuedCheckIn(userId)) return; // checked in while offline, not sent yet
             Attendance existing = getTodayForUser(userId);
             if (existing != null) return; // already checked in today
             java.time.LocalTime now = java.time.LocalTime.now();
@@ -250,7 +310,13 @@ public class ServiceAttendance implements IService<Attendance> {
                     null,
                     status
             );
-            ajouter(a);
+            if (useApi) {
+                // Must not be lost to a network blip at login: queued until the server has it
+                WriteOutbox.sendOrQueue("POST", "/attendance", attendanceToBody(a));
+                InMemoryCache.evictByPrefix("attendance:");
+            } else {
+                ajouter(a);
+            }
             System.out.println("✅ Auto check-in for user " + userId + " at " + now + " (" + status + ")");
         } catch (SQLException e) {
             System.err.println("⚠ Auto check-in failed: " + e.getMessage());
@@ -262,6 +328,8 @@ public class ServiceAttendance implements IService<Attendance> {
      */
     public void autoCheckOut(int userId) {
         try {
+            // A check-in still queued has no id to update yet: deliver it first
+            if (useApi && hasQueuedCheckIn(userId)) WriteOutbox.flush(3_000);
             Attendance existing = getTodayForUser(userId);
             if (existing == null || existing.getCheckOut() != null) return; // no record or already checked out
             existing.setCheckOut(java.sql.Time.valueOf(java.time.LocalTime.now()));
@@ -272,6 +340,13 @@ public class ServiceAttendance implements IService<Attendance> {
         }
     }
 
+    private boolean hasQueuedCheckIn(int userId) {
+        String today = java.time.LocalDate.now().toString();
+        return !WriteOutbox.pending(p -> "POST".equals(p.method()) && "/attendance".equals(p.path())
+                && p.body() != null && p.body().has("user_id") && p.body().get("user_id").getAsInt() == userId
+                && p.body().has("date") && today.equals(p.body().get("date").getAsString())).isEmpty();
+    }
+
     private Attendance rowToAttendance(ResultSet rs) throws SQLException {
         return new Attendance(
                 rs.getInt("id"),
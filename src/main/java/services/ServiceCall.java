@@ -4,6 +4,8 @@ import com.google.gson.*;
 import entities.Call;
 import utils.ApiClient;
 import utils.AppConfig;
+import utils.EventBus;
+import utils.SessionManager;
 
 import java.sql.Timestamp;
 import java.util.HashMap;
@@ -93,16 +95,43 @@ public class ServiceCall {
 
     /** Accept a ringing call. */
     public void acceptCall(int callId) {
-        ApiClient.put("/calls/" + callId + "/accept", new HashMap<>());
+        announce(callId, "accepted", ApiClient.put("/calls/" + callId + "/accept", new HashMap<>()));
     }
 
     /** Reject a ringing call. */
     public void rejectCall(int callId) {
-        ApiClient.put("/calls/" + callId + "/reject", new HashMap<>());
+        announce(callId, "rejected", ApiClient.put("/calls/" + callId + "/reject", new HashMap<>()));
     }
 
     /** End an active or ringing call. */
     public void endCall(int callId) {
-        ApiClient.put("/calls/" + callId + "/end", new HashMap<>());
+        announce(callId, "ended", ApiClient.put("/calls/" + callId + "/end", new HashMap<>()));
+    }
+
+    // ==================== Call-state events ====================
+
+    /**
+     * Tell the other party about a state change over the event bus, so their
+     * call screen reacts at once instead of on its next status poll.
+     * Uses the updated call from the response, or fetches it if the reply has no parties.
+     */
+    private void announce(int callId, String state, JsonElement resp) {
+        if (!EventBus.isLive() || SessionManager.getInstance().getCurrentUser() == null) return;
+        int me = SessionManager.getInstance().getCurrentUser().getId();
+        int callerId, calleeId;
+        if (resp != null && resp.isJsonObject() && resp.getAsJsonObject().has("caller_id")
+                && resp.getAsJsonObject().has("callee_id")) {
+            callerId = resp.getAsJsonObject().get("caller_id").getAsInt();
+            calleeId = resp.getAsJsonObject().get("callee_id").getAsInt();
+        } else {
+            Call call = getCall(callId);
+            if (call == null) return;
+            callerId = call.getCallerId();
+            calleeId = call.getCalleeId();
+        }
+        JsonObject data = new JsonObject();
+        data.addProperty("state", state);
+        data.addProperty("callId", callId);
+        EventBus.publish(EventBus.Topic.CALL_STATE, callerId == me ? calleeId : callerId, data);
     }
 }
@@ -1,16 +1,22 @@
 package services;
 
 import com.google.gson.*;
+import com.google.gson.stream.JsonReader;
 import entities.ChatRoom;
 import utils.ApiClient;
 import utils.AppConfig;
+import utils.ChangeFeed;
 import utils.MyDatabase;
 import utils.InMemoryCache;
+import utils.JsonStreams;
+import java.io.IOException;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 public class ServiceChatRoom implements IService<ChatRoom> {
 
@@ -19,6 +25,11 @@ public class ServiceChatRoom implements IService<ChatRoom> {
     private static final String CACHE_KEY = "chatrooms:all";
     private static final int CACHE_TTL = 60;
 
+    /** API-mode replica of all rooms, newest first, kept current through /changes/chatrooms. */
+    private static final ChangeFeed<ChatRoom> feed = new ChangeFeed<>("chatrooms", ServiceChatRoom::readRoom,
+            ChatRoom::getId, Comparator.comparingInt(ChatRoom::getId).reversed(),
+            () -> ApiClient.tryGetList("/chatrooms", ServiceChatRoom::readRoom));
+
     public ServiceChatRoom() {
         useApi = AppConfig.isApiMode();
     }
@@ -41,14 +52,26 @@ public class ServiceChatRoom implements IService<ChatRoom> {
         );
     }
 
-    private List<ChatRoom> jsonArrayToRooms(JsonElement el) {
-        List<ChatRoom> rooms = new ArrayList<>();
-        if (el != null && el.isJsonArray()) {
-            for (JsonElement item : el.getAsJsonArray()) {
-                rooms.add(jsonToChatRoom(item.getAsJsonObject()));
+    /** Streaming decoder for one room, used by the change feed. */
+    private static ChatRoom readRoom(JsonReader in) throws IOException {
+        ChatRoom room = new ChatRoom();
+        room.setType("group");
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "id": room.setId(JsonStreams.nextInt(in, 0)); break;
+                case "name": room.setName(JsonStreams.nextString(in)); break;
+                case "type":
+                    String type = JsonStreams.nextString(in);
+                    if (type != null) room.setType(type);
+                    break;
+                case "created_by": room.setCreatedBy(JsonStreams.nextInt(in, 0)); break;
+                case "created_at": room.setCreatedAt(JsonStreams.nextTimestamp(in)); break;
+                default: in.skipValue();
             }
         }
-        return rooms;
+        in.endObject();
+        return room;
     }
 
     // ==================== CRUD ====================
@@ -64,6 +87,7 @@ public class ServiceChatRoom implements IService<ChatRoom> {
             if (resp != null && resp.isJsonObject() && resp.getAsJsonObject().has("id")) {
                 room.setId(resp.getAsJsonObject().get("id").getAsInt());
             }
+            feed.markStale();
             return;
         }
         String req = "INSERT INTO chat_rooms (name, type, created_by) VALUES (?, ?, ?)";
@@ -86,6 +110,7 @@ public class ServiceChatRoom implements IService<ChatRoom> {
             Map<String, Object> body = new HashMap<>();
             body.put("name", room.getName());
             ApiClient.put("/chatrooms/" + room.getId(), body);
+            feed.markStale();
             return;
         }
         String req = "UPDATE chat_rooms SET name=? WHERE id=?";
@@ -102,6 +127,8 @@ public class ServiceChatRoom implements IService<ChatRoom> {
     public void supprimer(int id) throws SQLException {
         if (useApi) {
             ApiClient.delete("/chatrooms/" + id);
+            InMemoryCache.invalidateTags("chatrooms", "room:" + id);
+            feed.markStale();
             return;
         }
         String req = "DELETE FROM chat_rooms WHERE id=?";
@@ -110,19 +137,28 @@ public class ServiceChatRoom implements IService<ChatRoom> {
             ps.setInt(1, id);
             ps.executeUpdate();
         }
-        InMemoryCache.evictByPrefix("chatrooms:");
+        // Room list plus anything cached about this room (messages, members)
+        InMemoryCache.invalidateTags("chatrooms", "room:" + id);
     }
 
     @Override
     public List<ChatRoom> recuperer() throws SQLException {
         if (useApi) {
-            return InMemoryCache.getOrLoad(CACHE_KEY, CACHE_TTL,
-                    () -> jsonArrayToRooms(ApiClient.get("/chatrooms")));
+            return new ArrayList<>(feed.sync());
         }
         return InMemoryCache.getOrLoadChecked(CACHE_KEY, CACHE_TTL,
                 () -> recupererFromDb());
     }
 
+    /** Non-blocking {@link #recuperer()}. */
+    public CompletableFuture<List<ChatRoom>> recupererAsync() {
+        if (useApi) {
+            return feed.syncAsync().thenApply(ArrayList::new);
+        }
+        return InMemoryCache.getOrLoadAsync(CACHE_KEY, CACHE_TTL,
+                () -> recupererFromDb());
+    }
+
     private List<ChatRoom> recupererFromDb() throws SQLException {
         List<ChatRoom> rooms = new ArrayList<>();
         String req = "SELECT * FROM chat_rooms ORDER BY created_at DESC";
@@ -182,15 +218,24 @@ public class ServiceChatRoom implements IService<ChatRoom> {
 
     /** Returns total chat room count without loading all rows. */
     public int count() throws SQLException {
-        return InMemoryCache.getOrLoadChecked("chatrooms:count", 30, () -> {
-            if (useApi) {
-                return recuperer().size();
-            }
-            try (Connection conn = MyDatabase.getInstance().getConnection();
-                 Statement st = conn.createStatement();
-                 ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM chat_rooms")) {
-                return rs.next() ? rs.getInt(1) : 0;
-            }
-        });
+        return InMemoryCache.getOrLoadChecked("chatrooms:count", 30,
+                () -> useApi ? recuperer().size() : countFromDb());
+    }
+
+    /** Non-blocking {@link #count()}. */
+    public CompletableFuture<Integer> countAsync() {
+        if (useApi) {
+            return InMemoryCache.getOrLoadFuture("chatrooms:count", 0, 30,
+                    () -> recupererAsync().thenApply(List::size));
+        }
+        return InMemoryCache.getOrLoadAsync("chatrooms:count", 30, () -> countFromDb());
+    }
+
+    private int countFromDb() throws SQLException {
+        try (Connection conn = MyDatabase.getInstance().getConnection();
+             Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM chat_rooms")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
     }
 }
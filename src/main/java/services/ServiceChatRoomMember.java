@@ -7,6 +7,7 @@ import entities.ChatRoomMember;
 import utils.ApiClient;
 import utils.AppConfig;
 import utils.InMemoryCache;
+import utils.JdbcBatch;
 import utils.MyDatabase;
 
 import java.sql.*;
@@ -20,6 +21,12 @@ public class ServiceChatRoomMember {
 
     private boolean useApi() { return AppConfig.isApiMode(); }
 
+    /** A membership change only affects that room's member list and that user's room set. */
+    private void invalidateMembership(int roomId, int userId) {
+        InMemoryCache.evict("room_members:room:" + roomId);
+        InMemoryCache.evict("room_members:user:" + userId);
+    }
+
     // ═══════════════════════════════════════════
     //  ADD MEMBER
     // ═══════════════════════════════════════════
@@ -31,7 +38,7 @@ public class ServiceChatRoomMember {
             body.put("user_id", userId);
             body.put("role", role);
             ApiClient.post("/chat_room_members", body);
-            InMemoryCache.evictByPrefix("room_members:");
+            invalidateMembership(roomId, userId);
             return;
         }
         String sql = "INSERT IGNORE INTO chat_room_members (room_id, user_id, role) VALUES (?, ?, ?)";
@@ -42,7 +49,37 @@ public class ServiceChatRoomMember {
             ps.setString(3, role);
             ps.executeUpdate();
         }
-        InMemoryCache.evictByPrefix("room_members:");
+        invalidateMembership(roomId, userId);
+    }
+
+    /**
+     * Add several users to a room with one bulk request (API) or one JDBC
+     * batch. Existing memberships are left untouched.
+     */
+    public void addMembers(int roomId, Collection<Integer> userIds, String role) throws SQLException {
+        if (userIds.isEmpty()) return;
+        if (useApi()) {
+            Map<String, Object> body = new HashMap<>();
+            body.put("room_id", roomId);
+            body.put("user_ids", new ArrayList<>(userIds));
+            body.put("role", role);
+            JsonElement resp = IService.bulk("POST", "/chat_room_members/bulk", body, () -> {
+                for (int userId : userIds) invalidateMembership(roomId, userId);
+            });
+            if (resp == null) {
+                // backend without the bulk endpoint
+                for (int userId : userIds) addMember(roomId, userId, role);
+                return;
+            }
+        } else {
+            String sql = "INSERT IGNORE INTO chat_room_members (room_id, user_id, role) VALUES (?, ?, ?)";
+            JdbcBatch.execute(sql, new ArrayList<>(userIds), (ps, userId) -> {
+                ps.setInt(1, roomId);
+                ps.setInt(2, userId);
+                ps.setString(3, role);
+            });
+        }
+        for (int userId : userIds) invalidateMembership(roomId, userId);
     }
 
     // ═══════════════════════════════════════════
@@ -52,7 +89,7 @@ public class ServiceChatRoomMember {
     public void removeMember(int roomId, int userId) throws SQLException {
         if (useApi()) {
             ApiClient.delete("/chat_room_members/" + roomId + "/" + userId);
-            InMemoryCache.evictByPrefix("room_members:");
+            invalidateMembership(roomId, userId);
             return;
         }
         String sql = "DELETE FROM chat_room_members WHERE room_id = ? AND user_id = ?";
@@ -62,7 +99,7 @@ public class ServiceChatRoomMember {
             ps.setInt(2, userId);
             ps.executeUpdate();
         }
-        InMemoryCache.evictByPrefix("room_members:");
+        invalidateMembership(roomId, userId);
     }
 
     // ═══════════════════════════════════════════
@@ -72,7 +109,7 @@ public class ServiceChatRoomMember {
     public List<ChatRoomMember> getByRoom(int roomId) throws SQLException {
         String key = "room_members:room:" + roomId;
         if (useApi()) {
-            return InMemoryCache.getOrLoad(key, 30, () -> {
+            return InMemoryCache.getOrLoad(key, 30, List.of("room:" + roomId), () -> {
                 List<ChatRoomMember> list = new ArrayList<>();
                 try {
                     JsonElement resp = ApiClient.get("/chat_room_members/room/" + roomId);
@@ -87,7 +124,7 @@ public class ServiceChatRoomMember {
                 return list;
             });
         }
-        return InMemoryCache.getOrLoadChecked(key, 30, () -> getByRoomJdbc(roomId));
+        return InMemoryCache.getOrLoadChecked(key, 30, List.of("room:" + roomId), () -> getByRoomJdbc(roomId));
     }
 
     private List<ChatRoomMember> getByRoomJdbc(int roomId) throws SQLException {
@@ -44,6 +44,12 @@ public class ServiceGroupMember {
 
     // ============ Core Operations ============
 
+    /** A join/leave only affects that group's member list and that user's group set. */
+    private void invalidateMembership(int groupId, int userId) {
+        InMemoryCache.evict("gmembers:group:" + groupId);
+        InMemoryCache.evict("gmembers:user:" + userId);
+    }
+
     /** Join a group. Uses INSERT IGNORE to be idempotent. */
     public void join(int groupId, int userId, String role) throws SQLException {
         if (useApi()) {
@@ -52,7 +58,7 @@ public class ServiceGroupMember {
             body.put("user_id", userId);
             body.put("role", role);
             try { ApiClient.post("/group_members", body); } catch (Exception ignored) {}
-            InMemoryCache.evictByPrefix("gmembers:");
+            invalidateMembership(groupId, userId);
             return;
         }
         String sql = "INSERT IGNORE INTO group_members (group_id, user_id, role) VALUES (?, ?, ?)";
@@ -63,7 +69,7 @@ public class ServiceGroupMember {
             ps.setString(3, role);
             ps.executeUpdate();
         }
-        InMemoryCache.evictByPrefix("gmembers:");
+        invalidateMembership(groupId, userId);
     }
 
     /** Leave a group. */
@@ -71,7 +77,7 @@ public class ServiceGroupMember {
         if (useApi()) {
             try { ApiClient.delete("/group_members?group_id=" + groupId + "&user_id=" + userId); }
             catch (Exception ignored) {}
-            InMemoryCache.evictByPrefix("gmembers:");
+            invalidateMembership(groupId, userId);
             return;
         }
         String sql = "DELETE FROM group_members WHERE group_id = ? AND user_id = ?";
@@ -81,7 +87,7 @@ public class ServiceGroupMember {
             ps.setInt(2, userId);
             ps.executeUpdate();
         }
-        InMemoryCache.evictByPrefix("gmembers:");
+        invalidateMembership(groupId, userId);
     }
 
     /** Check if user is a member. */
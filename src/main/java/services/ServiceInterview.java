@@ -11,6 +11,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 public class ServiceInterview implements IService<Interview> {
 
@@ -154,6 +155,20 @@ public class ServiceInterview implements IService<Interview> {
                 () -> recupererFromDb());
     }
 
+    /**
+     * Non-blocking {@link #recuperer()}; concurrent callers share the same
+     * in-flight fetch. In API mode no thread waits on the request; JDBC runs
+     * on the app I/O pool.
+     */
+    public CompletableFuture<List<Interview>> recupererAsync() {
+        if (useApi) {
+            return InMemoryCache.getOrLoadFuture(CACHE_KEY, 0, CACHE_TTL,
+                    () -> ApiClient.getAsync("/interviews").thenApply(this::jsonArrayToInterviews));
+        }
+        return InMemoryCache.getOrLoadAsync(CACHE_KEY, CACHE_TTL,
+                () -> recupererFromDb());
+    }
+
     private List<Interview> recupererFromDb() throws SQLException {
         List<Interview> interviews = new ArrayList<>();
         String req = "SELECT * FROM interviews";
@@ -6,6 +6,7 @@ import utils.ApiClient;
 import utils.AppConfig;
 import utils.MyDatabase;
 import utils.InMemoryCache;
+import utils.WriteOutbox;
 
 import java.sql.*;
 import java.util.*;
@@ -109,7 +110,7 @@ public class ServiceLeave implements IService<Leave> {
             body.put("reason", l.getReason());
             body.put("status", l.getStatus());
             body.put("rejection_reason", l.getRejectionReason());
-            ApiClient.put("/leaves/" + l.getId(), body);
+            WriteOutbox.sendOrQueue("PUT", "/leaves/" + l.getId(), body);
             return;
         }
         String sql = "UPDATE leaves SET user_id=?, type=?, start_date=?, end_date=?, reason=?, status=?, rejection_reason=? WHERE id=?";
@@ -1,14 +1,22 @@
 package services;
 
 import com.google.gson.*;
+import com.google.gson.stream.JsonReader;
 import entities.Message;
 import utils.ApiClient;
 import utils.AppConfig;
 import utils.InMemoryCache;
+import utils.JsonStreams;
+import utils.MessagePush;
 import utils.MyDatabase;
+import utils.RoomMessageStore;
+import utils.WriteOutbox;
 
+import java.io.IOException;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -18,34 +26,59 @@ public class ServiceMessage implements IService<Message> {
 
     private final boolean useApi;
 
+    /** After the bulk latest-per-room endpoint fails, use the per-room fallback this long before retrying it. */
+    private static final long LATEST_ENDPOINT_RETRY_MS = 5 * 60_000;
+    private static volatile long latestEndpointRetryAt = 0;
+
     public ServiceMessage() {
         useApi = AppConfig.isApiMode();
     }
 
     // ==================== JSON helpers ====================
 
-    private Message jsonToMessage(JsonObject obj) {
-        Timestamp timestamp = null;
-        if (obj.has("timestamp") && !obj.get("timestamp").isJsonNull()) {
-            timestamp = Timestamp.valueOf(obj.get("timestamp").getAsString().replace("T", " "));
+    /** Streaming decoder: one JSON message object straight into a Message. */
+    private static Message readMessage(JsonReader in) throws IOException {
+        Message m = new Message();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "id": m.setId(JsonStreams.nextInt(in, 0)); break;
+                case "sender_id": m.setSenderId(JsonStreams.nextInt(in, 0)); break;
+                case "room_id": m.setRoomId(JsonStreams.nextInt(in, 0)); break;
+                case "content": m.setContent(JsonStreams.nextString(in)); break;
+                case "timestamp": m.setTimestamp(JsonStreams.nextTimestamp(in)); break;
+                default: in.skipValue();
+            }
         }
-        return new Message(
-                obj.get("id").getAsInt(),
-                obj.get("sender_id").getAsInt(),
-                obj.get("room_id").getAsInt(),
-                obj.get("content").getAsString(),
-                timestamp
-        );
+        in.endObject();
+        return m;
     }
 
-    private List<Message> jsonArrayToMessages(JsonElement el) {
-        List<Message> messages = new ArrayList<>();
-        if (el != null && el.isJsonArray()) {
-            for (JsonElement item : el.getAsJsonArray()) {
-                messages.add(jsonToMessage(item.getAsJsonObject()));
+    /** Timestamp of the highest-id message in a JSON array (older backends ignore {@code limit}). */
+    private static Timestamp newestTimestamp(JsonElement el) {
+        if (el == null || !el.isJsonArray()) return null;
+        int bestId = Integer.MIN_VALUE;
+        JsonElement best = null;
+        for (JsonElement item : el.getAsJsonArray()) {
+            if (!item.isJsonObject()) continue;
+            JsonObject obj = item.getAsJsonObject();
+            int id = obj.has("id") ? obj.get("id").getAsInt() : 0;
+            if (id > bestId && obj.has("timestamp") && !obj.get("timestamp").isJsonNull()) {
+                bestId = id;
+                best = obj.get("timestamp");
             }
         }
-        return messages;
+        return best == null ? null : Timestamp.valueOf(best.getAsString().replace("T", " "));
+    }
+
+    /** Drop cached data for one room only; falls back to the whole namespace if the room is unknown. */
+    private void invalidateRoom(int roomId) {
+        if (roomId > 0) {
+            InMemoryCache.evict("messages:room:" + roomId);
+            InMemoryCache.evict("messages:count");
+        } else {
+            InMemoryCache.invalidateTag("messages");
+        }
     }
 
     // ==================== CRUD ====================
@@ -57,19 +90,40 @@ public class ServiceMessage implements IService<Message> {
             body.put("sender_id", message.getSenderId());
             body.put("room_id", message.getRoomId());
             body.put("content", message.getContent());
-            ApiClient.post("/messages", body);
-            InMemoryCache.evictByPrefix("messages:");
+            // Queued durably; RoomMessageStore shows it until the server has it
+            WriteOutbox.enqueue("POST", "/messages", body, reply -> {
+                invalidateRoom(message.getRoomId());
+                if (reply != null && reply.isJsonObject() && reply.getAsJsonObject().has("id")) {
+                    JsonObject saved = reply.getAsJsonObject();
+                    message.setId(saved.get("id").getAsInt());
+                    if (saved.has("timestamp") && !saved.get("timestamp").isJsonNull()) {
+                        message.setTimestamp(Timestamp.valueOf(saved.get("timestamp").getAsString().replace("T", " ")));
+                    }
+                    delivered(message);
+                }
+            });
             return;
         }
         String req = "INSERT INTO messages (sender_id, room_id, content) VALUES (?, ?, ?)";
         try (Connection conn = MyDatabase.getInstance().getConnection();
-             PreparedStatement ps = conn.prepareStatement(req)) {
+             PreparedStatement ps = conn.prepareStatement(req, Statement.RETURN_GENERATED_KEYS)) {
             ps.setInt(1, message.getSenderId());
             ps.setInt(2, message.getRoomId());
             ps.setString(3, message.getContent());
             ps.executeUpdate();
+            try (ResultSet keys = ps.getGeneratedKeys()) {
+                if (keys.next()) message.setId(keys.getInt(1));
+            }
         }
-        InMemoryCache.evictByPrefix("messages:");
+        invalidateRoom(message.getRoomId());
+        delivered(message);
+    }
+
+    /** A new message is stored: show it locally and push it to the room's other members. */
+    private void delivered(Message message) {
+        if (message.getTimestamp() == null) message.setTimestamp(new Timestamp(System.currentTimeMillis()));
+        RoomMessageStore.apply(message);
+        MessagePush.publish(MessagePush.MESSAGE, message);
     }
 
     @Override
@@ -78,7 +132,8 @@ public class ServiceMessage implements IService<Message> {
             Map<String, Object> body = new HashMap<>();
             body.put("content", message.getContent());
             ApiClient.put("/messages/" + message.getId(), body);
-            InMemoryCache.evictByPrefix("messages:");
+            invalidateRoom(message.getRoomId());
+            MessagePush.publish(MessagePush.EDITED, message);
             return;
         }
         String req = "UPDATE messages SET content=? WHERE id=?";
@@ -88,14 +143,19 @@ public class ServiceMessage implements IService<Message> {
             ps.setInt(2, message.getId());
             ps.executeUpdate();
         }
-        InMemoryCache.evictByPrefix("messages:");
+        invalidateRoom(message.getRoomId());
+        MessagePush.publish(MessagePush.EDITED, message);
     }
 
     @Override
     public void supprimer(int id) throws SQLException {
+        Message deleted = new Message();
+        deleted.setId(id);
+        deleted.setRoomId(RoomMessageStore.roomOf(id));
         if (useApi) {
             ApiClient.delete("/messages/" + id);
-            InMemoryCache.evictByPrefix("messages:");
+            InMemoryCache.invalidateTag("messages"); // room unknown from id alone
+            if (deleted.getRoomId() > 0) MessagePush.publish(MessagePush.DELETED, deleted);
             return;
         }
         String req = "DELETE FROM messages WHERE id=?";
@@ -104,13 +164,14 @@ public class ServiceMessage implements IService<Message> {
             ps.setInt(1, id);
             ps.executeUpdate();
         }
-        InMemoryCache.evictByPrefix("messages:");
+        InMemoryCache.invalidateTag("messages"); // room unknown from id alone
+        if (deleted.getRoomId() > 0) MessagePush.publish(MessagePush.DELETED, deleted);
     }
 
     @Override
     public List<Message> recuperer() throws SQLException {
         if (useApi) {
-            return jsonArrayToMessages(ApiClient.get("/messages"));
+            return ApiClient.getList("/messages", ServiceMessage::readMessage);
         }
         List<Message> messages = new ArrayList<>();
         String req = "SELECT * FROM messages";
@@ -133,58 +194,144 @@ public class ServiceMessage implements IService<Message> {
     public List<Message> getByRoom(int roomId) throws SQLException {
         String cacheKey = "messages:room:" + roomId;
         if (useApi) {
-            return InMemoryCache.getOrLoad(cacheKey, 3,
-                    () -> jsonArrayToMessages(ApiClient.get("/messages/room/" + roomId)));
-        }
-        return InMemoryCache.getOrLoadChecked(cacheKey, 3, () -> {
-            List<Message> messages = new ArrayList<>();
-            String req = "SELECT * FROM messages WHERE room_id=? ORDER BY timestamp ASC";
-            try (Connection conn = MyDatabase.getInstance().getConnection();
-                 PreparedStatement ps = conn.prepareStatement(req)) {
-                ps.setInt(1, roomId);
-                try (ResultSet rs = ps.executeQuery()) {
-                    while (rs.next()) {
-                        messages.add(new Message(
-                                rs.getInt("id"),
-                                rs.getInt("sender_id"),
-                                rs.getInt("room_id"),
-                                rs.getString("content"),
-                                rs.getTimestamp("timestamp")));
-                    }
+            return InMemoryCache.getOrLoad(cacheKey, 3, List.of("room:" + roomId),
+                    () -> ApiClient.getList("/messages/room/" + roomId, ServiceMessage::readMessage));
+        }
+        return InMemoryCache.getOrLoadChecked(cacheKey, 3, List.of("room:" + roomId),
+                () -> getByRoomFromDb(roomId));
+    }
+
+    private List<Message> getByRoomFromDb(int roomId) throws SQLException {
+        List<Message> messages = new ArrayList<>();
+        String req = "SELECT * FROM messages WHERE room_id=? ORDER BY timestamp ASC";
+        try (Connection conn = MyDatabase.getInstance().getConnection();
+             PreparedStatement ps = conn.prepareStatement(req)) {
+            ps.setInt(1, roomId);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    messages.add(rowToMessage(rs));
                 }
             }
-            return messages;
-        });
+        }
+        return messages;
+    }
+
+    /** Non-blocking {@link #getByRoom}; shares the same cache entry. */
+    public CompletableFuture<List<Message>> getByRoomAsync(int roomId) {
+        String cacheKey = "messages:room:" + roomId;
+        if (useApi) {
+            return InMemoryCache.getOrLoadFuture(cacheKey, 0, 3, List.of("room:" + roomId),
+                    () -> ApiClient.getListAsync("/messages/room/" + roomId, ServiceMessage::readMessage));
+        }
+        return InMemoryCache.getOrLoadAsync(cacheKey, 3, List.of("room:" + roomId),
+                () -> getByRoomFromDb(roomId));
+    }
+
+    /**
+     * Keyset page of messages newer than {@code afterId}, oldest first.
+     * Used by the chat poller so each tick only transfers rows it hasn't seen.
+     * Not cached — the caller keeps the rows in {@link utils.RoomMessageStore}.
+     */
+    public List<Message> getByRoomSince(int roomId, int afterId, int limit) throws SQLException {
+        if (useApi) {
+            List<Message> page = ApiClient.getList("/messages/room/" + roomId
+                    + "?after_id=" + afterId + "&limit=" + limit, ServiceMessage::readMessage);
+            // Older backends ignore the keyset params and return the full history — trim client-side
+            page.removeIf(m -> m.getId() <= afterId);
+            page.sort(Comparator.comparingInt(Message::getId));
+            return page.size() > limit ? new ArrayList<>(page.subList(0, limit)) : page;
+        }
+        List<Message> messages = new ArrayList<>();
+        String req = "SELECT * FROM messages WHERE room_id=? AND id>? ORDER BY id ASC LIMIT ?";
+        try (Connection conn = MyDatabase.getInstance().getConnection();
+             PreparedStatement ps = conn.prepareStatement(req)) {
+            ps.setInt(1, roomId);
+            ps.setInt(2, afterId);
+            ps.setInt(3, limit);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    messages.add(rowToMessage(rs));
+                }
+            }
+        }
+        return messages;
+    }
+
+    /**
+     * Keyset page of messages older than {@code beforeId}, returned oldest first.
+     * Pass {@code beforeId <= 0} to get the most recent page of the room.
+     */
+    public List<Message> getPageBefore(int roomId, int beforeId, int limit) throws SQLException {
+        int upper = beforeId > 0 ? beforeId : Integer.MAX_VALUE;
+        if (useApi) {
+            String query = "?limit=" + limit + (beforeId > 0 ? "&before_id=" + beforeId : "");
+            List<Message> page = ApiClient.getList("/messages/room/" + roomId + query, ServiceMessage::readMessage);
+            page.removeIf(m -> m.getId() >= upper);
+            page.sort(Comparator.comparingInt(Message::getId));
+            return page.size() > limit ? new ArrayList<>(page.subList(page.size() - limit, page.size())) : page;
+        }
+        List<Message> messages = new ArrayList<>();
+        String req = "SELECT * FROM messages WHERE room_id=? AND id<? ORDER BY id DESC LIMIT ?";
+        try (Connection conn = MyDatabase.getInstance().getConnection();
+             PreparedStatement ps = conn.prepareStatement(req)) {
+            ps.setInt(1, roomId);
+            ps.setInt(2, upper);
+            ps.setInt(3, limit);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    messages.add(rowToMessage(rs));
+                }
+            }
+        }
+        Collections.reverse(messages);
+        return messages;
+    }
+
+    private Message rowToMessage(ResultSet rs) throws SQLException {
+        return new Message(
+                rs.getInt("id"),
+                rs.getInt("sender_id"),
+                rs.getInt("room_id"),
+                rs.getString("content"),
+                rs.getTimestamp("timestamp"));
     }
 
     /**
      * Returns the latest message timestamp for each room in a single query (JDBC)
-     * or with per-room API calls (API mode — only fetches last element from each response).
+     * or, in API mode, one {@code GET /messages/latest?room_ids=...} request.
+     * Backends without that endpoint get one batched request asking each room
+     * for its newest message instead.
      */
     public Map<Integer, java.sql.Timestamp> getLatestTimestamps(List<Integer> roomIds) throws SQLException {
         Map<Integer, java.sql.Timestamp> result = new HashMap<>();
         if (roomIds == null || roomIds.isEmpty()) return result;
 
         if (useApi) {
-            // API mode: fire all room fetches in parallel
+            if (System.currentTimeMillis() >= latestEndpointRetryAt) {
+                StringBuilder ids = new StringBuilder();
+                for (int roomId : roomIds) ids.append(ids.length() > 0 ? "," : "").append(roomId);
+                JsonElement latest = ApiClient.get("/messages/latest?room_ids=" + ids);
+                if (latest != null && latest.isJsonArray()) {
+                    for (JsonElement item : latest.getAsJsonArray()) {
+                        JsonObject row = item.getAsJsonObject();
+                        if (!row.has("timestamp") || row.get("timestamp").isJsonNull()) continue;
+                        result.put(row.get("room_id").getAsInt(),
+                                Timestamp.valueOf(row.get("timestamp").getAsString().replace("T", " ")));
+                    }
+                    return result;
+                }
+                latestEndpointRetryAt = System.currentTimeMillis() + LATEST_ENDPOINT_RETRY_MS;
+            }
+            // Fallback: every room's newest message, collapsed into one /batch call
             Map<Integer, CompletableFuture<java.sql.Timestamp>> futures = new HashMap<>();
             for (int roomId : roomIds) {
-                futures.put(roomId, CompletableFuture.supplyAsync(() -> {
-                    try {
-                        List<Message> msgs = getByRoom(roomId);
-                        if (!msgs.isEmpty()) {
-                            Message last = msgs.get(msgs.size() - 1);
-                            return last.getTimestamp();
-                        }
-                    } catch (Exception ignored) {}
-                    return null;
-                }));
-            }
-            CompletableFuture.allOf(futures.values().toArray(new CompletableFuture[0])).join();
-            for (var entry : futures.entrySet()) {
-                java.sql.Timestamp ts = entry.getValue().join();
-                if (ts != null) result.put(entry.getKey(), ts);
+                futures.put(roomId, ApiClient.getBatched("/messages/room/" + roomId + "?limit=1")
+                        .thenApply(ServiceMessage::newestTimestamp)
+                        .exceptionally(e -> null));
             }
+            ApiClient.awaitAll(futures, ApiClient.BATCH_TIMEOUT_MS, null).forEach((roomId, ts) -> {
+                if (ts != null) result.put(roomId, ts);
+            });
             return result;
         }
 
@@ -208,15 +355,24 @@ public class ServiceMessage implements IService<Message> {
 
     /** Returns total message count without loading all rows. */
     public int count() throws SQLException {
-        return InMemoryCache.getOrLoadChecked("messages:count", 30, () -> {
-            if (useApi) {
-                return recuperer().size();
-            }
-            try (Connection conn = MyDatabase.getInstance().getConnection();
-                 Statement st = conn.createStatement();
-                 ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM messages")) {
-                return rs.next() ? rs.getInt(1) : 0;
-            }
-        });
+        return InMemoryCache.getOrLoadChecked("messages:count", 30,
+                () -> useApi ? recuperer().size() : countFromDb());
+    }
+
+    /** Non-blocking {@link #count()}. */
+    public CompletableFuture<Integer> countAsync() {
+        if (useApi) {
+            return InMemoryCache.getOrLoadFuture("messages:count", 0, 30,
+                    () -> ApiClient.getListAsync("/messages", ServiceMessage::readMessage).thenApply(List::size));
+        }
+        return InMemoryCache.getOrLoadAsync("messages:count", 30, () -> countFromDb());
+    }
+
+    private int countFromDb() throws SQLException {
+        try (Connection conn = MyDatabase.getInstance().getConnection();
+             Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM messages")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
     }
 }
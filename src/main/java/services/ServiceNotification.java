@@ -3,14 +3,34 @@ package services;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonReader;
 import utils.ApiClient;
 import utils.AppConfig;
-
+import utils.AppThreadPool;
+import utils.ChangeFeed;
+import utils.EventBus;
+import utils.JdbcBatch;
+import utils.JsonStreams;
+import utils.WriteOutbox;
+
+import java.io.IOException;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Service for managing notifications. Supports API and JDBC modes.
@@ -35,10 +55,58 @@ public class ServiceNotification {
         }
     }
 
+    /** API mode: one replica per recipient, newest first, synced through /changes/notifications. */
+    private static final Map<Integer, ChangeFeed<Notification>> feeds = new ConcurrentHashMap<>();
+
+    /** One notification as it is sent to any number of recipients. */
+    record Template(String type, String title, String body, Integer refId, String refType) {
+
+        /** Same (type, reference): a newer one replaces this for a recipient who has not read it. */
+        boolean sameSubject(Template other) {
+            return refId != null && type.equals(other.type) && refId.equals(other.refId)
+                    && Objects.equals(refType, other.refType);
+        }
+
+        Map<String, Object> toMap() {
+            Map<String, Object> data = new HashMap<>();
+            data.put("type", type);
+            data.put("title", title);
+            data.put("body", body);
+            data.put("reference_id", refId);
+            data.put("reference_type", refType);
+            return data;
+        }
+    }
+
+    /** Notification outbox: templates not yet written, with their recipients, in creation order. */
+    private static final Map<Template, Set<Integer>> outbox = new LinkedHashMap<>(); // guarded by itself
+    private static ScheduledFuture<?> outboxFlush;                                   // guarded by outbox
+    private static final long OUTBOX_WINDOW_MS = AppConfig.getLong("notifications.window_ms", 100);
+    /** When the backend has no fan-out endpoint, send plain rows through {@link WriteOutbox} this long before trying it again. */
+    private static final long FAN_OUT_RETRY_MS = 5 * 60_000;
+    private static volatile long fanOutRetryAt = 0;
+
     private boolean useApi() {
         return AppConfig.isApiMode();
     }
 
+    private ChangeFeed<Notification> feed(int userId) {
+        return feeds.computeIfAbsent(userId, id -> new ChangeFeed<>("notifications", "user_id=" + id,
+                ServiceNotification::readNotification, n -> n.id,
+                Comparator.comparingInt((Notification n) -> n.id).reversed(),
+                () -> ApiClient.tryGetList("/notifications/" + id, ServiceNotification::readNotification)));
+    }
+
+    /** Drop every user's notification replica (on logout). */
+    public static void clearFeeds() {
+        feeds.clear();
+    }
+
+    private static void markStale(int userId) {
+        ChangeFeed<Notification> feed = feeds.get(userId);
+        if (feed != null) feed.markStale();
+    }
+
     // â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•
     //  GET NOTIFICATIONS
     // â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•
@@ -49,18 +117,7 @@ public class ServiceNotification {
     }
     
     private List<Notification> getNotificationsApi(int userId) {
-        List<Notification> list = new ArrayList<>();
-        try {
-            JsonElement resp = ApiClient.get("/notifications/" + userId);
-            if (resp != null && resp.isJsonArray()) {
-                for (JsonElement el : resp.getAsJsonArray()) {
-                    list.add(jsonToNotification(el.getAsJsonObject()));
-                }
-            }
-        } catch (Exception e) {
-            System.err.println("Failed to get notifications: " + e.getMessage());
-        }
-        return list;
+        return new ArrayList<>(feed(userId).sync());
     }
 
     private List<Notification> getNotificationsJdbc(int userId) {
@@ -87,6 +144,12 @@ public class ServiceNotification {
     }
 
     private int getUnreadCountApi(int userId) {
+        ChangeFeed<Notification> feed = feed(userId);
+        if (feed.isAvailable()) {
+            // Counted from the replica, so the poll costs one (usually empty) delta
+            List<Notification> all = feed.sync();
+            if (feed.isIncremental()) return (int) all.stream().filter(n -> !n.isRead).count();
+        }
         try {
             JsonElement resp = ApiClient.get("/notifications/" + userId + "/count");
             if (resp != null && resp.isJsonObject()) {
@@ -118,6 +181,7 @@ public class ServiceNotification {
     public void markRead(int notifId) {
         if (useApi()) {
             try { ApiClient.put("/notifications/" + notifId + "/read", Map.of()); } catch (Exception e) { System.err.println(e.getClass().getSimpleName() + ": " + e.getMessage()); }
+            feeds.values().forEach(ChangeFeed::markStale);
         } else {
             try (Connection conn = utils.MyDatabase.getInstance().getConnection();
                  PreparedStatement ps = conn.prepareStatement("UPDATE notifications SET is_read = 1 WHERE id = ?")) {
@@ -130,6 +194,7 @@ public class ServiceNotification {
     public void markAllRead(int userId) {
         if (useApi()) {
             try { ApiClient.put("/notifications/" + userId + "/read-all", Map.of()); } catch (Exception e) { System.err.println(e.getClass().getSimpleName() + ": " + e.getMessage()); }
+            markStale(userId);
         } else {
             try (Connection conn = utils.MyDatabase.getInstance().getConnection();
                  PreparedStatement ps = conn.prepareStatement("UPDATE notifications SET is_read = 1 WHERE user_id = ? AND is_read = 0")) {
@@ -143,31 +208,150 @@ public class ServiceNotification {
     //  CREATE NOTIFICATION
     // â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•
 
+    /** Notify one user; see {@link #createForUsers}. */
     public void create(int userId, String type, String title, String body, Integer refId, String refType) {
-        if (useApi()) {
+        createForUsers(List.of(userId), type, title, body, refId, refType);
+    }
+
+    /**
+     * Notify several users of the same thing without blocking the caller.
+     * <p>
+     * The notification goes into the notification outbox and is written on a
+     * background thread {@code notifications.window_ms} (default 100 ms) later,
+     * so identical notifications created meanwhile (a loop over recipients)
+     * become one write. A newer notification about the same type and reference
+     * replaces a queued one for the same user, and a recipient who still has an
+     * unread one about it gets that one refreshed instead of a duplicate.
+     * <p>
+     * API mode sends one {@code POST /notifications/fan-out}
+     * {@code {user_ids, type, title, body, reference_id, reference_type}} per
+     * template, expanded into rows by the server. A fan-out whose outcome is
+     * unknown is retried through {@link WriteOutbox} under the same idempotency
+     * key; only a backend without the endpoint gets one row per user instead. JDBC mode writes all rows as one batch.
+     * Recipients are notified live only once their rows are written.
+     */
+    public void createForUsers(Collection<Integer> userIds, String type, String title, String body,
+                               Integer refId, String refType) {
+        if (userIds.isEmpty()) return;
+        Template template = new Template(type, title, body, refId, refType);
+        synchronized (outbox) {
+            for (Map.Entry<Template, Set<Integer>> queued : outbox.entrySet()) {
+                if (!queued.getKey().equals(template) && queued.getKey().sameSubject(template)) {
+                    queued.getValue().removeAll(userIds);
+                }
+            }
+            outbox.values().removeIf(Set::isEmpty);
+            outbox.computeIfAbsent(template, t -> new LinkedHashSet<>()).addAll(userIds);
+            if (outboxFlush == null || outboxFlush.isDone()) {
+                outboxFlush = AppThreadPool.schedule(() -> AppThreadPool.io(ServiceNotification::flushPending),
+                        OUTBOX_WINDOW_MS, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /** Write everything in the notification outbox now, on the caller's thread (also used on exit). */
+    public static void flushPending() {
+        Map<Template, Set<Integer>> batch;
+        synchronized (outbox) {
+            if (outbox.isEmpty()) return;
+            batch = new LinkedHashMap<>(outbox);
+            outbox.clear();
+        }
+        boolean api = AppConfig.isApiMode();
+        batch.forEach((template, users) -> {
+            List<Integer> userIds = new ArrayList<>(users);
+            if (api) fanOutApi(template, userIds);
+            else if (fanOutJdbc(template, userIds)) announce(template, userIds);
+        });
+    }
+
+    /** Once the rows are written: refresh the recipients' lists and ring their bells now rather than on their next poll. */
+    private static void announce(Template template, List<Integer> userIds) {
+        userIds.forEach(ServiceNotification::markStale);
+        JsonObject event = new JsonObject();
+        event.addProperty("type", template.type());
+        event.addProperty("title", template.title());
+        EventBus.publish(EventBus.Topic.NOTIFICATIONS, userIds, event);
+    }
+
+    private static void fanOutApi(Template template, List<Integer> userIds) {
+        if (System.currentTimeMillis() >= fanOutRetryAt) {
+            Map<String, Object> data = template.toMap();
+            data.put("user_ids", userIds);
+            String key = UUID.randomUUID().toString();
             try {
-                Map<String, Object> data = new HashMap<>();
-                data.put("user_id", userId);
-                data.put("type", type);
-                data.put("title", title);
-                data.put("body", body);
-                data.put("reference_id", refId);
-                data.put("reference_type", refType);
-                ApiClient.post("/notifications", data);
-            } catch (Exception e) { System.err.println(e.getClass().getSimpleName() + ": " + e.getMessage()); }
-        } else {
-            try (Connection conn = utils.MyDatabase.getInstance().getConnection();
-                 PreparedStatement ps = conn.prepareStatement(
-                         "INSERT INTO notifications (user_id, type, title, body, reference_id, reference_type) VALUES (?,?,?,?,?,?)")) {
-                ps.setInt(1, userId);
-                ps.setString(2, type);
-                ps.setString(3, title);
-                ps.setString(4, body);
-                if (refId != null) ps.setInt(5, refId); else ps.setNull(5, Types.INTEGER);
-                ps.setString(6, refType);
-                ps.executeUpdate();
-            } catch (Exception e) { System.err.println(e.getClass().getSimpleName() + ": " + e.getMessage()); }
+                if (ApiClient.bulk("POST", "/notifications/fan-out", data, key) != null) {
+                    announce(template, userIds);
+                    return;
+                }
+                fanOutRetryAt = System.currentTimeMillis() + FAN_OUT_RETRY_MS; // no such endpoint
+            } catch (IOException e) {
+                // Outcome unknown (timeout, 5xx): the write outbox re-sends it under the same key,
+                // with backoff, until the server accepts or rejects it
+                WriteOutbox.retryLater(key, "POST", "/notifications/fan-out", data,
+                        reply -> announce(template, userIds));
+                return;
+            }
+        }
+        // Backend without fan-out: one row per recipient, kept and retried by the write outbox
+        for (int userId : userIds) {
+            Map<String, Object> row = template.toMap();
+            row.put("user_id", userId);
+            WriteOutbox.enqueue("POST", "/notifications", row, reply -> announce(template, List.of(userId)));
+        }
+    }
+
+    /** @return false if the rows could not be written */
+    private static boolean fanOutJdbc(Template template, List<Integer> userIds) {
+        try {
+            Set<Integer> refreshed = template.refId() != null ? refreshUnreadJdbc(template, userIds) : Set.of();
+            List<Integer> fresh = new ArrayList<>();
+            for (int userId : userIds) {
+                if (!refreshed.contains(userId)) fresh.add(userId);
+            }
+            JdbcBatch.execute(
+                    "INSERT INTO notifications (user_id, type, title, body, reference_id, reference_type) VALUES (?,?,?,?,?,?)",
+                    fresh, (ps, userId) -> {
+                        ps.setInt(1, userId);
+                        ps.setString(2, template.type());
+                        ps.setString(3, template.title());
+                        ps.setString(4, template.body());
+                        if (template.refId() != null) ps.setInt(5, template.refId()); else ps.setNull(5, Types.INTEGER);
+                        ps.setString(6, template.refType());
+                    });
+            return true;
+        } catch (Exception e) {
+            System.err.println(e.getClass().getSimpleName() + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    /** Bring recipients' unread notifications about the same thing up to date; returns who had one. */
+    private static Set<Integer> refreshUnreadJdbc(Template template, List<Integer> userIds) throws SQLException {
+        String placeholders = String.join(",", Collections.nCopies(userIds.size(), "?"));
+        Set<Integer> users = new HashSet<>();
+        List<Integer> ids = new ArrayList<>();
+        try (Connection conn = utils.MyDatabase.getInstance().getConnection();
+             PreparedStatement ps = conn.prepareStatement(
+                     "SELECT id, user_id FROM notifications WHERE is_read = 0 AND type = ? AND reference_id = ?"
+                     + " AND reference_type <=> ? AND user_id IN (" + placeholders + ")")) {
+            ps.setString(1, template.type());
+            ps.setInt(2, template.refId());
+            ps.setString(3, template.refType());
+            for (int i = 0; i < userIds.size(); i++) ps.setInt(4 + i, userIds.get(i));
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    if (users.add(rs.getInt("user_id"))) ids.add(rs.getInt("id"));
+                }
+            }
         }
+        JdbcBatch.execute("UPDATE notifications SET title = ?, body = ?, created_at = CURRENT_TIMESTAMP WHERE id = ?",
+                ids, (ps, id) -> {
+                    ps.setString(1, template.title());
+                    ps.setString(2, template.body());
+                    ps.setInt(3, id);
+                });
+        return users;
     }
 
     // â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•
@@ -257,20 +441,36 @@ public class ServiceNotification {
     //  PARSERS
     // â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•â•
 
-    private Notification jsonToNotification(JsonObject obj) {
+    /** Streaming decoder for one notification, used by the change feed. */
+    private static Notification readNotification(JsonReader in) throws IOException {
         Notification n = new Notification();
-        n.id = obj.has("id") ? obj.get("id").getAsInt() : 0;
-        n.userId = obj.has("user_id") ? obj.get("user_id").getAsInt() : 0;
-        n.type = obj.has("type") ? obj.get("type").getAsString() : "GENERAL";
-        n.title = obj.has("title") ? obj.get("title").getAsString() : "";
-        n.body = obj.has("body") && !obj.get("body").isJsonNull() ? obj.get("body").getAsString() : "";
-        n.referenceId = obj.has("reference_id") && !obj.get("reference_id").isJsonNull() ? obj.get("reference_id").getAsInt() : null;
-        n.referenceType = obj.has("reference_type") && !obj.get("reference_type").isJsonNull() ? obj.get("reference_type").getAsString() : null;
-        n.isRead = obj.has("is_read") && obj.get("is_read").getAsInt() == 1;
-        n.createdAt = obj.has("created_at") && !obj.get("created_at").isJsonNull() ? obj.get("created_at").getAsString() : "";
+        n.type = "GENERAL";
+        n.title = "";
+        n.body = "";
+        n.createdAt = "";
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "id": n.id = JsonStreams.nextInt(in, 0); break;
+                case "user_id": n.userId = JsonStreams.nextInt(in, 0); break;
+                case "type": n.type = JsonStreams.nextString(in); break;
+                case "title": n.title = JsonStreams.nextString(in); break;
+                case "body": n.body = orEmpty(JsonStreams.nextString(in)); break;
+                case "reference_id": n.referenceId = JsonStreams.nextIntOrNull(in); break;
+                case "reference_type": n.referenceType = JsonStreams.nextString(in); break;
+                case "is_read": n.isRead = JsonStreams.nextBoolean(in, false); break;
+                case "created_at": n.createdAt = orEmpty(JsonStreams.nextString(in)); break;
+                default: in.skipValue();
+            }
+        }
+        in.endObject();
         return n;
     }
 
+    private static String orEmpty(String s) {
+        return s != null ? s : "";
+    }
+
     private Notification rowToNotification(ResultSet rs) throws SQLException {
         Notification n = new Notification();
         n.id = rs.getInt("id");
@@ -6,6 +6,7 @@ import utils.ApiClient;
 import utils.AppConfig;
 import utils.MyDatabase;
 import utils.InMemoryCache;
+import utils.JdbcBatch;
 
 import java.sql.*;
 import java.util.*;
@@ -16,6 +17,13 @@ public class ServicePayroll implements IService<Payroll> {
 
     private static final String CACHE_KEY = "payrolls:all";
     private static final int CACHE_TTL = 120;
+    /** Past CACHE_TTL payrolls are served stale while they refresh in background, up to this age. */
+    private static final int CACHE_STALE_TTL = 900;
+
+    private static final String INSERT_SQL = "INSERT INTO payrolls (user_id, month, year, amount, base_salary, bonus, deductions, net_salary, total_hours_worked, hourly_rate, status) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String UPDATE_SQL = "UPDATE payrolls SET user_id=?, month=?, year=?, amount=?, base_salary=?, bonus=?, deductions=?, " +
+            "net_salary=?, total_hours_worked=?, hourly_rate=?, status=? WHERE id=?";
 
     public ServicePayroll() {
         useApi = AppConfig.isApiMode();
@@ -63,45 +71,52 @@ public class ServicePayroll implements IService<Payroll> {
         return list;
     }
 
+    private Map<String, Object> payrollToBody(Payroll p) {
+        Map<String, Object> body = new HashMap<>();
+        body.put("user_id", p.getUserId());
+        body.put("month", p.getMonth() != null ? p.getMonth().toString() : null);
+        body.put("year", p.getYear());
+        body.put("amount", p.getAmount());
+        body.put("base_salary", p.getBaseSalary());
+        body.put("bonus", p.getBonus());
+        body.put("deductions", p.getDeductions());
+        body.put("net_salary", p.getNetSalary());
+        body.put("total_hours_worked", p.getTotalHoursWorked());
+        body.put("hourly_rate", p.getHourlyRate());
+        body.put("status", p.getStatus());
+        return body;
+    }
+
+    /** Binds parameters 1–11 shared by INSERT_SQL and UPDATE_SQL. */
+    private static void bindPayroll(PreparedStatement ps, Payroll p) throws SQLException {
+        ps.setInt(1, p.getUserId());
+        ps.setDate(2, p.getMonth());
+        if (p.getYear() != null) ps.setInt(3, p.getYear());
+        else ps.setNull(3, Types.INTEGER);
+        ps.setDouble(4, p.getAmount());
+        ps.setDouble(5, p.getBaseSalary());
+        ps.setDouble(6, p.getBonus());
+        ps.setDouble(7, p.getDeductions());
+        ps.setDouble(8, p.getNetSalary());
+        ps.setDouble(9, p.getTotalHoursWorked());
+        ps.setDouble(10, p.getHourlyRate());
+        ps.setString(11, p.getStatus());
+    }
+
     // ==================== CRUD ====================
 
     @Override
     public void ajouter(Payroll p) throws SQLException {
         if (useApi) {
-            Map<String, Object> body = new HashMap<>();
-            body.put("user_id", p.getUserId());
-            body.put("month", p.getMonth() != null ? p.getMonth().toString() : null);
-            body.put("year", p.getYear());
-            body.put("amount", p.getAmount());
-            body.put("base_salary", p.getBaseSalary());
-            body.put("bonus", p.getBonus());
-            body.put("deductions", p.getDeductions());
-            body.put("net_salary", p.getNetSalary());
-            body.put("total_hours_worked", p.getTotalHoursWorked());
-            body.put("hourly_rate", p.getHourlyRate());
-            body.put("status", p.getStatus());
-            JsonElement resp = ApiClient.post("/payrolls", body);
+            JsonElement resp = ApiClient.post("/payrolls", payrollToBody(p));
             if (resp != null && resp.isJsonObject()) {
                 p.setId(resp.getAsJsonObject().get("id").getAsInt());
             }
             return;
         }
-        String sql = "INSERT INTO payrolls (user_id, month, year, amount, base_salary, bonus, deductions, net_salary, total_hours_worked, hourly_rate, status) " +
-                "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
         try (Connection conn = MyDatabase.getInstance().getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-            ps.setInt(1, p.getUserId());
-            ps.setDate(2, p.getMonth());
-            if (p.getYear() != null) ps.setInt(3, p.getYear());
-            else ps.setNull(3, Types.INTEGER);
-            ps.setDouble(4, p.getAmount());
-            ps.setDouble(5, p.getBaseSalary());
-            ps.setDouble(6, p.getBonus());
-            ps.setDouble(7, p.getDeductions());
-            ps.setDouble(8, p.getNetSalary());
-            ps.setDouble(9, p.getTotalHoursWorked());
-            ps.setDouble(10, p.getHourlyRate());
-            ps.setString(11, p.getStatus());
+             PreparedStatement ps = conn.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS)) {
+            bindPayroll(ps, p);
             ps.executeUpdate();
             try (ResultSet keys = ps.getGeneratedKeys()) {
                 if (keys.next()) p.setId(keys.getInt(1));
@@ -113,37 +128,12 @@ public class ServicePayroll implements IService<Payroll> {
     @Override
     public void modifier(Payroll p) throws SQLException {
         if (useApi) {
-            Map<String, Object> body = new HashMap<>();
-            body.put("user_id", p.getUserId());
-            body.put("month", p.getMonth() != null ? p.getMonth().toString() : null);
-            body.put("year", p.getYear());
-            body.put("amount", p.getAmount());
-            body.put("base_salary", p.getBaseSalary());
-            body.put("bonus", p.getBonus());
-            body.put("deductions", p.getDeductions());
-            body.put("net_salary", p.getNetSalary());
-            body.put("total_hours_worked", p.getTotalHoursWorked());
-            body.put("hourly_rate", p.getHourlyRate());
-            body.put("status", p.getStatus());
-            ApiClient.put("/payrolls/" + p.getId(), body);
+            ApiClient.put("/payrolls/" + p.getId(), payrollToBody(p));
             return;
         }
-        String sql = "UPDATE payrolls SET user_id=?, month=?, year=?, amount=?, base_salary=?, bonus=?, deductions=?, " +
-                "net_salary=?, total_hours_worked=?, hourly_rate=?, status=? WHERE id=?";
         try (Connection conn = MyDatabase.getInstance().getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setInt(1, p.getUserId());
-            ps.setDate(2, p.getMonth());
-            if (p.getYear() != null) ps.setInt(3, p.getYear());
-            else ps.setNull(3, Types.INTEGER);
-            ps.setDouble(4, p.getAmount());
-            ps.setDouble(5, p.getBaseSalary());
-            ps.setDouble(6, p.getBonus());
-            ps.setDouble(7, p.getDeductions());
-            ps.setDouble(8, p.getNetSalary());
-            ps.setDouble(9, p.getTotalHoursWorked());
-            ps.setDouble(10, p.getHourlyRate());
-            ps.setString(11, p.getStatus());
+             PreparedStatement ps = conn.prepareStatement(UPDATE_SQL)) {
+            bindPayroll(ps, p);
             ps.setInt(12, p.getId());
             ps.executeUpdate();
         }
@@ -164,13 +154,83 @@ public class ServicePayroll implements IService<Payroll> {
         InMemoryCache.evictByPrefix("payrolls:");
     }
 
+    // ==================== BULK ====================
+
+    /** One bulk request (API) or one batched transaction (JDBC) for the whole list. */
+    @Override
+    public void ajouterAll(List<Payroll> list) throws SQLException {
+        if (list.isEmpty()) return;
+        if (useApi) {
+            List<Map<String, Object>> bodies = new ArrayList<>();
+            for (Payroll p : list) bodies.add(payrollToBody(p));
+            JsonElement resp = IService.bulk("POST", "/payrolls/bulk", bodies,
+                    () -> InMemoryCache.evictByPrefix("payrolls:"));
+            if (resp == null) {
+                IService.super.ajouterAll(list); // backend without the bulk endpoint
+                return;
+            }
+            if (resp.isJsonArray()) {
+                JsonArray created = resp.getAsJsonArray();
+                for (int i = 0; i < created.size() && i < list.size(); i++) {
+                    list.get(i).setId(created.get(i).getAsJsonObject().get("id").getAsInt());
+                }
+            }
+            InMemoryCache.evictByPrefix("payrolls:");
+            return;
+        }
+        JdbcBatch.insert(INSERT_SQL, list, ServicePayroll::bindPayroll, Payroll::setId);
+        InMemoryCache.evictByPrefix("payrolls:");
+    }
+
+    /** Same for updates: one bulk request or one batched transaction. */
+    @Override
+    public void modifierAll(List<Payroll> list) throws SQLException {
+        if (list.isEmpty()) return;
+        if (useApi) {
+            List<Map<String, Object>> bodies = new ArrayList<>();
+            for (Payroll p : list) {
+                Map<String, Object> body = payrollToBody(p);
+                body.put("id", p.getId());
+                bodies.add(body);
+            }
+            JsonElement resp = IService.bulk("PUT", "/payrolls/bulk", bodies,
+                    () -> InMemoryCache.evictByPrefix("payrolls:"));
+            if (resp == null) IService.super.modifierAll(list);
+            InMemoryCache.evictByPrefix("payrolls:");
+            return;
+        }
+        JdbcBatch.execute(UPDATE_SQL, list, (ps, p) -> {
+            bindPayroll(ps, p);
+            ps.setInt(12, p.getId());
+        });
+        InMemoryCache.evictByPrefix("payrolls:");
+    }
+
+    @Override
+    public void supprimerAll(List<Integer> ids) throws SQLException {
+        if (ids.isEmpty()) return;
+        if (useApi) {
+            JsonElement resp = IService.bulk("POST", "/payrolls/bulk-delete", Map.of("ids", ids),
+                    () -> InMemoryCache.evictByPrefix("payrolls:"));
+            if (resp == null) IService.super.supprimerAll(ids);
+            InMemoryCache.evictByPrefix("payrolls:");
+            return;
+        }
+        JdbcBatch.execute("DELETE FROM payrolls WHERE id=?", ids, (ps, id) -> ps.setInt(1, id));
+        InMemoryCache.evictByPrefix("payrolls:");
+    }
+
     @Override
     public List<Payroll> recuperer() throws SQLException {
         if (useApi) {
-            return InMemoryCache.getOrLoad(CACHE_KEY, CACHE_TTL,
-                    () -> jsonArrayToList(ApiClient.get("/payrolls")));
+            // A failed fetch must throw, not return [], so the cache keeps serving the stale list
+            return InMemoryCache.getOrLoadStale(CACHE_KEY, CACHE_TTL, CACHE_STALE_TTL, () -> {
+                JsonElement resp = ApiClient.get("/payrolls");
+                if (resp == null || !resp.isJsonArray()) throw new SQLException("API error: GET /payrolls failed");
+                return jsonArrayToList(resp);
+            });
         }
-        return InMemoryCache.getOrLoadChecked(CACHE_KEY, CACHE_TTL,
+        return InMemoryCache.getOrLoadStale(CACHE_KEY, CACHE_TTL, CACHE_STALE_TTL,
                 () -> recupererFromDb());
     }
 
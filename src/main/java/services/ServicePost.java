@@ -1,11 +1,20 @@
 package services;
 
 import com.google.gson.*;
+import com.google.gson.stream.JsonReader;
 import entities.Post;
 import utils.ApiClient;
 import utils.AppConfig;
 import utils.MyDatabase;
+import utils.ChangeFeed;
+import utils.EventBus;
 import utils.InMemoryCache;
+import utils.JsonStreams;
+import utils.SessionManager;
+import utils.UserDirectory;
+import utils.WriteOutbox;
+
+import java.io.IOException;
 import java.sql.*;
 import java.util.*;
 
@@ -15,6 +24,13 @@ public class ServicePost implements IService<Post> {
 
     private static final String CACHE_KEY = "posts:all";
     private static final int CACHE_TTL = 30;
+    /** Past CACHE_TTL the feed is served stale while it refreshes in background, up to this age. */
+    private static final int CACHE_STALE_TTL = 600;
+
+    /** API-mode replica of all posts, newest first, kept current through /changes/posts. */
+    private static final ChangeFeed<Post> feed = new ChangeFeed<>("posts", ServicePost::readPost, Post::getId,
+            Comparator.comparingInt(Post::getId).reversed(),
+            () -> ApiClient.tryGetList("/posts", ServicePost::readPost));
 
     public ServicePost() {
         useApi = AppConfig.isApiMode();
@@ -22,38 +38,33 @@ public class ServicePost implements IService<Post> {
 
     // ============ JSON helpers ============
 
-    private Post jsonToPost(JsonObject obj) {
-        Timestamp createdAt = null;
-        if (obj.has("created_at") && !obj.get("created_at").isJsonNull()) {
-            // Parse as UTC — server stores timestamps in UTC
-            String raw = obj.get("created_at").getAsString().replace("T", " ");
-            if (raw.contains(".")) raw = raw.substring(0, raw.indexOf(".")); // trim fractional seconds
-            java.time.LocalDateTime ldt = java.time.LocalDateTime.parse(raw, java.time.format.DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
-            createdAt = Timestamp.from(ldt.atZone(java.time.ZoneOffset.UTC).toInstant());
-        }
-        String imageBase64 = null;
-        if (obj.has("image_base64") && !obj.get("image_base64").isJsonNull()) {
-            imageBase64 = obj.get("image_base64").getAsString();
+    /** Streaming decoder: one JSON post object (image included) straight into a Post. */
+    private static Post readPost(JsonReader in) throws IOException {
+        Post p = new Post();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "id": p.setId(JsonStreams.nextInt(in, 0)); break;
+                case "author_id": p.setAuthorId(JsonStreams.nextInt(in, 0)); break;
+                case "content": p.setContent(JsonStreams.nextString(in)); break;
+                case "image_base64": p.setImageBase64(JsonStreams.nextString(in)); break;
+                case "likes_count": p.setLikesCount(JsonStreams.nextInt(in, 0)); break;
+                case "comments_count": p.setCommentsCount(JsonStreams.nextInt(in, 0)); break;
+                case "created_at": p.setCreatedAt(parseUtc(JsonStreams.nextString(in))); break;
+                default: in.skipValue();
+            }
         }
-        return new Post(
-                obj.get("id").getAsInt(),
-                obj.get("author_id").getAsInt(),
-                obj.get("content").getAsString(),
-                imageBase64,
-                obj.has("likes_count") ? obj.get("likes_count").getAsInt() : 0,
-                obj.has("comments_count") ? obj.get("comments_count").getAsInt() : 0,
-                createdAt
-        );
+        in.endObject();
+        return p;
     }
 
-    private List<Post> jsonArrayToPosts(JsonElement el) {
-        List<Post> posts = new ArrayList<>();
-        if (el != null && el.isJsonArray()) {
-            for (JsonElement item : el.getAsJsonArray()) {
-                posts.add(jsonToPost(item.getAsJsonObject()));
-            }
-        }
-        return posts;
+    /** Server stores post timestamps in UTC; fractional seconds are dropped. */
+    private static Timestamp parseUtc(String value) {
+        if (value == null) return null;
+        String raw = value.replace("T", " ");
+        if (raw.contains(".")) raw = raw.substring(0, raw.indexOf(".")); // trim fractional seconds
+        java.time.LocalDateTime ldt = java.time.LocalDateTime.parse(raw, java.time.format.DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
+        return Timestamp.from(ldt.atZone(java.time.ZoneOffset.UTC).toInstant());
     }
 
     // ============ CRUD ============
@@ -67,7 +78,9 @@ public class ServicePost implements IService<Post> {
             if (post.getImageBase64() != null) body.put("image_base64", post.getImageBase64());
             body.put("visibility", post.getVisibility() != null ? post.getVisibility() : "PUBLIC");
             if (post.getGroupId() != null) body.put("group_id", post.getGroupId());
-            ApiClient.post("/posts", body);
+            WriteOutbox.sendOrQueue("POST", "/posts", body);
+            feed.markStale();
+            announce(post.getId(), "created");
             return;
         }
         String sql = "INSERT INTO posts (author_id, content, image_base64, visibility, group_id) VALUES (?, ?, ?, ?, ?)";
@@ -82,6 +95,7 @@ public class ServicePost implements IService<Post> {
             ps.executeUpdate();
         }
         InMemoryCache.evictByPrefix("posts:");
+        announce(post.getId(), "created");
     }
 
     @Override
@@ -91,7 +105,9 @@ public class ServicePost implements IService<Post> {
             body.put("content", post.getContent());
             if (post.getImageBase64() != null) body.put("image_base64", post.getImageBase64());
             body.put("visibility", post.getVisibility() != null ? post.getVisibility() : "PUBLIC");
-            ApiClient.put("/posts/" + post.getId(), body);
+            WriteOutbox.sendOrQueue("PUT", "/posts/" + post.getId(), body);
+            feed.markStale();
+            announce(post.getId(), "edited");
             return;
         }
         String sql = "UPDATE posts SET content = ?, image_base64 = ?, visibility = ? WHERE id = ?";
@@ -104,12 +120,16 @@ public class ServicePost implements IService<Post> {
             ps.executeUpdate();
         }
         InMemoryCache.evictByPrefix("posts:");
+        announce(post.getId(), "edited");
     }
 
     @Override
     public void supprimer(int id) throws SQLException {
         if (useApi) {
             ApiClient.delete("/posts/" + id);
+            InMemoryCache.invalidateTags("posts", "post:" + id);
+            feed.markStale();
+            announce(id, "deleted");
             return;
         }
         try (Connection conn = MyDatabase.getInstance().getConnection();
@@ -117,16 +137,32 @@ public class ServicePost implements IService<Post> {
             ps.setInt(1, id);
             ps.executeUpdate();
         }
-        InMemoryCache.evictByPrefix("posts:");
+        // Post list plus anything cached about this post (reactions)
+        InMemoryCache.invalidateTags("posts", "post:" + id);
+        announce(id, "deleted");
+    }
+
+    /** Tell online users' community feeds to refresh now instead of on their next poll. */
+    private void announce(int postId, String action) {
+        if (!EventBus.isLive() || SessionManager.getInstance().getCurrentUser() == null) return;
+        int me = SessionManager.getInstance().getCurrentUser().getId();
+        List<Integer> online = new ArrayList<>();
+        for (UserDirectory.Entry e : UserDirectory.entries()) {
+            if (e.online() && e.id() != me) online.add(e.id());
+        }
+        JsonObject data = new JsonObject();
+        data.addProperty("post_id", postId);
+        data.addProperty("action", action);
+        EventBus.publish(EventBus.Topic.FEED_UPDATES, online, data);
     }
 
     @Override
     public List<Post> recuperer() throws SQLException {
         if (useApi) {
-            return InMemoryCache.getOrLoad(CACHE_KEY, CACHE_TTL,
-                    () -> jsonArrayToPosts(ApiClient.get("/posts")));
+            // Incremental sync: only posts written or deleted since the last call cross the wire
+            return new ArrayList<>(feed.sync());
         }
-        return InMemoryCache.getOrLoadChecked(CACHE_KEY, CACHE_TTL,
+        return InMemoryCache.getOrLoadStale(CACHE_KEY, CACHE_TTL, CACHE_STALE_TTL,
                 () -> recupererFromDb());
     }
 
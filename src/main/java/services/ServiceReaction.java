@@ -54,6 +54,7 @@ public class ServiceReaction implements IService<Reaction> {
             body.put("user_id", reaction.getUserId());
             body.put("type", reaction.getType());
             ApiClient.post("/reactions", body);
+            InMemoryCache.evict("reactions:post:" + reaction.getPostId());
             return;
         }
         String sql = "INSERT INTO reactions (post_id, user_id, type) VALUES (?, ?, ?)";
@@ -64,6 +65,7 @@ public class ServiceReaction implements IService<Reaction> {
             ps.setString(3, reaction.getType());
             ps.executeUpdate();
         }
+        InMemoryCache.evict("reactions:post:" + reaction.getPostId());
     }
 
     @Override
@@ -72,6 +74,7 @@ public class ServiceReaction implements IService<Reaction> {
             Map<String, Object> body = new HashMap<>();
             body.put("type", reaction.getType());
             ApiClient.put("/reactions/" + reaction.getId(), body);
+            InMemoryCache.evict("reactions:post:" + reaction.getPostId());
             return;
         }
         String sql = "UPDATE reactions SET type = ? WHERE id = ?";
@@ -81,12 +84,14 @@ public class ServiceReaction implements IService<Reaction> {
             ps.setInt(2, reaction.getId());
             ps.executeUpdate();
         }
+        InMemoryCache.evict("reactions:post:" + reaction.getPostId());
     }
 
     @Override
     public void supprimer(int id) throws SQLException {
         if (useApi) {
             ApiClient.delete("/reactions/" + id);
+            InMemoryCache.invalidateTag("reactions"); // post unknown from id alone
             return;
         }
         try (Connection conn = MyDatabase.getInstance().getConnection();
@@ -94,6 +99,7 @@ public class ServiceReaction implements IService<Reaction> {
             ps.setInt(1, id);
             ps.executeUpdate();
         }
+        InMemoryCache.invalidateTag("reactions");
     }
 
     @Override
@@ -122,7 +128,7 @@ public class ServiceReaction implements IService<Reaction> {
     /** Get reactions for a specific post. Cached 30s. */
     public List<Reaction> getByPostId(int postId) throws SQLException {
         String key = "reactions:post:" + postId;
-        return InMemoryCache.getOrLoadChecked(key, 30, () -> {
+        return InMemoryCache.getOrLoadChecked(key, 30, List.of("post:" + postId), () -> {
             if (useApi) {
                 JsonElement el = ApiClient.get("/reactions/post/" + postId);
                 return jsonArrayToReactions(el);
@@ -134,13 +140,7 @@ public class ServiceReaction implements IService<Reaction> {
                 ps.setInt(1, postId);
                 try (ResultSet rs = ps.executeQuery()) {
                     while (rs.next()) {
-                        reactions.add(new Reaction(
-                                rs.getInt("id"),
-                                rs.getInt("post_id"),
-                                rs.getInt("user_id"),
-                                rs.getString("type"),
-                                rs.getTimestamp("created_at")
-                        ));
+                        reactions.add(rowToReaction(rs));
                     }
                 }
             }
@@ -148,6 +148,62 @@ public class ServiceReaction implements IService<Reaction> {
         });
     }
 
+    /**
+     * Reactions for many posts at once, keyed by post id (every id present).
+     * Shares the per-post cache with {@link #getByPostId}. In API mode the
+     * misses go out as one batched request; JDBC uses a single IN query.
+     */
+    public Map<Integer, List<Reaction>> getByPostIds(Collection<Integer> postIds) throws SQLException {
+        Map<Integer, List<Reaction>> result = new HashMap<>();
+        if (postIds == null || postIds.isEmpty()) return result;
+        Set<Integer> ids = new LinkedHashSet<>(postIds);
+
+        if (useApi) {
+            Map<Integer, java.util.concurrent.CompletableFuture<List<Reaction>>> futures = new HashMap<>();
+            for (int postId : ids) {
+                futures.put(postId, InMemoryCache.getOrLoadFuture("reactions:post:" + postId, 0, 30,
+                        List.of("post:" + postId),
+                        () -> ApiClient.getBatched("/reactions/post/" + postId).thenApply(this::jsonArrayToReactions)));
+            }
+            ApiClient.awaitAll(futures, ApiClient.BATCH_TIMEOUT_MS, null).forEach((postId, reactions) ->
+                    result.put(postId, reactions != null ? reactions : new ArrayList<>()));
+            return result;
+        }
+
+        Map<Integer, List<Reaction>> loaded = new HashMap<>();
+        for (int postId : ids) loaded.put(postId, new ArrayList<>());
+        String sql = "SELECT * FROM reactions WHERE post_id IN ("
+                + String.join(",", Collections.nCopies(ids.size(), "?"))
+                + ") ORDER BY created_at ASC";
+        try (Connection conn = MyDatabase.getInstance().getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            int i = 1;
+            for (int postId : ids) ps.setInt(i++, postId);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    Reaction r = rowToReaction(rs);
+                    loaded.get(r.getPostId()).add(r);
+                }
+            }
+        }
+        // Publish per post so later getByPostId calls hit the cache
+        for (int postId : ids) {
+            result.put(postId, InMemoryCache.getOrLoad("reactions:post:" + postId, 30,
+                    List.of("post:" + postId), () -> loaded.get(postId)));
+        }
+        return result;
+    }
+
+    private Reaction rowToReaction(ResultSet rs) throws SQLException {
+        return new Reaction(
+                rs.getInt("id"),
+                rs.getInt("post_id"),
+                rs.getInt("user_id"),
+                rs.getString("type"),
+                rs.getTimestamp("created_at")
+        );
+    }
+
     /** Toggle reaction: if user already reacted with same type, remove it; otherwise add it */
     public boolean toggleReaction(int postId, int userId, String type) throws SQLException {
         if (useApi) {
@@ -156,6 +212,7 @@ public class ServiceReaction implements IService<Reaction> {
             body.put("user_id", userId);
             body.put("type", type);
             JsonElement el = ApiClient.post("/reactions/toggle", body);
+            InMemoryCache.evict("reactions:post:" + postId);
             if (el != null && el.isJsonObject()) {
                 return el.getAsJsonObject().has("action") &&
                        "added".equals(el.getAsJsonObject().get("action").getAsString());
@@ -177,6 +234,7 @@ public class ServiceReaction implements IService<Reaction> {
                             del.setInt(1, reactionId);
                             del.executeUpdate();
                         }
+                        InMemoryCache.evict("reactions:post:" + postId);
                         return false; // removed
                     }
                 }
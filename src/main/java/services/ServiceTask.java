@@ -5,6 +5,7 @@ import entities.Task;
 import utils.ApiClient;
 import utils.AppConfig;
 import utils.MyDatabase;
+import utils.WriteOutbox;
 
 import java.sql.*;
 import java.util.*;
@@ -102,7 +103,7 @@ public class ServiceTask implements IService<Task> {
             body.put("status", t.getStatus());
             body.put("priority", t.getPriority());
             body.put("due_date", t.getDueDate() != null ? t.getDueDate().toString() : null);
-            ApiClient.put("/tasks/" + t.getId(), body);
+            WriteOutbox.sendOrQueue("PUT", "/tasks/" + t.getId(), body);
             return;
         }
         String sql = "UPDATE tasks SET project_id=?, assigned_to=?, title=?, description=?, status=?, priority=?, due_date=? WHERE id=?";
@@ -154,7 +155,7 @@ public class ServiceTask implements IService<Task> {
                 }
             }
             body.put("status", newStatus);
-            ApiClient.put("/tasks/" + taskId, body);
+            WriteOutbox.sendOrQueue("PUT", "/tasks/" + taskId, body);
             return;
         }
         try (Connection conn = MyDatabase.getInstance().getConnection();
@@ -141,6 +141,41 @@ public class ServiceTrainingEnrollment implements IService<TrainingEnrollment> {
         return list;
     }
 
+    /**
+     * Non-dropped enrollment count per course, for every id given. API mode
+     * batches the per-course lookups into one request; JDBC runs one GROUP BY.
+     */
+    public Map<Integer, Long> countActiveByCourse(Collection<Integer> courseIds) throws SQLException {
+        Map<Integer, Long> counts = new HashMap<>();
+        if (courseIds == null || courseIds.isEmpty()) return counts;
+        Set<Integer> ids = new LinkedHashSet<>(courseIds);
+        for (int id : ids) counts.put(id, 0L);
+
+        if (useApi) {
+            Map<Integer, java.util.concurrent.CompletableFuture<JsonElement>> futures = new HashMap<>();
+            for (int id : ids) futures.put(id, ApiClient.getBatched("/training_enrollments/course/" + id));
+            ApiClient.awaitAll(futures, ApiClient.BATCH_TIMEOUT_MS, null).forEach((id, json) -> {
+                long active = jsonArrayToList(json).stream()
+                        .filter(e -> !"DROPPED".equals(e.getStatus())).count();
+                counts.put(id, active);
+            });
+            return counts;
+        }
+
+        String sql = "SELECT course_id, COUNT(*) FROM training_enrollments WHERE (status IS NULL OR status <> 'DROPPED') AND course_id IN ("
+                + String.join(",", Collections.nCopies(ids.size(), "?"))
+                + ") GROUP BY course_id";
+        try (Connection conn = MyDatabase.getInstance().getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            int i = 1;
+            for (int id : ids) ps.setInt(i++, id);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) counts.put(rs.getInt(1), rs.getLong(2));
+            }
+        }
+        return counts;
+    }
+
     public void updateProgress(int enrollId, int progress) throws SQLException {
         if (useApi) {
             Map<String, Object> body = new HashMap<>();
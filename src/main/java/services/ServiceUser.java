@@ -1,19 +1,29 @@
 package services;
 
 import com.google.gson.*;
+import com.google.gson.stream.JsonReader;
 import entities.User;
 import utils.ApiClient;
 import utils.AppConfig;
+import utils.ChangeFeed;
 import utils.MyDatabase;
 import utils.InMemoryCache;
+import utils.JsonStreams;
+import utils.UserDirectory;
 
 import org.mindrot.jbcrypt.BCrypt;
 
+import java.io.IOException;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 public class ServiceUser implements IService<User> {
 
@@ -23,6 +33,15 @@ public class ServiceUser implements IService<User> {
     private static final String CACHE_KEY = "users:all";
     /** Cache TTL in seconds (2 minutes). */
     private static final int CACHE_TTL = 120;
+    /** Past CACHE_TTL the list is served stale while it refreshes in background, up to 10 minutes. */
+    private static final int CACHE_STALE_TTL = 600;
+
+    /**
+     * API-mode directory replica, synced through {@code /changes/users?view=directory}.
+     * No full-load fallback: without a feed {@link UserDirectory} uses {@link #getDirectory(int)}.
+     */
+    private static final ChangeFeed<User> directoryFeed = new ChangeFeed<>("users", "view=directory",
+            ServiceUser::readUser, User::getId, Comparator.comparingInt(User::getId), () -> null);
 
     public ServiceUser() {
         useApi = AppConfig.isApiMode();
@@ -91,14 +110,45 @@ public class ServiceUser implements IService<User> {
         } catch (SQLException ignored) {}
     }
 
-    private List<User> jsonArrayToUsers(JsonElement el) {
-        List<User> users = new ArrayList<>();
-        if (el != null && el.isJsonArray()) {
-            for (JsonElement item : el.getAsJsonArray()) {
-                users.add(jsonToUser(item.getAsJsonObject()));
+    /** Streaming counterpart of {@link #jsonToUser}: one object straight into a User. */
+    static User readUser(JsonReader in) throws IOException {
+        User user = new User();
+        user.setPassword("");
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "id": user.setId(JsonStreams.nextInt(in, 0)); break;
+                case "email": user.setEmail(JsonStreams.nextString(in)); break;
+                case "password": {
+                    String pw = JsonStreams.nextString(in);
+                    user.setPassword(pw != null ? pw : "");
+                    break;
+                }
+                case "first_name": user.setFirstName(JsonStreams.nextString(in)); break;
+                case "last_name": user.setLastName(JsonStreams.nextString(in)); break;
+                case "role": user.setRole(JsonStreams.nextString(in)); break;
+                case "created_at": user.setCreatedAt(JsonStreams.nextTimestamp(in)); break;
+                case "avatar_path": user.setAvatarPath(JsonStreams.nextString(in)); break;
+                case "face_encoding": user.setFaceEncoding(JsonStreams.nextString(in)); break;
+                case "is_online": user.setOnline(JsonStreams.nextBoolean(in, false)); break;
+                case "is_verified": user.setVerified(JsonStreams.nextBoolean(in, true)); break;
+                case "is_active": user.setActive(JsonStreams.nextBoolean(in, true)); break;
+                case "department_id": user.setDepartmentId(JsonStreams.nextIntOrNull(in)); break;
+                case "hourly_rate": user.setHourlyRate(JsonStreams.nextDouble(in, 0.0)); break;
+                case "monthly_salary": user.setMonthlySalary(JsonStreams.nextDouble(in, 0.0)); break;
+                case "bio": user.setBio(JsonStreams.nextString(in)); break;
+                case "cover_base64": user.setCoverBase64(JsonStreams.nextString(in)); break;
+                default: in.skipValue();
             }
         }
-        return users;
+        in.endObject();
+        return user;
+    }
+
+    /** Drop cached user lists and make the next directory refresh a full reload. */
+    private void invalidateUsers() {
+        InMemoryCache.evictByPrefix("users:");
+        UserDirectory.invalidate();
     }
 
     // ==================== CRUD ====================
@@ -129,7 +179,7 @@ public class ServiceUser implements IService<User> {
             ps.setString(5, user.getRole());
             ps.executeUpdate();
         }
-        InMemoryCache.evictByPrefix("users:");
+        invalidateUsers();
         System.out.println("✅ User added: " + user.getEmail());
     }
 
@@ -176,7 +226,7 @@ public class ServiceUser implements IService<User> {
             ps.setInt(9, user.getId());
             ps.executeUpdate();
         }
-        InMemoryCache.evictByPrefix("users:");
+        invalidateUsers();
         System.out.println("✅ User updated: " + user.getEmail());
     }
 
@@ -195,7 +245,7 @@ public class ServiceUser implements IService<User> {
             ps.setInt(2, userId);
             ps.executeUpdate();
         }
-        InMemoryCache.evictByPrefix("users:");
+        invalidateUsers();
         System.out.println("✅ Avatar updated for user id=" + userId);
     }
 
@@ -212,20 +262,111 @@ public class ServiceUser implements IService<User> {
             ps.setInt(1, id);
             ps.executeUpdate();
         }
-        InMemoryCache.evictByPrefix("users:");
+        invalidateUsers();
         System.out.println("✅ User deleted: id=" + id);
     }
 
     @Override
     public List<User> recuperer() throws SQLException {
         if (useApi) {
-            return InMemoryCache.getOrLoad(CACHE_KEY, CACHE_TTL,
-                    () -> jsonArrayToUsers(ApiClient.get("/users")));
+            // A failed fetch must throw, not return [], so the cache keeps serving the stale list
+            return InMemoryCache.getOrLoadStale(CACHE_KEY, CACHE_TTL, CACHE_STALE_TTL, () -> {
+                List<User> users = ApiClient.tryGetList("/users", ServiceUser::readUser);
+                if (users == null) throw new SQLException("API error: GET /users failed");
+                return users;
+            });
+        }
+        return InMemoryCache.getOrLoadStale(CACHE_KEY, CACHE_TTL, CACHE_STALE_TTL,
+                () -> recupererFromDb());
+    }
+
+    /**
+     * Non-blocking {@link #recuperer()}; concurrent callers share the same
+     * in-flight fetch. In API mode no thread waits on the request; JDBC runs
+     * on the app I/O pool.
+     */
+    public CompletableFuture<List<User>> recupererAsync() {
+        if (useApi) {
+            return InMemoryCache.getOrLoadFuture(CACHE_KEY, CACHE_TTL, CACHE_STALE_TTL,
+                    () -> ApiClient.tryGetListAsync("/users", ServiceUser::readUser).thenApply(users -> {
+                        if (users == null) throw new CompletionException(new SQLException("API error: GET /users failed"));
+                        return users;
+                    }));
         }
-        return InMemoryCache.getOrLoadChecked(CACHE_KEY, CACHE_TTL,
+        return InMemoryCache.getOrLoadStaleAsync(CACHE_KEY, CACHE_TTL, CACHE_STALE_TTL,
                 () -> recupererFromDb());
     }
 
+    // ==================== Directory projection ====================
+
+    /** Columns needed to show a user in lists — no password, face vector, bio or cover. */
+    private static final String DIRECTORY_COLUMNS =
+            "id, email, first_name, last_name, role, avatar_path, is_online, is_active, department_id";
+
+    /** The directory change feed in API mode (renames, role and online changes, deletions); null in JDBC mode. */
+    public ChangeFeed<User> getDirectoryFeed() {
+        return useApi ? directoryFeed : null;
+    }
+
+    /**
+     * Lightweight user rows with id &gt; {@code afterId}, ordered by id, for
+     * {@link utils.UserDirectory}. Heavy columns are left null.
+     */
+    public List<User> getDirectory(int afterId) throws SQLException {
+        if (useApi) {
+            List<User> projected = ApiClient.tryGetList("/users/directory?after_id=" + afterId, ServiceUser::readUser);
+            if (projected != null) return projected;
+            // Backend without the projection endpoint: full list, stripped, only for a full load
+            if (afterId > 0) return new ArrayList<>();
+            List<User> users = ApiClient.getList("/users", ServiceUser::readUser);
+            for (User u : users) {
+                u.setPassword(null);
+                u.setFaceEncoding(null);
+                u.setBio(null);
+                u.setCoverBase64(null);
+            }
+            return users;
+        }
+        List<User> users = new ArrayList<>();
+        String req = "SELECT " + DIRECTORY_COLUMNS + " FROM users WHERE id > ? ORDER BY id";
+        try (Connection conn = MyDatabase.getInstance().getConnection();
+             PreparedStatement ps = conn.prepareStatement(req)) {
+            ps.setInt(1, afterId);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    User u = new User(rs.getInt("id"), rs.getString("email"), null,
+                            rs.getString("first_name"), rs.getString("last_name"), rs.getString("role"),
+                            null, rs.getString("avatar_path"));
+                    u.setOnline(rs.getBoolean("is_online"));
+                    u.setActive(rs.getBoolean("is_active"));
+                    int deptId = rs.getInt("department_id");
+                    if (!rs.wasNull()) u.setDepartmentId(deptId);
+                    users.add(u);
+                }
+            }
+        }
+        return users;
+    }
+
+    /** Ids of users currently flagged online, or null if the backend can't tell. */
+    public Set<Integer> getOnlineIds() throws SQLException {
+        Set<Integer> ids = new HashSet<>();
+        if (useApi) {
+            JsonElement resp = ApiClient.get("/users/online");
+            if (resp == null || !resp.isJsonArray()) return null;
+            for (JsonElement el : resp.getAsJsonArray()) {
+                ids.add(el.isJsonObject() ? el.getAsJsonObject().get("id").getAsInt() : el.getAsInt());
+            }
+            return ids;
+        }
+        try (Connection conn = MyDatabase.getInstance().getConnection();
+             PreparedStatement ps = conn.prepareStatement("SELECT id FROM users WHERE is_online = 1");
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) ids.add(rs.getInt(1));
+        }
+        return ids;
+    }
+
     /** Direct DB fetch (bypasses cache). */
     private List<User> recupererFromDb() throws SQLException {
         List<User> users = new ArrayList<>();
@@ -328,6 +469,7 @@ public class ServiceUser implements IService<User> {
     }
 
     public void updateRole(int userId, String newRole) throws SQLException {
+        UserDirectory.invalidate();
         if (useApi) {
             Map<String, Object> body = new HashMap<>();
             body.put("role", newRole);
@@ -349,6 +491,7 @@ public class ServiceUser implements IService<User> {
      * Update a user's department assignment. Pass null to unassign.
      */
     public void updateDepartmentId(int userId, Integer departmentId) throws SQLException {
+        UserDirectory.invalidate();
         if (useApi) {
             Map<String, Object> body = new HashMap<>();
             body.put("department_id", departmentId);
@@ -374,6 +517,7 @@ public class ServiceUser implements IService<User> {
      * Toggle user active status (freeze / unfreeze).
      */
     public void toggleActive(int userId, boolean active) throws SQLException {
+        UserDirectory.invalidate();
         if (useApi) {
             Map<String, Object> body = new HashMap<>();
             body.put("is_active", active);
@@ -412,7 +556,7 @@ public class ServiceUser implements IService<User> {
 
     public List<User> getByRole(String role) throws SQLException {
         if (useApi) {
-            return jsonArrayToUsers(ApiClient.get("/users/role/" + role));
+            return ApiClient.getList("/users/role/" + role, ServiceUser::readUser);
         }
         List<User> users = new ArrayList<>();
         String req = "SELECT * FROM users WHERE role=?";
@@ -471,7 +615,7 @@ public class ServiceUser implements IService<User> {
             ps.setInt(1, userId);
             try (ResultSet rs = ps.executeQuery()) {
                 if (rs.next()) {
-                    return new User(
+                    User user = new User(
                             rs.getInt("id"),
                             rs.getString("email"),
                             rs.getString("password"),
@@ -481,6 +625,8 @@ public class ServiceUser implements IService<User> {
                             rs.getTimestamp("created_at"),
                             rs.getString("avatar_path"),
                             rs.getString("face_encoding"));
+                    setHrFields(user, rs);
+                    return user;
                 }
             }
         }
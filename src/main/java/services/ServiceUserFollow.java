@@ -74,6 +74,16 @@ public class ServiceUserFollow {
         return list;
     }
 
+    /** Cache tag for every follow-derived entry that involves this user. */
+    private static String userTag(int userId) {
+        return "follows:user:" + userId;
+    }
+
+    /** A relationship change between two users only affects entries that involve either of them. */
+    private static void invalidateUsers(int userA, int userB) {
+        InMemoryCache.invalidateTags(userTag(userA), userTag(userB));
+    }
+
     // ============ Core Follow Operations ============
 
     /** Follow a user (status = ACCEPTED) and auto-create mutual friendship. */
@@ -91,7 +101,7 @@ public class ServiceUserFollow {
             reverse.put("followed_id", followerId);
             reverse.put("status", UserFollow.STATUS_ACCEPTED);
             try { ApiClient.post("/user_follows", reverse); } catch (Exception ignored) {}
-            InMemoryCache.evictByPrefix("follows:");
+            invalidateUsers(followerId, followedId);
             return;
         }
         String sql = "INSERT IGNORE INTO user_follows (follower_id, followed_id, status) VALUES (?, ?, ?)";
@@ -111,7 +121,7 @@ public class ServiceUserFollow {
                 ps.executeUpdate();
             }
         }
-        InMemoryCache.evictByPrefix("follows:");
+        invalidateUsers(followerId, followedId);
     }
 
     /** Unfollow / remove relationship. */
@@ -119,7 +129,7 @@ public class ServiceUserFollow {
         if (useApi()) {
             try { ApiClient.delete("/user_follows?follower_id=" + followerId + "&followed_id=" + followedId); }
             catch (Exception ignored) {}
-            InMemoryCache.evictByPrefix("follows:");
+            invalidateUsers(followerId, followedId);
             return;
         }
         String sql = "DELETE FROM user_follows WHERE follower_id = ? AND followed_id = ?";
@@ -129,7 +139,7 @@ public class ServiceUserFollow {
             ps.setInt(2, followedId);
             ps.executeUpdate();
         }
-        InMemoryCache.evictByPrefix("follows:");
+        invalidateUsers(followerId, followedId);
     }
 
     /** Check if followerId is following followedId (ACCEPTED only). */
@@ -140,7 +150,7 @@ public class ServiceUserFollow {
     /** Get accepted followed IDs. Cached 60s. */
     public Set<Integer> getFollowedIds(int followerId) {
         String key = "follows:following:" + followerId;
-        return InMemoryCache.getOrLoad(key, 60, () -> {
+        return InMemoryCache.getOrLoad(key, 60, List.of(userTag(followerId)), () -> {
             Set<Integer> ids = new HashSet<>();
             if (useApi()) {
                 try {
@@ -165,7 +175,7 @@ public class ServiceUserFollow {
     /** Get accepted follower IDs. Cached 60s. */
     public Set<Integer> getFollowerIds(int followedId) {
         String key = "follows:followers:" + followedId;
-        return InMemoryCache.getOrLoad(key, 60, () -> {
+        return InMemoryCache.getOrLoad(key, 60, List.of(userTag(followedId)), () -> {
             Set<Integer> ids = new HashSet<>();
             if (useApi()) {
                 try {
@@ -204,7 +214,7 @@ public class ServiceUserFollow {
             body.put("followed_id", toUserId);
             body.put("status", UserFollow.STATUS_PENDING);
             try { ApiClient.post("/user_follows", body); } catch (Exception ignored) {}
-            InMemoryCache.evictByPrefix("follows:");
+            invalidateUsers(fromUserId, toUserId);
             return;
         }
         String sql = "INSERT IGNORE INTO user_follows (follower_id, followed_id, status) VALUES (?, ?, ?)";
@@ -215,7 +225,7 @@ public class ServiceUserFollow {
             ps.setString(3, UserFollow.STATUS_PENDING);
             ps.executeUpdate();
         }
-        InMemoryCache.evictByPrefix("follows:");
+        invalidateUsers(fromUserId, toUserId);
     }
 
     /** Accept a pending request → set status to ACCEPTED. */
@@ -225,7 +235,7 @@ public class ServiceUserFollow {
             body.put("status", UserFollow.STATUS_ACCEPTED);
             try { ApiClient.put("/user_follows/accept?follower_id=" + fromUserId + "&followed_id=" + toUserId, body); }
             catch (Exception ignored) {}
-            InMemoryCache.evictByPrefix("follows:");
+            invalidateUsers(fromUserId, toUserId);
             return;
         }
         String sql = "UPDATE user_follows SET status = ? WHERE follower_id = ? AND followed_id = ?";
@@ -236,7 +246,7 @@ public class ServiceUserFollow {
             ps.setInt(3, toUserId);
             ps.executeUpdate();
         }
-        InMemoryCache.evictByPrefix("follows:");
+        invalidateUsers(fromUserId, toUserId);
     }
 
     /** Reject / cancel a pending request → delete the row. */
@@ -247,7 +257,7 @@ public class ServiceUserFollow {
     /** Get pending friend requests sent TO userId (others → userId, status=PENDING). */
     public List<UserFollow> getPendingRequests(int userId) {
         String key = "follows:pending:" + userId;
-        return InMemoryCache.getOrLoad(key, 60, () -> {
+        return InMemoryCache.getOrLoad(key, 60, List.of(userTag(userId)), () -> {
             List<UserFollow> list = new ArrayList<>();
             if (useApi()) {
                 try {
@@ -281,7 +291,7 @@ public class ServiceUserFollow {
     /** Get the status of a follow row (follower→followed), or "NONE" if none. */
     public String getRelationshipStatus(int followerId, int followedId) {
         String key = "follows:rel:" + followerId + ":" + followedId;
-        return InMemoryCache.getOrLoad(key, 60, () -> {
+        return InMemoryCache.getOrLoad(key, 60, List.of(userTag(followerId), userTag(followedId)), () -> {
             if (useApi()) {
                 try {
                     JsonElement el = ApiClient.get("/user_follows?follower_id=" + followerId + "&followed_id=" + followedId);
@@ -2,6 +2,7 @@ package services;
 
 import com.google.gson.*;
 import utils.AppConfig;
+import utils.HttpClients;
 
 import java.net.URI;
 import java.net.http.*;
@@ -51,9 +52,7 @@ public class ZAIService {
 
     private static final Gson gson = new GsonBuilder().setPrettyPrinting().create();
 
-    private static final HttpClient client = HttpClient.newBuilder()
-            .connectTimeout(Duration.ofSeconds(15))
-            .build();
+    private static final HttpClient client = HttpClients.client(HttpClients.Integration.AI_CLOUD);
 
     // ── Fallback chain ──────────────────────────────────────────────
     private record Provider(String url, String key, String model, String label) {}
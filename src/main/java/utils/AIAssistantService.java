@@ -27,9 +27,7 @@ public class AIAssistantService {
 
     private static final String BASE_URL = AppConfig.getAiBaseUrl();
     private static final Gson gson = new Gson();
-    private static final HttpClient httpClient = HttpClient.newBuilder()
-            .connectTimeout(Duration.ofSeconds(5))
-            .build();
+    private static final HttpClient httpClient = HttpClients.client(HttpClients.Integration.AI_LOCAL);
 
     /** Name of the special AI chat room. */
     public static final String AI_ROOM_NAME = "\uD83E\uDD16 AI Assistant";
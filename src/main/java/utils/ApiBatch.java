@@ -0,0 +1,174 @@
+package utils;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Collapses GETs issued within a short window into one {@code POST /batch}
+ * call, for {@link ApiClient#getBatched}.
+ * <p>
+ * Wire format:
+ * <pre>
+ *   → {"requests":  [{"id":"0","method":"GET","path":"/reactions/post/5"}, ...]}
+ *   ← {"responses": [{"id":"0","status":200,"body":[...]}, ...]}   (a bare array is accepted too)
+ * </pre>
+ * Identical paths queued together are sent once. A request the batch reply
+ * leaves out is re-sent on its own. If the backend has no {@code /batch}
+ * endpoint, the queued GETs go out individually (still in parallel) and
+ * batching is switched off for {@value #RETRY_UNSUPPORTED_MS} ms.
+ * <p>
+ * Config: {@code api.batch.enabled} (default true), {@code api.batch.window_ms}
+ * (default {@value #DEFAULT_WINDOW_MS}), {@code api.batch.max} (default
+ * {@value #DEFAULT_MAX_BATCH}).
+ */
+final class ApiBatch {
+
+    private static final long DEFAULT_WINDOW_MS = 10;
+    private static final int DEFAULT_MAX_BATCH = 50;
+    private static final long RETRY_UNSUPPORTED_MS = 5 * 60_000;
+
+    private static final boolean enabled = !"false".equalsIgnoreCase(AppConfig.get("api.batch.enabled", "true"));
+    private static final long windowMs = AppConfig.getLong("api.batch.window_ms", DEFAULT_WINDOW_MS);
+    private static final int maxBatch = (int) AppConfig.getLong("api.batch.max", DEFAULT_MAX_BATCH);
+
+    private record Pending(String path, CompletableFuture<JsonElement> future) {}
+
+    private static final ConcurrentLinkedQueue<Pending> queue = new ConcurrentLinkedQueue<>();
+    private static final AtomicInteger queued = new AtomicInteger();
+    private static final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private static volatile long unsupportedUntil = 0;
+
+    private ApiBatch() { /* utility */ }
+
+    static CompletableFuture<JsonElement> get(String path) {
+        if (!enabled || System.currentTimeMillis() < unsupportedUntil) {
+            return ApiClient.getAsync(path);
+        }
+        CompletableFuture<JsonElement> future = new CompletableFuture<>();
+        queue.add(new Pending(path, future));
+        if (queued.incrementAndGet() >= maxBatch) {
+            flush();
+        } else if (flushScheduled.compareAndSet(false, true)) {
+            AppThreadPool.schedule(() -> {
+                flushScheduled.set(false);
+                flush();
+            }, windowMs, TimeUnit.MILLISECONDS);
+        }
+        return future;
+    }
+
+    /** Drain the queue and send it in chunks of at most {@code api.batch.max} distinct paths. */
+    private static void flush() {
+        Map<String, List<CompletableFuture<JsonElement>>> byPath = new LinkedHashMap<>();
+        Pending p;
+        while ((p = queue.poll()) != null) {
+            queued.decrementAndGet();
+            byPath.computeIfAbsent(p.path(), k -> new ArrayList<>()).add(p.future());
+            if (byPath.size() == maxBatch) {
+                send(byPath);
+                byPath = new LinkedHashMap<>();
+            }
+        }
+        if (!byPath.isEmpty()) send(byPath);
+    }
+
+    private static void send(Map<String, List<CompletableFuture<JsonElement>>> byPath) {
+        List<String> paths = new ArrayList<>(byPath.keySet());
+        if (paths.size() == 1) {
+            sendSingle(paths.get(0), byPath.get(paths.get(0)));
+            return;
+        }
+        List<Map<String, Object>> requests = new ArrayList<>(paths.size());
+        for (int i = 0; i < paths.size(); i++) {
+            Map<String, Object> r = new HashMap<>();
+            r.put("id", String.valueOf(i));
+            r.put("method", "GET");
+            r.put("path", paths.get(i));
+            requests.add(r);
+        }
+        Map<String, Object> body = new HashMap<>();
+        body.put("requests", requests);
+
+        ApiClient.postAsync("/batch", body).whenComplete((resp, err) -> {
+            if (err != null) {
+                // Network failure: the GETs may still work on their own
+                for (String path : paths) sendSingle(path, byPath.get(path));
+                return;
+            }
+            if (resp == null) {
+                unsupportedUntil = System.currentTimeMillis() + RETRY_UNSUPPORTED_MS;
+                System.err.println("⚠ API /batch unavailable — sending " + paths.size() + " GETs individually");
+                for (String path : paths) sendSingle(path, byPath.get(path));
+                return;
+            }
+            boolean[] answered = new boolean[paths.size()];
+            try {
+                for (JsonElement item : responses(resp)) {
+                    if (!item.isJsonObject()) continue;
+                    JsonObject obj = item.getAsJsonObject();
+                    int idx = obj.has("id") ? parseIndex(obj.get("id")) : -1;
+                    if (idx < 0 || idx >= paths.size() || answered[idx]) continue;
+                    answered[idx] = true;
+                    int status = obj.has("status") ? obj.get("status").getAsInt() : 200;
+                    JsonElement result = null;
+                    if (status >= 400) {
+                        System.err.println("❌ API GET " + paths.get(idx) + " → " + status + " (batched)");
+                    } else if (obj.has("body") && !obj.get("body").isJsonNull()) {
+                        result = obj.get("body");
+                    }
+                    complete(byPath.get(paths.get(idx)), result);
+                }
+            } catch (RuntimeException e) {
+                System.err.println("❌ API /batch reply unreadable: " + e.getMessage());
+            }
+            for (int i = 0; i < paths.size(); i++) {
+                if (!answered[i]) sendSingle(paths.get(i), byPath.get(paths.get(i)));
+            }
+        });
+    }
+
+    /** Every waiter completes: with the result, or null if the GET failed in any way. */
+    private static void sendSingle(String path, List<CompletableFuture<JsonElement>> waiters) {
+        try {
+            ApiClient.getAsync(path).whenComplete((result, err) -> complete(waiters, err == null ? result : null));
+        } catch (RuntimeException e) {
+            complete(waiters, null);
+        }
+    }
+
+    /** Each waiter gets its own copy — callers may mutate the tree. */
+    private static void complete(List<CompletableFuture<JsonElement>> waiters, JsonElement result) {
+        for (int i = 0; i < waiters.size(); i++) {
+            waiters.get(i).complete(result == null ? null : i == 0 ? result : result.deepCopy());
+        }
+    }
+
+    private static JsonArray responses(JsonElement resp) {
+        if (resp.isJsonArray()) return resp.getAsJsonArray();
+        if (resp.isJsonObject() && resp.getAsJsonObject().has("responses")
+                && resp.getAsJsonObject().get("responses").isJsonArray()) {
+            return resp.getAsJsonObject().getAsJsonArray("responses");
+        }
+        return new JsonArray();
+    }
+
+    private static int parseIndex(JsonElement id) {
+        try {
+            return Integer.parseInt(id.getAsString());
+        } catch (RuntimeException e) {
+            return -1;
+        }
+    }
+}
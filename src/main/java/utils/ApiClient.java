@@ -1,27 +1,54 @@
 package utils;
 
 import com.google.gson.*;
-import java.io.ByteArrayOutputStream;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import java.io.ByteArrayInputStream;
 import java.io.File;
-import java.net.URI;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
 import java.net.http.*;
 import java.net.http.HttpRequest.BodyPublishers;
 import java.net.http.HttpResponse.BodyHandlers;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
-import java.time.Duration;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
 
 /**
  * Lightweight HTTP client for the SynergyGig REST API.
  * Used when {@code app.mode=api} to replace direct JDBC calls.
+ * <p>
+ * Every call has a non-blocking {@code *Async} twin built on
+ * {@code HttpClient.sendAsync}; prefer those for screens that fan out many
+ * requests.
+ * <p>
+ * GETs are compressed and conditional: a 304 reuses the value decoded from
+ * the last full response for the same path (see CONDITIONAL GET below).
+ * <p>
+ * All JSON calls go through {@link ApiResilience}: per-endpoint circuit
+ * breakers, jittered retries for GETs, and latency histograms.
  */
 public class ApiClient {
 
-    private static final HttpClient client = HttpClient.newBuilder()
-            .connectTimeout(Duration.ofSeconds(10))
-            .build();
+    private static final HttpClient client = HttpClients.client(HttpClients.Integration.API);
 
     private static final String BASE_URL = AppConfig.getRestBaseUrl();
     private static final Gson gson = new GsonBuilder().create();
@@ -33,13 +60,19 @@ public class ApiClient {
     private static final Set<String> logged404Paths = ConcurrentHashMap.newKeySet();
 
     /** Extract a normalized base path for dedup: strip query params and trailing numeric segments. */
-    private static String basePath(String path) {
+    static String basePath(String path) {
         int q = path.indexOf('?');
         String base = q > 0 ? path.substring(0, q) : path;
         // Collapse trailing numeric path params: /chat_room_members/room/24 → /chat_room_members/room/{id}
         return base.replaceAll("/\\d+", "/{id}");
     }
 
+    /** Log a transport failure; calls rejected by an open circuit are not logged (the breaker logs once). */
+    private static void logFailure(String method, String path, Throwable e) {
+        if (e instanceof ApiResilience.CircuitOpenException) return;
+        System.err.println("❌ API " + method + " " + path + " failed: " + e.getMessage());
+    }
+
     /** Log a 4xx/5xx only once per base path for 404s. Always log other errors. */
     private static void logApiError(String method, String path, int status, String body) {
         if (status == 404) {
@@ -54,20 +87,114 @@ public class ApiClient {
 
     /** Send a GET request, return the response body as a JsonElement. */
     public static JsonElement get(String path) {
-        try {
-            HttpRequest req = HttpRequest.newBuilder()
-                    .uri(URI.create(BASE_URL + path))
-                    .header("Accept", "application/json")
-                    .GET()
-                    .build();
-            HttpResponse<String> resp = client.send(req, BodyHandlers.ofString());
-            if (resp.statusCode() >= 400) {
-                logApiError("GET", path, resp.statusCode(), resp.body());
+        return getStreaming(path, TREE, JsonParser::parseReader);
+    }
+
+    /**
+     * GET a JSON array and decode it element by element straight from the
+     * response stream — no String copy of the body and no JsonElement tree.
+     *
+     * @return the decoded list; empty on error (already logged)
+     */
+    public static <T> List<T> getList(String path, JsonStreams.Decoder<T> decoder) {
+        List<T> list = tryGetList(path, decoder);
+        return list != null ? list : new ArrayList<>();
+    }
+
+    /** Same as {@link #getList} but returns null on error, for callers that fall back to another endpoint. */
+    public static <T> List<T> tryGetList(String path, JsonStreams.Decoder<T> decoder) {
+        return getStreaming(path, listKey(decoder), in -> JsonStreams.readList(in, decoder));
+    }
+
+    /** GET a single JSON object through a streaming decoder; null on error. */
+    public static <T> T getObject(String path, JsonStreams.Decoder<T> decoder) {
+        return getStreaming(path, objectKey(decoder), in -> {
+            if (in.peek() != JsonToken.BEGIN_OBJECT) {
+                in.skipValue();
                 return null;
             }
-            return JsonParser.parseString(resp.body());
+            return decoder.read(in);
+        });
+    }
+
+    /**
+     * GET an endpoint the backend may not have (e.g. a change feed), telling
+     * "not there" apart from a failed call the way {@link #bulk} does.
+     *
+     * @return the decoded body, or null on 404 / 405 / 501
+     * @throws IOException on any other failure: network, timeout, 5xx, open circuit, bad body
+     */
+    public static <T> T getOptional(String path, JsonStreams.Decoder<T> decoder) throws IOException {
+        HttpRequest req = jsonRequest(path).header("Accept-Encoding", "gzip").GET().build();
+        HttpResponse<InputStream> resp;
+        try {
+            resp = ApiResilience.send(client, "GET", path, req, BodyHandlers.ofInputStream());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted", e);
+        }
+        try (InputStream in = decompressed(resp, resp.body())) {
+            return readOptional(path, resp.statusCode(), in, decoder);
+        }
+    }
+
+    /** Non-blocking {@link #getOptional}: completes with null when the endpoint is missing, exceptionally on failure. */
+    public static <T> CompletableFuture<T> getOptionalAsync(String path, JsonStreams.Decoder<T> decoder) {
+        HttpRequest req = jsonRequest(path).header("Accept-Encoding", "gzip").GET().build();
+        return ApiResilience.sendAsync(client, "GET", path, req, BodyHandlers.ofByteArray()).thenApply(resp -> {
+            try (InputStream in = decompressed(resp, new ByteArrayInputStream(resp.body()))) {
+                return readOptional(path, resp.statusCode(), in, decoder);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    private static <T> T readOptional(String path, int status, InputStream in, JsonStreams.Decoder<T> decoder)
+            throws IOException {
+        if (status >= 400) {
+            logApiError("GET", path, status, new String(in.readAllBytes(), StandardCharsets.UTF_8));
+            if (isMissingEndpoint(status)) return null;
+            throw new IOException("GET " + path + " → " + status);
+        }
+        try {
+            return decoder.read(new JsonReader(new InputStreamReader(in, StandardCharsets.UTF_8)));
+        } catch (RuntimeException e) {
+            throw new IOException("GET " + path + ": unreadable reply — " + e.getMessage(), e);
+        }
+    }
+
+    /** The backend has no such endpoint (as opposed to failing to serve it). */
+    private static boolean isMissingEndpoint(int status) {
+        return status == 404 || status == 405 || status == 501;
+    }
+
+    /**
+     * Conditional, compressed GET decoded straight from the response stream.
+     * A 304 returns a copy of the value decoded (with the same {@code decoderKey})
+     * the last time this path changed.
+     */
+    private static <T> T getStreaming(String path, String decoderKey, JsonStreams.Decoder<T> body) {
+        try {
+            HttpRequest req = conditionalGet(path, decoderKey).build();
+            HttpResponse<InputStream> resp = ApiResilience.send(client, "GET", path, req, BodyHandlers.ofInputStream());
+            try (InputStream in = decompressed(resp, resp.body())) {
+                if (resp.statusCode() == 304) {
+                    T cached = reuse(path, decoderKey);
+                    // Validators dropped while the request was in flight: fetch unconditionally
+                    return cached != null ? cached : getStreaming(path, decoderKey, body);
+                }
+                if (resp.statusCode() >= 400) {
+                    logApiError("GET", path, resp.statusCode(), new String(in.readAllBytes(), StandardCharsets.UTF_8));
+                    return null;
+                }
+                JsonReader reader = new JsonReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+                T value = body.read(reader);
+                remember(path, decoderKey, resp, value);
+                return value;
+            }
         } catch (Exception e) {
-            System.err.println("❌ API GET " + path + " failed: " + e.getMessage());
+            logFailure("GET", path, e);
             return null;
         }
     }
@@ -76,20 +203,18 @@ public class ApiClient {
     public static JsonElement post(String path, Object body) {
         try {
             String json = gson.toJson(body);
-            HttpRequest req = HttpRequest.newBuilder()
-                    .uri(URI.create(BASE_URL + path))
+            HttpRequest req = jsonRequest(path)
                     .header("Content-Type", "application/json")
-                    .header("Accept", "application/json")
                     .POST(BodyPublishers.ofString(json))
                     .build();
-            HttpResponse<String> resp = client.send(req, BodyHandlers.ofString());
+            HttpResponse<String> resp = ApiResilience.send(client, "POST", path, req, BodyHandlers.ofString());
             if (resp.statusCode() >= 400) {
                 logApiError("POST", path, resp.statusCode(), resp.body());
                 return null;
             }
             return JsonParser.parseString(resp.body());
         } catch (Exception e) {
-            System.err.println("❌ API POST " + path + " failed: " + e.getMessage());
+            logFailure("POST", path, e);
             return null;
         }
     }
@@ -98,20 +223,18 @@ public class ApiClient {
     public static JsonElement put(String path, Object body) {
         try {
             String json = gson.toJson(body);
-            HttpRequest req = HttpRequest.newBuilder()
-                    .uri(URI.create(BASE_URL + path))
+            HttpRequest req = jsonRequest(path)
                     .header("Content-Type", "application/json")
-                    .header("Accept", "application/json")
                     .PUT(BodyPublishers.ofString(json))
                     .build();
-            HttpResponse<String> resp = client.send(req, BodyHandlers.ofString());
+            HttpResponse<String> resp = ApiResilience.send(client, "PUT", path, req, BodyHandlers.ofString());
             if (resp.statusCode() >= 400) {
                 logApiError("PUT", path, resp.statusCode(), resp.body());
                 return null;
             }
             return JsonParser.parseString(resp.body());
         } catch (Exception e) {
-            System.err.println("❌ API PUT " + path + " failed: " + e.getMessage());
+            logFailure("PUT", path, e);
             return null;
         }
     }
@@ -119,62 +242,339 @@ public class ApiClient {
     /** Send a DELETE request. */
     public static JsonElement delete(String path) {
         try {
-            HttpRequest req = HttpRequest.newBuilder()
-                    .uri(URI.create(BASE_URL + path))
-                    .header("Accept", "application/json")
-                    .DELETE()
-                    .build();
-            HttpResponse<String> resp = client.send(req, BodyHandlers.ofString());
+            HttpRequest req = jsonRequest(path).DELETE().build();
+            HttpResponse<String> resp = ApiResilience.send(client, "DELETE", path, req, BodyHandlers.ofString());
             if (resp.statusCode() >= 400) {
                 logApiError("DELETE", path, resp.statusCode(), resp.body());
                 return null;
             }
             return JsonParser.parseString(resp.body());
         } catch (Exception e) {
-            System.err.println("❌ API DELETE " + path + " failed: " + e.getMessage());
+            logFailure("DELETE", path, e);
             return null;
         }
     }
 
+    /**
+     * Write to a bulk endpoint, telling "not implemented" apart from failure.
+     *
+     * @return the reply, or null if the backend has no such endpoint (404,
+     *         405 or 501) — nothing was written, so per-row calls are safe
+     * @throws IOException on any other failure (timeout, 5xx, other 4xx); the
+     *         server may already have applied the write, so do not re-send it row by row
+     */
+    public static JsonElement bulk(String method, String path, Object body) throws IOException {
+        return bulk(method, path, body, null);
+    }
+
+    /** {@link #bulk(String, String, Object)} sent with an {@code Idempotency-Key}, so it can safely be retried. */
+    public static JsonElement bulk(String method, String path, Object body, String idempotencyKey) throws IOException {
+        HttpResponse<String> resp;
+        try {
+            resp = sendWrite(method, path, body == null ? null : gson.toJsonTree(body), idempotencyKey);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted", e);
+        }
+        int status = resp.statusCode();
+        if (status >= 400) logApiError(method, path, status, resp.body());
+        if (isMissingEndpoint(status)) return null;
+        if (status >= 400) throw new IOException(method + " " + path + " → " + status);
+        String text = resp.body();
+        return text == null || text.isBlank() ? JsonNull.INSTANCE : JsonParser.parseString(text);
+    }
+
+    /**
+     * Raw write for {@link WriteOutbox}: the response is returned whatever its
+     * status, and transport errors are thrown instead of logged.
+     *
+     * @param idempotencyKey sent as {@code Idempotency-Key}; may be null
+     */
+    static HttpResponse<String> sendWrite(String method, String path, JsonElement body, String idempotencyKey)
+            throws IOException, InterruptedException {
+        HttpRequest.Builder b = jsonRequest(path).header("Content-Type", "application/json");
+        if (idempotencyKey != null) b.header("Idempotency-Key", idempotencyKey);
+        HttpRequest req = b.method(method, body == null ? BodyPublishers.noBody()
+                : BodyPublishers.ofString(gson.toJson(body))).build();
+        return ApiResilience.send(client, method, path, req, BodyHandlers.ofString());
+    }
+
+    // ═══════════════════════════════════════════
+    //  ASYNC (non-blocking)
+    // ═══════════════════════════════════════════
+    //
+    // Built on HttpClient.sendAsync: no caller thread is held while a request
+    // is in flight, so a screen can fan out dozens of requests at once. Same
+    // contract as the blocking methods — errors are logged and the future
+    // completes with null (or an empty list), never exceptionally.
+
+    /** Non-blocking {@link #get}. */
+    public static CompletableFuture<JsonElement> getAsync(String path) {
+        return sendAsync("GET", path, TREE, conditionalGet(path, TREE).build(), JsonParser::parseReader);
+    }
+
+    /** Non-blocking {@link #post}. */
+    public static CompletableFuture<JsonElement> postAsync(String path, Object body) {
+        HttpRequest req = jsonRequest(path)
+                .header("Content-Type", "application/json")
+                .POST(BodyPublishers.ofString(gson.toJson(body)))
+                .build();
+        return sendAsync("POST", path, null, req, JsonParser::parseReader);
+    }
+
+    /** Non-blocking {@link #put}. */
+    public static CompletableFuture<JsonElement> putAsync(String path, Object body) {
+        HttpRequest req = jsonRequest(path)
+                .header("Content-Type", "application/json")
+                .PUT(BodyPublishers.ofString(gson.toJson(body)))
+                .build();
+        return sendAsync("PUT", path, null, req, JsonParser::parseReader);
+    }
+
+    /** Non-blocking {@link #delete}. */
+    public static CompletableFuture<JsonElement> deleteAsync(String path) {
+        return sendAsync("DELETE", path, null, jsonRequest(path).DELETE().build(), JsonParser::parseReader);
+    }
+
+    /** Non-blocking {@link #getList}: completes with an empty list on error. */
+    public static <T> CompletableFuture<List<T>> getListAsync(String path, JsonStreams.Decoder<T> decoder) {
+        return tryGetListAsync(path, decoder).thenApply(list -> list != null ? list : new ArrayList<>());
+    }
+
+    /** Non-blocking {@link #tryGetList}: completes with null on error. */
+    public static <T> CompletableFuture<List<T>> tryGetListAsync(String path, JsonStreams.Decoder<T> decoder) {
+        String key = listKey(decoder);
+        return sendAsync("GET", path, key, conditionalGet(path, key).build(), in -> JsonStreams.readList(in, decoder));
+    }
+
+    /** Non-blocking {@link #getObject}: completes with null on error. */
+    public static <T> CompletableFuture<T> getObjectAsync(String path, JsonStreams.Decoder<T> decoder) {
+        String key = objectKey(decoder);
+        return sendAsync("GET", path, key, conditionalGet(path, key).build(), in -> {
+            if (in.peek() != JsonToken.BEGIN_OBJECT) {
+                in.skipValue();
+                return null;
+            }
+            return decoder.read(in);
+        });
+    }
+
+    /** JSON request with the API timeout, so a hung backend trips the circuit breaker instead of parking threads. */
+    private static HttpRequest.Builder jsonRequest(String path) {
+        return HttpClients.request(HttpClients.Integration.API, BASE_URL + path)
+                .header("Accept", "application/json");
+    }
+
+    /**
+     * Send without blocking and decode the body on the HttpClient's executor.
+     * The body is buffered as bytes (never a String) so decoding never waits on the network.
+     *
+     * @param decoderKey  validator-store key for conditional GETs; null for other methods
+     */
+    private static <T> CompletableFuture<T> sendAsync(String method, String path, String decoderKey,
+                                                      HttpRequest req, JsonStreams.Decoder<T> decoder) {
+        return ApiResilience.sendAsync(client, method, path, req, BodyHandlers.ofByteArray())
+                .thenCompose(resp -> {
+                    try (InputStream in = decompressed(resp, new ByteArrayInputStream(resp.body()))) {
+                        if (resp.statusCode() == 304 && decoderKey != null) {
+                            T cached = reuse(path, decoderKey);
+                            // Validators dropped while the request was in flight: fetch unconditionally
+                            return cached != null ? CompletableFuture.completedFuture(cached)
+                                    : sendAsync(method, path, decoderKey, conditionalGet(path, decoderKey).build(), decoder);
+                        }
+                        if (resp.statusCode() >= 400) {
+                            logApiError(method, path, resp.statusCode(),
+                                    new String(in.readAllBytes(), StandardCharsets.UTF_8));
+                            return CompletableFuture.completedFuture(null);
+                        }
+                        T value = decoder.read(new JsonReader(new InputStreamReader(in, StandardCharsets.UTF_8)));
+                        if (decoderKey != null) remember(path, decoderKey, resp, value);
+                        return CompletableFuture.completedFuture(value);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                })
+                .exceptionally(e -> {
+                    logFailure(method, path, e instanceof CompletionException && e.getCause() != null ? e.getCause() : e);
+                    return null;
+                });
+    }
+
+    /**
+     * Non-blocking GET that is queued for a few milliseconds and sent together
+     * with other batched GETs as one {@code POST /batch} (see {@link ApiBatch}).
+     * Use it where a screen would otherwise issue one request per item.
+     * Completes with null on error.
+     */
+    public static CompletableFuture<JsonElement> getBatched(String path) {
+        return ApiBatch.get(path);
+    }
+
+    /** How long callers wait for a group of batched GETs, retries included. */
+    public static final long BATCH_TIMEOUT_MS = 20_000;
+
+    /**
+     * Wait for a group of futures (e.g. {@link #getBatched} calls) with one
+     * shared deadline. A future that fails or is still running when
+     * {@code timeoutMs} runs out yields {@code fallback}, so a stuck request
+     * cannot hang the caller.
+     */
+    public static <K, V> Map<K, V> awaitAll(Map<K, CompletableFuture<V>> futures, long timeoutMs, V fallback) {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        Map<K, V> results = new LinkedHashMap<>();
+        for (Map.Entry<K, CompletableFuture<V>> e : futures.entrySet()) {
+            V value;
+            try {
+                long left = Math.max(0, deadline - System.currentTimeMillis());
+                value = e.getValue().get(left, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                value = null;
+            } catch (Exception ex) {
+                value = null; // failed or timed out
+            }
+            results.put(e.getKey(), value != null ? value : fallback);
+        }
+        return results;
+    }
+
+    // ═══════════════════════════════════════════
+    //  CONDITIONAL GET / COMPRESSION
+    // ═══════════════════════════════════════════
+    //
+    // GETs ask for gzip and remember each path's ETag / Last-Modified together
+    // with the value decoded from that response. The next GET of the path sends
+    // If-None-Match / If-Modified-Since; on 304 the remembered value is reused,
+    // so an idle poll costs one empty round-trip instead of a full download and
+    // decode. Lists are handed out as fresh copies because callers sort and
+    // filter them in place.
+
+    private static final int MAX_VALIDATORS = 256;
+    private static final String TREE = "tree";
+
+    /** Validators and decoded value of the last 200 response for one path. */
+    private record Validated(String etag, String lastModified, String decoderKey, Object value) {}
+
+    private static final Map<String, Validated> validators = Collections.synchronizedMap(
+            new LinkedHashMap<>(64, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Validated> eldest) {
+                    return size() > MAX_VALIDATORS;
+                }
+            });
+
+    private static String listKey(JsonStreams.Decoder<?> decoder) {
+        return "list:" + decoder.getClass().getName();
+    }
+
+    private static String objectKey(JsonStreams.Decoder<?> decoder) {
+        return "object:" + decoder.getClass().getName();
+    }
+
+    /** GET request with gzip and, when a value decoded the same way is held, the validators. */
+    private static HttpRequest.Builder conditionalGet(String path, String decoderKey) {
+        HttpRequest.Builder b = jsonRequest(path).header("Accept-Encoding", "gzip").GET();
+        Validated v = validators.get(path);
+        if (v != null && v.decoderKey().equals(decoderKey)) {
+            if (v.etag() != null) b.header("If-None-Match", v.etag());
+            if (v.lastModified() != null) b.header("If-Modified-Since", v.lastModified());
+        }
+        return b;
+    }
+
+    private static InputStream decompressed(HttpResponse<?> resp, InputStream body) throws IOException {
+        boolean gzip = resp.headers().firstValue("Content-Encoding")
+                .map(enc -> enc.equalsIgnoreCase("gzip")).orElse(false);
+        return gzip && resp.statusCode() != 304 ? new GZIPInputStream(body) : body;
+    }
+
+    private static void remember(String path, String decoderKey, HttpResponse<?> resp, Object value) {
+        String etag = resp.headers().firstValue("ETag").orElse(null);
+        String lastModified = resp.headers().firstValue("Last-Modified").orElse(null);
+        if (value == null || (etag == null && lastModified == null)) {
+            validators.remove(path);
+            return;
+        }
+        // Keep our own copy: the caller is free to sort or filter the list it was handed
+        validators.put(path, new Validated(etag, lastModified, decoderKey, copyOf(value)));
+    }
+
+    /** Copy of the value remembered for a 304; null (and validators dropped) if it is gone. */
+    @SuppressWarnings("unchecked")
+    private static <T> T reuse(String path, String decoderKey) {
+        Validated v = validators.get(path);
+        if (v == null || !v.decoderKey().equals(decoderKey)) {
+            validators.remove(path);
+            return null;
+        }
+        return (T) copyOf(v.value());
+    }
+
+    /** A list or JSON tree a caller may modify without touching the stored one. */
+    private static Object copyOf(Object value) {
+        if (value instanceof List<?> list) return new ArrayList<>(list);
+        if (value instanceof JsonElement el) return el.deepCopy();
+        return value;
+    }
+
+    /** Forget all ETag / Last-Modified validators (e.g. on logout). */
+    public static void clearValidators() {
+        validators.clear();
+    }
+
     // ═══════════════════════════════════════════
     //  FILE UPLOAD / DOWNLOAD
     // ═══════════════════════════════════════════
+    //
+    // Transfers stream straight between the network and the file: the upload
+    // body is the multipart head, the file read in chunks, and the tail; the
+    // download is written to "<dest>.part" as it arrives and renamed when
+    // complete. An interrupted download resumes with a Range request on the
+    // next attempt, guarded by If-Range with the validator (ETag or
+    // Last-Modified) saved in "<dest>.part.validator", so a file that changed
+    // on the server in between is sent whole instead of spliced.
+
+    /** Progress of a transfer; {@code total} is -1 when the size is unknown. Called on I/O threads. */
+    @FunctionalInterface
+    public interface TransferListener {
+        void onProgress(long transferred, long total);
+    }
+
+    /** Shared transfer client — longer connect timeout and redirect following. */
+    private static final HttpClient transferClient = HttpClients.client(HttpClients.Integration.TRANSFER);
 
     /**
      * Upload a file via multipart/form-data.
      * Returns the server response JSON (file_id, filename, size, content_type).
      */
     public static JsonElement uploadFile(String path, File file) {
+        return uploadFile(path, file, null);
+    }
+
+    /** {@link #uploadFile(String, File)} reporting bytes sent (file only, not the multipart framing). */
+    public static JsonElement uploadFile(String path, File file, TransferListener listener) {
         try {
             String boundary = "----SynergyGig" + System.currentTimeMillis();
 
             String mimeType = Files.probeContentType(file.toPath());
             if (mimeType == null) mimeType = "application/octet-stream";
 
-            byte[] fileBytes = Files.readAllBytes(file.toPath());
-
-            // Build multipart body manually
-            ByteArrayOutputStream body = new ByteArrayOutputStream();
             String header = "--" + boundary + "\r\n"
                     + "Content-Disposition: form-data; name=\"file\"; filename=\"" + file.getName() + "\"\r\n"
                     + "Content-Type: " + mimeType + "\r\n\r\n";
-            body.write(header.getBytes(StandardCharsets.UTF_8));
-            body.write(fileBytes);
-            body.write(("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.UTF_8));
+            HttpRequest.BodyPublisher fileBody = BodyPublishers.ofFile(file.toPath());
+            if (listener != null) fileBody = new ProgressPublisher(fileBody, listener);
+            HttpRequest.BodyPublisher body = BodyPublishers.concat(
+                    BodyPublishers.ofString(header, StandardCharsets.UTF_8),
+                    fileBody,
+                    BodyPublishers.ofString("\r\n--" + boundary + "--\r\n", StandardCharsets.UTF_8));
 
-            // Use a separate client with longer timeouts for large files
-            HttpClient uploadClient = HttpClient.newBuilder()
-                    .connectTimeout(Duration.ofSeconds(30))
-                    .build();
-
-            HttpRequest req = HttpRequest.newBuilder()
-                    .uri(URI.create(BASE_URL + path))
+            HttpRequest req = HttpClients.request(HttpClients.Integration.TRANSFER, BASE_URL + path)
                     .header("Content-Type", "multipart/form-data; boundary=" + boundary)
-                    .POST(BodyPublishers.ofByteArray(body.toByteArray()))
-                    .timeout(Duration.ofMinutes(10))
+                    .POST(body)
                     .build();
 
-            HttpResponse<String> resp = uploadClient.send(req, BodyHandlers.ofString());
+            HttpResponse<String> resp = transferClient.send(req, BodyHandlers.ofString());
             if (resp.statusCode() >= 400) {
                 System.err.println("❌ API UPLOAD " + path + " → " + resp.statusCode() + ": " + resp.body());
                 return null;
@@ -191,29 +591,183 @@ public class ApiClient {
      * Returns true on success.
      */
     public static boolean downloadFile(String path, File destination) {
+        return downloadFile(path, destination, null);
+    }
+
+    /**
+     * {@link #downloadFile(String, File)} reporting bytes received. A partial
+     * {@code <destination>.part} left by an earlier attempt is resumed with a
+     * Range request; servers that ignore Range, or whose copy no longer matches
+     * the saved validator, simply send the whole file again.
+     */
+    public static boolean downloadFile(String path, File destination, TransferListener listener) {
+        Path part = destination.toPath().resolveSibling(destination.getName() + ".part");
+        Path validatorFile = part.resolveSibling(part.getFileName() + ".validator");
         try {
-            HttpClient downloadClient = HttpClient.newBuilder()
-                    .connectTimeout(Duration.ofSeconds(30))
-                    .followRedirects(HttpClient.Redirect.NORMAL)
-                    .build();
+            String validator = Files.exists(validatorFile) ? Files.readString(validatorFile).trim() : "";
+            // Without a validator nothing proves the partial file is the same version: start over
+            long offset = Files.exists(part) && !validator.isEmpty() ? Files.size(part) : 0;
+            HttpRequest.Builder rb = HttpClients.request(HttpClients.Integration.TRANSFER, BASE_URL + path)
+                    .GET();
+            if (offset > 0) {
+                rb.header("Range", "bytes=" + offset + "-");
+                rb.header("If-Range", validator);
+            }
 
-            HttpRequest req = HttpRequest.newBuilder()
-                    .uri(URI.create(BASE_URL + path))
-                    .GET()
-                    .timeout(Duration.ofMinutes(10))
-                    .build();
+            HttpResponse<Path> resp = transferClient.send(rb.build(), info -> {
+                int status = info.statusCode();
+                if (status >= 200 && status < 300) saveValidator(validatorFile, info);
+                if (status == 206) {
+                    return progress(HttpResponse.BodySubscribers.ofFile(part,
+                            StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND),
+                            listener, offset, totalLength(info, offset));
+                }
+                if (status >= 200 && status < 300) {
+                    return progress(HttpResponse.BodySubscribers.ofFile(part,
+                            StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING),
+                            listener, 0, totalLength(info, 0));
+                }
+                return HttpResponse.BodySubscribers.replacing((Path) null);
+            });
 
-            HttpResponse<byte[]> resp = downloadClient.send(req, HttpResponse.BodyHandlers.ofByteArray());
-            if (resp.statusCode() >= 400) {
+            if (resp.statusCode() == 416 && offset > 0) {
+                // Range past the end: the partial file is stale (or the file changed) — start over
+                Files.deleteIfExists(part);
+                Files.deleteIfExists(validatorFile);
+                return downloadFile(path, destination, listener);
+            }
+            if (resp.statusCode() >= 400 || resp.body() == null) {
                 System.err.println("❌ API DOWNLOAD " + path + " → " + resp.statusCode());
                 return false;
             }
-
-            Files.write(destination.toPath(), resp.body());
+            Files.move(part, destination.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            Files.deleteIfExists(validatorFile);
             return true;
         } catch (Exception e) {
-            System.err.println("❌ API DOWNLOAD " + path + " failed: " + e.getMessage());
+            System.err.println("❌ API DOWNLOAD " + path + " failed: " + e.getMessage()
+                    + (Files.exists(part) ? " (partial file kept for resume)" : ""));
             return false;
         }
     }
+
+    /**
+     * Remember the response's strong ETag (weak ones are not allowed in If-Range),
+     * else its Last-Modified, for resuming the download; removed when it has neither.
+     */
+    private static void saveValidator(Path file, HttpResponse.ResponseInfo info) {
+        String etag = info.headers().firstValue("ETag").orElse(null);
+        String validator = etag != null && !etag.startsWith("W/") ? etag
+                : info.headers().firstValue("Last-Modified").orElse(null);
+        try {
+            if (validator == null) Files.deleteIfExists(file);
+            else Files.writeString(file, validator);
+        } catch (IOException e) {
+            System.err.println("⚠ API DOWNLOAD: cannot save resume validator — " + e.getMessage());
+        }
+    }
+
+    /** Full size of the resource: from Content-Range for 206, else Content-Length; -1 if unknown. */
+    private static long totalLength(HttpResponse.ResponseInfo info, long offset) {
+        String range = info.headers().firstValue("Content-Range").orElse(null);
+        if (range != null && range.contains("/") && !range.endsWith("/*")) {
+            try {
+                return Long.parseLong(range.substring(range.lastIndexOf('/') + 1).trim());
+            } catch (NumberFormatException ignored) { }
+        }
+        long length = info.headers().firstValueAsLong("Content-Length").orElse(-1);
+        return length < 0 ? -1 : length + offset;
+    }
+
+    private static <T> HttpResponse.BodySubscriber<T> progress(HttpResponse.BodySubscriber<T> target,
+                                                                TransferListener listener, long start, long total) {
+        return listener == null ? target : new ProgressSubscriber<>(target, listener, start, total);
+    }
+
+    /** Counts request-body bytes as the HttpClient pulls them. */
+    private static final class ProgressPublisher implements HttpRequest.BodyPublisher {
+        private final HttpRequest.BodyPublisher delegate;
+        private final TransferListener listener;
+
+        ProgressPublisher(HttpRequest.BodyPublisher delegate, TransferListener listener) {
+            this.delegate = delegate;
+            this.listener = listener;
+        }
+
+        @Override
+        public long contentLength() {
+            return delegate.contentLength();
+        }
+
+        @Override
+        public void subscribe(Flow.Subscriber<? super ByteBuffer> subscriber) {
+            long total = delegate.contentLength();
+            delegate.subscribe(new Flow.Subscriber<ByteBuffer>() {
+                private long sent;
+
+                @Override
+                public void onSubscribe(Flow.Subscription subscription) {
+                    subscriber.onSubscribe(subscription);
+                }
+
+                @Override
+                public void onNext(ByteBuffer item) {
+                    sent += item.remaining();
+                    subscriber.onNext(item);
+                    listener.onProgress(sent, total);
+                }
+
+                @Override
+                public void onError(Throwable throwable) {
+                    subscriber.onError(throwable);
+                }
+
+                @Override
+                public void onComplete() {
+                    subscriber.onComplete();
+                }
+            });
+        }
+    }
+
+    /** Counts response-body bytes as they are handed to the file subscriber. */
+    private static final class ProgressSubscriber<T> implements HttpResponse.BodySubscriber<T> {
+        private final HttpResponse.BodySubscriber<T> delegate;
+        private final TransferListener listener;
+        private final long total;
+        private long received;
+
+        ProgressSubscriber(HttpResponse.BodySubscriber<T> delegate, TransferListener listener, long start, long total) {
+            this.delegate = delegate;
+            this.listener = listener;
+            this.received = start;
+            this.total = total;
+        }
+
+        @Override
+        public CompletionStage<T> getBody() {
+            return delegate.getBody();
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            delegate.onSubscribe(subscription);
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> items) {
+            for (ByteBuffer b : items) received += b.remaining();
+            delegate.onNext(items);
+            listener.onProgress(received, total);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            delegate.onError(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            delegate.onComplete();
+        }
+    }
 }
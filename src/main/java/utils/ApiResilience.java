@@ -0,0 +1,295 @@
+package utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Resilience layer under {@link ApiClient}. It keeps per-endpoint circuit
+ * breakers, retries idempotent GETs with backoff, and records latency
+ * histograms. Endpoints are keyed as {@code "METHOD /normalized/{id}/path"}.
+ * <p>
+ * <b>Circuit breaker.</b> After {@code api.breaker.failures} consecutive
+ * failures (default {@value #DEFAULT_FAILURE_THRESHOLD}) the endpoint opens.
+ * A failure is a network error, a timeout or a 5xx response. While open,
+ * calls fail at once with {@link CircuitOpenException} and do not touch the
+ * network. After {@code api.breaker.open_ms} (default
+ * {@value #DEFAULT_OPEN_MS} ms) one probe request is let through. If the
+ * probe succeeds the breaker closes; if it fails the breaker opens again.
+ * <p>
+ * <b>Retries.</b> Only GETs are retried, at most {@code api.retry.max} times
+ * (default {@value #DEFAULT_MAX_RETRIES}). Retries happen on network errors
+ * and on 429/502/503/504. The delay is exponential backoff with full jitter,
+ * starting at {@value #BASE_BACKOFF_MS} ms and capped at
+ * {@value #MAX_BACKOFF_MS} ms. Writes are never retried because they may
+ * not be idempotent.
+ * <p>
+ * Usage:
+ * <pre>
+ *   for (ApiResilience.EndpointStats s : ApiResilience.endpoints()) System.out.println(s);
+ *   System.out.println(ApiResilience.report());
+ * </pre>
+ */
+public final class ApiResilience {
+
+    private static final int DEFAULT_FAILURE_THRESHOLD = 5;
+    private static final long DEFAULT_OPEN_MS = 15_000;
+    private static final int DEFAULT_MAX_RETRIES = 2;
+    private static final long BASE_BACKOFF_MS = 200;
+    private static final long MAX_BACKOFF_MS = 2_000;
+
+    private static final int failureThreshold = (int) AppConfig.getLong("api.breaker.failures", DEFAULT_FAILURE_THRESHOLD);
+    private static final long openMillis = AppConfig.getLong("api.breaker.open_ms", DEFAULT_OPEN_MS);
+    private static final int maxRetries = (int) AppConfig.getLong("api.retry.max", DEFAULT_MAX_RETRIES);
+
+    private static final Map<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+
+    private ApiResilience() { /* utility */ }
+
+    /** Thrown (or completed exceptionally) when an endpoint's breaker is open. */
+    public static final class CircuitOpenException extends IOException {
+        CircuitOpenException(String endpoint, long retryInMs) {
+            super("circuit open for " + endpoint + " — next probe in " + Math.max(0, retryInMs / 1000) + " s");
+        }
+    }
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    // ═══════════════════════════════════════════
+    //  SENDING (called by ApiClient)
+    // ═══════════════════════════════════════════
+
+    /** Blocking send through the breaker, with retries for GET. */
+    static <T> HttpResponse<T> send(HttpClient client, String method, String endpoint, HttpRequest req,
+                                    HttpResponse.BodyHandler<T> handler) throws IOException, InterruptedException {
+        Endpoint ep = endpoint(method, endpoint);
+        boolean retryable = "GET".equals(method);
+        for (int attempt = 0; ; attempt++) {
+            ep.acquire();
+            long start = System.nanoTime();
+            HttpResponse<T> resp;
+            try {
+                resp = client.send(req, handler);
+            } catch (IOException e) {
+                ep.onResult(System.nanoTime() - start, false);
+                if (!retryable || attempt >= maxRetries) throw e;
+                Thread.sleep(backoff(attempt));
+                continue;
+            } catch (InterruptedException | RuntimeException e) {
+                ep.release(); // not the endpoint's fault; let the next call probe
+                throw e;
+            }
+            boolean ok = resp.statusCode() < 500;
+            ep.onResult(System.nanoTime() - start, ok);
+            if (!retryable || attempt >= maxRetries || !isRetryableStatus(resp.statusCode())) return resp;
+            discard(resp);
+            Thread.sleep(backoff(attempt));
+        }
+    }
+
+    /** Non-blocking send through the breaker; retries are scheduled, not slept. */
+    static <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpClient client, String method, String endpoint,
+                                                            HttpRequest req, HttpResponse.BodyHandler<T> handler) {
+        return attemptAsync(client, endpoint(method, endpoint), "GET".equals(method), req, handler, 0);
+    }
+
+    private static <T> CompletableFuture<HttpResponse<T>> attemptAsync(HttpClient client, Endpoint ep, boolean retryable,
+            HttpRequest req, HttpResponse.BodyHandler<T> handler, int attempt) {
+        try {
+            ep.acquire();
+        } catch (CircuitOpenException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        long start = System.nanoTime();
+        CompletableFuture<HttpResponse<T>> sent;
+        try {
+            sent = client.sendAsync(req, handler);
+        } catch (RuntimeException e) {
+            ep.release();
+            return CompletableFuture.failedFuture(e);
+        }
+        return sent.handle((resp, err) -> {
+            long elapsed = System.nanoTime() - start;
+            boolean retry;
+            if (err != null && unwrap(err) instanceof CancellationException) {
+                ep.release();
+                return CompletableFuture.<HttpResponse<T>>failedFuture(unwrap(err));
+            }
+            if (err != null) {
+                ep.onResult(elapsed, false);
+                retry = retryable && attempt < maxRetries;
+                if (!retry) return CompletableFuture.<HttpResponse<T>>failedFuture(unwrap(err));
+            } else {
+                ep.onResult(elapsed, resp.statusCode() < 500);
+                retry = retryable && attempt < maxRetries && isRetryableStatus(resp.statusCode());
+                if (!retry) return CompletableFuture.completedFuture(resp);
+                discard(resp);
+            }
+            return CompletableFuture.supplyAsync(() -> null,
+                            CompletableFuture.delayedExecutor(backoff(attempt), TimeUnit.MILLISECONDS))
+                    .thenCompose(x -> attemptAsync(client, ep, retryable, req, handler, attempt + 1));
+        }).thenCompose(f -> f);
+    }
+
+    // ═══════════════════════════════════════════
+    //  QUERY API
+    // ═══════════════════════════════════════════
+
+    /** Breaker state and latency statistics for one endpoint. Times are in milliseconds. */
+    public record EndpointStats(String endpoint, State state, long count, long errors, long rejected,
+                                double totalMillis, double maxMillis,
+                                double p50Millis, double p95Millis, double p99Millis) {
+
+        public double meanMillis() {
+            return count == 0 ? 0 : totalMillis / count;
+        }
+
+        public double errorRate() {
+            return count == 0 ? 0 : (double) errors / count;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-9s %6d× avg %.1f ms, p95 %.1f ms, p99 %.1f ms, max %.1f ms, %d errors%s — %s",
+                    state, count, meanMillis(), p95Millis, p99Millis, maxMillis, errors,
+                    rejected > 0 ? ", " + rejected + " rejected" : "", endpoint);
+        }
+    }
+
+    /** Stats for every endpoint called so far. */
+    public static List<EndpointStats> endpoints() {
+        List<EndpointStats> out = new ArrayList<>();
+        for (Endpoint ep : endpoints.values()) out.add(ep.snapshot());
+        out.sort(Comparator.comparingDouble(EndpointStats::totalMillis).reversed());
+        return out;
+    }
+
+    /** Current breaker state of an endpoint, e.g. {@code state("GET", "/posts")}. */
+    public static State state(String method, String path) {
+        Endpoint ep = endpoints.get(key(method, path));
+        return ep == null ? State.CLOSED : ep.state();
+    }
+
+    /** Multi-line summary of all endpoints, most expensive first. */
+    public static String report() {
+        StringBuilder sb = new StringBuilder("API metrics —");
+        for (EndpointStats s : endpoints()) sb.append("\n  ").append(s);
+        return sb.toString();
+    }
+
+    /** Close all breakers and forget all statistics. */
+    public static void reset() {
+        endpoints.clear();
+    }
+
+    // ═══════════════════════════════════════════
+    //  INTERNALS
+    // ═══════════════════════════════════════════
+
+    private static Endpoint endpoint(String method, String path) {
+        return endpoints.computeIfAbsent(key(method, path), Endpoint::new);
+    }
+
+    private static String key(String method, String path) {
+        return method + " " + ApiClient.basePath(path);
+    }
+
+    private static boolean isRetryableStatus(int status) {
+        return status == 429 || status == 502 || status == 503 || status == 504;
+    }
+
+    /** Full-jitter exponential backoff for the given (0-based) retry. */
+    static long backoff(int attempt) {
+        long cap = Math.min(MAX_BACKOFF_MS, BASE_BACKOFF_MS << Math.min(attempt, 10));
+        return ThreadLocalRandom.current().nextLong(cap + 1);
+    }
+
+    /** Release a response that is being retried (stream bodies hold the connection). */
+    private static void discard(HttpResponse<?> resp) {
+        if (resp.body() instanceof InputStream in) {
+            try {
+                in.close();
+            } catch (IOException ignored) { }
+        }
+    }
+
+    private static Throwable unwrap(Throwable t) {
+        return t instanceof CompletionException && t.getCause() != null ? t.getCause() : t;
+    }
+
+    /** Breaker and histogram for one endpoint. */
+    private static final class Endpoint {
+        final String key;
+        final LatencyHistogram latency = new LatencyHistogram();
+        final AtomicInteger consecutiveFailures = new AtomicInteger();
+        final AtomicBoolean probeInFlight = new AtomicBoolean();
+        final AtomicInteger rejected = new AtomicInteger();
+        volatile long openedAt = 0; // 0 = closed
+
+        Endpoint(String key) {
+            this.key = key;
+        }
+
+        State state() {
+            long opened = openedAt;
+            if (opened == 0) return State.CLOSED;
+            return System.currentTimeMillis() - opened >= openMillis ? State.HALF_OPEN : State.OPEN;
+        }
+
+        /** Let the call through, or reject it while open (one probe at a time once half-open). */
+        void acquire() throws CircuitOpenException {
+            long opened = openedAt;
+            if (opened == 0) return;
+            long waited = System.currentTimeMillis() - opened;
+            if (waited >= openMillis && probeInFlight.compareAndSet(false, true)) return;
+            rejected.incrementAndGet();
+            throw new CircuitOpenException(key, openMillis - waited);
+        }
+
+        /** The call ended without an answer about the endpoint (interrupted, cancelled): free the probe slot. */
+        void release() {
+            probeInFlight.set(false);
+        }
+
+        void onResult(long nanos, boolean ok) {
+            latency.record(nanos, !ok);
+            boolean wasProbe = probeInFlight.getAndSet(false);
+            if (ok) {
+                consecutiveFailures.set(0);
+                if (openedAt != 0) {
+                    openedAt = 0;
+                    System.out.println("✅ API " + key + " recovered — circuit closed");
+                }
+                return;
+            }
+            int failures = consecutiveFailures.incrementAndGet();
+            if (wasProbe || (openedAt == 0 && failures >= failureThreshold)) {
+                if (openedAt == 0) {
+                    System.err.println("⚠ API " + key + " failing (" + failures
+                            + " in a row) — circuit open for " + openMillis / 1000 + " s");
+                }
+                openedAt = System.currentTimeMillis();
+            }
+        }
+
+        EndpointStats snapshot() {
+            double[] p = latency.percentilesMillis();
+            return new EndpointStats(key, state(), latency.count(), latency.errors(), rejected.get(),
+                    latency.totalMillis(), latency.maxMillis(), p[0], p[1], p[2]);
+        }
+    }
+}
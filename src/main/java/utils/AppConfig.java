@@ -124,8 +124,10 @@ public class AppConfig {
         return props.getProperty("server.ssh_user", "seji");
     }
 
+    /** REST backend base URL; {@code standin} runs the in-process {@link StandInServer} instead. */
     public static String getRestBaseUrl() {
-        return props.getProperty("rest.base_url", "https://rest.benzaitsue.work.gd/api");
+        String url = props.getProperty("rest.base_url", "https://rest.benzaitsue.work.gd/api");
+        return "standin".equalsIgnoreCase(url.trim()) ? StandInServer.shared().baseUrl() : url;
     }
 
     /** Generic property getter. */
@@ -137,6 +139,18 @@ public class AppConfig {
         return props.getProperty(key, defaultValue);
     }
 
+    /** Numeric property; {@code defaultValue} when it is missing, blank or not a number. */
+    public static long getLong(String key, long defaultValue) {
+        String value = props.getProperty(key);
+        if (value == null || value.isBlank()) return defaultValue;
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            System.err.println("⚠ AppConfig: invalid " + key + " '" + value + "', using " + defaultValue);
+            return defaultValue;
+        }
+    }
+
     // ── Write support (for in-app settings) ──────────────────────
 
     /** Update a property in memory. Call {@link #save()} to persist. */
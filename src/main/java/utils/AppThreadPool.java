@@ -13,6 +13,7 @@ import java.util.concurrent.atomic.AtomicInteger;
  * <pre>{@code
  *     AppThreadPool.io(() -> { ... });             // fire-and-forget I/O task
  *     Future<?> f = AppThreadPool.submit(() -> {}); // task with future
+ *     AppThreadPool.scheduleAtFixedRate(task, 30, 30, TimeUnit.SECONDS);
  * }</pre>
  */
 public final class AppThreadPool {
@@ -20,6 +21,10 @@ public final class AppThreadPool {
     /** Cached thread pool for short-lived I/O tasks (API calls, DB queries, AI requests). */
     private static final ExecutorService IO = Executors.newCachedThreadPool(new DaemonFactory("app-io"));
 
+    /** Small shared scheduler for periodic housekeeping (cache sweeps, retries, heartbeats). */
+    private static final ScheduledExecutorService SCHEDULER =
+            Executors.newScheduledThreadPool(2, new DaemonFactory("app-sched"));
+
     private AppThreadPool() { /* utility */ }
 
     /** Submit a fire-and-forget I/O task. */
@@ -37,9 +42,23 @@ public final class AppThreadPool {
         return IO.submit(task);
     }
 
+    /** Run a task once after the given delay on the shared scheduler. */
+    public static ScheduledFuture<?> schedule(Runnable task, long delay, TimeUnit unit) {
+        return SCHEDULER.schedule(task, delay, unit);
+    }
+
+    /**
+     * Run a task periodically on the shared scheduler.
+     * Keep tasks short — hand blocking work off to {@link #io(Runnable)}.
+     */
+    public static ScheduledFuture<?> scheduleAtFixedRate(Runnable task, long initialDelay, long period, TimeUnit unit) {
+        return SCHEDULER.scheduleAtFixedRate(task, initialDelay, period, unit);
+    }
+
     /** Shut down all pools. Call from application stop / shutdown hook. */
     public static void shutdownNow() {
         IO.shutdownNow();
+        SCHEDULER.shutdownNow();
     }
 
     // ── Daemon thread factory ──
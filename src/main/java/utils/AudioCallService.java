@@ -92,7 +92,7 @@ public class AudioCallService {
             System.out.println("Connecting to WebSocket: " + wsUrl);
 
             // Connect WebSocket
-            HttpClient client = HttpClient.newHttpClient();
+            HttpClient client = HttpClients.client(HttpClients.Integration.REALTIME);
             webSocket = client.newWebSocketBuilder()
                     .buildAsync(URI.create(wsUrl), new WebSocket.Listener() {
                         @Override
@@ -30,9 +30,7 @@ public class BadWordsService {
     private static final String API_KEY = AppConfig.get("badwords.api_key",
             "YgbeLs1Let62752r83R0gWVaXdhZMBPj");
 
-    private static final HttpClient client = HttpClient.newBuilder()
-            .connectTimeout(Duration.ofSeconds(10))
-            .build();
+    private static final HttpClient client = HttpClients.client(HttpClients.Integration.PUBLIC_API);
 
     // ── Cache ──────────────────────────────────────────────
     private static final long CACHE_TTL_MS = 60_000; // 60 seconds
@@ -0,0 +1,86 @@
+package utils;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Rough heap-size estimator for {@link InMemoryCache} values.
+ * <p>
+ * Not exact — it only needs to tell a list of posts carrying base64 images
+ * apart from a cached count. Strings are weighed by length, collections by
+ * their elements, and entities by their fields (one level of nesting).
+ */
+final class CacheWeigher {
+
+    private static final int MAX_DEPTH = 3;
+    private static final Map<Class<?>, Field[]> fieldCache = new ConcurrentHashMap<>();
+
+    private CacheWeigher() { /* utility */ }
+
+    /** Estimated retained size of {@code value} in bytes. */
+    static long weigh(Object value) {
+        return estimate(value, 0);
+    }
+
+    private static long estimate(Object v, int depth) {
+        if (v == null) return 16;
+        if (v instanceof String s) return 40 + 2L * s.length();
+        if (v instanceof byte[] b) return 16 + b.length;
+        if (v instanceof Number || v instanceof Boolean || v instanceof Character || v instanceof Enum<?>) return 16;
+        if (v instanceof java.util.Date || v instanceof java.time.temporal.Temporal) return 24;
+        if (depth >= MAX_DEPTH) return 16;
+        if (v instanceof Collection<?> c) {
+            long total = 40;
+            for (Object o : c) total += 8 + estimate(o, depth + 1);
+            return total;
+        }
+        if (v instanceof Map<?, ?> m) {
+            long total = 48;
+            for (Map.Entry<?, ?> e : m.entrySet()) {
+                total += 32 + estimate(e.getKey(), depth + 1) + estimate(e.getValue(), depth + 1);
+            }
+            return total;
+        }
+        if (v.getClass().isArray()) return 16 + 8L * java.lang.reflect.Array.getLength(v);
+        return estimateFields(v, depth);
+    }
+
+    private static long estimateFields(Object v, int depth) {
+        long total = 16;
+        for (Field f : fieldsOf(v.getClass())) {
+            if (f.getType().isPrimitive()) {
+                total += 8;
+                continue;
+            }
+            try {
+                total += 8 + estimate(f.get(v), depth + 1);
+            } catch (IllegalAccessException e) {
+                total += 8;
+            }
+        }
+        return total;
+    }
+
+    private static Field[] fieldsOf(Class<?> type) {
+        return fieldCache.computeIfAbsent(type, t -> {
+            List<Field> fields = new ArrayList<>();
+            for (Class<?> c = t; c != null && c != Object.class; c = c.getSuperclass()) {
+                for (Field f : c.getDeclaredFields()) {
+                    if (Modifier.isStatic(f.getModifiers())) continue;
+                    try {
+                        f.setAccessible(true);
+                        fields.add(f);
+                    } catch (RuntimeException ignored) {
+                        // JDK internals aren't open to us — counted as opaque
+                    }
+                }
+            }
+            return fields.toArray(new Field[0]);
+        });
+    }
+}
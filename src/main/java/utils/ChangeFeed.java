@@ -0,0 +1,306 @@
+package utils;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+
+/**
+ * Local replica of one entity list, kept current through the backend's
+ * change feed instead of re-downloading the whole list on every refresh.
+ * <p>
+ * Protocol:
+ * <pre>
+ *   GET /changes/{entity}?since={cursor}[&amp;filter...]
+ *   ← {"cursor":"1842", "reset":false, "upserts":[{...}, ...], "deletes":[17, 23]}
+ * </pre>
+ * The first call sends {@code since=0} and gets the whole list with
+ * {@code reset=true}. Later calls send the returned cursor and get only
+ * the rows written since then (upserts) and the ids deleted since then
+ * (tombstones). A {@code reset=true} reply at any time replaces the replica.
+ * <p>
+ * If the backend has no change feed (404 / 405 / 501), the replica is
+ * filled from the ordinary list endpoint ({@code fullLoad}) and the feed is
+ * retried after {@value #RETRY_UNSUPPORTED_MS} ms. Any other failed fetch
+ * (timeout, 5xx, open circuit, a delta reply without a cursor) keeps both
+ * the feed and the current replica; only a replica never filled falls back
+ * to a full load.
+ * <p>
+ * {@link #sync()} talks to the server at most every {@code changes.min_interval_ms}
+ * (default {@value #DEFAULT_MIN_INTERVAL_MS} ms), or every
+ * {@value #FULL_LOAD_TTL_MS} ms while falling back to full loads, unless
+ * {@link #markStale()} was called after a local write. Several screens
+ * reading the same list therefore share one request.
+ * {@code changes.enabled=false} always uses the full load.
+ * <p>
+ * Usage:
+ * <pre>
+ *   private static final ChangeFeed&lt;Post&gt; feed = new ChangeFeed&lt;&gt;("posts", ServicePost::readPost,
+ *           Post::getId, Comparator.comparingInt(Post::getId).reversed(),
+ *           () -&gt; ApiClient.tryGetList("/posts", ServicePost::readPost));
+ *   List&lt;Post&gt; posts = feed.sync();   // after a write: feed.markStale()
+ *   ChangeFeed.clearAll();                 // on logout
+ * </pre>
+ */
+public final class ChangeFeed<T> {
+
+    private static final long DEFAULT_MIN_INTERVAL_MS = 1_000;
+    private static final long RETRY_UNSUPPORTED_MS = 5 * 60_000;
+    /** Reuse interval of a full-load fallback — the list endpoint is much more expensive than a delta. */
+    private static final long FULL_LOAD_TTL_MS = 30_000;
+
+    private static final boolean enabled = !"false".equalsIgnoreCase(AppConfig.get("changes.enabled", "true"));
+    private static final long minIntervalMs = AppConfig.getLong("changes.min_interval_ms", DEFAULT_MIN_INTERVAL_MS);
+
+    /** Every feed created, so logout can drop all replicas. */
+    private static final Set<ChangeFeed<?>> instances = Collections.synchronizedSet(
+            Collections.newSetFromMap(new WeakHashMap<>()));
+
+    /** One decoded change-feed reply. */
+    private record Changes<T>(String cursor, boolean reset, List<T> upserts, List<Integer> deletes) {}
+
+    private final String entity;
+    private final String filter;
+    private final JsonStreams.Decoder<T> decoder;
+    private final ToIntFunction<T> idOf;
+    private final Comparator<T> order;
+    private final Supplier<List<T>> fullLoad;
+
+    private final Map<Integer, T> rows = new HashMap<>(); // guarded by this
+    private String cursor = null;                          // null: not synced from the feed yet
+    private volatile List<T> view = Collections.emptyList();
+    private volatile boolean loaded = false;
+    private volatile boolean stale = true;
+    private volatile long lastSync = 0;
+    private volatile long unsupportedUntil = 0;
+
+    /**
+     * @param entity   collection name, e.g. {@code "posts"}
+     * @param decoder  streaming decoder for one row
+     * @param idOf     row id
+     * @param order    order of {@link #sync()}'s result
+     * @param fullLoad list endpoint used without a change feed; null on error
+     */
+    public ChangeFeed(String entity, JsonStreams.Decoder<T> decoder, ToIntFunction<T> idOf,
+                      Comparator<T> order, Supplier<List<T>> fullLoad) {
+        this(entity, "", decoder, idOf, order, fullLoad);
+    }
+
+    /** Same, restricted by {@code filter} query parameters, e.g. {@code "user_id=4"}. */
+    public ChangeFeed(String entity, String filter, JsonStreams.Decoder<T> decoder, ToIntFunction<T> idOf,
+                      Comparator<T> order, Supplier<List<T>> fullLoad) {
+        this.entity = entity;
+        this.filter = filter == null ? "" : filter;
+        this.decoder = decoder;
+        this.idOf = idOf;
+        this.order = order;
+        this.fullLoad = fullLoad;
+        instances.add(this);
+    }
+
+    // ═══════════════════════════════════════════
+    //  SYNC
+    // ═══════════════════════════════════════════
+
+    /** Bring the replica up to date (if due) and return it, unmodifiable and ordered. */
+    public synchronized List<T> sync() {
+        if (isFresh()) return view;
+        if (feedAvailable()) {
+            try {
+                Changes<T> changes = ApiClient.getOptional(path(), this::readChanges);
+                if (changes != null) {
+                    apply(changes);
+                    return view;
+                }
+                feedUnavailable();
+            } catch (IOException e) {
+                if (loaded) return view; // transient: keep the feed and the replica
+            }
+        }
+        return loadFull();
+    }
+
+    /** Non-blocking {@link #sync()}; without a change feed the full load runs on the shared I/O pool. */
+    public CompletableFuture<List<T>> syncAsync() {
+        if (isFresh()) return CompletableFuture.completedFuture(view);
+        if (!feedAvailable()) return CompletableFuture.supplyAsync(this::sync, AppThreadPool::io);
+        String since;
+        synchronized (this) {
+            since = cursor;
+        }
+        return ApiClient.getOptionalAsync(path(since), this::readChanges).handle((changes, err) -> {
+            if (err != null) {
+                // Transient: keep the feed and the replica
+                return loaded ? CompletableFuture.completedFuture(view)
+                        : CompletableFuture.supplyAsync(this::loadFull, AppThreadPool::io);
+            }
+            if (changes == null) {
+                feedUnavailable();
+                return CompletableFuture.supplyAsync(this::sync, AppThreadPool::io);
+            }
+            synchronized (this) {
+                // A concurrent sync() may have moved on; only apply if we are still at the same cursor
+                if (java.util.Objects.equals(since, cursor)) apply(changes);
+            }
+            return CompletableFuture.completedFuture(view);
+        }).thenCompose(f -> f);
+    }
+
+    /** Current replica without contacting the server. */
+    public List<T> current() {
+        return view;
+    }
+
+    /** True once the replica has been filled at least once. */
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    /** True when the last sync came from the change feed rather than a full-list fallback. */
+    public synchronized boolean isIncremental() {
+        return cursor != null;
+    }
+
+    /** False while the backend is known to lack a change feed for this entity. */
+    public boolean isAvailable() {
+        return feedAvailable();
+    }
+
+    /** Make the next {@link #sync()} contact the server (call after a local write). */
+    public void markStale() {
+        stale = true;
+    }
+
+    /** Forget the replica and cursor (e.g. on logout). */
+    public synchronized void clear() {
+        rows.clear();
+        cursor = null;
+        view = Collections.emptyList();
+        loaded = false;
+        stale = true;
+    }
+
+    /** {@link #clear()} every feed (on logout). */
+    public static void clearAll() {
+        List<ChangeFeed<?>> all;
+        synchronized (instances) {
+            all = new ArrayList<>(instances);
+        }
+        for (ChangeFeed<?> feed : all) feed.clear();
+    }
+
+    // ═══════════════════════════════════════════
+    //  INTERNALS
+    // ═══════════════════════════════════════════
+
+    private boolean isFresh() {
+        long interval = feedAvailable() ? minIntervalMs : FULL_LOAD_TTL_MS;
+        return loaded && !stale && System.currentTimeMillis() - lastSync < interval;
+    }
+
+    private boolean feedAvailable() {
+        return enabled && System.currentTimeMillis() >= unsupportedUntil;
+    }
+
+    private void feedUnavailable() {
+        unsupportedUntil = System.currentTimeMillis() + RETRY_UNSUPPORTED_MS;
+        System.err.println("⚠ Change feed for " + entity + " unavailable — using full list loads");
+    }
+
+    /** Fill the replica from the list endpoint; keeps it as is when that fails too. */
+    private synchronized List<T> loadFull() {
+        List<T> all = fullLoad.get();
+        if (all != null) replaceAll(all);
+        return view;
+    }
+
+    private synchronized String path() {
+        return path(cursor);
+    }
+
+    private String path(String since) {
+        return "/changes/" + entity + "?since=" + (since == null ? "0" : since)
+                + (filter.isEmpty() ? "" : "&" + filter);
+    }
+
+    private synchronized void apply(Changes<T> changes) {
+        if (!changes.reset() && changes.upserts().isEmpty() && changes.deletes().isEmpty()) {
+            // Nothing changed: keep the same view instance so callers can skip rebuilding
+            cursor = changes.cursor();
+            stale = false;
+            lastSync = System.currentTimeMillis();
+            return;
+        }
+        if (changes.reset()) rows.clear();
+        for (T row : changes.upserts()) rows.put(idOf.applyAsInt(row), row);
+        for (Integer id : changes.deletes()) rows.remove(id);
+        cursor = changes.cursor();
+        publish();
+    }
+
+    private synchronized void replaceAll(List<T> all) {
+        rows.clear();
+        for (T row : all) rows.put(idOf.applyAsInt(row), row);
+        cursor = null; // the list endpoint has no cursor: start the feed from scratch next time
+        publish();
+    }
+
+    private void publish() {
+        List<T> sorted = new ArrayList<>(rows.values());
+        sorted.sort(order);
+        view = Collections.unmodifiableList(sorted);
+        loaded = true;
+        stale = false;
+        lastSync = System.currentTimeMillis();
+    }
+
+    private Changes<T> readChanges(JsonReader in) throws IOException {
+        String next = null;
+        boolean reset = false;
+        List<T> upserts = Collections.emptyList();
+        List<Integer> deletes = new ArrayList<>();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "cursor":
+                    next = JsonStreams.nextString(in);
+                    break;
+                case "reset":
+                    reset = JsonStreams.nextBoolean(in, false);
+                    break;
+                case "upserts":
+                    upserts = JsonStreams.readList(in, decoder);
+                    break;
+                case "deletes":
+                    if (in.peek() != JsonToken.BEGIN_ARRAY) {
+                        in.skipValue();
+                        break;
+                    }
+                    in.beginArray();
+                    while (in.hasNext()) {
+                        Integer id = JsonStreams.nextIntOrNull(in);
+                        if (id != null) deletes.add(id);
+                    }
+                    in.endArray();
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        // A delta without a cursor cannot be continued from: reject it rather than apply it as a snapshot
+        if (next == null && !reset) throw new IOException("change feed reply for " + entity + " without a cursor");
+        return new Changes<>(next, reset, upserts, deletes);
+    }
+}
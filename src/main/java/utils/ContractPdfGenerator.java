@@ -523,7 +523,7 @@ public class ContractPdfGenerator {
         try {
             String encoded = URLEncoder.encode(data, StandardCharsets.UTF_8);
             String url = "https://api.qrserver.com/v1/create-qr-code/?size=200x200&data=" + encoded;
-            HttpClient client = HttpClient.newHttpClient();
+            HttpClient client = HttpClients.client(HttpClients.Integration.PUBLIC_API);
             HttpRequest req = HttpRequest.newBuilder()
                     .uri(URI.create(url))
                     .timeout(java.time.Duration.ofSeconds(10))
@@ -35,10 +35,7 @@ public class CurrencyService {
     // ── Cache: baseCurrency → { rates map, timestamp } ──
     private static final Map<String, CachedRates> cache = new ConcurrentHashMap<>();
 
-    private static final HttpClient client = HttpClient.newBuilder()
-            .connectTimeout(Duration.ofSeconds(8))
-            .followRedirects(HttpClient.Redirect.NORMAL)
-            .build();
+    private static final HttpClient client = HttpClients.client(HttpClients.Integration.PUBLIC_API);
 
     // ════════════════════════════════════════════════════════
     //  PUBLIC API
@@ -0,0 +1,208 @@
+package utils;
+
+import com.zaxxer.hikari.HikariPoolMXBean;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * JDBC metrics for {@link MyDatabase}: per-statement latency histograms and
+ * row counts, connection-acquire wait, a slow-query log, and the HikariCP
+ * pool gauges — all behind one API.
+ * <p>
+ * Statements are recorded by the wrappers in {@link InstrumentedJdbc}, keyed
+ * by their SQL text with whitespace collapsed and variable-length placeholder
+ * lists ({@code IN (?,?,…)}, multi-row {@code VALUES}) folded into one shape.
+ * At most {@value #MAX_STATEMENTS} shapes are kept; the least recently seen
+ * one is dropped to make room. Statements slower than
+ * {@code db.slow_query_ms} (default {@value #DEFAULT_SLOW_QUERY_MS} ms) are
+ * logged as they happen. Latency covers execution only, not the time spent
+ * iterating the result set.
+ * <p>
+ * Usage:
+ * <pre>
+ *   DbMetrics.PoolStats pool = DbMetrics.pool();          // active / idle / waiting
+ *   for (DbMetrics.SqlStats s : DbMetrics.topByTotalTime(10)) System.out.println(s);
+ *   System.out.println(DbMetrics.report());
+ * </pre>
+ */
+public final class DbMetrics {
+
+    private static final long DEFAULT_SLOW_QUERY_MS = 500;
+    private static final int MAX_SQL_LENGTH = 300;
+    private static final int MAX_STATEMENTS = 512;
+    /** {@code IN (?, ?, ?)} → {@code IN (?…)} */
+    private static final Pattern IN_LIST = Pattern.compile("(?i)\\bIN ?\\(\\s?\\?(?:\\s?,\\s?\\?)*\\s?\\)");
+    /** {@code VALUES (?, ?), (?, ?)} → {@code VALUES (?, ?), …} */
+    private static final Pattern ROW_LIST = Pattern.compile("(\\(\\s?\\?(?:\\s?,\\s?\\?)*\\s?\\))(?:\\s?,\\s?\\(\\s?\\?(?:\\s?,\\s?\\?)*\\s?\\))+");
+
+    private static final Map<String, Histogram> statements = Collections.synchronizedMap(
+            new LinkedHashMap<>(64, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Histogram> eldest) {
+                    return size() > MAX_STATEMENTS;
+                }
+            });
+    private static final Histogram acquireWait = new Histogram("connection acquire");
+    private static final LongAdder acquireFailures = new LongAdder();
+    private static final LongAdder slowQueries = new LongAdder();
+    private static final long slowQueryNanos = AppConfig.getLong("db.slow_query_ms", DEFAULT_SLOW_QUERY_MS) * 1_000_000;
+
+    private DbMetrics() { /* utility */ }
+
+    // ═══════════════════════════════════════════
+    //  RECORDING (called by the JDBC wrappers)
+    // ═══════════════════════════════════════════
+
+    static void recordAcquire(long nanos, boolean ok) {
+        acquireWait.record(nanos, 0, !ok);
+        if (!ok) acquireFailures.increment();
+    }
+
+    static void recordStatement(String sql, long nanos, long rows, boolean failed) {
+        String key = normalize(sql);
+        statements.computeIfAbsent(key, Histogram::new).record(nanos, rows, failed);
+        if (nanos >= slowQueryNanos) {
+            slowQueries.increment();
+            System.err.printf("🐢 Slow query (%.1f ms%s%s): %s%n", nanos / 1e6,
+                    rows > 0 ? ", " + rows + " rows" : "", failed ? ", failed" : "", key);
+        }
+    }
+
+    /** Rows read from a result set after the statement was timed. */
+    static void recordRows(String sql, long rows) {
+        if (rows <= 0) return;
+        statements.computeIfAbsent(normalize(sql), Histogram::new).rows.add(rows);
+    }
+
+    // ═══════════════════════════════════════════
+    //  QUERY API
+    // ═══════════════════════════════════════════
+
+    /** Latency / row statistics for one statement shape. Times are in milliseconds. */
+    public record SqlStats(String sql, long count, long errors, long rows,
+                           double totalMillis, double maxMillis,
+                           double p50Millis, double p95Millis, double p99Millis) {
+
+        public double meanMillis() {
+            return count == 0 ? 0 : totalMillis / count;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%6d× avg %.1f ms, p95 %.1f ms, max %.1f ms, %d rows%s — %s",
+                    count, meanMillis(), p95Millis, maxMillis, rows,
+                    errors > 0 ? ", " + errors + " errors" : "", sql);
+        }
+    }
+
+    /** HikariCP gauges at this instant; all -1 when the pool isn't running (API mode). */
+    public record PoolStats(int active, int idle, int total, int threadsAwaiting, int maxSize,
+                            SqlStats acquireWait, long acquireFailures) {
+
+        /** Fraction of the pool in use (0–1). */
+        public double utilisation() {
+            return maxSize <= 0 ? 0 : (double) active / maxSize;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("pool active=%d idle=%d total=%d/%d waiting=%d, acquire avg %.2f ms p99 %.2f ms max %.1f ms (%d failed)",
+                    active, idle, total, maxSize, threadsAwaiting,
+                    acquireWait.meanMillis(), acquireWait.p99Millis(), acquireWait.maxMillis(), acquireFailures);
+        }
+    }
+
+    public static PoolStats pool() {
+        HikariPoolMXBean mx = MyDatabase.getInstance().poolMXBean();
+        int max = MyDatabase.getInstance().maxPoolSize();
+        if (mx == null) {
+            return new PoolStats(-1, -1, -1, -1, max, acquireWait.snapshot(), acquireFailures.sum());
+        }
+        return new PoolStats(mx.getActiveConnections(), mx.getIdleConnections(), mx.getTotalConnections(),
+                mx.getThreadsAwaitingConnection(), max, acquireWait.snapshot(), acquireFailures.sum());
+    }
+
+    /** Stats for every statement seen so far. */
+    public static List<SqlStats> statements() {
+        List<Histogram> all;
+        synchronized (statements) {
+            all = new ArrayList<>(statements.values());
+        }
+        List<SqlStats> out = new ArrayList<>();
+        for (Histogram h : all) out.add(h.snapshot());
+        return out;
+    }
+
+    /** The {@code n} statements with the most cumulative execution time. */
+    public static List<SqlStats> topByTotalTime(int n) {
+        List<SqlStats> all = statements();
+        all.sort(Comparator.comparingDouble(SqlStats::totalMillis).reversed());
+        return all.subList(0, Math.min(n, all.size()));
+    }
+
+    public static long slowQueryCount() {
+        return slowQueries.sum();
+    }
+
+    /** Multi-line summary: pool gauges plus the ten most expensive statements. */
+    public static String report() {
+        StringBuilder sb = new StringBuilder("DB metrics — ").append(pool())
+                .append(", slow queries=").append(slowQueries.sum());
+        for (SqlStats s : topByTotalTime(10)) sb.append("\n  ").append(s);
+        return sb.toString();
+    }
+
+    /** Forget all recorded statistics. */
+    public static void reset() {
+        statements.clear();
+        acquireWait.clear();
+        acquireFailures.reset();
+        slowQueries.reset();
+    }
+
+    // ═══════════════════════════════════════════
+    //  INTERNALS
+    // ═══════════════════════════════════════════
+
+    static String normalize(String sql) {
+        if (sql == null) return "<unknown>";
+        String s = sql.trim().replaceAll("\\s+", " ");
+        s = IN_LIST.matcher(s).replaceAll("IN (?…)");
+        s = ROW_LIST.matcher(s).replaceAll("$1, …");
+        return s.length() > MAX_SQL_LENGTH ? s.substring(0, MAX_SQL_LENGTH) + "…" : s;
+    }
+
+    /** Latency histogram plus row count for one statement shape. */
+    private static final class Histogram {
+        final String sql;
+        final LatencyHistogram latency = new LatencyHistogram();
+        final LongAdder rows = new LongAdder();
+
+        Histogram(String sql) {
+            this.sql = sql;
+        }
+
+        void record(long nanos, long rowCount, boolean failed) {
+            latency.record(nanos, failed);
+            if (rowCount > 0) rows.add(rowCount);
+        }
+
+        void clear() {
+            latency.clear();
+            rows.reset();
+        }
+
+        SqlStats snapshot() {
+            double[] p = latency.percentilesMillis();
+            return new SqlStats(sql, latency.count(), latency.errors(), rows.sum(),
+                    latency.totalMillis(), latency.maxMillis(), p[0], p[1], p[2]);
+        }
+    }
+}
@@ -0,0 +1,298 @@
+package utils;
+
+import com.google.gson.JsonObject;
+import javafx.application.Platform;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Typed real-time events on top of {@link SignalingService}, so screens
+ * subscribe to changes instead of each running its own poller.
+ * <p>
+ * Every signaling message type belongs to one {@link Topic}. Subscribers get
+ * their events on the JavaFX thread, in arrival order:
+ * <ul>
+ *   <li><b>Backpressure</b> — each subscription has a bounded mailbox
+ *       ({@code events.queue}, default {@value #DEFAULT_QUEUE}) drained in one
+ *       FX pulse per burst. If a slow subscriber lets it fill up, the queued
+ *       events are dropped and its {@code onResync} runs once instead: one
+ *       reload rather than an unbounded backlog on the UI thread.</li>
+ *   <li><b>Missed events</b> — the relay keeps nothing for a client that is
+ *       offline, so after a reconnect every subscription's {@code onResync}
+ *       runs once to catch up from the REST API. Events carrying a server
+ *       {@code seq} are de-duplicated, so a backend that replays its backlog
+ *       on reconnect is also handled.</li>
+ *   <li><b>Fallback</b> — while {@link #isLive()} is false, screens keep
+ *       polling at their normal rate; while it is true their pollers only
+ *       run as slow consistency sweeps.</li>
+ * </ul>
+ * Usage:
+ * <pre>
+ *   EventBus.Subscription sub = EventBus.subscribe(EventBus.Topic.NOTIFICATIONS,
+ *           ev -&gt; refreshCount(), this::refreshCount);
+ *   EventBus.publish(EventBus.Topic.NOTIFICATIONS, userId, data);
+ *   if (EventBus.shouldPoll(lastPoll, 60_000)) refreshCount();   // in the old poller
+ *   sub.cancel();   // when the screen closes
+ * </pre>
+ */
+public final class EventBus {
+
+    private static final int DEFAULT_QUEUE = 256;
+
+    /** What an event is about; each topic owns one or more signaling message types. */
+    public enum Topic {
+        /** A user went online / offline. */
+        PRESENCE("presence"),
+        /** A notification was created for the receiving user. */
+        NOTIFICATIONS("notification"),
+        /** Call lifecycle: incoming-call, accepted, rejected, ended. */
+        CALL_STATE("call-state"),
+        /** Chat messages created, edited or deleted in a room (see {@link MessagePush}). */
+        ROOM_ACTIVITY(MessagePush.MESSAGE, MessagePush.EDITED, MessagePush.DELETED),
+        /** Community posts created, edited or deleted. */
+        FEED_UPDATES("feed-update");
+
+        private final String[] types;
+
+        Topic(String... types) {
+            this.types = types;
+        }
+
+        /** Signaling type used when publishing to this topic. */
+        public String type() {
+            return types[0];
+        }
+
+        static Topic of(String type) {
+            for (Topic t : values()) {
+                for (String candidate : t.types) {
+                    if (candidate.equals(type)) return t;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * One received event.
+     *
+     * @param type    signaling message type, e.g. {@code "message-edited"}
+     * @param from    sending user id (0 if unknown)
+     * @param message the whole signaling message ({@code type}, {@code from}, {@code data})
+     */
+    public record Event(Topic topic, String type, int from, JsonObject message) {
+        public JsonObject data() {
+            return message.has("data") && message.get("data").isJsonObject()
+                    ? message.getAsJsonObject("data") : new JsonObject();
+        }
+    }
+
+    private static final int queueCapacity = (int) AppConfig.getLong("events.queue", DEFAULT_QUEUE);
+
+    private static final Map<Topic, List<Subscription>> subscriptions = new ConcurrentHashMap<>();
+    private static final Map<Topic, Long> lastSeq = new ConcurrentHashMap<>();
+    private static final AtomicBoolean attached = new AtomicBoolean();
+    private static volatile boolean wasConnected;
+    /** Where mailboxes are drained; the FX thread in the app. */
+    static Executor dispatcher = EventBus::runOnFx;
+
+    private EventBus() { /* utility */ }
+
+    // ═══════════════════════════════════════════
+    //  SUBSCRIBE / PUBLISH
+    // ═══════════════════════════════════════════
+
+    /**
+     * Receive a topic's events on the FX thread.
+     *
+     * @param onResync run (on the FX thread) when events may have been lost —
+     *                 after a reconnect or a mailbox overflow; may be null
+     */
+    public static Subscription subscribe(Topic topic, Consumer<Event> handler, Runnable onResync) {
+        attach();
+        Subscription sub = new Subscription(topic, handler, onResync);
+        subscriptions.computeIfAbsent(topic, k -> new CopyOnWriteArrayList<>()).add(sub);
+        return sub;
+    }
+
+    /** Send an event to one user; events addressed to ourselves are delivered locally. */
+    public static void publish(Topic topic, int toUserId, JsonObject data) {
+        publish(topic, List.of(toUserId), data);
+    }
+
+    /** Send an event to several users, off the caller's thread. */
+    public static void publish(Topic topic, Collection<Integer> toUserIds, JsonObject data) {
+        SignalingService sig = SignalingService.getInstance();
+        int me = SessionManager.getInstance().getCurrentUser() != null
+                ? SessionManager.getInstance().getCurrentUser().getId() : 0;
+        List<Integer> targets = new ArrayList<>(toUserIds);
+        if (me > 0 && targets.remove((Integer) me)) {
+            JsonObject local = new JsonObject();
+            local.addProperty("type", topic.type());
+            local.addProperty("from", me);
+            local.add("data", data);
+            deliver(local);
+        }
+        if (targets.isEmpty() || !sig.isConnected()) return; // receivers catch up on their next sweep
+        AppThreadPool.io(() -> {
+            for (int userId : targets) sig.send(userId, topic.type(), data);
+        });
+    }
+
+    /** True while events flow: pollers may slow down to consistency sweeps. */
+    public static boolean isLive() {
+        return SignalingService.getInstance().isConnected();
+    }
+
+    /**
+     * Gate for a poller tick: always true while not {@link #isLive() live},
+     * otherwise true at most once per {@code sweepMs}. Records the run in {@code lastRun}.
+     */
+    public static boolean shouldPoll(AtomicLong lastRun, long sweepMs) {
+        long now = System.currentTimeMillis();
+        if (isLive() && now - lastRun.get() < sweepMs) return false;
+        lastRun.set(now);
+        return true;
+    }
+
+    // ═══════════════════════════════════════════
+    //  DELIVERY
+    // ═══════════════════════════════════════════
+
+    private static void attach() {
+        if (!attached.compareAndSet(false, true)) return;
+        SignalingService sig = SignalingService.getInstance();
+        wasConnected = sig.isConnected();
+        sig.addRawListener(EventBus::deliver);
+        sig.addConnectionListener(up -> {
+            if (up && wasConnected) resyncAll(); // reconnect: whatever was sent meanwhile is gone
+            if (up) wasConnected = true;
+        });
+    }
+
+    /** Route one signaling message to its topic's subscribers (any thread). */
+    static void deliver(JsonObject message) {
+        String type = message.has("type") ? message.get("type").getAsString() : null;
+        Topic topic = type == null ? null : Topic.of(type);
+        if (topic == null) return;
+        if (message.has("seq")) {
+            long seq = message.get("seq").getAsLong();
+            Long seen = lastSeq.get(topic);
+            if (seen != null && seq <= seen) return; // replayed duplicate
+            lastSeq.merge(topic, seq, Math::max);
+        }
+        List<Subscription> subs = subscriptions.get(topic);
+        if (subs == null || subs.isEmpty()) return;
+        int from = message.has("from") && message.get("from").isJsonPrimitive() ? message.get("from").getAsInt() : 0;
+        Event event = new Event(topic, type, from, message);
+        for (Subscription sub : subs) sub.offer(event);
+    }
+
+    static void resyncAll() {
+        for (List<Subscription> subs : subscriptions.values()) {
+            for (Subscription sub : subs) sub.resync();
+        }
+    }
+
+    /** A subscriber's mailbox; drained on {@link #dispatcher}. */
+    public static final class Subscription {
+        private final Topic topic;
+        private final Consumer<Event> handler;
+        private final Runnable onResync;
+        private final ArrayDeque<Event> mailbox = new ArrayDeque<>(); // guarded by this
+        private boolean scheduled;                                    // guarded by this
+        private boolean overflowed;                                   // guarded by this
+        private volatile boolean cancelled;
+
+        private Subscription(Topic topic, Consumer<Event> handler, Runnable onResync) {
+            this.topic = topic;
+            this.handler = handler;
+            this.onResync = onResync;
+        }
+
+        /** Stop receiving events; queued ones are discarded. */
+        public void cancel() {
+            cancelled = true;
+            List<Subscription> subs = subscriptions.get(topic);
+            if (subs != null) subs.remove(this);
+            synchronized (this) {
+                mailbox.clear();
+            }
+        }
+
+        void offer(Event event) {
+            synchronized (this) {
+                if (cancelled || overflowed) return; // a resync is coming; it covers this event
+                if (mailbox.size() >= queueCapacity) {
+                    mailbox.clear();
+                    overflowed = true;
+                    System.err.println("⚠ EventBus: " + topic + " subscriber fell behind — resyncing");
+                } else {
+                    mailbox.add(event);
+                }
+                if (scheduled) return;
+                scheduled = true;
+            }
+            dispatcher.execute(this::drain);
+        }
+
+        void resync() {
+            synchronized (this) {
+                if (cancelled) return;
+                mailbox.clear();
+                overflowed = true;
+                if (scheduled) return;
+                scheduled = true;
+            }
+            dispatcher.execute(this::drain);
+        }
+
+        private void drain() {
+            List<Event> batch;
+            boolean resync;
+            synchronized (this) {
+                batch = new ArrayList<>(mailbox);
+                mailbox.clear();
+                resync = overflowed;
+                overflowed = false;
+                scheduled = false;
+            }
+            if (cancelled) return;
+            if (resync) {
+                if (onResync != null) run(onResync::run);
+                return;
+            }
+            for (Event e : batch) run(() -> handler.accept(e));
+        }
+
+        private void run(Runnable r) {
+            try {
+                r.run();
+            } catch (RuntimeException e) {
+                System.err.println("⚠ EventBus: " + topic + " subscriber failed — " + e.getMessage());
+            }
+        }
+    }
+
+    // ═══════════════════════════════════════════
+    //  INTERNALS
+    // ═══════════════════════════════════════════
+
+    private static void runOnFx(Runnable task) {
+        try {
+            Platform.runLater(task);
+        } catch (IllegalStateException e) {
+            task.run(); // no FX toolkit (tests, headless tools)
+        }
+    }
+}
@@ -47,9 +47,7 @@ public class GroqWhisperService {
 
     public GroqWhisperService() {
         this.apiKey = AppConfig.get("groq.api.key", "");
-        this.httpClient = HttpClient.newBuilder()
-                .connectTimeout(Duration.ofSeconds(10))
-                .build();
+        this.httpClient = HttpClients.client(HttpClients.Integration.AI_CLOUD);
     }
 
     /**
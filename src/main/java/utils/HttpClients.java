@@ -0,0 +1,123 @@
+package utils;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Central registry of the application's {@link HttpClient}s.
+ * <p>
+ * Each {@code HttpClient} keeps its own connection pool and, by default, its
+ * own thread pool. Building one per service (or per call) therefore repeats
+ * TCP and TLS handshakes and leaks executors. All outbound code asks this
+ * class instead:
+ * <ul>
+ *   <li>Integrations with the same connect timeout share one client, so they
+ *       share its connection pool per host.</li>
+ *   <li>All clients run on one daemon executor capped at {@code http.threads}
+ *       threads (default {@value #DEFAULT_MAX_THREADS}); idle threads exit
+ *       after a minute.</li>
+ *   <li>Clients prefer HTTP/2: ALPN over TLS, falling back to HTTP/1.1.
+ *       Redirects are followed, except from https to http.</li>
+ * </ul>
+ * Per-integration defaults live in {@link Integration}. The request timeout
+ * can be overridden with {@code http.<integration>.timeout_ms}, e.g.
+ * {@code http.api.timeout_ms}.
+ * <p>
+ * Usage:
+ * <pre>
+ *   HttpClient client = HttpClients.client(HttpClients.Integration.PUBLIC_API);
+ *   HttpRequest req = HttpClients.request(HttpClients.Integration.PUBLIC_API, url).GET().build();
+ * </pre>
+ */
+public final class HttpClients {
+
+    private static final int DEFAULT_MAX_THREADS = 32;
+
+    /** Connect / request timeouts per kind of outbound traffic. A null request timeout means none. */
+    public enum Integration {
+        /** SynergyGig REST backend (JSON calls). */
+        API(10, 15),
+        /** File uploads and downloads to the backend. */
+        TRANSFER(30, 600),
+        /** WebSockets: signaling, audio, video. */
+        REALTIME(10, 0),
+        /** Local AI assistant process. */
+        AI_LOCAL(5, 30),
+        /** Hosted LLM / speech providers. */
+        AI_CLOUD(15, 60),
+        /** Third-party public APIs: weather, currency, quotes, jobs, moderation, QR codes. */
+        PUBLIC_API(10, 15);
+
+        private final Duration connectTimeout;
+        private final Duration requestTimeout;
+
+        Integration(int connectSecs, int requestSecs) {
+            this.connectTimeout = Duration.ofSeconds(connectSecs);
+            long override = AppConfig.getLong("http." + name().toLowerCase() + ".timeout_ms", requestSecs * 1000L);
+            this.requestTimeout = override > 0 ? Duration.ofMillis(override) : null;
+        }
+
+        public Duration connectTimeout() {
+            return connectTimeout;
+        }
+
+        public Duration requestTimeout() {
+            return requestTimeout;
+        }
+    }
+
+    private static final ExecutorService executor = newExecutor((int) AppConfig.getLong("http.threads", DEFAULT_MAX_THREADS));
+
+    private static final Map<Duration, HttpClient> clients = new ConcurrentHashMap<>();
+
+    private HttpClients() { /* utility */ }
+
+    /** The shared client for an integration. */
+    public static HttpClient client(Integration integration) {
+        return clients.computeIfAbsent(integration.connectTimeout(), timeout -> HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(timeout)
+                .executor(executor)
+                .build());
+    }
+
+    /** Request builder for {@code uri} with the integration's request timeout applied. */
+    public static HttpRequest.Builder request(Integration integration, URI uri) {
+        HttpRequest.Builder b = HttpRequest.newBuilder(uri);
+        if (integration.requestTimeout() != null) b.timeout(integration.requestTimeout());
+        return b;
+    }
+
+    /** {@link #request(Integration, URI)} for a string URL. */
+    public static HttpRequest.Builder request(Integration integration, String url) {
+        return request(integration, URI.create(url));
+    }
+
+    private static ExecutorService newExecutor(int threads) {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), new DaemonFactory());
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    private static class DaemonFactory implements java.util.concurrent.ThreadFactory {
+        private final AtomicInteger counter = new AtomicInteger(1);
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "http-io-" + counter.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        }
+    }
+}
@@ -1,8 +1,18 @@
 package utils;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Supplier;
 
 /**
@@ -11,18 +21,90 @@ import java.util.function.Supplier;
  * <p>
  * Works in both API and JDBC modes.
  * <p>
+ * The cache is bounded: by default it holds at most {@code cache.max_bytes}
+ * (estimated, default 64 MB) of values, or {@code cache.max_entries} entries
+ * when that property is set. Eviction follows W-TinyLFU (see
+ * {@link TinyLfuPolicy}), and a background sweeper drops expired entries
+ * every {@value #SWEEP_INTERVAL_SECS} seconds.
+ * <p>
+ * Every key is indexed under its namespace (the part before the first
+ * {@code ':'}) and under any extra tags given when it is loaded, so
+ * invalidation touches only the affected keys instead of scanning the cache.
+ * Services tag entries with the entity they depend on, e.g. {@code "room:42"}.
+ * <p>
+ * {@link #getOrLoadStale} adds stale-while-revalidate: past a soft TTL the
+ * cached value is still returned at once while a refresh runs in the
+ * background; only past the hard TTL does the caller block on the loader.
+ * <p>
+ * Selected namespaces survive restarts through {@link SnapshotCache}: restored
+ * entries are served at once and revalidated on their first read.
+ * <p>
  * Usage:
  * <pre>
  *   List&lt;User&gt; users = InMemoryCache.getOrLoad("users:all", 120,
  *       () -&gt; serviceUser.fetchFromSource());
  *
+ *   InMemoryCache.getOrLoadAsync("users:all", 120, serviceUser::fetchFromSource)
+ *       .thenAccept(this::render);
+ *
+ *   // loader is itself non-blocking — no pool thread is parked on the request
+ *   InMemoryCache.getOrLoadFuture("users:all", 0, 120, () -&gt; ApiClient.getListAsync("/users", decoder));
+ *
+ *   InMemoryCache.getOrLoad("room_members:room:42", 30, List.of("room:42"), loader);
+ *
+ *   // fresh for 30 s, then served stale + refreshed in background, hard limit 10 min
+ *   List&lt;Post&gt; posts = InMemoryCache.getOrLoadStale("posts:all", 30, 600, loader);
+ *
  *   InMemoryCache.evict("users:all");
- *   InMemoryCache.evictByPrefix("users:");
+ *   InMemoryCache.invalidateTag("room:42");   // everything cached about room 42
+ *   InMemoryCache.evictByPrefix("users:");   // whole namespace, via the index
+ *
+ *   System.out.println(InMemoryCache.stats());
  * </pre>
  */
 public final class InMemoryCache {
 
+    private static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+    private static final int SWEEP_INTERVAL_SECS = 30;
+
     private static final Map<String, CacheEntry<?>> cache = new ConcurrentHashMap<>();
+    /** Loads currently running, keyed like {@link #cache}; waiters join the leader's future. */
+    private static final Map<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    /** Secondary index: namespace or tag → keys. Maintained under {@link #policyLock}. */
+    private static final Map<String, Set<String>> tagIndex = new HashMap<>();
+    /**
+     * Generation of each key with a load in flight. Invalidations bump it; a load
+     * whose generation moved hands its value to the callers but does not cache it,
+     * since it may have been read before the write that caused the invalidation.
+     * Guarded by {@link #policyLock}.
+     */
+    private static final Map<String, Generation> loading = new HashMap<>();
+
+    /** Weigh by entry count ({@code cache.max_entries}) or by estimated bytes. */
+    private static final boolean weighByCount;
+    private static final TinyLfuPolicy policy;
+    /** Guards {@link #policy} and every structural change to {@link #cache}. */
+    private static final ReentrantLock policyLock = new ReentrantLock();
+
+    // ── statistics ──
+    private static final LongAdder hits = new LongAdder();
+    private static final LongAdder misses = new LongAdder();
+    private static final LongAdder loadSuccesses = new LongAdder();
+    private static final LongAdder loadFailures = new LongAdder();
+    private static final LongAdder totalLoadNanos = new LongAdder();
+    private static final LongAdder evictions = new LongAdder();
+    private static final LongAdder expirations = new LongAdder();
+    private static final LongAdder backgroundRefreshes = new LongAdder();
+
+    static {
+        long maxEntries = AppConfig.getLong("cache.max_entries", 0);
+        weighByCount = maxEntries > 0;
+        policy = new TinyLfuPolicy(weighByCount
+                ? maxEntries
+                : AppConfig.getLong("cache.max_bytes", DEFAULT_MAX_BYTES));
+        AppThreadPool.scheduleAtFixedRate(InMemoryCache::sweepExpired,
+                SWEEP_INTERVAL_SECS, SWEEP_INTERVAL_SECS, TimeUnit.SECONDS);
+    }
 
     private InMemoryCache() { /* utility */ }
 
@@ -33,70 +115,576 @@ public final class InMemoryCache {
     /**
      * Return cached value if present and not expired, otherwise call
      * the loader, cache the result, and return it.
+     * <p>
+     * Concurrent misses on the same key are single-flighted: one caller
+     * runs the loader, the others wait for its result.
      *
      * @param key      cache key
      * @param ttlSecs  time-to-live in seconds (0 = no expiry)
      * @param loader   supplier that fetches the data (only called on miss)
      */
-    @SuppressWarnings("unchecked")
     public static <T> T getOrLoad(String key, int ttlSecs, Supplier<T> loader) {
-        CacheEntry<?> entry = cache.get(key);
-        if (entry != null && !entry.isExpired()) {
-            return (T) entry.value;
-        }
-        T value = loader.get();
-        // Cache even null results to prevent repeated failing API calls
-        cache.put(key, new CacheEntry<>(value, ttlSecs));
-        return value;
+        return getOrLoadChecked(key, ttlSecs, List.of(), loader::get);
+    }
+
+    /** {@link #getOrLoad} that also registers the entry under the given tags. */
+    public static <T> T getOrLoad(String key, int ttlSecs, Collection<String> tags, Supplier<T> loader) {
+        return getOrLoadChecked(key, ttlSecs, tags, loader::get);
     }
 
     /**
      * Same as {@link #getOrLoad} but accepts a {@link CheckedSupplier}
-     * that may throw (e.g. SQLException).
+     * that may throw (e.g. SQLException). If the shared load fails, every
+     * waiting caller sees the same exception.
      */
-    @SuppressWarnings("unchecked")
     public static <T, E extends Exception> T getOrLoadChecked(
             String key, int ttlSecs, CheckedSupplier<T, E> loader) throws E {
-        CacheEntry<?> entry = cache.get(key);
-        if (entry != null && !entry.isExpired()) {
+        return getOrLoadChecked(key, ttlSecs, List.of(), loader);
+    }
+
+    /** {@link #getOrLoadChecked} that also registers the entry under the given tags. */
+    @SuppressWarnings("unchecked")
+    public static <T, E extends Exception> T getOrLoadChecked(
+            String key, int ttlSecs, Collection<String> tags, CheckedSupplier<T, E> loader) throws E {
+        CacheEntry<?> entry = lookup(key);
+        if (entry != null) {
+            if (entry.needsRefresh()) refreshInBackground(key, entry, loader);
+            return (T) entry.value;
+        }
+        CompletableFuture<Object> mine = new CompletableFuture<>();
+        CompletableFuture<Object> leader = inFlight.putIfAbsent(key, mine);
+        if (leader != null) {
+            return (T) InMemoryCache.<E>await(leader);
+        }
+        return load(key, 0, ttlSecs, tags, loader, mine);
+    }
+
+    /**
+     * Stale-while-revalidate lookup. Within {@code softTtlSecs} the entry is
+     * fresh; between the soft and hard TTL the cached (stale) value is returned
+     * immediately and one background refresh is started on {@link AppThreadPool};
+     * past {@code hardTtlSecs} (or on a cold miss) the caller blocks like
+     * {@link #getOrLoadChecked}. A failed background refresh keeps the stale
+     * value until the hard TTL.
+     *
+     * @param softTtlSecs  age after which a hit triggers a background refresh
+     * @param hardTtlSecs  age after which the value is no longer served (0 = never)
+     */
+    @SuppressWarnings("unchecked")
+    public static <T, E extends Exception> T getOrLoadStale(
+            String key, int softTtlSecs, int hardTtlSecs, CheckedSupplier<T, E> loader) throws E {
+        CacheEntry<?> entry = lookup(key);
+        if (entry != null) {
+            if (entry.needsRefresh()) refreshInBackground(key, entry, loader);
             return (T) entry.value;
         }
-        T value = loader.get();
-        // Cache even null results to prevent repeated failing API calls
-        cache.put(key, new CacheEntry<>(value, ttlSecs));
-        return value;
+        CompletableFuture<Object> mine = new CompletableFuture<>();
+        CompletableFuture<Object> leader = inFlight.putIfAbsent(key, mine);
+        if (leader != null) {
+            return (T) InMemoryCache.<E>await(leader);
+        }
+        return load(key, softTtlSecs, hardTtlSecs, List.of(), loader, mine);
+    }
+
+    /**
+     * Non-blocking variant of {@link #getOrLoadChecked}: the loader runs on
+     * {@link AppThreadPool}, and callers that miss while a load is in flight
+     * (sync or async) share its result instead of starting another fetch.
+     */
+    public static <T> CompletableFuture<T> getOrLoadAsync(
+            String key, int ttlSecs, CheckedSupplier<T, ? extends Exception> loader) {
+        return getOrLoadAsync(key, ttlSecs, List.of(), loader);
+    }
+
+    /** {@link #getOrLoadAsync} that also registers the entry under the given tags. */
+    public static <T> CompletableFuture<T> getOrLoadAsync(
+            String key, int ttlSecs, Collection<String> tags, CheckedSupplier<T, ? extends Exception> loader) {
+        return loadAsync(key, 0, ttlSecs, tags, loader);
+    }
+
+    /** Non-blocking variant of {@link #getOrLoadStale}, with the same soft/hard TTL semantics. */
+    public static <T> CompletableFuture<T> getOrLoadStaleAsync(
+            String key, int softTtlSecs, int hardTtlSecs, CheckedSupplier<T, ? extends Exception> loader) {
+        return loadAsync(key, softTtlSecs, hardTtlSecs, List.of(), loader);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> CompletableFuture<T> loadAsync(String key, int softTtlSecs, int ttlSecs,
+            Collection<String> tags, CheckedSupplier<T, ? extends Exception> loader) {
+        CacheEntry<?> entry = lookup(key);
+        if (entry != null) {
+            if (entry.needsRefresh()) refreshInBackground(key, entry, loader);
+            return CompletableFuture.completedFuture((T) entry.value);
+        }
+        CompletableFuture<Object> mine = new CompletableFuture<>();
+        CompletableFuture<Object> leader = inFlight.putIfAbsent(key, mine);
+        if (leader != null) {
+            return leader.thenApply(v -> (T) v);
+        }
+        AppThreadPool.io(() -> {
+            try {
+                load(key, softTtlSecs, ttlSecs, tags, loader, mine);
+            } catch (Exception ignored) {
+                // already delivered through the future
+            }
+        });
+        return mine.thenApply(v -> (T) v);
+    }
+
+    /**
+     * Variant of {@link #getOrLoadStaleAsync} for loaders that are already
+     * non-blocking (e.g. {@link ApiClient#getListAsync}): the loader is called
+     * on the caller's thread and no pool thread waits while the request is in
+     * flight. Single-flight and stale-while-revalidate work as for the other
+     * variants; pass {@code softTtlSecs = 0} for a plain TTL.
+     */
+    public static <T> CompletableFuture<T> getOrLoadFuture(String key, int softTtlSecs, int hardTtlSecs,
+            Supplier<CompletableFuture<T>> loader) {
+        return getOrLoadFuture(key, softTtlSecs, hardTtlSecs, List.of(), loader);
+    }
+
+    /** {@link #getOrLoadFuture} that also registers the entry under the given tags. */
+    @SuppressWarnings("unchecked")
+    public static <T> CompletableFuture<T> getOrLoadFuture(String key, int softTtlSecs, int hardTtlSecs,
+            Collection<String> tags, Supplier<CompletableFuture<T>> loader) {
+        CacheEntry<?> entry = lookup(key);
+        if (entry != null) {
+            if (entry.needsRefresh()) {
+                CompletableFuture<Object> mine = new CompletableFuture<>();
+                if (inFlight.putIfAbsent(key, mine) == null) {
+                    backgroundRefreshes.increment();
+                    loadFuture(key, entry.softTtlSecs, entry.ttlSecs, List.of(entry.tags), loader, mine)
+                            .exceptionally(e -> {
+                                System.err.println("⚠ InMemoryCache: background refresh of " + key
+                                        + " failed — " + e.getMessage());
+                                return null;
+                            });
+                }
+            }
+            return CompletableFuture.completedFuture((T) entry.value);
+        }
+        CompletableFuture<Object> mine = new CompletableFuture<>();
+        CompletableFuture<Object> leader = inFlight.putIfAbsent(key, mine);
+        if (leader != null) {
+            return leader.thenApply(v -> (T) v);
+        }
+        return loadFuture(key, softTtlSecs, hardTtlSecs, tags, loader, mine).thenApply(v -> (T) v);
     }
 
     /** Evict a single key. */
     public static void evict(String key) {
-        cache.remove(key);
+        policyLock.lock();
+        try {
+            Generation g = loading.get(key);
+            if (g != null) g.value++;
+            removeKey(key);
+        } finally {
+            policyLock.unlock();
+        }
+    }
+
+    /**
+     * Evict every key registered under any of the given tags or namespaces.
+     * Cost is proportional to the number of matching keys, not the cache size.
+     */
+    public static void invalidateTags(String... tags) {
+        policyLock.lock();
+        try {
+            for (String tag : tags) {
+                for (Map.Entry<String, Generation> e : loading.entrySet()) {
+                    if (namespaceOf(e.getKey()).equals(tag) || e.getValue().tags.contains(tag)) e.getValue().value++;
+                }
+                Set<String> keys = tagIndex.remove(tag);
+                if (keys == null) continue;
+                for (String k : keys.toArray(new String[0])) removeKey(k);
+            }
+        } finally {
+            policyLock.unlock();
+        }
+    }
+
+    /** Evict every key registered under {@code tag} (or the namespace of that name). */
+    public static void invalidateTag(String tag) {
+        invalidateTags(tag);
     }
 
-    /** Evict all keys that start with the given prefix. */
+    /**
+     * Evict all keys that start with the given prefix.
+     * A whole-namespace prefix such as {@code "users:"} is served from the
+     * namespace index; any other prefix falls back to a key scan.
+     */
     public static void evictByPrefix(String prefix) {
-        cache.keySet().removeIf(k -> k.startsWith(prefix));
+        int colon = prefix.indexOf(':');
+        if (colon == prefix.length() - 1) {
+            invalidateTag(prefix.substring(0, colon));
+            return;
+        }
+        policyLock.lock();
+        try {
+            for (Map.Entry<String, Generation> e : loading.entrySet()) {
+                if (e.getKey().startsWith(prefix)) e.getValue().value++;
+            }
+            for (String k : cache.keySet().toArray(new String[0])) {
+                if (k.startsWith(prefix)) removeKey(k);
+            }
+        } finally {
+            policyLock.unlock();
+        }
     }
 
     /** Clear all cached data. */
     public static void clear() {
-        cache.clear();
+        policyLock.lock();
+        try {
+            for (Generation g : loading.values()) g.value++;
+            cache.clear();
+            policy.clear();
+            tagIndex.clear();
+        } finally {
+            policyLock.unlock();
+        }
     }
 
-    /** Number of entries currently in cache (including expired). */
+    /** Number of live (non-expired) entries currently in cache. */
     public static int size() {
-        return cache.size();
+        int live = 0;
+        for (CacheEntry<?> e : cache.values()) {
+            if (!e.isExpired()) live++;
+        }
+        return live;
+    }
+
+    /** Current total weight (estimated bytes, or entry count in count mode). */
+    public static long weightedSize() {
+        policyLock.lock();
+        try {
+            return policy.weightedSize();
+        } finally {
+            policyLock.unlock();
+        }
+    }
+
+    // ═══════════════════════════════════════════
+    //  SNAPSHOT HOOKS (used by SnapshotCache)
+    // ═══════════════════════════════════════════
+
+    /** A live entry as seen by the disk snapshot tier. */
+    record Exported(String key, Object value, int softTtlSecs, int ttlSecs, String[] tags) { }
+
+    /** Live entries of one namespace, read through the namespace index. */
+    static List<Exported> export(String namespace) {
+        List<Exported> out = new ArrayList<>();
+        policyLock.lock();
+        try {
+            Set<String> keys = tagIndex.get(namespace);
+            if (keys == null) return out;
+            for (String k : keys) {
+                CacheEntry<?> e = cache.get(k);
+                if (e == null || e.isExpired()) continue;
+                out.add(new Exported(k, e.value, e.softTtlSecs, e.ttlSecs, e.tags));
+            }
+        } finally {
+            policyLock.unlock();
+        }
+        return out;
+    }
+
+    /**
+     * Seed an entry restored from disk. It is served immediately but already
+     * due for refresh, so the first read revalidates it in the background and
+     * the reloaded entry gets the original TTLs back. Never replaces a live entry.
+     */
+    static void prime(Exported e) {
+        CacheEntry<?> current = cache.get(e.key());
+        if (current != null && !current.isExpired()) return;
+        store(e.key(), new CacheEntry<>(e.value(), e.softTtlSecs(), e.ttlSecs(),
+                List.of(e.tags()), true));
+    }
+
+    // ═══════════════════════════════════════════
+    //  STATISTICS
+    // ═══════════════════════════════════════════
+
+    /** Point-in-time snapshot of cache counters, for sizing {@code cache.max_*} in production. */
+    public record Stats(long hits, long misses, long loadSuccesses, long loadFailures,
+                        long totalLoadNanos, long evictions, long expirations, long backgroundRefreshes,
+                        int size, long weightedSize, long maxWeight, boolean weighByCount) {
+
+        public double hitRate() {
+            long requests = hits + misses;
+            return requests == 0 ? 1.0 : (double) hits / requests;
+        }
+
+        public double averageLoadMillis() {
+            long loads = loadSuccesses + loadFailures;
+            return loads == 0 ? 0 : totalLoadNanos / 1_000_000.0 / loads;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("InMemoryCache[size=%d, weight=%d/%d%s, hitRate=%.1f%%, loads=%d (%d failed, %d background, avg %.1f ms), evictions=%d, expired=%d]",
+                    size, weightedSize, maxWeight, weighByCount ? " entries" : " B",
+                    hitRate() * 100, loadSuccesses + loadFailures, loadFailures, backgroundRefreshes,
+                    averageLoadMillis(), evictions, expirations);
+        }
+    }
+
+    public static Stats stats() {
+        return new Stats(hits.sum(), misses.sum(), loadSuccesses.sum(), loadFailures.sum(),
+                totalLoadNanos.sum(), evictions.sum(), expirations.sum(), backgroundRefreshes.sum(),
+                size(), weightedSize(), policy.maxWeight(), weighByCount);
     }
 
     // ═══════════════════════════════════════════
     //  INTERNALS
     // ═══════════════════════════════════════════
 
+    /** Live entry for {@code key}, or null on miss. Records the access for stats and the policy. */
+    private static CacheEntry<?> lookup(String key) {
+        CacheEntry<?> entry = cache.get(key);
+        boolean hit = entry != null && !entry.isExpired();
+        (hit ? hits : misses).increment();
+        // Reads never wait for the policy; under contention the recency update is simply dropped
+        if (policyLock.tryLock()) {
+            try {
+                policy.onAccess(key);
+            } finally {
+                policyLock.unlock();
+            }
+        }
+        return hit ? entry : null;
+    }
+
+    /** Run the loader as the in-flight leader for {@code key} and publish the result. */
+    @SuppressWarnings("unchecked")
+    private static <T, E extends Exception> T load(String key, int softTtlSecs, int ttlSecs, Collection<String> tags,
+            CheckedSupplier<T, E> loader, CompletableFuture<Object> mine) throws E {
+        Generation generation = beginLoad(key, tags);
+        try {
+            // Another leader may have filled the entry between our miss and claiming the key
+            CacheEntry<?> entry = cache.get(key);
+            if (entry != null && !entry.isExpired() && !entry.needsRefresh()) {
+                mine.complete(entry.value);
+                return (T) entry.value;
+            }
+            long start = System.nanoTime();
+            T value;
+            try {
+                value = loader.get();
+            } catch (Throwable t) {
+                loadFailures.increment();
+                totalLoadNanos.add(System.nanoTime() - start);
+                throw t;
+            }
+            loadSuccesses.increment();
+            totalLoadNanos.add(System.nanoTime() - start);
+            // Cache even null results to prevent repeated failing API calls
+            storeLoaded(key, new CacheEntry<>(value, softTtlSecs, ttlSecs, tags), generation);
+            mine.complete(value);
+            return value;
+        } catch (Throwable t) {
+            mine.completeExceptionally(t);
+            throw t;
+        } finally {
+            endLoad(key, generation);
+            inFlight.remove(key, mine);
+        }
+    }
+
+    /** Non-blocking {@link #load}: publishes the result when the loader's future completes. */
+    private static <T> CompletableFuture<Object> loadFuture(String key, int softTtlSecs, int ttlSecs,
+            Collection<String> tags, Supplier<CompletableFuture<T>> loader, CompletableFuture<Object> mine) {
+        CacheEntry<?> entry = cache.get(key);
+        if (entry != null && !entry.isExpired() && !entry.needsRefresh()) {
+            inFlight.remove(key, mine);
+            mine.complete(entry.value);
+            return mine;
+        }
+        Generation generation = beginLoad(key, tags);
+        long start = System.nanoTime();
+        CompletableFuture<T> pending;
+        try {
+            pending = loader.get();
+        } catch (Throwable t) {
+            pending = CompletableFuture.failedFuture(t);
+        }
+        pending.whenComplete((value, err) -> {
+            totalLoadNanos.add(System.nanoTime() - start);
+            if (err != null) {
+                loadFailures.increment();
+                endLoad(key, generation);
+                inFlight.remove(key, mine);
+                mine.completeExceptionally(err instanceof CompletionException && err.getCause() != null
+                        ? err.getCause() : err);
+                return;
+            }
+            loadSuccesses.increment();
+            storeLoaded(key, new CacheEntry<>(value, softTtlSecs, ttlSecs, tags), generation);
+            endLoad(key, generation);
+            inFlight.remove(key, mine);
+            mine.complete(value);
+        });
+        return mine;
+    }
+
+    /**
+     * Start one background reload for a stale entry (keeping its TTLs and tags)
+     * unless a load for the key is already running.
+     */
+    private static void refreshInBackground(
+            String key, CacheEntry<?> stale, CheckedSupplier<?, ? extends Exception> loader) {
+        CompletableFuture<Object> mine = new CompletableFuture<>();
+        if (inFlight.putIfAbsent(key, mine) != null) return;
+        backgroundRefreshes.increment();
+        AppThreadPool.io(() -> {
+            try {
+                load(key, stale.softTtlSecs, stale.ttlSecs, List.of(stale.tags), loader, mine);
+            } catch (Exception e) {
+                System.err.println("⚠ InMemoryCache: background refresh of " + key + " failed — " + e.getMessage());
+            }
+        });
+    }
+
+    /** Generation of one in-flight load, with the tags its entry will be stored under. */
+    private static final class Generation {
+        final Collection<String> tags;
+        int value;
+
+        Generation(Collection<String> tags) {
+            this.tags = tags;
+        }
+    }
+
+    /** Register the load the caller leads for {@code key} (it holds the {@link #inFlight} slot). */
+    private static Generation beginLoad(String key, Collection<String> tags) {
+        Generation g = new Generation(tags);
+        policyLock.lock();
+        try {
+            loading.put(key, g);
+        } finally {
+            policyLock.unlock();
+        }
+        return g;
+    }
+
+    /** Unregister a load; called before its {@link #inFlight} slot is released. */
+    private static void endLoad(String key, Generation g) {
+        policyLock.lock();
+        try {
+            loading.remove(key, g);
+        } finally {
+            policyLock.unlock();
+        }
+    }
+
+    /** {@link #store} a loaded value unless the key was invalidated while it loaded. */
+    private static void storeLoaded(String key, CacheEntry<?> entry, Generation g) {
+        policyLock.lock();
+        try {
+            if (g.value == 0) store(key, entry);
+        } finally {
+            policyLock.unlock();
+        }
+    }
+
+    /** Insert an entry and evict whatever the policy rejects to stay within bounds. */
+    private static void store(String key, CacheEntry<?> entry) {
+        long weight = weighByCount ? 1 : CacheWeigher.weigh(entry.value);
+        policyLock.lock();
+        try {
+            CacheEntry<?> old = cache.put(key, entry);
+            if (old != null) unindex(key, old);
+            index(key, entry);
+            for (String victim : policy.onWrite(key, weight)) {
+                removeKey(victim);
+                evictions.increment();
+            }
+        } finally {
+            policyLock.unlock();
+        }
+    }
+
+    /** Remove a key from the map, the policy and the tag index. Caller holds {@link #policyLock}. */
+    private static void removeKey(String key) {
+        CacheEntry<?> old = cache.remove(key);
+        if (old == null) return;
+        policy.remove(key);
+        unindex(key, old);
+    }
+
+    private static void index(String key, CacheEntry<?> entry) {
+        tagIndex.computeIfAbsent(namespaceOf(key), t -> new HashSet<>()).add(key);
+        for (String tag : entry.tags) {
+            tagIndex.computeIfAbsent(tag, t -> new HashSet<>()).add(key);
+        }
+    }
+
+    private static void unindex(String key, CacheEntry<?> entry) {
+        unindexTag(namespaceOf(key), key);
+        for (String tag : entry.tags) unindexTag(tag, key);
+    }
+
+    private static void unindexTag(String tag, String key) {
+        Set<String> keys = tagIndex.get(tag);
+        if (keys != null && keys.remove(key) && keys.isEmpty()) tagIndex.remove(tag);
+    }
+
+    /** {@code "messages:room:42"} → {@code "messages"}; keys without a colon are their own namespace. */
+    private static String namespaceOf(String key) {
+        int colon = key.indexOf(':');
+        return colon > 0 ? key.substring(0, colon) : key;
+    }
+
+    /** Scheduled: drop expired entries so they stop holding memory and weight. */
+    private static void sweepExpired() {
+        policyLock.lock();
+        try {
+            for (Map.Entry<String, CacheEntry<?>> e : cache.entrySet()) {
+                if (e.getValue().isExpired()) {
+                    removeKey(e.getKey());
+                    expirations.increment();
+                }
+            }
+        } finally {
+            policyLock.unlock();
+        }
+    }
+
+    /** Wait for a shared load, rethrowing the leader's failure unwrapped. */
+    @SuppressWarnings("unchecked")
+    private static <E extends Exception> Object await(CompletableFuture<Object> future) throws E {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            if (cause instanceof RuntimeException re) throw re;
+            if (cause instanceof Error err) throw err;
+            throw (E) cause;
+        }
+    }
+
     private static class CacheEntry<T> {
         final T value;
         final long expiresAt; // System.currentTimeMillis epoch; 0 = never
+        final long refreshAt; // soft TTL for stale-while-revalidate; 0 = none
+        final int softTtlSecs;
+        final int ttlSecs;
+        final String[] tags;
 
-        CacheEntry(T value, int ttlSecs) {
+        CacheEntry(T value, int softTtlSecs, int ttlSecs, Collection<String> tags) {
+            this(value, softTtlSecs, ttlSecs, tags, false);
+        }
+
+        /** @param primed restored from a snapshot: due for refresh right away */
+        CacheEntry(T value, int softTtlSecs, int ttlSecs, Collection<String> tags, boolean primed) {
             this.value = value;
+            this.softTtlSecs = softTtlSecs;
+            this.ttlSecs = ttlSecs;
+            this.tags = tags.toArray(new String[0]);
+            this.refreshAt = primed ? System.currentTimeMillis() - 1
+                    : softTtlSecs > 0
+                    ? System.currentTimeMillis() + (softTtlSecs * 1000L)
+                    : 0;
             this.expiresAt = ttlSecs > 0
                     ? System.currentTimeMillis() + (ttlSecs * 1000L)
                     : 0;
@@ -105,6 +693,10 @@ public final class InMemoryCache {
         boolean isExpired() {
             return expiresAt > 0 && System.currentTimeMillis() > expiresAt;
         }
+
+        boolean needsRefresh() {
+            return refreshAt > 0 && System.currentTimeMillis() > refreshAt;
+        }
     }
 
     /** Supplier that can throw a checked exception. */
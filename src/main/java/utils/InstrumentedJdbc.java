@@ -0,0 +1,163 @@
+package utils;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+/**
+ * Dynamic-proxy wrappers that feed {@link DbMetrics}.
+ * <p>
+ * {@link #wrap(Connection)} returns a connection whose statements time every
+ * {@code execute*} call and count the rows read from their result sets.
+ * Everything else is delegated untouched, so callers keep using plain JDBC
+ * with try-with-resources.
+ */
+final class InstrumentedJdbc {
+
+    private InstrumentedJdbc() { /* utility */ }
+
+    static Connection wrap(Connection conn) {
+        return proxy(Connection.class, new ConnectionHandler(conn));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(InstrumentedJdbc.class.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    // ═══════════════════════════════════════════
+    //  CONNECTION
+    // ═══════════════════════════════════════════
+
+    private static final class ConnectionHandler implements InvocationHandler {
+        private final Connection target;
+
+        ConnectionHandler(Connection target) {
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object result = InstrumentedJdbc.invoke(target, method, args);
+            switch (method.getName()) {
+                case "prepareStatement":
+                    return proxy(PreparedStatement.class, new StatementHandler((Statement) result, (String) args[0]));
+                case "prepareCall":
+                    return proxy(CallableStatement.class, new StatementHandler((Statement) result, (String) args[0]));
+                case "createStatement":
+                    return proxy(Statement.class, new StatementHandler((Statement) result, null));
+                default:
+                    return result;
+            }
+        }
+    }
+
+    // ═══════════════════════════════════════════
+    //  STATEMENT
+    // ═══════════════════════════════════════════
+
+    private static final class StatementHandler implements InvocationHandler {
+        private final Statement target;
+        /** SQL given at prepare time; null for plain statements (taken from execute args). */
+        private final String preparedSql;
+
+        StatementHandler(Statement target, String preparedSql) {
+            this.target = target;
+            this.preparedSql = preparedSql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (!name.startsWith("execute")) {
+                return InstrumentedJdbc.invoke(target, method, args);
+            }
+            String sql = args != null && args.length > 0 && args[0] instanceof String s ? s : preparedSql;
+            long start = System.nanoTime();
+            Object result;
+            try {
+                result = InstrumentedJdbc.invoke(target, method, args);
+            } catch (Throwable t) {
+                DbMetrics.recordStatement(sql, System.nanoTime() - start, 0, true);
+                throw t;
+            }
+            long elapsed = System.nanoTime() - start;
+            if (result instanceof ResultSet rs) {
+                DbMetrics.recordStatement(sql, elapsed, 0, false);
+                return proxy(ResultSet.class, new ResultSetHandler(rs, sql));
+            }
+            DbMetrics.recordStatement(sql, elapsed, affectedRows(result), false);
+            return result;
+        }
+
+        private static long affectedRows(Object result) {
+            if (result instanceof Integer n) return Math.max(0, n);
+            if (result instanceof Long n) return Math.max(0, n);
+            if (result instanceof int[] counts) {
+                long sum = 0;
+                for (int n : counts) if (n > 0) sum += n;
+                return sum;
+            }
+            if (result instanceof long[] counts) {
+                long sum = 0;
+                for (long n : counts) if (n > 0) sum += n;
+                return sum;
+            }
+            return 0; // execute(): boolean
+        }
+    }
+
+    // ═══════════════════════════════════════════
+    //  RESULT SET
+    // ═══════════════════════════════════════════
+
+    /** Counts rows as they are read and reports them once, on close or exhaustion. */
+    private static final class ResultSetHandler implements InvocationHandler {
+        private final ResultSet target;
+        private final String sql;
+        private long rows;
+        private boolean reported;
+
+        ResultSetHandler(ResultSet target, String sql) {
+            this.target = target;
+            this.sql = sql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object result = InstrumentedJdbc.invoke(target, method, args);
+            switch (method.getName()) {
+                case "next":
+                    if (Boolean.TRUE.equals(result)) rows++;
+                    else report();
+                    break;
+                case "close":
+                    report();
+                    break;
+                default:
+                    break;
+            }
+            return result;
+        }
+
+        private void report() {
+            if (reported) return;
+            reported = true;
+            DbMetrics.recordRows(sql, rows);
+        }
+    }
+}
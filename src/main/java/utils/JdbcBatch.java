@@ -0,0 +1,96 @@
+package utils;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+/**
+ * Runs one parameterised statement for many rows as JDBC batches on a
+ * single pooled connection, inside one transaction.
+ * <p>
+ * The pool sets {@code rewriteBatchedStatements=true}, so MySQL receives
+ * multi-row {@code INSERT … VALUES (…),(…)} statements instead of one
+ * round-trip per row. Either every row is written or none is.
+ * <p>
+ * Usage:
+ * <pre>
+ *   JdbcBatch.insert("INSERT INTO attendance (user_id, date) VALUES (?, ?)", rows,
+ *       (ps, a) -&gt; { ps.setInt(1, a.getUserId()); ps.setDate(2, a.getDate()); },
+ *       Attendance::setId);
+ *
+ *   JdbcBatch.execute("DELETE FROM attendance WHERE id=?", ids, (ps, id) -&gt; ps.setInt(1, id));
+ * </pre>
+ */
+public final class JdbcBatch {
+
+    /** Rows sent per executeBatch() call; keeps packets under max_allowed_packet. */
+    public static final int CHUNK_SIZE = 500;
+
+    private JdbcBatch() { /* utility */ }
+
+    /** Binds one row's parameters onto the statement. */
+    @FunctionalInterface
+    public interface Binder<T> {
+        void bind(PreparedStatement ps, T row) throws SQLException;
+    }
+
+    /** Receives the generated key of an inserted row. */
+    @FunctionalInterface
+    public interface KeySink<T> {
+        void accept(T row, int id);
+    }
+
+    /** Execute {@code sql} once per row. Returns the total number of affected rows. */
+    public static <T> int execute(String sql, List<T> rows, Binder<T> binder) throws SQLException {
+        return run(sql, rows, binder, null);
+    }
+
+    /** Batch insert; generated ids are handed to {@code keys} in row order. */
+    public static <T> int insert(String sql, List<T> rows, Binder<T> binder, KeySink<T> keys) throws SQLException {
+        return run(sql, rows, binder, keys);
+    }
+
+    private static <T> int run(String sql, List<T> rows, Binder<T> binder, KeySink<T> keys) throws SQLException {
+        if (rows.isEmpty()) return 0;
+        Connection conn = MyDatabase.getInstance().getConnection();
+        if (conn == null) throw new SQLException("No database connection available");
+        try (conn) {
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try (PreparedStatement ps = keys != null
+                    ? conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)
+                    : conn.prepareStatement(sql)) {
+                int affected = 0;
+                for (int start = 0; start < rows.size(); start += CHUNK_SIZE) {
+                    List<T> chunk = rows.subList(start, Math.min(rows.size(), start + CHUNK_SIZE));
+                    for (T row : chunk) {
+                        binder.bind(ps, row);
+                        ps.addBatch();
+                    }
+                    for (int n : ps.executeBatch()) {
+                        if (n > 0) affected += n;
+                        else if (n == Statement.SUCCESS_NO_INFO) affected++;
+                    }
+                    if (keys != null) {
+                        try (ResultSet rs = ps.getGeneratedKeys()) {
+                            for (T row : chunk) {
+                                if (!rs.next()) break;
+                                keys.accept(row, rs.getInt(1));
+                            }
+                        }
+                    }
+                }
+                conn.commit();
+                return affected;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+        }
+    }
+}
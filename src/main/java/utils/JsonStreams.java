@@ -0,0 +1,122 @@
+package utils;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Helpers for streaming entity decoders used with {@link ApiClient#getList}.
+ * <p>
+ * A decoder reads one JSON object field by field straight into an entity —
+ * no {@code JsonElement} tree and no intermediate String of the whole body.
+ * The {@code next*} helpers accept JSON {@code null} (returning the given
+ * default) and the loose typing the backend sometimes produces (numbers as
+ * strings, booleans as 0/1).
+ * <p>
+ * Usage:
+ * <pre>
+ *   static Message readMessage(JsonReader in) throws IOException {
+ *       Message m = new Message();
+ *       in.beginObject();
+ *       while (in.hasNext()) {
+ *           switch (in.nextName()) {
+ *               case "id": m.setId(JsonStreams.nextInt(in, 0)); break;
+ *               case "content": m.setContent(JsonStreams.nextString(in)); break;
+ *               default: in.skipValue();
+ *           }
+ *       }
+ *       in.endObject();
+ *       return m;
+ *   }
+ * </pre>
+ */
+public final class JsonStreams {
+
+    private JsonStreams() { /* utility */ }
+
+    /** Reads one value (normally an object) into an entity. */
+    @FunctionalInterface
+    public interface Decoder<T> {
+        T read(JsonReader in) throws IOException;
+    }
+
+    /** Decode a JSON array with {@code decoder}; any other value is skipped and yields an empty list. */
+    public static <T> List<T> readList(JsonReader in, Decoder<T> decoder) throws IOException {
+        List<T> list = new ArrayList<>();
+        if (in.peek() != JsonToken.BEGIN_ARRAY) {
+            in.skipValue();
+            return list;
+        }
+        in.beginArray();
+        while (in.hasNext()) {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                continue;
+            }
+            list.add(decoder.read(in));
+        }
+        in.endArray();
+        return list;
+    }
+
+    /** String value, or null. Numbers and booleans are returned as text. */
+    public static String nextString(JsonReader in) throws IOException {
+        switch (in.peek()) {
+            case NULL:
+                in.nextNull();
+                return null;
+            case BOOLEAN:
+                return String.valueOf(in.nextBoolean());
+            case BEGIN_OBJECT:
+            case BEGIN_ARRAY:
+                in.skipValue();
+                return null;
+            default:
+                return in.nextString();
+        }
+    }
+
+    public static int nextInt(JsonReader in, int fallback) throws IOException {
+        Integer v = nextIntOrNull(in);
+        return v != null ? v : fallback;
+    }
+
+    public static Integer nextIntOrNull(JsonReader in) throws IOException {
+        String s = nextString(in);
+        if (s == null || s.isEmpty()) return null;
+        try {
+            return Integer.parseInt(s);
+        } catch (NumberFormatException e) {
+            return (int) Double.parseDouble(s);
+        }
+    }
+
+    public static double nextDouble(JsonReader in, double fallback) throws IOException {
+        String s = nextString(in);
+        if (s == null || s.isEmpty()) return fallback;
+        return Double.parseDouble(s);
+    }
+
+    /** Accepts true/false, 1/0 and their string forms. */
+    public static boolean nextBoolean(JsonReader in, boolean fallback) throws IOException {
+        String s = nextString(in);
+        if (s == null) return fallback;
+        return "true".equalsIgnoreCase(s) || "1".equals(s);
+    }
+
+    /** {@code "2024-05-01T10:20:30"} or {@code "2024-05-01 10:20:30[.fff]"} as local time; null stays null. */
+    public static Timestamp nextTimestamp(JsonReader in) throws IOException {
+        String s = nextString(in);
+        return s == null ? null : Timestamp.valueOf(s.replace("T", " "));
+    }
+
+    /** {@code "2024-05-01"}; null stays null. */
+    public static java.sql.Date nextDate(JsonReader in) throws IOException {
+        String s = nextString(in);
+        return s == null ? null : java.sql.Date.valueOf(s);
+    }
+}
@@ -0,0 +1,88 @@
+package utils;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free fixed-bucket latency histogram shared by {@link DbMetrics} and
+ * {@link ApiResilience}. Percentiles are the upper bound of the bucket that
+ * holds the quantile, capped at the observed maximum.
+ */
+final class LatencyHistogram {
+
+    /** Upper bounds of the latency buckets in microseconds; the last bucket is open-ended. */
+    private static final long[] BUCKET_BOUNDS_MICROS = {
+            250, 500, 1_000, 2_500, 5_000, 10_000, 25_000, 50_000,
+            100_000, 250_000, 500_000, 1_000_000, 2_500_000, 5_000_000
+    };
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_BOUNDS_MICROS.length + 1);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+    void record(long nanos, boolean failed) {
+        long micros = nanos / 1_000;
+        int i = 0;
+        while (i < BUCKET_BOUNDS_MICROS.length && micros > BUCKET_BOUNDS_MICROS[i]) i++;
+        buckets.incrementAndGet(i);
+        count.increment();
+        totalNanos.add(nanos);
+        maxNanos.accumulate(nanos);
+        if (failed) errors.increment();
+    }
+
+    void clear() {
+        for (int i = 0; i < buckets.length(); i++) buckets.set(i, 0);
+        count.reset();
+        errors.reset();
+        totalNanos.reset();
+        maxNanos.reset();
+    }
+
+    long count() {
+        return count.sum();
+    }
+
+    long errors() {
+        return errors.sum();
+    }
+
+    double totalMillis() {
+        return totalNanos.sum() / 1e6;
+    }
+
+    double maxMillis() {
+        return maxNanos.get() / 1e6;
+    }
+
+    /** p50, p95 and p99 in milliseconds, from one consistent read of the buckets. */
+    double[] percentilesMillis() {
+        long[] counts = new long[buckets.length()];
+        long n = 0;
+        for (int i = 0; i < counts.length; i++) n += counts[i] = buckets.get(i);
+        double max = maxMillis();
+        return new double[]{
+                percentile(counts, n, 0.50, max),
+                percentile(counts, n, 0.95, max),
+                percentile(counts, n, 0.99, max)
+        };
+    }
+
+    private static double percentile(long[] counts, long n, double q, double max) {
+        if (n == 0) return 0;
+        long rank = (long) Math.ceil(q * n);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return i < BUCKET_BOUNDS_MICROS.length
+                        ? Math.min(BUCKET_BOUNDS_MICROS[i] / 1_000.0, max)
+                        : max;
+            }
+        }
+        return max;
+    }
+}
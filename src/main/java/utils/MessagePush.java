@@ -0,0 +1,255 @@
+package utils;
+
+import com.google.gson.JsonObject;
+import entities.ChatRoom;
+import entities.ChatRoomMember;
+import entities.Message;
+import entities.User;
+import services.ServiceChatRoom;
+import services.ServiceChatRoomMember;
+
+import java.sql.Timestamp;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.IntPredicate;
+
+/**
+ * Push delivery of chat messages over the signaling WebSocket.
+ * <p>
+ * After a message is stored, its sender relays it to the other members of
+ * the room as a signaling event, and their clients merge it straight into
+ * {@link RoomMessageStore} — delivery in one socket hop instead of waiting
+ * for the next poll. Polling stays on as a slow consistency sweep for
+ * whatever a push missed (offline recipient, dropped socket).
+ * <pre>
+ *   "message"          {id, room_id, sender_id, sender_name, preview, timestamp[, content]}
+ *   "message-edited"   same fields
+ *   "message-deleted"  {id, room_id}
+ * </pre>
+ * {@code timestamp} is epoch milliseconds. {@code content} is left out above
+ * {@value #MAX_INLINE_CHARS} characters (inline images); receivers then
+ * fetch the row with their next sync.
+ * <p>
+ * Receivers trust neither field blindly: events for rooms the current user
+ * is not a member of are dropped, and so are events whose {@code sender_id}
+ * (or, for edits and deletes, the held message's author) is not the
+ * signaling sender {@code from}. Membership is checked against the user's
+ * room set held here, loaded on {@link AppThreadPool} (receivers run on the
+ * FX thread); a push for a room not in it yet triggers a reload and is left
+ * to the next poll.
+ * <p>
+ * Usage:
+ * <pre>
+ *   MessagePush.publish(MessagePush.MESSAGE, savedMessage);     // sender, after the write
+ *   EventBus.subscribe(EventBus.Topic.ROOM_ACTIVITY, ev -&gt; {
+ *       Message m = MessagePush.apply(ev.message());             // receiver
+ *       ...
+ *   }, onResync);
+ * </pre>
+ */
+public final class MessagePush {
+
+    public static final String MESSAGE = "message";
+    public static final String EDITED = "message-edited";
+    public static final String DELETED = "message-deleted";
+
+    private static final int MAX_INLINE_CHARS = 16 * 1024;
+    private static final int PREVIEW_CHARS = 80;
+
+    private static final ServiceChatRoomMember memberService = new ServiceChatRoomMember();
+    private static final ServiceChatRoom roomService = new ServiceChatRoom();
+    /** Minimum spacing of membership reloads triggered by pushes for unknown rooms. */
+    private static final long ROOMS_RELOAD_MS = 10_000;
+
+    /** Rooms of {@link #roomsUserId}; null until the first load finishes. */
+    private static volatile Set<Integer> myRooms;
+    private static volatile int roomsUserId;
+    private static volatile long roomsLoadedAt;
+    private static final AtomicBoolean roomsLoading = new AtomicBoolean();
+
+    private MessagePush() { /* utility */ }
+
+    // ═══════════════════════════════════════════
+    //  SENDING
+    // ═══════════════════════════════════════════
+
+    /**
+     * Relay a stored message to the room's other members, off the caller's thread.
+     * No-op without a signaling connection or a server-assigned id.
+     */
+    public static void publish(String type, Message message) {
+        SignalingService sig = SignalingService.getInstance();
+        User me = SessionManager.getInstance().getCurrentUser();
+        if (!sig.isConnected() || me == null || message.getId() <= 0) return;
+
+        JsonObject data = new JsonObject();
+        data.addProperty("id", message.getId());
+        data.addProperty("room_id", message.getRoomId());
+        if (!DELETED.equals(type)) {
+            data.addProperty("sender_id", message.getSenderId());
+            data.addProperty("sender_name", me.getFirstName());
+            data.addProperty("preview", preview(message.getContent()));
+            if (message.getContent() != null && message.getContent().length() <= MAX_INLINE_CHARS) {
+                data.addProperty("content", message.getContent());
+            }
+            data.addProperty("timestamp", message.getTimestamp() != null
+                    ? message.getTimestamp().getTime() : System.currentTimeMillis());
+        }
+        AppThreadPool.io(() -> {
+            for (int userId : recipients(message.getRoomId())) {
+                if (userId != me.getId()) sig.send(userId, type, data);
+            }
+        });
+    }
+
+    /** Members of the room; for DM rooms without member rows, the two ids in the room name. */
+    private static Set<Integer> recipients(int roomId) {
+        Set<Integer> ids = new LinkedHashSet<>();
+        try {
+            for (ChatRoomMember m : memberService.getByRoom(roomId)) ids.add(m.getUserId());
+            if (ids.isEmpty()) {
+                for (ChatRoom room : roomService.recuperer()) {
+                    if (room.getId() != roomId || room.getName() == null || !room.getName().startsWith("dm_")) continue;
+                    String[] parts = room.getName().split("_");
+                    if (parts.length >= 3) {
+                        ids.add(Integer.parseInt(parts[1]));
+                        ids.add(Integer.parseInt(parts[2]));
+                    }
+                    break;
+                }
+            }
+        } catch (Exception e) {
+            System.err.println("⚠ MessagePush: recipients of room " + roomId + " unavailable — " + e.getMessage());
+        }
+        return ids;
+    }
+
+    // ═══════════════════════════════════════════
+    //  RECEIVING
+    // ═══════════════════════════════════════════
+
+    /**
+     * Apply a received event to {@link RoomMessageStore}.
+     *
+     * @param event the full signaling message ({@code type}, {@code from}, {@code data})
+     * @return the message (only id and room for deletions; null content when it
+     *         was too large to push and must be synced), or null if the event is
+     *         malformed or fails the sender / membership checks
+     */
+    public static Message apply(JsonObject event) {
+        User me = SessionManager.getInstance().getCurrentUser();
+        if (me == null) return null;
+        return apply(event, roomId -> isMember(roomId, me.getId()));
+    }
+
+    /** {@link #apply(JsonObject)} with the current user's room membership supplied by the caller. */
+    static Message apply(JsonObject event, IntPredicate isMember) {
+        try {
+            String type = event.get("type").getAsString();
+            JsonObject data = event.getAsJsonObject("data");
+            int from = event.has("from") ? event.get("from").getAsInt() : 0;
+            Message m = new Message();
+            m.setId(data.get("id").getAsInt());
+            m.setRoomId(data.get("room_id").getAsInt());
+            if (!isMember.test(m.getRoomId())) {
+                System.err.println("⚠ MessagePush: ignoring " + type + " for room " + m.getRoomId() + " we are not in");
+                return null;
+            }
+            // Only a message's author edits or deletes it
+            int author = RoomMessageStore.senderOf(m.getRoomId(), m.getId());
+            if (author != 0 && author != from) {
+                System.err.println("⚠ MessagePush: ignoring " + type + " of message " + m.getId() + " from user " + from);
+                return null;
+            }
+            if (DELETED.equals(type)) {
+                RoomMessageStore.remove(m.getRoomId(), m.getId());
+                return m;
+            }
+            m.setSenderId(data.get("sender_id").getAsInt());
+            if (m.getSenderId() != from) {
+                System.err.println("⚠ MessagePush: ignoring " + type + " claiming sender " + m.getSenderId() + " from user " + from);
+                return null;
+            }
+            m.setTimestamp(new Timestamp(data.has("timestamp") ? data.get("timestamp").getAsLong()
+                    : System.currentTimeMillis()));
+            if (data.has("content")) {
+                m.setContent(data.get("content").getAsString());
+                RoomMessageStore.apply(m);
+            }
+            return m;
+        } catch (RuntimeException e) {
+            System.err.println("⚠ MessagePush: ignoring malformed event — " + e.getMessage());
+            return null;
+        }
+    }
+
+    /** Non-blocking membership check; an unknown room schedules a reload of the user's rooms. */
+    private static boolean isMember(int roomId, int userId) {
+        Set<Integer> rooms = myRooms;
+        boolean known = rooms != null && roomsUserId == userId;
+        if (known && rooms.contains(roomId)) return true;
+        if ((!known || System.currentTimeMillis() - roomsLoadedAt >= ROOMS_RELOAD_MS)
+                && roomsLoading.compareAndSet(false, true)) {
+            AppThreadPool.io(() -> {
+                try {
+                    myRooms = loadRooms(userId);
+                    roomsUserId = userId;
+                    roomsLoadedAt = System.currentTimeMillis();
+                } finally {
+                    roomsLoading.set(false);
+                }
+            });
+        }
+        return false;
+    }
+
+    /** Rooms with a member row for the user, plus DM rooms ("dm_a_b") naming them. */
+    private static Set<Integer> loadRooms(int userId) {
+        Set<Integer> ids = new HashSet<>();
+        try {
+            ids.addAll(memberService.getRoomIdsForUser(userId));
+            for (ChatRoom room : roomService.recuperer()) {
+                if (room.getName() == null || !room.getName().startsWith("dm_")) continue;
+                String[] parts = room.getName().split("_");
+                if (parts.length >= 3 && (parts[1].equals(String.valueOf(userId)) || parts[2].equals(String.valueOf(userId)))) {
+                    ids.add(room.getId());
+                }
+            }
+        } catch (Exception e) {
+            System.err.println("⚠ MessagePush: rooms of user " + userId + " unavailable — " + e.getMessage());
+        }
+        return ids;
+    }
+
+    /** Forget the user's rooms (e.g. on logout). */
+    public static void clear() {
+        myRooms = null;
+        roomsUserId = 0;
+        roomsLoadedAt = 0;
+    }
+
+    /** Sender's first name carried by an event, or null. */
+    public static String senderName(JsonObject event) {
+        JsonObject data = event.getAsJsonObject("data");
+        return data != null && data.has("sender_name") ? data.get("sender_name").getAsString() : null;
+    }
+
+    /** One-line summary carried by an event, or null. */
+    public static String preview(JsonObject event) {
+        JsonObject data = event.getAsJsonObject("data");
+        return data != null && data.has("preview") ? data.get("preview").getAsString() : null;
+    }
+
+    /** Toast text for a message body: inline images and file references are summarized. */
+    static String preview(String content) {
+        if (content == null) return "";
+        if (content.startsWith("[IMAGE]")) return "\uD83D\uDCF7 Image";
+        if (content.startsWith("[FILE]")) {
+            String[] parts = content.substring("[FILE]".length()).split("\\|");
+            return "\uD83D\uDCC4 " + (parts.length > 1 ? parts[1] : "File");
+        }
+        return content.length() > PREVIEW_CHARS ? content.substring(0, PREVIEW_CHARS) + "…" : content;
+    }
+}
@@ -2,6 +2,7 @@ package utils;
 
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
 
 import java.sql.Connection;
 import java.sql.SQLException;
@@ -18,12 +19,16 @@ import java.sql.SQLException;
  *       ...
  *   }
  * </pre>
+ * Connections are wrapped for {@link DbMetrics} (statement latency, rows,
+ * acquire wait, slow-query log) unless {@code db.instrumentation=false}.
  */
 public class MyDatabase {
 
     private static volatile MyDatabase instance;
     private HikariDataSource dataSource;
     private boolean warnedNoPool = false;
+    /** Wrap connections so {@link DbMetrics} sees every statement ({@code db.instrumentation}, default on). */
+    private final boolean instrumented = !"false".equalsIgnoreCase(AppConfig.get("db.instrumentation", "true").trim());
 
     private MyDatabase() {
         // Skip pool init in API mode — JDBC is not used
@@ -51,12 +56,15 @@ public class MyDatabase {
         cfg.setValidationTimeout(3_000);      // 3 s
         cfg.setLeakDetectionThreshold(60_000);// warn after 60 s
         cfg.setPoolName("SynergyGig-Pool");
+        cfg.setRegisterMbeans(true);          // pool gauges also visible in JConsole; see DbMetrics.pool()
 
         // MySQL performance properties
         cfg.addDataSourceProperty("cachePrepStmts", "true");
         cfg.addDataSourceProperty("prepStmtCacheSize", "250");
         cfg.addDataSourceProperty("prepStmtCacheSqlLimit", "2048");
         cfg.addDataSourceProperty("useServerPrepStmts", "true");
+        // Let JdbcBatch send multi-row INSERTs instead of one round-trip per row
+        cfg.addDataSourceProperty("rewriteBatchedStatements", "true");
 
         try {
             dataSource = new HikariDataSource(cfg);
@@ -92,17 +100,31 @@ public class MyDatabase {
             }
             return null;
         }
+        long start = System.nanoTime();
         try {
-            return dataSource.getConnection();
+            Connection conn = dataSource.getConnection();
+            DbMetrics.recordAcquire(System.nanoTime() - start, true);
+            return instrumented ? InstrumentedJdbc.wrap(conn) : conn;
         } catch (SQLException e) {
+            DbMetrics.recordAcquire(System.nanoTime() - start, false);
             System.err.println("\u274c Pool getConnection failed: " + e.getMessage());
             return null;
         }
     }
 
+    /** Hikari's pool gauges, or null when no pool is running. Read through {@link DbMetrics#pool()}. */
+    HikariPoolMXBean poolMXBean() {
+        return dataSource != null && !dataSource.isClosed() ? dataSource.getHikariPoolMXBean() : null;
+    }
+
+    int maxPoolSize() {
+        return dataSource != null ? dataSource.getMaximumPoolSize() : -1;
+    }
+
     /** Shuts down the pool (call on app exit). */
     public void shutdown() {
         if (dataSource != null && !dataSource.isClosed()) {
+            if (!DbMetrics.statements().isEmpty()) System.out.println(DbMetrics.report());
             dataSource.close();
             System.out.println("HikariCP pool closed.");
         }
@@ -0,0 +1,266 @@
+package utils;
+
+import com.google.gson.JsonObject;
+import javafx.application.Platform;
+import javafx.beans.property.ReadOnlyObjectProperty;
+import javafx.beans.property.SimpleObjectProperty;
+import javafx.event.Event;
+import javafx.event.EventHandler;
+import javafx.scene.Scene;
+import javafx.scene.input.KeyEvent;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.input.ScrollEvent;
+import services.ServiceUser;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Who is online, idle or offline, kept current by small pushed diffs
+ * instead of periodic full user reloads.
+ * <p>
+ * Each client announces its own transitions as {@code "presence"} events
+ * ({@link EventBus.Topic#PRESENCE}) to the users the directory shows online:
+ * <pre>
+ *   "presence"  {status: "online" | "idle" | "offline", last_seen}
+ * </pre>
+ * {@code last_seen} is epoch milliseconds. The local state becomes idle after
+ * {@code presence.idle_ms} (default {@value #DEFAULT_IDLE_MS}) without mouse or
+ * keyboard input in a {@link #trackActivity(Scene) tracked scene}.
+ * <p>
+ * Received states live in a concurrent map with last-seen times, are mirrored
+ * into {@link UserDirectory}, and are exposed per user as an observable
+ * property, so an avatar dot bound to it re-renders on its own without
+ * refreshing the whole list. Users without a pushed state fall back to the
+ * directory's online flag; {@link #syncFromDirectory()} folds a directory
+ * refresh in as diffs too (the path used when signaling is down).
+ * <p>
+ * Usage:
+ * <pre>
+ *   Presence.start(userId);                            // before signaling connects
+ *   Presence.trackActivity(scene);
+ *   dot.fillProperty().bind(Bindings.createObjectBinding(
+ *           () -&gt; color(Presence.statusProperty(id).get()), Presence.statusProperty(id)));
+ *   Presence.stop();                                   // on logout
+ * </pre>
+ */
+public final class Presence {
+
+    private static final long DEFAULT_IDLE_MS = 5 * 60_000;
+
+    public enum Status {
+        ONLINE, IDLE, OFFLINE;
+
+        static Status parse(String value) {
+            if (value == null) return null;
+            switch (value) {
+                case "online": return ONLINE;
+                case "idle":   return IDLE;
+                case "offline": return OFFLINE;
+                default: return null;
+            }
+        }
+
+        String wire() {
+            return name().toLowerCase();
+        }
+    }
+
+    /** A user's state and when it was last known to be active (epoch ms, 0 if never). */
+    public record State(Status status, long lastSeen) { }
+
+    private static final long idleMs = AppConfig.getLong("presence.idle_ms", DEFAULT_IDLE_MS);
+
+    private static final Map<Integer, State> states = new ConcurrentHashMap<>();
+    /** Observable per-user status; only touched on the FX thread. */
+    private static final Map<Integer, SimpleObjectProperty<Status>> properties = new ConcurrentHashMap<>();
+    private static final ServiceUser userService = new ServiceUser();
+
+    private static volatile int me;
+    private static volatile Status mine = Status.OFFLINE;
+    private static volatile long lastInput;
+    private static EventBus.Subscription subscription;
+    private static ScheduledExecutorService idleTimer;
+    private static boolean connectionHooked;
+    private static final EventHandler<Event> activity = e -> touch();
+
+    private Presence() { /* utility */ }
+
+    // ═══════════════════════════════════════════
+    //  LIFECYCLE
+    // ═══════════════════════════════════════════
+
+    /** Start receiving diffs and announcing our own state for {@code userId}. Idempotent. */
+    public static synchronized void start(int userId) {
+        me = userId;
+        lastInput = System.currentTimeMillis();
+        mine = Status.ONLINE;
+        if (subscription == null) {
+            subscription = EventBus.subscribe(EventBus.Topic.PRESENCE, Presence::onEvent, Presence::resync);
+        }
+        if (!connectionHooked) {
+            connectionHooked = true;
+            SignalingService.getInstance().addConnectionListener(up -> {
+                if (up && me > 0) announce(mine);
+            });
+        }
+        if (idleTimer == null) {
+            idleTimer = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "presence-idle");
+                t.setDaemon(true);
+                return t;
+            });
+            long check = Math.max(1_000, idleMs / 5);
+            idleTimer.scheduleAtFixedRate(Presence::checkIdle, check, check, TimeUnit.MILLISECONDS);
+        }
+        if (SignalingService.getInstance().isConnected()) announce(mine);
+    }
+
+    /** Announce that we are offline and stop tracking. */
+    public static synchronized void stop() {
+        if (me > 0) announce(Status.OFFLINE);
+        me = 0;
+        mine = Status.OFFLINE;
+        if (subscription != null) { subscription.cancel(); subscription = null; }
+        if (idleTimer != null) { idleTimer.shutdownNow(); idleTimer = null; }
+        states.clear();
+        properties.clear(); // screens bound to them are gone with the session
+    }
+
+    /** Count mouse and keyboard input in this scene as activity (ends idle). */
+    public static void trackActivity(Scene scene) {
+        scene.addEventFilter(MouseEvent.MOUSE_MOVED, activity);
+        scene.addEventFilter(MouseEvent.MOUSE_PRESSED, activity);
+        scene.addEventFilter(KeyEvent.KEY_PRESSED, activity);
+        scene.addEventFilter(ScrollEvent.SCROLL, activity);
+    }
+
+    // ═══════════════════════════════════════════
+    //  LOOKUPS
+    // ═══════════════════════════════════════════
+
+    /** Current status of a user: the last pushed diff, else the directory's online flag. */
+    public static Status status(int userId) {
+        State s = states.get(userId);
+        if (s != null) return s.status();
+        if (userId == me && me > 0) return mine;
+        UserDirectory.Entry e = UserDirectory.get(userId);
+        return e != null && e.online() ? Status.ONLINE : Status.OFFLINE;
+    }
+
+    /** Shorthand for "online or idle". */
+    public static boolean isOnline(int userId) {
+        return status(userId) != Status.OFFLINE;
+    }
+
+    /** Last pushed state of a user (with last-seen time), or null if none was received. */
+    public static State state(int userId) {
+        return states.get(userId);
+    }
+
+    /** Observable status of one user, updated on the FX thread. Bind UI to it; do not set it. */
+    public static ReadOnlyObjectProperty<Status> statusProperty(int userId) {
+        return properties.computeIfAbsent(userId, id -> new SimpleObjectProperty<>(status(id)));
+    }
+
+    // ═══════════════════════════════════════════
+    //  UPDATES
+    // ═══════════════════════════════════════════
+
+    /** Apply one user's state; fires that user's property only if the status changed. */
+    static void apply(int userId, Status status, long lastSeen) {
+        if (userId <= 0 || status == null) return;
+        states.put(userId, new State(status, lastSeen));
+        UserDirectory.setOnline(userId, status != Status.OFFLINE);
+        SimpleObjectProperty<Status> prop = properties.get(userId);
+        if (prop != null) runOnFx(() -> prop.set(status)); // no-op for listeners when unchanged
+    }
+
+    /**
+     * Fold the directory's online flags in as diffs (after a directory refresh).
+     * Idle users the directory still lists as online keep their idle state.
+     */
+    public static void syncFromDirectory() {
+        long now = System.currentTimeMillis();
+        for (UserDirectory.Entry e : UserDirectory.entries()) {
+            if (e.id() == me) continue;
+            Status current = status(e.id());
+            if (e.online() && current == Status.OFFLINE) apply(e.id(), Status.ONLINE, now);
+            else if (!e.online() && current != Status.OFFLINE) apply(e.id(), Status.OFFLINE, now);
+        }
+    }
+
+    /** Input seen: leave idle if we were. */
+    static void touch() {
+        lastInput = System.currentTimeMillis();
+        if (mine == Status.IDLE) {
+            mine = Status.ONLINE;
+            AppThreadPool.io(() -> announce(Status.ONLINE));
+        }
+    }
+
+    private static void checkIdle() {
+        if (me > 0 && mine == Status.ONLINE && System.currentTimeMillis() - lastInput >= idleMs) {
+            mine = Status.IDLE;
+            announce(Status.IDLE);
+        }
+    }
+
+    private static void onEvent(EventBus.Event ev) {
+        JsonObject data = ev.data();
+        Status status = Status.parse(data.has("status") ? data.get("status").getAsString() : null);
+        long lastSeen = data.has("last_seen") ? data.get("last_seen").getAsLong() : System.currentTimeMillis();
+        if (ev.from() != me) apply(ev.from(), status, lastSeen);
+    }
+
+    /** Diffs may have been missed (reconnect, overflow): re-read who is online. */
+    private static void resync() {
+        AppThreadPool.io(() -> {
+            try {
+                Set<Integer> online = userService.getOnlineIds();
+                if (online == null) return;
+                long now = System.currentTimeMillis();
+                for (UserDirectory.Entry e : UserDirectory.entries()) {
+                    if (e.id() == me) continue;
+                    boolean up = online.contains(e.id());
+                    if (up != isOnline(e.id())) apply(e.id(), up ? Status.ONLINE : Status.OFFLINE, now);
+                }
+            } catch (Exception e) {
+                System.err.println("⚠ Presence: resync failed — " + e.getMessage());
+            }
+        });
+    }
+
+    /** Send our state to everyone the directory shows online. */
+    private static void announce(Status status) {
+        int self = me;
+        if (self <= 0) return;
+        List<Integer> targets = new ArrayList<>();
+        for (UserDirectory.Entry e : UserDirectory.entries()) {
+            if (e.online() && e.id() != self) targets.add(e.id());
+        }
+        if (targets.isEmpty()) return;
+        JsonObject data = new JsonObject();
+        data.addProperty("status", status.wire());
+        data.addProperty("last_seen", status == Status.IDLE ? lastInput : System.currentTimeMillis());
+        EventBus.publish(EventBus.Topic.PRESENCE, targets, data);
+    }
+
+    // ═══════════════════════════════════════════
+    //  INTERNALS
+    // ═══════════════════════════════════════════
+
+    private static void runOnFx(Runnable task) {
+        try {
+            Platform.runLater(task);
+        } catch (IllegalStateException e) {
+            task.run(); // no FX toolkit (tests, headless tools)
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package utils;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Client-side index of chat room activity: when each room last saw a
+ * message, and how many arrived since the user last opened it.
+ * <p>
+ * Entries are kept twice — by room id, and in a priority set ordered by
+ * last activity (newest first) — so both "when was room X active" and
+ * "which rooms are the most recent" are cheap. The index is fed by pushed
+ * message events ({@link MessagePush}) and, as a sweep, by one
+ * latest-message-per-room query ({@link services.ServiceMessage#getLatestTimestamps}).
+ * <p>
+ * Usage:
+ * <pre>
+ *   if (RoomActivity.record(roomId, ts, true)) moveRoomUp(roomId);   // a message from someone else
+ *   int badge = RoomActivity.unread(roomId);
+ *   RoomActivity.markRead(roomId);                                   // room opened
+ * </pre>
+ */
+public final class RoomActivity {
+
+    /** One room: last activity (epoch ms, 0 if unknown) and unread message count. */
+    public record Entry(int roomId, long lastAt, int unread) { }
+
+    private static final Comparator<Entry> NEWEST_FIRST = Comparator
+            .comparingLong(Entry::lastAt).reversed()
+            .thenComparingInt(Entry::roomId);
+
+    // guarded by the class lock
+    private static final Map<Integer, Entry> byRoom = new HashMap<>();
+    private static final TreeSet<Entry> byRecency = new TreeSet<>(NEWEST_FIRST);
+
+    private RoomActivity() { /* utility */ }
+
+    // ═══════════════════════════════════════════
+    //  UPDATES
+    // ═══════════════════════════════════════════
+
+    /**
+     * Record activity in a room.
+     *
+     * @param at     time of the message (epoch ms); older than what is held is ignored
+     * @param unread count it as unread (a message from someone else in a room not on screen)
+     * @return true if the room's last-activity time advanced, i.e. its position may change
+     */
+    public static synchronized boolean record(int roomId, long at, boolean unread) {
+        Entry current = byRoom.get(roomId);
+        long lastAt = current != null ? current.lastAt() : 0;
+        int count = current != null ? current.unread() : 0;
+        boolean advanced = at > lastAt;
+        if (!advanced && !unread) return false;
+        put(new Entry(roomId, Math.max(at, lastAt), unread ? count + 1 : count));
+        return advanced;
+    }
+
+    /** {@link #record(int, long, boolean)} for a SQL timestamp; null is ignored. */
+    public static boolean record(int roomId, Timestamp at, boolean unread) {
+        return at != null && record(roomId, at.getTime(), unread);
+    }
+
+    /** The room was opened: its unread count goes back to zero. */
+    public static synchronized void markRead(int roomId) {
+        Entry current = byRoom.get(roomId);
+        if (current != null && current.unread() > 0) put(new Entry(roomId, current.lastAt(), 0));
+    }
+
+    /** Forget everything (logout). */
+    public static synchronized void clear() {
+        byRoom.clear();
+        byRecency.clear();
+    }
+
+    // ═══════════════════════════════════════════
+    //  LOOKUPS
+    // ═══════════════════════════════════════════
+
+    /** Last activity in a room (epoch ms), or 0 if none is known. */
+    public static synchronized long lastAt(int roomId) {
+        Entry e = byRoom.get(roomId);
+        return e != null ? e.lastAt() : 0;
+    }
+
+    /** Messages received in a room since it was last opened. */
+    public static synchronized int unread(int roomId) {
+        Entry e = byRoom.get(roomId);
+        return e != null ? e.unread() : 0;
+    }
+
+    /** Room ids with known activity, most recent first. */
+    public static synchronized List<Integer> recent() {
+        List<Integer> ids = new ArrayList<>(byRecency.size());
+        for (Entry e : byRecency) ids.add(e.roomId());
+        return ids;
+    }
+
+    // ═══════════════════════════════════════════
+    //  INTERNALS
+    // ═══════════════════════════════════════════
+
+    private static void put(Entry entry) {
+        Entry old = byRoom.put(entry.roomId(), entry);
+        if (old != null) byRecency.remove(old);
+        byRecency.add(entry);
+    }
+}
@@ -0,0 +1,283 @@
+package utils;
+
+import entities.Message;
+import services.ServiceMessage;
+
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Client-side, per-room message history kept in id order.
+ * <p>
+ * The first access seeds a room with its most recent page; every later
+ * {@link #sync(int)} only asks the backend for rows newer than the last id
+ * we hold, so the chat poller no longer re-downloads whole histories.
+ * <p>
+ * Usage:
+ * <pre>
+ *   List&lt;Message&gt; fresh = RoomMessageStore.sync(roomId);   // only the new rows
+ *   List&lt;Message&gt; all   = RoomMessageStore.snapshot(roomId);
+ *   RoomMessageStore.loadOlder(roomId);                         // scrolled to the top
+ * </pre>
+ * Messages pushed over the signaling socket ({@link MessagePush}) are
+ * merged in with {@link #apply(Message)}. They do not advance the point
+ * {@link #sync(int)} resumes from, so a push received after a missed one
+ * never hides the gap from the next sync.
+ * <p>
+ * Messages sent through {@link WriteOutbox} that the server has not
+ * acknowledged yet are appended to {@link #snapshot(int)} with id 0, so a
+ * message shows up as soon as it is sent, even offline.
+ */
+public final class RoomMessageStore {
+
+    /** Size of the initial page loaded when a room is opened. */
+    private static final int INITIAL_PAGE = 500;
+    /** Max rows per delta request; larger gaps are drained in several pages. */
+    private static final int DELTA_PAGE = 200;
+    /** Newest rows re-read by {@link #reconcile(int)}; edits further back show up when the room is reopened. */
+    private static final int RECONCILE_PAGE = 50;
+
+    private static final ServiceMessage service = new ServiceMessage();
+    private static final Map<Integer, RoomHistory> rooms = new ConcurrentHashMap<>();
+
+    private RoomMessageStore() { /* utility */ }
+
+    /**
+     * Pull messages newer than the last one held for this room and append them.
+     * Seeds the room with its latest page on first use.
+     *
+     * @return the newly appended messages (empty if nothing changed)
+     */
+    public static List<Message> sync(int roomId) throws SQLException {
+        RoomHistory history = rooms.computeIfAbsent(roomId, k -> new RoomHistory());
+        synchronized (history) {
+            if (!history.seeded) {
+                List<Message> page = service.getPageBefore(roomId, 0, INITIAL_PAGE);
+                history.messages.clear();
+                history.messages.addAll(page);
+                history.syncedId = history.lastId();
+                history.seeded = true;
+                return new ArrayList<>(page);
+            }
+            List<Message> fresh = new ArrayList<>();
+            List<Message> page;
+            do {
+                page = service.getByRoomSince(roomId, history.syncedId, DELTA_PAGE);
+                fresh.addAll(history.merge(page));
+                for (Message m : page) history.syncedId = Math.max(history.syncedId, m.getId());
+            } while (page.size() >= DELTA_PAGE);
+            return fresh;
+        }
+    }
+
+    /**
+     * Load one page of messages older than the oldest one held and prepend it.
+     *
+     * @return the prepended messages (empty when the beginning was reached)
+     */
+    public static List<Message> loadOlder(int roomId) throws SQLException {
+        RoomHistory history = rooms.computeIfAbsent(roomId, k -> new RoomHistory());
+        synchronized (history) {
+            int firstId = history.messages.isEmpty() ? 0 : history.messages.get(0).getId();
+            List<Message> page = service.getPageBefore(roomId, firstId, INITIAL_PAGE);
+            history.messages.addAll(0, page);
+            return page;
+        }
+    }
+
+    /**
+     * Re-read the room's newest {@value #RECONCILE_PAGE} rows and fold in the
+     * edits and deletes among them, which {@link #sync(int)} cannot see since
+     * it only asks for newer ids. For when pushes are unavailable.
+     *
+     * @return true if a held row was changed, removed or added
+     */
+    public static boolean reconcile(int roomId) throws SQLException {
+        RoomHistory history = rooms.get(roomId);
+        if (history == null) return false;
+        synchronized (history) {
+            if (!history.seeded) return false;
+            List<Message> page = service.getPageBefore(roomId, 0, RECONCILE_PAGE);
+            // Ids the page covers: all of the room if it was short, else from its first row
+            int from = page.size() < RECONCILE_PAGE ? 0 : page.get(0).getId();
+            int to = page.isEmpty() ? history.syncedId : page.get(page.size() - 1).getId();
+            Set<Integer> present = new HashSet<>();
+            for (Message m : page) present.add(m.getId());
+            boolean changed = history.messages.removeIf(
+                    m -> m.getId() >= from && m.getId() <= to && !present.contains(m.getId()));
+            for (Message m : page) {
+                int i = history.indexOf(m.getId());
+                if (i >= 0) {
+                    if (!Objects.equals(history.messages.get(i).getContent(), m.getContent())) {
+                        history.messages.set(i, m);
+                        changed = true;
+                    }
+                } else if (!history.merge(List.of(m)).isEmpty()) {
+                    changed = true;
+                }
+            }
+            history.syncedId = Math.max(history.syncedId, to);
+            return changed;
+        }
+    }
+
+    /** Copy of the room's messages, oldest first, followed by the ones still queued for sending. */
+    public static List<Message> snapshot(int roomId) {
+        List<Message> out = new ArrayList<>();
+        RoomHistory history = rooms.get(roomId);
+        if (history != null) {
+            synchronized (history) {
+                out.addAll(history.messages);
+            }
+        }
+        for (WriteOutbox.Pending p : WriteOutbox.pending("POST", "/messages")) {
+            if (p.body() == null || !p.body().has("room_id") || p.body().get("room_id").getAsInt() != roomId) continue;
+            out.add(new Message(0, p.body().get("sender_id").getAsInt(), roomId,
+                    p.body().get("content").getAsString(), new Timestamp(p.at())));
+        }
+        return out.isEmpty() ? Collections.emptyList() : out;
+    }
+
+    /** Id of the newest message held for the room, or 0. */
+    public static int lastId(int roomId) {
+        RoomHistory history = rooms.get(roomId);
+        if (history == null) return 0;
+        synchronized (history) {
+            return history.lastId();
+        }
+    }
+
+    /**
+     * Insert or replace one message received outside {@link #sync(int)} (a push
+     * event, or the server's reply to our own send).
+     *
+     * @return false if the room is not loaded or the message is older than the loaded history
+     */
+    public static boolean apply(Message message) {
+        RoomHistory history = rooms.get(message.getRoomId());
+        if (history == null) return false;
+        synchronized (history) {
+            if (!history.seeded) return false;
+            history.merge(List.of(message));
+            return history.contains(message.getId());
+        }
+    }
+
+    /** Author of a held message, or 0 if the room does not hold it. */
+    public static int senderOf(int roomId, int messageId) {
+        RoomHistory history = rooms.get(roomId);
+        if (history == null) return 0;
+        synchronized (history) {
+            int i = history.indexOf(messageId);
+            return i >= 0 ? history.messages.get(i).getSenderId() : 0;
+        }
+    }
+
+    /** Room holding {@code messageId}, or 0 if no loaded room has it. */
+    public static int roomOf(int messageId) {
+        for (Map.Entry<Integer, RoomHistory> e : rooms.entrySet()) {
+            synchronized (e.getValue()) {
+                if (e.getValue().contains(messageId)) return e.getKey();
+            }
+        }
+        return 0;
+    }
+
+    /** Replace a message in place (e.g. after a local edit). No-op if not held. */
+    public static void update(Message message) {
+        RoomHistory history = rooms.get(message.getRoomId());
+        if (history == null) return;
+        synchronized (history) {
+            for (int i = 0; i < history.messages.size(); i++) {
+                if (history.messages.get(i).getId() == message.getId()) {
+                    history.messages.set(i, message);
+                    return;
+                }
+            }
+        }
+    }
+
+    /** Drop a message from the room (e.g. after a local delete). */
+    public static void remove(int roomId, int messageId) {
+        RoomHistory history = rooms.get(roomId);
+        if (history == null) return;
+        synchronized (history) {
+            history.messages.removeIf(m -> m.getId() == messageId);
+        }
+    }
+
+    /** Forget a room so the next {@link #sync(int)} reloads its latest page. */
+    public static void invalidate(int roomId) {
+        rooms.remove(roomId);
+    }
+
+    /** Forget every room (e.g. on logout). */
+    public static void clear() {
+        rooms.clear();
+    }
+
+    // ═══════════════════════════════════════════
+    //  INTERNALS
+    // ═══════════════════════════════════════════
+
+    private static class RoomHistory {
+        final List<Message> messages = new ArrayList<>();
+        boolean seeded;
+        /** Highest id fetched by sync: everything up to it is known to be held. */
+        int syncedId;
+
+        int lastId() {
+            return messages.isEmpty() ? 0 : messages.get(messages.size() - 1).getId();
+        }
+
+        boolean contains(int id) {
+            return indexOf(id) >= 0;
+        }
+
+        /** Binary search by id; {@code -(insertion point) - 1} when absent. */
+        int indexOf(int id) {
+            int lo = 0, hi = messages.size() - 1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                int midId = messages.get(mid).getId();
+                if (midId < id) lo = mid + 1;
+                else if (midId > id) hi = mid - 1;
+                else return mid;
+            }
+            return -(lo + 1);
+        }
+
+        /**
+         * Insert rows in id order, replacing rows already held. Rows older than
+         * the first one held are skipped ({@link #loadOlder} fetches those).
+         *
+         * @return the rows that were not held before
+         */
+        List<Message> merge(List<Message> page) {
+            List<Message> added = new ArrayList<>();
+            for (Message m : page) {
+                if (m.getId() > lastId()) {
+                    messages.add(m); // the common case: newer than everything held
+                    added.add(m);
+                    continue;
+                }
+                int i = indexOf(m.getId());
+                if (i >= 0) {
+                    messages.set(i, m);
+                } else if (-i - 1 > 0) {
+                    messages.add(-i - 1, m);
+                    added.add(m);
+                }
+            }
+            return added;
+        }
+    }
+}
@@ -255,7 +255,7 @@ public class ScreenShareService {
 
                 System.out.println("[Video] Connecting to: " + wsUrl);
 
-                HttpClient client = HttpClient.newHttpClient();
+                HttpClient client = HttpClients.client(HttpClients.Integration.REALTIME);
                 webSocket = client.newWebSocketBuilder()
                         .buildAsync(URI.create(wsUrl), new WebSocket.Listener() {
 
@@ -1,6 +1,7 @@
 package utils;
 
 import entities.User;
+import services.ServiceNotification;
 import services.ServiceUser;
 
 /**
@@ -10,7 +11,7 @@ import services.ServiceUser;
 public class SessionManager {
 
     private static SessionManager instance;
-    private User currentUser;
+    private volatile User currentUser;
     private Runnable onAvatarChanged;
     private boolean darkTheme = true;
 
@@ -31,13 +32,34 @@ public class SessionManager {
     public void setCurrentUser(User user) {
         this.currentUser = user;
         if (user != null) {
-            try { new ServiceUser().setOnlineStatus(user.getId(), true); } catch (Exception ignored) {}
+            // Called on the FX thread: file and network work goes to the I/O pool
+            AppThreadPool.io(() -> {
+                if (currentUser != user) return; // logged out again already
+                // Warm start: first screens paint from last session's lists while they revalidate
+                SnapshotCache.restore(user.getId());
+                // Send writes queued while offline in the previous session
+                if (AppConfig.isApiMode()) WriteOutbox.start();
+                try { new ServiceUser().setOnlineStatus(user.getId(), true); } catch (Exception ignored) {}
+            });
         }
     }
 
     public void logout() {
         if (currentUser != null) {
-            try { new ServiceUser().setOnlineStatus(currentUser.getId(), false); } catch (Exception ignored) {}
+            SnapshotCache.close();
+            Presence.stop();
+            RoomActivity.clear();
+            RoomMessageStore.clear();
+            MessagePush.clear();
+            ChangeFeed.clearAll();
+            ServiceNotification.clearFeeds();
+            UserDirectory.clear();
+            ApiClient.clearValidators();
+            int userId = currentUser.getId();
+            AppThreadPool.io(() -> {
+                if (AppConfig.isApiMode()) WriteOutbox.flush(3_000); // whatever is left stays queued on disk
+                try { new ServiceUser().setOnlineStatus(userId, false); } catch (Exception ignored) {}
+            });
         }
         this.currentUser = null;
         this.onAvatarChanged = null;
@@ -9,11 +9,21 @@ import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.WebSocket;
 import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CompletionStage;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
 
 /**
@@ -23,9 +33,23 @@ import java.util.function.Consumer;
  *   - "answer"     : SDP answer
  *   - "ice"        : ICE candidate
  *   - "call-state" : incoming-call, accepted, rejected, ended
+ *   - "typing"     : chat typing indicator
+ *   - "message", "message-edited", "message-deleted" : chat pushes (see {@link MessagePush})
+ *   - "notification", "feed-update" : see {@link EventBus}
+ *
+ * Screens normally consume these through {@link EventBus} topics rather than
+ * {@link #onMessage}; WebRTC negotiation and typing still register handlers directly.
  *
  * Replaces the 2-second HTTP polling used by pollIncomingCallsBackground().
  *
+ * Transport: the server is pinged every {@code signaling.ping_ms} (default
+ * 20 s); a socket with no pong or message for {@code signaling.timeout_ms}
+ * is treated as half-open and replaced. Reconnects back off exponentially
+ * with full jitter ({@code signaling.backoff_base_ms} / {@code backoff_max_ms})
+ * and continue until {@link #disconnect()}. Sends go through an ordered,
+ * bounded outbound queue that survives reconnects — see {@link #send}.
+ * {@link #stats()} reports connection quality.
+ *
  * Thread safety: all callbacks are dispatched on the JavaFX Application Thread
  * via Platform.runLater() unless noted otherwise.
  *
@@ -49,10 +73,53 @@ public class SignalingService {
     //  STATE
     // ═══════════════════════════════════════════
 
+    private static final long PING_MS = AppConfig.getLong("signaling.ping_ms", 20_000);
+    /** No frame at all (message or pong) for this long means the connection is dead. */
+    private static final long LIVENESS_TIMEOUT_MS = AppConfig.getLong("signaling.timeout_ms", 2 * PING_MS + 5_000);
+    private static final int QUEUE_CAPACITY = (int) AppConfig.getLong("signaling.queue", 500);
+    /** Queued messages older than this are dropped instead of delivered late. */
+    private static final long QUEUE_TTL_MS = AppConfig.getLong("signaling.queue_ttl_ms", 60_000);
+    private static final long SEND_TIMEOUT_MS = 10_000;
+    /** Types where only the latest message per recipient matters; queued ones are replaced. */
+    private static final Set<String> COALESCED_TYPES = Set.of("typing", "presence");
+    /** After this many failed attempts in a row, {@link #setOnDisconnected} is told (retries go on). */
+    private static final int NOTIFY_AFTER_ATTEMPTS = 10;
+
     private final AtomicBoolean connected = new AtomicBoolean(false);
-    private final AtomicBoolean reconnecting = new AtomicBoolean(false);
-    private WebSocket webSocket;
-    private int currentUserId;
+    /** True between {@link #connect} and {@link #disconnect}: reconnect and keep queueing. */
+    private volatile boolean active;
+    private volatile WebSocket webSocket;
+    private volatile int currentUserId;
+    private final Object connectLock = new Object();
+
+    /** Reconnects, heartbeats and every outbound write run on this one thread, so sends never overlap. */
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "signaling");
+        t.setDaemon(true);
+        return t;
+    });
+    private ScheduledFuture<?> reconnectTask;   // guarded by this
+    private ScheduledFuture<?> heartbeatTask;   // guarded by this
+    private int reconnectAttempts = 0;          // guarded by this
+
+    /** Outbound messages in send order; coalescible ones are also indexed by type and recipient. */
+    private final ArrayDeque<Outbound> outbound = new ArrayDeque<>();   // guarded by itself
+    private final Map<String, Outbound> coalescible = new HashMap<>();  // guarded by outbound
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+
+    private volatile long lastReceived;
+    private volatile long pingSentAt;
+
+    // Connection-quality counters
+    private final AtomicLong connects = new AtomicLong();
+    private final AtomicLong drops = new AtomicLong();
+    private final AtomicLong failedAttempts = new AtomicLong();
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong expired = new AtomicLong();
+    private volatile double rttMillis = -1;     // smoothed ping round trip
+    private volatile long connectedSince;
 
     /** Registered handlers: message type → list of callbacks(JsonObject) */
     private final ConcurrentHashMap<String, List<Consumer<JsonObject>>> handlers = new ConcurrentHashMap<>();
@@ -60,12 +127,31 @@ public class SignalingService {
     /** Callback when connection drops unexpectedly. */
     private Runnable onDisconnected;
 
-    private static final int RECONNECT_DELAY_MS = 3000;
-    private static final int MAX_RECONNECT_ATTEMPTS = 10;
-    private int reconnectAttempts = 0;
+    /** Every received message, called on the WebSocket thread before FX dispatch (used by {@link EventBus}). */
+    private final List<Consumer<JsonObject>> rawListeners = new CopyOnWriteArrayList<>();
+
+    /** Connection changes: true once connected, false when the socket goes away. Not on the FX thread. */
+    private final List<Consumer<Boolean>> connectionListeners = new CopyOnWriteArrayList<>();
 
     private static final Gson GSON = new Gson();
 
+    /** A message waiting for the socket; {@code data} is replaced when a newer one coalesces into it. */
+    private static final class Outbound {
+        final int to;
+        final String type;
+        final String key;
+        volatile JsonObject data;
+        volatile long at;
+
+        Outbound(int to, String type, String key, JsonObject data) {
+            this.to = to;
+            this.type = type;
+            this.key = key;
+            this.data = data;
+            this.at = System.currentTimeMillis();
+        }
+    }
+
     // ═══════════════════════════════════════════
     //  CONNECT / DISCONNECT
     // ═══════════════════════════════════════════
@@ -82,56 +168,93 @@ public class SignalingService {
 
         // Disconnect any existing connection first
         disconnectQuietly();
+        if (currentUserId != userId) clearOutbound(); // queued messages were sent as someone else
 
         this.currentUserId = userId;
-        reconnectAttempts = 0;
+        this.active = true;
+        synchronized (this) {
+            reconnectAttempts = 0;
+            if (reconnectTask != null) reconnectTask.cancel(false);
+        }
 
         doConnect();
     }
 
     private void doConnect() {
-        try {
-            String baseUrl = AppConfig.getRestBaseUrl(); // https://rest.benzaitsue.work.gd/api
-            String wsBase = baseUrl
-                    .replace("https://", "wss://")
-                    .replace("http://", "ws://")
-                    .replaceAll("/api$", "");
-            String wsUrl = wsBase + "/ws/signal/" + currentUserId;
-
-            System.out.println("[Signaling] Connecting to " + wsUrl);
-
-            HttpClient client = HttpClient.newHttpClient();
-            webSocket = client.newWebSocketBuilder()
-                    .buildAsync(URI.create(wsUrl), new SignalingListener())
-                    .join();
-
-            connected.set(true);
-            reconnecting.set(false);
-            reconnectAttempts = 0;
-            System.out.println("[Signaling] Connected successfully for user " + currentUserId);
-
-        } catch (Exception e) {
-            System.err.println("[Signaling] Connection failed: " + e.getMessage());
-            connected.set(false);
-            scheduleReconnect();
+        synchronized (connectLock) {
+            if (!active || connected.get()) return;
+            try {
+                String baseUrl = AppConfig.getRestBaseUrl(); // https://rest.benzaitsue.work.gd/api
+                String wsBase = baseUrl
+                        .replace("https://", "wss://")
+                        .replace("http://", "ws://")
+                        .replaceAll("/api$", "");
+                String wsUrl = wsBase + "/ws/signal/" + currentUserId;
+
+                System.out.println("[Signaling] Connecting to " + wsUrl);
+
+                HttpClient client = HttpClients.client(HttpClients.Integration.REALTIME);
+                WebSocket ws = client.newWebSocketBuilder()
+                        .buildAsync(URI.create(wsUrl), new SignalingListener())
+                        .join();
+
+                webSocket = ws;
+                lastReceived = connectedSince = System.currentTimeMillis();
+                connected.set(true);
+                connects.incrementAndGet();
+                synchronized (this) {
+                    reconnectAttempts = 0;
+                    if (heartbeatTask != null) heartbeatTask.cancel(false);
+                    heartbeatTask = scheduler.scheduleAtFixedRate(this::heartbeat, PING_MS, PING_MS, TimeUnit.MILLISECONDS);
+                }
+                System.out.println("[Signaling] Connected successfully for user " + currentUserId);
+                fireConnection(true);
+                requestFlush(); // whatever was queued while we were away, in order
+
+            } catch (Exception e) {
+                System.err.println("[Signaling] Connection failed: " + e.getMessage());
+                connected.set(false);
+                failedAttempts.incrementAndGet();
+                scheduleReconnect();
+            }
         }
     }
 
     /** Disconnect gracefully. */
     public void disconnect() {
-        reconnecting.set(false); // stop reconnect attempts
-        reconnectAttempts = MAX_RECONNECT_ATTEMPTS; // prevent further reconnects
+        active = false; // stop reconnect attempts
+        synchronized (this) {
+            if (reconnectTask != null) reconnectTask.cancel(false);
+        }
+        clearOutbound();
         disconnectQuietly();
     }
 
     private void disconnectQuietly() {
-        connected.set(false);
-        if (webSocket != null) {
+        WebSocket ws = webSocket;
+        webSocket = null; // its close callbacks are now stale and ignored
+        stopHeartbeat();
+        if (connected.getAndSet(false)) fireConnection(false);
+        if (ws != null) {
             try {
-                webSocket.sendClose(WebSocket.NORMAL_CLOSURE, "bye").join();
-            } catch (Exception ignored) {}
+                ws.sendClose(WebSocket.NORMAL_CLOSURE, "bye").get(2, TimeUnit.SECONDS);
+            } catch (Exception ignored) {
+                ws.abort();
+            }
+        }
+    }
+
+    /** The socket {@code ws} closed, failed or went silent: drop it and start reconnecting. */
+    private void connectionLost(WebSocket ws, String reason) {
+        synchronized (this) {
+            if (ws != webSocket) return; // an old socket, already replaced or closed on purpose
             webSocket = null;
         }
+        System.err.println("[Signaling] Connection lost: " + reason);
+        drops.incrementAndGet();
+        stopHeartbeat();
+        if (connected.getAndSet(false)) fireConnection(false);
+        scheduleReconnect();
     }
 
     public boolean isConnected() { return connected.get(); }
@@ -145,30 +268,92 @@ public class SignalingService {
     // ═══════════════════════════════════════════
 
     /**
-     * Send a signaling message to a target user.
+     * Send a signaling message to a target user. Messages are written in
+     * order by the signaling thread; while the socket is down they wait in a
+     * bounded queue ({@code signaling.queue}) and go out after the reconnect.
+     * A queued "typing" or "presence" message for the same user is replaced
+     * by the newer one instead of queueing both.
      *
      * @param toUserId  target user ID
      * @param type      message type: "offer", "answer", "ice", "call-state"
      * @param data      payload (SDP, ICE candidate, or call state data)
      */
     public void send(int toUserId, String type, JsonObject data) {
-        if (!connected.get() || webSocket == null) {
+        if (!active) {
             System.err.println("[Signaling] Cannot send — not connected");
             return;
         }
+        synchronized (outbound) {
+            String key = COALESCED_TYPES.contains(type) ? type + ":" + toUserId : null;
+            Outbound queued = key != null ? coalescible.get(key) : null;
+            if (queued != null) {
+                queued.data = data;
+                queued.at = System.currentTimeMillis();
+                coalesced.incrementAndGet();
+            } else {
+                if (outbound.size() >= QUEUE_CAPACITY) {
+                    Outbound oldest = outbound.pollFirst();
+                    if (oldest.key != null) coalescible.remove(oldest.key);
+                    dropped.incrementAndGet();
+                    System.err.println("[Signaling] Outbound queue full — dropped a '" + oldest.type + "' message");
+                }
+                Outbound o = new Outbound(toUserId, type, key, data);
+                outbound.addLast(o);
+                if (key != null) coalescible.put(key, o);
+            }
+        }
+        requestFlush();
+    }
 
-        JsonObject msg = new JsonObject();
-        msg.addProperty("type", type);
-        msg.addProperty("from", currentUserId);
-        msg.addProperty("to", toUserId);
-        msg.add("data", data);
+    private void requestFlush() {
+        if (connected.get() && flushScheduled.compareAndSet(false, true)) {
+            scheduler.execute(this::flush);
+        }
+    }
 
-        String json = GSON.toJson(msg);
+    /** Write queued messages in order until the queue is empty or a write fails (signaling thread). */
+    private void flush() {
+        flushScheduled.set(false);
+        while (connected.get()) {
+            Outbound o;
+            synchronized (outbound) {
+                o = outbound.pollFirst();
+                if (o == null) return;
+                if (o.key != null) coalescible.remove(o.key);
+            }
+            if (System.currentTimeMillis() - o.at > QUEUE_TTL_MS) {
+                expired.incrementAndGet();
+                continue;
+            }
+            WebSocket ws = webSocket;
+            try {
+                if (ws == null) throw new IllegalStateException("socket closed");
+                JsonObject msg = new JsonObject();
+                msg.addProperty("type", o.type);
+                msg.addProperty("from", currentUserId);
+                msg.addProperty("to", o.to);
+                msg.add("data", o.data);
+                ws.sendText(GSON.toJson(msg), true).get(SEND_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                sent.incrementAndGet();
+            } catch (Exception e) {
+                synchronized (outbound) {
+                    outbound.addFirst(o); // retried first after the reconnect
+                    if (o.key != null) coalescible.putIfAbsent(o.key, o);
+                }
+                System.err.println("[Signaling] Send failed: " + e.getMessage());
+                if (ws != null) {
+                    ws.abort();
+                    connectionLost(ws, "send failed");
+                }
+                return;
+            }
+        }
+    }
 
-        try {
-            webSocket.sendText(json, true).join();
-        } catch (Exception e) {
-            System.err.println("[Signaling] Send failed: " + e.getMessage());
+    private void clearOutbound() {
+        synchronized (outbound) {
+            outbound.clear();
+            coalescible.clear();
         }
     }
 
@@ -238,35 +423,123 @@ public class SignalingService {
         handlers.clear();
     }
 
+    /** Receive every message, on the WebSocket thread. The listener must not block. */
+    public void addRawListener(Consumer<JsonObject> listener) {
+        rawListeners.add(listener);
+    }
+
+    public void removeRawListener(Consumer<JsonObject> listener) {
+        rawListeners.remove(listener);
+    }
+
+    /** Be told when the socket connects (true) or drops (false). Not called on the FX thread. */
+    public void addConnectionListener(Consumer<Boolean> listener) {
+        connectionListeners.add(listener);
+    }
+
+    public void removeConnectionListener(Consumer<Boolean> listener) {
+        connectionListeners.remove(listener);
+    }
+
+    private void fireConnection(boolean up) {
+        for (Consumer<Boolean> l : connectionListeners) {
+            try {
+                l.accept(up);
+            } catch (Exception e) {
+                System.err.println("[Signaling] Connection listener error: " + e.getMessage());
+            }
+        }
+    }
+
     // ═══════════════════════════════════════════
-    //  RECONNECT LOGIC
+    //  RECONNECT + HEARTBEAT
     // ═══════════════════════════════════════════
 
-    private void scheduleReconnect() {
-        if (reconnecting.get()) return;
-        if (reconnectAttempts >= MAX_RECONNECT_ATTEMPTS) {
-            System.err.println("[Signaling] Max reconnect attempts reached. Giving up.");
-            if (onDisconnected != null) {
-                Platform.runLater(onDisconnected);
-            }
+    /** Retry after an exponential, fully jittered delay; keeps going until {@link #disconnect()}. */
+    private synchronized void scheduleReconnect() {
+        if (!active || (reconnectTask != null && !reconnectTask.isDone())) return;
+        int attempt = reconnectAttempts++;
+        if (attempt == NOTIFY_AFTER_ATTEMPTS && onDisconnected != null) {
+            System.err.println("[Signaling] Still offline after " + attempt + " attempts; retrying in the background");
+            Platform.runLater(onDisconnected);
+        }
+        long delay = backoff(attempt);
+        System.out.println("[Signaling] Reconnecting in " + delay + "ms (attempt " + (attempt + 1) + ")");
+        reconnectTask = scheduler.schedule(this::reconnect, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void reconnect() {
+        // This task is the one running: clear it so a failure below can schedule the next attempt
+        synchronized (this) {
+            reconnectTask = null;
+        }
+        doConnect();
+    }
+
+    /**
+     * Full jitter: uniform in [0, min(max, base · 2^attempt)], with
+     * {@code signaling.backoff_base_ms} / {@code backoff_max_ms} read at each attempt.
+     */
+    static long backoff(int attempt) {
+        long base = AppConfig.getLong("signaling.backoff_base_ms", 1_000);
+        long max = AppConfig.getLong("signaling.backoff_max_ms", 30_000);
+        long cap = Math.min(max, base << Math.min(attempt, 20));
+        return ThreadLocalRandom.current().nextLong(cap + 1);
+    }
+
+    /** Ping the server; a socket that has been silent too long is presumed half-open and replaced. */
+    private void heartbeat() {
+        WebSocket ws = webSocket;
+        if (ws == null || !connected.get()) return;
+        long now = System.currentTimeMillis();
+        if (now - lastReceived > LIVENESS_TIMEOUT_MS) {
+            ws.abort();
+            connectionLost(ws, "no pong or message for " + (now - lastReceived) + "ms");
             return;
         }
+        pingSentAt = now;
+        ws.sendPing(ByteBuffer.allocate(0));
+    }
 
-        reconnecting.set(true);
-        reconnectAttempts++;
-        System.out.println("[Signaling] Reconnecting in " + RECONNECT_DELAY_MS + "ms (attempt " +
-                reconnectAttempts + "/" + MAX_RECONNECT_ATTEMPTS + ")");
+    private synchronized void stopHeartbeat() {
+        if (heartbeatTask != null) {
+            heartbeatTask.cancel(false);
+            heartbeatTask = null;
+        }
+    }
 
-        Thread reconnectThread = new Thread(() -> {
-            try {
-                Thread.sleep(RECONNECT_DELAY_MS);
-                if (reconnecting.get()) {
-                    doConnect();
-                }
-            } catch (InterruptedException ignored) {}
-        }, "signaling-reconnect");
-        reconnectThread.setDaemon(true);
-        reconnectThread.start();
+    // ═══════════════════════════════════════════
+    //  METRICS
+    // ═══════════════════════════════════════════
+
+    /**
+     * Connection quality since start: connects, unexpected drops, failed
+     * connect attempts, messages sent / coalesced / dropped on overflow /
+     * expired in the queue, current queue length, smoothed ping RTT
+     * (-1 before the first pong) and how long the current connection has been up.
+     */
+    public record Stats(boolean connected, long connects, long drops, long failedAttempts,
+                        long sent, long coalesced, long dropped, long expired, int queued,
+                        double rttMillis, long upMillis) {
+        @Override
+        public String toString() {
+            return String.format("Signaling — %s, %d connects, %d drops, %d failed attempts; "
+                            + "%d sent, %d coalesced, %d dropped, %d expired, %d queued; rtt %s",
+                    connected ? "up " + upMillis / 1000 + "s" : "down", connects, drops, failedAttempts,
+                    sent, coalesced, dropped, expired, queued,
+                    rttMillis < 0 ? "n/a" : String.format("%.0f ms", rttMillis));
+        }
+    }
+
+    public Stats stats() {
+        int queued;
+        synchronized (outbound) {
+            queued = outbound.size();
+        }
+        boolean up = connected.get();
+        return new Stats(up, connects.get(), drops.get(), failedAttempts.get(), sent.get(), coalesced.get(),
+                dropped.get(), expired.get(), queued, rttMillis,
+                up ? System.currentTimeMillis() - connectedSince : 0);
     }
 
     // ═══════════════════════════════════════════
@@ -279,6 +552,7 @@ public class SignalingService {
 
         @Override
         public CompletionStage<?> onText(WebSocket ws, CharSequence data, boolean last) {
+            lastReceived = System.currentTimeMillis();
             textBuffer.append(data);
 
             if (last) {
@@ -292,6 +566,14 @@ public class SignalingService {
                     System.out.println("[Signaling] Received: type=" + type +
                             " from=" + (msg.has("from") ? msg.get("from").getAsInt() : "?"));
 
+                    for (Consumer<JsonObject> raw : rawListeners) {
+                        try {
+                            raw.accept(msg);
+                        } catch (Exception ex) {
+                            System.err.println("[Signaling] Listener error for '" + type + "': " + ex.getMessage());
+                        }
+                    }
+
                     // Dispatch to registered handlers on FX thread
                     List<Consumer<JsonObject>> handlerList = handlers.get(type);
                     if (handlerList != null && !handlerList.isEmpty()) {
@@ -304,7 +586,7 @@ public class SignalingService {
                                 }
                             }
                         });
-                    } else {
+                    } else if (rawListeners.isEmpty()) {
                         System.out.println("[Signaling] No handler for type: " + type);
                     }
 
@@ -317,27 +599,30 @@ public class SignalingService {
             return null;
         }
 
+        @Override
+        public CompletionStage<?> onPong(WebSocket ws, ByteBuffer message) {
+            long now = System.currentTimeMillis();
+            lastReceived = now;
+            long rtt = now - pingSentAt;
+            if (pingSentAt > 0 && rtt >= 0) {
+                rttMillis = rttMillis < 0 ? rtt : 0.8 * rttMillis + 0.2 * rtt;
+            }
+            ws.request(1);
+            return null;
+        }
+
         @Override
         public CompletionStage<?> onClose(WebSocket ws, int statusCode, String reason) {
             System.out.println("[Signaling] WebSocket closed: " + statusCode + " " + reason);
-            connected.set(false);
-            webSocket = null;
-
-            // Attempt reconnect if not intentionally disconnected
-            if (reconnectAttempts < MAX_RECONNECT_ATTEMPTS) {
-                scheduleReconnect();
-            }
+            // Reconnects unless this socket was closed on purpose (disconnect / replaced)
+            connectionLost(ws, "closed " + statusCode);
             return null;
         }
 
         @Override
         public void onError(WebSocket ws, Throwable error) {
             System.err.println("[Signaling] WebSocket error: " + error.getMessage());
-            connected.set(false);
-            webSocket = null;
-
-            // Attempt reconnect
-            scheduleReconnect();
+            connectionLost(ws, "error " + error.getMessage());
         }
 
         @Override
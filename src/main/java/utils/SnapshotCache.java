@@ -0,0 +1,353 @@
+package utils;
+
+import com.google.gson.ExclusionStrategy;
+import com.google.gson.FieldAttributes;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.TypeAdapter;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Disk tier for {@link InMemoryCache}: persists a few list namespaces
+ * (users, chat rooms, posts, courses by default) under
+ * {@code ~/.synergygig_cache/} so the first screens after login paint from
+ * the previous session's data while the real lists are revalidated in the
+ * background.
+ * <p>
+ * One file per user and data source. Layout (big-endian):
+ * <pre>
+ *   header : magic "SGSC" | format u16 | source stamp i32 | saved-at i64 | count i32
+ *   entry  : key | element class | schema stamp i32 | soft TTL i32 | TTL i32
+ *            | tag count i32 | tags… | payload length i32 | payload (gzip JSON array)
+ *   strings: length i32 + UTF-8
+ * </pre>
+ * The file is streamed in (never memory-mapped: a live mapping keeps
+ * Windows from replacing or deleting it) and written to a temp file
+ * that is atomically moved into place. A snapshot is ignored when its format,
+ * data source (API URL / JDBC URL) or age no longer match, and a single entry
+ * is skipped when its entity class changed shape since it was written.
+ * Passwords and face encodings are never written.
+ * <p>
+ * Usage:
+ * <pre>
+ *   SnapshotCache.restore(user.getId());   // on login, before the dashboard loads
+ *   SnapshotCache.save();                  // on logout / exit (also every few minutes)
+ * </pre>
+ */
+public final class SnapshotCache {
+
+    private static final int MAGIC = 0x53475343; // "SGSC"
+    private static final short FORMAT_VERSION = 1;
+    private static final String DEFAULT_NAMESPACES = "users,chatrooms,posts,courses";
+    private static final long DEFAULT_MAX_AGE_HOURS = 72;
+    private static final int SAVE_INTERVAL_MINUTES = 5;
+    /** Never written to disk, whatever entity they appear in. */
+    private static final Set<String> SENSITIVE_FIELDS = Set.of("password", "faceEncoding");
+
+    private static final Path DIR = Path.of(System.getProperty("user.home"), ".synergygig_cache");
+
+    private static final Gson gson = new GsonBuilder()
+            .registerTypeAdapter(Timestamp.class, new TimestampAdapter())
+            .setExclusionStrategies(new ExclusionStrategy() {
+                @Override
+                public boolean shouldSkipField(FieldAttributes f) {
+                    return SENSITIVE_FIELDS.contains(f.getName());
+                }
+
+                @Override
+                public boolean shouldSkipClass(Class<?> clazz) {
+                    return false;
+                }
+            })
+            .serializeNulls()
+            .create();
+
+    private static volatile int activeUserId;
+    private static ScheduledFuture<?> periodicSave;
+
+    private SnapshotCache() { /* utility */ }
+
+    // ═══════════════════════════════════════════
+    //  PUBLIC API
+    // ═══════════════════════════════════════════
+
+    /**
+     * Seed {@link InMemoryCache} from this user's snapshot (if any, and still
+     * valid) and start saving it periodically. Entries already in memory win.
+     *
+     * @return number of cache entries restored
+     */
+    public static int restore(int userId) {
+        activeUserId = userId;
+        schedulePeriodicSave();
+        if (!isEnabled()) return 0;
+        File file = fileFor(userId);
+        if (!file.isFile()) return 0;
+
+        List<InMemoryCache.Exported> entries;
+        try {
+            entries = read(file.toPath());
+        } catch (IOException | RuntimeException e) {
+            System.err.println("⚠ SnapshotCache: discarding unreadable snapshot — " + e.getMessage());
+            file.delete();
+            return 0;
+        }
+        for (InMemoryCache.Exported e : entries) InMemoryCache.prime(e);
+        if (!entries.isEmpty()) {
+            System.out.println("💾 SnapshotCache: restored " + entries.size() + " entries for user " + userId);
+        }
+        return entries.size();
+    }
+
+    /** Write the configured namespaces of the current user's cache to disk. */
+    public static void save() {
+        int userId = activeUserId;
+        if (userId <= 0 || !isEnabled()) return;
+        List<InMemoryCache.Exported> entries = new ArrayList<>();
+        for (String ns : namespaces()) entries.addAll(InMemoryCache.export(ns));
+        if (entries.isEmpty()) return;
+        try {
+            write(fileFor(userId).toPath(), entries);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("⚠ SnapshotCache: could not save snapshot — " + e.getMessage());
+        }
+    }
+
+    /** Save, then stop tracking the user (call before the session is cleared). */
+    public static void close() {
+        save();
+        activeUserId = 0;
+        synchronized (SnapshotCache.class) {
+            if (periodicSave != null) {
+                periodicSave.cancel(false);
+                periodicSave = null;
+            }
+        }
+    }
+
+    /** Delete every stored snapshot (e.g. from a "clear cache" action). */
+    public static void deleteAll() {
+        File[] files = DIR.toFile().listFiles((d, name) -> name.endsWith(".bin"));
+        if (files == null) return;
+        for (File f : files) f.delete();
+    }
+
+    // ═══════════════════════════════════════════
+    //  ENCODING
+    // ═══════════════════════════════════════════
+
+    static void write(Path target, List<InMemoryCache.Exported> entries) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 * 1024);
+        DataOutputStream out = new DataOutputStream(bytes);
+        List<byte[]> encoded = new ArrayList<>();
+        List<InMemoryCache.Exported> kept = new ArrayList<>();
+        List<Class<?>> types = new ArrayList<>();
+        for (InMemoryCache.Exported e : entries) {
+            if (!(e.value() instanceof List<?> list)) continue; // only entity lists are persisted
+            Class<?> type = list.isEmpty() || list.get(0) == null ? Object.class : list.get(0).getClass();
+            encoded.add(gzipJson(list));
+            kept.add(e);
+            types.add(type);
+        }
+
+        out.writeInt(MAGIC);
+        out.writeShort(FORMAT_VERSION);
+        out.writeInt(sourceStamp());
+        out.writeLong(System.currentTimeMillis());
+        out.writeInt(kept.size());
+        for (int i = 0; i < kept.size(); i++) {
+            InMemoryCache.Exported e = kept.get(i);
+            writeString(out, e.key());
+            writeString(out, types.get(i).getName());
+            out.writeInt(schemaStamp(types.get(i)));
+            out.writeInt(e.softTtlSecs());
+            out.writeInt(e.ttlSecs());
+            out.writeInt(e.tags().length);
+            for (String tag : e.tags()) writeString(out, tag);
+            out.writeInt(encoded.get(i).length);
+            out.write(encoded.get(i));
+        }
+        out.flush();
+
+        Files.createDirectories(target.getParent());
+        Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+        Files.write(tmp, bytes.toByteArray());
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    static List<InMemoryCache.Exported> read(Path source) throws IOException {
+        List<InMemoryCache.Exported> entries = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(source)))) {
+            if (in.readInt() != MAGIC) throw new IOException("bad header");
+            if (in.readShort() != FORMAT_VERSION) return entries;
+            if (in.readInt() != sourceStamp()) return entries;
+            long savedAt = in.readLong();
+            if (System.currentTimeMillis() - savedAt > TimeUnit.HOURS.toMillis(maxAgeHours())) return entries;
+
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String key = readString(in);
+                String typeName = readString(in);
+                int schema = in.readInt();
+                int softTtl = in.readInt();
+                int ttl = in.readInt();
+                String[] tags = new String[in.readInt()];
+                for (int t = 0; t < tags.length; t++) tags[t] = readString(in);
+                int len = in.readInt();
+
+                Class<?> type = classFor(typeName);
+                if (type == null || schemaStamp(type) != schema) { // entity changed since
+                    in.skipNBytes(len);
+                    continue;
+                }
+                byte[] payload = new byte[len];
+                in.readFully(payload);
+                entries.add(new InMemoryCache.Exported(key, gunzipJson(payload, type), softTtl, ttl, tags));
+            }
+        } catch (EOFException e) {
+            throw new IOException("truncated snapshot", e);
+        }
+        return entries;
+    }
+
+    private static byte[] gzipJson(List<?> list) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (Writer w = new OutputStreamWriter(new GZIPOutputStream(bytes), StandardCharsets.UTF_8)) {
+            gson.toJson(list, w);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static List<?> gunzipJson(byte[] payload, Class<?> type) throws IOException {
+        Type listType = TypeToken.getParameterized(List.class, type).getType();
+        try (Reader r = new InputStreamReader(new GZIPInputStream(new ByteArrayInputStream(payload)),
+                StandardCharsets.UTF_8)) {
+            List<?> list = gson.fromJson(r, listType);
+            return list != null ? list : new ArrayList<>();
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(b.length);
+        out.write(b);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] b = new byte[in.readInt()];
+        in.readFully(b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    // ═══════════════════════════════════════════
+    //  VERSION STAMPS
+    // ═══════════════════════════════════════════
+
+    /** Identifies the backend the data came from, so API and JDBC snapshots never mix. */
+    private static int sourceStamp() {
+        String source = AppConfig.isApiMode() ? "api|" + AppConfig.getRestBaseUrl() : "jdbc|" + AppConfig.getDbUrl();
+        return source.hashCode();
+    }
+
+    /** Hash of the persisted field names and types; changes when an entity gains or loses fields. */
+    static int schemaStamp(Class<?> type) {
+        List<String> parts = new ArrayList<>();
+        for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+            for (Field f : c.getDeclaredFields()) {
+                int mod = f.getModifiers();
+                if (Modifier.isStatic(mod) || Modifier.isTransient(mod)) continue;
+                parts.add(f.getName() + ":" + f.getType().getName());
+            }
+        }
+        String[] sorted = parts.toArray(new String[0]);
+        Arrays.sort(sorted);
+        return Arrays.hashCode(sorted);
+    }
+
+    private static Class<?> classFor(String name) {
+        try {
+            return Class.forName(name, false, SnapshotCache.class.getClassLoader());
+        } catch (ClassNotFoundException e) {
+            return null;
+        }
+    }
+
+    // ═══════════════════════════════════════════
+    //  CONFIG / INTERNALS
+    // ═══════════════════════════════════════════
+
+    private static boolean isEnabled() {
+        return !"false".equalsIgnoreCase(AppConfig.get("cache.snapshot.enabled", "true").trim());
+    }
+
+    private static List<String> namespaces() {
+        List<String> out = new ArrayList<>();
+        for (String ns : AppConfig.get("cache.snapshot.namespaces", DEFAULT_NAMESPACES).split(",")) {
+            if (!ns.isBlank()) out.add(ns.trim());
+        }
+        return out;
+    }
+
+    private static long maxAgeHours() {
+        return AppConfig.getLong("cache.snapshot.max_age_hours", DEFAULT_MAX_AGE_HOURS);
+    }
+
+    private static File fileFor(int userId) {
+        return DIR.resolve("snapshot-" + userId + ".bin").toFile();
+    }
+
+    private static synchronized void schedulePeriodicSave() {
+        if (periodicSave != null) return;
+        periodicSave = AppThreadPool.scheduleAtFixedRate(SnapshotCache::save,
+                SAVE_INTERVAL_MINUTES, SAVE_INTERVAL_MINUTES, TimeUnit.MINUTES);
+    }
+
+    /** Timestamps as epoch millis — Gson's default date format drops milliseconds. */
+    private static class TimestampAdapter extends TypeAdapter<Timestamp> {
+        @Override
+        public void write(JsonWriter out, Timestamp value) throws IOException {
+            if (value == null) out.nullValue(); else out.value(value.getTime());
+        }
+
+        @Override
+        public Timestamp read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            return new Timestamp(in.nextLong());
+        }
+    }
+}
@@ -0,0 +1,974 @@
+package utils;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.mindrot.jbcrypt.BCrypt;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * In-process stand-in for the SynergyGig REST backend, built on the JDK's
+ * {@code com.sun.net.httpserver} with an in-memory store. It lets services
+ * run in API mode — integration tests, throughput benchmarks, demos — on a
+ * machine with neither the FastAPI backend nor MySQL.
+ * <p>
+ * Every collection ApiClient talks to ({@code /users}, {@code /messages},
+ * {@code /posts}, {@code /reactions}, {@code /calls}, {@code /notifications},
+ * {@code /attendance}, {@code /payrolls}, ...) is a table of JSON objects
+ * keyed by an auto-assigned {@code id}. The generic routes are:
+ * <pre>
+ *   GET    /c[?field=value&amp;after_id=&amp;before_id=&amp;limit=]   list, filtered
+ *   GET    /c/{id}                                     one row, or 404
+ *   GET    /c/{field}/{value}                          rows where {field}_id (or field) = value
+ *   POST   /c                                          insert, returns the row
+ *   PUT    /c/{id}[/{action}]                          merge the body into the row
+ *   DELETE /c/{id}  |  /c?field=value                  delete
+ *   POST   /c/bulk, PUT /c/bulk, POST /c/bulk-delete   batch variants
+ * </pre>
+ * The endpoints whose shape is not plain CRUD — auth, calls, notification
+ * counts and fan-out, latest message per room, reaction toggles, project members, {@code /batch}, file
+ * upload/download — are emulated explicitly. {@code /ai/*} answers 501.
+ * {@code GET /changes/{collection}?since=} serves the {@link ChangeFeed}
+ * protocol from per-row versions and tombstones. Writes carrying an
+ * {@code Idempotency-Key} header (or {@code idempotency_key} inside a
+ * {@code /batch} item) are applied once; a repeat gets the first reply.
+ * <p>
+ * Point the app at it with {@code rest.base_url=standin} (optionally
+ * {@code rest.standin.port}, default ephemeral); {@link AppConfig#getRestBaseUrl()}
+ * then starts the {@link #shared()} instance on first use. {@link ApiClient}
+ * reads the base URL once, at class init, so set it before any service call:
+ * <pre>
+ *   AppConfig.set("app.mode", "api");
+ *   AppConfig.set("rest.base_url", "standin");
+ *   StandInServer.shared().insert("users", user);
+ *   List&lt;User&gt; users = new ServiceUser().recuperer();
+ * </pre>
+ * Tests that only speak HTTP can start a private instance with
+ * {@link #start(int)} and call {@link #baseUrl()} directly.
+ */
+public final class StandInServer {
+
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss");
+    /** /c/{segment}/{value} lookups whose column is not {@code segment_id} or {@code segment}. */
+    private static final Map<String, String> FIELD_ALIASES = Map.of("assignee", "assigned_to");
+
+    /** Left out of {@code /users/directory} and {@code view=directory} change feeds. */
+    private static final List<String> HEAVY_USER_FIELDS = List.of("password", "face_encoding", "bio", "cover_base64");
+
+    private static final int MAX_IDEMPOTENCY_KEYS = 10_000;
+
+    private static volatile StandInServer shared;
+
+    private final HttpServer http;
+    private final ExecutorService workers;
+    private final Gson gson = new Gson();
+    private final Map<String, Table> tables = new ConcurrentHashMap<>();
+    /** Change-feed clock: every insert, update and delete takes the next version. */
+    private final AtomicLong clock = new AtomicLong();
+    private final Map<String, StoredFile> files = new ConcurrentHashMap<>();
+    private final AtomicInteger requests = new AtomicInteger();
+    /** Replies by idempotency key, oldest evicted first. */
+    private final Map<String, Reply> replayed = new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Reply> eldest) {
+            return size() > MAX_IDEMPOTENCY_KEYS;
+        }
+    };
+
+    private record Reply(int status, JsonElement body) {}
+
+    private record StoredFile(String name, String contentType, byte[] data) {}
+
+    /**
+     * One collection: rows by id, plus the versions and tombstones behind {@code /changes}.
+     * Stored rows are never modified: a write replaces the row with an updated copy, so
+     * readers filter and {@code deepCopy()} them without locking. Writes lock the table.
+     */
+    private final class Table {
+        final NavigableMap<Integer, JsonObject> rows = new ConcurrentSkipListMap<>();
+        final Map<Integer, Long> versions = new ConcurrentHashMap<>();
+        final Map<Integer, Long> tombstones = new ConcurrentHashMap<>();
+        final AtomicInteger sequence = new AtomicInteger();
+
+        synchronized void put(int id, JsonObject row) {
+            rows.put(id, row);
+            tombstones.remove(id);
+            versions.put(id, clock.incrementAndGet());
+        }
+
+        /** Apply {@code changes} to the current version of {@code row}; returns the new row, or null if it is gone. */
+        synchronized JsonObject merge(JsonObject row, JsonObject changes) {
+            int id = row.get("id").getAsInt();
+            JsonObject current = rows.get(id);
+            if (current == null) return null;
+            JsonObject updated = current.deepCopy();
+            for (Map.Entry<String, JsonElement> e : changes.entrySet()) {
+                if (!"id".equals(e.getKey())) updated.add(e.getKey(), e.getValue().deepCopy());
+            }
+            rows.put(id, updated);
+            versions.put(id, clock.incrementAndGet());
+            return updated;
+        }
+
+        synchronized boolean remove(int id) {
+            if (rows.remove(id) == null) return false;
+            versions.remove(id);
+            tombstones.put(id, clock.incrementAndGet());
+            return true;
+        }
+
+        void removeIf(Predicate<JsonObject> filter) {
+            for (JsonObject row : rows.values()) {
+                if (filter.test(row)) remove(row.get("id").getAsInt());
+            }
+        }
+    }
+
+    private StandInServer(int port) throws IOException {
+        http = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+        AtomicInteger n = new AtomicInteger(1);
+        workers = Executors.newFixedThreadPool(Math.max(4, Runtime.getRuntime().availableProcessors()), r -> {
+            Thread t = new Thread(r, "standin-" + n.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        });
+        http.setExecutor(workers);
+        http.createContext("/api", this::handle);
+    }
+
+    // ═══════════════════════════════════════════
+    //  LIFECYCLE
+    // ═══════════════════════════════════════════
+
+    /** Start a server on {@code port} (0 = any free port) bound to 127.0.0.1. */
+    public static StandInServer start(int port) throws IOException {
+        StandInServer server = new StandInServer(port);
+        server.http.start();
+        System.out.println("✅ Stand-in REST server on " + server.baseUrl());
+        return server;
+    }
+
+    /** The instance behind {@code rest.base_url=standin}, started on first call. */
+    public static synchronized StandInServer shared() {
+        if (shared == null) {
+            int port = (int) AppConfig.getLong("rest.standin.port", 0);
+            try {
+                shared = start(port);
+            } catch (IOException e) {
+                throw new IllegalStateException("Stand-in REST server failed to start: " + e.getMessage(), e);
+            }
+        }
+        return shared;
+    }
+
+    /** Stop the shared instance if it was started. */
+    public static synchronized void stopShared() {
+        if (shared != null) {
+            shared.stop();
+            shared = null;
+        }
+    }
+
+    public void stop() {
+        http.stop(0);
+        workers.shutdownNow();
+    }
+
+    /** Base URL to use as {@code rest.base_url}, e.g. {@code http://127.0.0.1:54321/api}. */
+    public String baseUrl() {
+        return "http://127.0.0.1:" + http.getAddress().getPort() + "/api";
+    }
+
+    /** Number of HTTP requests served (a {@code /batch} call counts once). */
+    public int requestCount() {
+        return requests.get();
+    }
+
+    // ═══════════════════════════════════════════
+    //  STORE (seeding and inspection)
+    // ═══════════════════════════════════════════
+
+    /** Insert a row (an entity map or JSON object); assigns {@code id} and {@code created_at} if missing. */
+    public JsonObject insert(String collection, Object row) {
+        JsonObject obj = row instanceof JsonObject o ? o.deepCopy() : gson.toJsonTree(row).getAsJsonObject();
+        Table table = table(collection);
+        AtomicInteger seq = table.sequence;
+        int id;
+        if (obj.has("id") && !obj.get("id").isJsonNull() && obj.get("id").getAsInt() > 0) {
+            id = obj.get("id").getAsInt();
+            seq.accumulateAndGet(id, Math::max);
+        } else {
+            id = seq.incrementAndGet();
+        }
+        obj.addProperty("id", id);
+        if (!obj.has("created_at")) obj.addProperty("created_at", LocalDateTime.now().format(TIMESTAMP));
+        table.put(id, obj);
+        return obj.deepCopy();
+    }
+
+    /** Copy of every row in a collection, by id. */
+    public List<JsonObject> rows(String collection) {
+        List<JsonObject> out = new ArrayList<>();
+        for (JsonObject o : table(collection).rows.values()) out.add(o.deepCopy());
+        return out;
+    }
+
+    /** Empty every collection and stored file. */
+    public void clear() {
+        tables.clear();
+        files.clear();
+        synchronized (replayed) {
+            replayed.clear();
+        }
+    }
+
+    private Table table(String collection) {
+        return tables.computeIfAbsent(collection, k -> new Table());
+    }
+
+    // ═══════════════════════════════════════════
+    //  HTTP
+    // ═══════════════════════════════════════════
+
+    private void handle(HttpExchange ex) throws IOException {
+        requests.incrementAndGet();
+        try (ex) {
+            String path = ex.getRequestURI().getRawPath().substring("/api".length());
+            String query = ex.getRequestURI().getRawQuery();
+            String method = ex.getRequestMethod();
+            byte[] raw = readAll(ex.getRequestBody());
+
+            if (path.startsWith("/files/")) {
+                handleFile(ex, method, path, raw);
+                return;
+            }
+            JsonElement body = raw.length == 0 ? JsonNull.INSTANCE
+                    : JsonParser.parseString(new String(raw, StandardCharsets.UTF_8));
+            String key = ex.getRequestHeaders().getFirst("Idempotency-Key");
+            Reply reply;
+            try {
+                reply = once(key, () -> dispatch(method, path, query, body));
+            } catch (RuntimeException e) {
+                reply = error(400, e.getClass().getSimpleName() + ": " + e.getMessage());
+            }
+            send(ex, reply.status(), "application/json",
+                    gson.toJson(reply.body()).getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private static void send(HttpExchange ex, int status, String contentType, byte[] bytes) throws IOException {
+        ex.getResponseHeaders().set("Content-Type", contentType);
+        ex.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+        if (bytes.length > 0) {
+            try (OutputStream out = ex.getResponseBody()) {
+                out.write(bytes);
+            }
+        }
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        in.transferTo(buf);
+        return buf.toByteArray();
+    }
+
+    // ═══════════════════════════════════════════
+    //  ROUTING
+    // ═══════════════════════════════════════════
+
+    private Reply dispatch(String method, String path, String query, JsonElement body) {
+        String[] seg = Arrays.stream(path.split("/")).filter(s -> !s.isEmpty())
+                .map(s -> URLDecoder.decode(s, StandardCharsets.UTF_8)).toArray(String[]::new);
+        Map<String, String> params = parseQuery(query);
+        if (seg.length == 0) return error(404, "not found");
+        String c = seg[0];
+
+        switch (c) {
+            case "batch":
+                return batch(body);
+            case "auth":
+                return auth(seg.length > 1 ? seg[1] : "", body);
+            case "changes":
+                if (seg.length == 2 && "GET".equals(method)) return changes(seg[1], params);
+                break;
+            case "ai":
+                return error(501, "AI endpoints are not available on the stand-in server");
+            default:
+                break;
+        }
+
+        if (seg.length == 2) {
+            switch (seg[1]) {
+                case "bulk":
+                    if ("POST".equals(method)) return bulkInsert(c, body);
+                    if ("PUT".equals(method)) return bulkUpdate(c, body);
+                    break;
+                case "bulk-delete":
+                    return bulkDelete(c, body);
+                default:
+                    break;
+            }
+        }
+
+        Reply special = special(method, c, seg, params, body);
+        if (special != null) return special;
+
+        switch (method) {
+            case "GET":
+                if (seg.length == 1) return ok(list(c, matching(params), params));
+                if (seg.length == 2 && isInt(seg[1])) return one(c, Integer.parseInt(seg[1]));
+                if (seg.length == 3) return ok(list(c, fieldEquals(seg[1], seg[2]).and(matching(params)), params));
+                break;
+            case "POST":
+                if (seg.length == 1) return ok(insert(c, body.getAsJsonObject()));
+                break;
+            case "PUT":
+            case "PATCH":
+                if (seg.length >= 2 && isInt(seg[1])) {
+                    JsonObject changes = body.isJsonObject() ? body.getAsJsonObject() : new JsonObject();
+                    return update(c, Integer.parseInt(seg[1]), changes);
+                }
+                if (seg.length == 1 || seg.length == 2) {
+                    JsonObject changes = body.isJsonObject() ? body.getAsJsonObject() : new JsonObject();
+                    for (JsonObject row : table(c).rows.values()) {
+                        if (matching(params).test(row)) table(c).merge(row, changes);
+                    }
+                    return ok(status("updated"));
+                }
+                break;
+            case "DELETE":
+                if (seg.length == 2 && isInt(seg[1])) {
+                    return table(c).remove(Integer.parseInt(seg[1])) ? ok(status("deleted")) : error(404, "not found");
+                }
+                if (seg.length == 1) {
+                    table(c).removeIf(matching(params));
+                    return ok(status("deleted"));
+                }
+                break;
+            default:
+                break;
+        }
+        return error(404, "no stand-in route for " + method + " " + path);
+    }
+
+    /** Endpoints that are not plain CRUD; null means "use the generic route". */
+    private Reply special(String method, String c, String[] seg, Map<String, String> params, JsonElement body) {
+        switch (c) {
+            case "users":
+                if (seg.length == 2 && "online".equals(seg[1])) {
+                    return ok(list(c, row -> truthy(row.get("is_online")), params));
+                }
+                if (seg.length == 2 && "directory".equals(seg[1])) {
+                    JsonArray users = list(c, row -> true, params);
+                    for (JsonElement u : users) {
+                        HEAVY_USER_FIELDS.forEach(u.getAsJsonObject()::remove);
+                    }
+                    return ok(users);
+                }
+                if (seg.length == 3 && "email-exists".equals(seg[1])) {
+                    JsonObject r = new JsonObject();
+                    r.addProperty("exists", findFirst(c, fieldEquals("email", seg[2])) != null);
+                    return ok(r);
+                }
+                return null;
+            case "chatrooms":
+                if (seg.length == 3 && "by-name".equals(seg[1])) return firstOr404(c, fieldEquals("name", seg[2]));
+                return null;
+            case "messages":
+                if ("GET".equals(method) && seg.length == 2 && "latest".equals(seg[1])) {
+                    // Newest message per requested room, one row each
+                    Set<String> wanted = new HashSet<>(Arrays.asList(params.getOrDefault("room_ids", "").split(",")));
+                    Map<String, JsonObject> newest = new LinkedHashMap<>();
+                    for (JsonObject row : table(c).rows.values()) { // id order: later rows win
+                        String room = row.has("room_id") ? row.get("room_id").getAsString() : "";
+                        if (wanted.contains(room)) newest.put(room, row);
+                    }
+                    JsonArray out = new JsonArray();
+                    for (JsonObject row : newest.values()) {
+                        JsonObject r = new JsonObject();
+                        r.add("room_id", row.get("room_id"));
+                        r.add("id", row.get("id"));
+                        r.add("timestamp", row.has("timestamp") ? row.get("timestamp") : row.get("created_at"));
+                        out.add(r);
+                    }
+                    return ok(out);
+                }
+                return null;
+            case "calls":
+                if (seg.length == 3 && "incoming".equals(seg[1])) {
+                    return firstOr404(c, fieldEquals("callee", seg[2]).and(fieldEquals("status", "ringing")));
+                }
+                if (seg.length == 3 && "active".equals(seg[1])) {
+                    Predicate<JsonObject> party = fieldEquals("caller", seg[2]).or(fieldEquals("callee", seg[2]));
+                    return firstOr404(c, party.and(fieldEquals("status", "ringing").or(fieldEquals("status", "active"))));
+                }
+                if ("POST".equals(method) && seg.length == 1) {
+                    JsonObject call = body.getAsJsonObject().deepCopy();
+                    call.addProperty("status", "ringing");
+                    return ok(insert(c, call));
+                }
+                if ("PUT".equals(method) && seg.length == 3 && isInt(seg[1])) {
+                    JsonObject changes = new JsonObject();
+                    String now = LocalDateTime.now().format(TIMESTAMP);
+                    switch (seg[2]) {
+                        case "accept":
+                            changes.addProperty("status", "active");
+                            changes.addProperty("started_at", now);
+                            break;
+                        case "reject":
+                            changes.addProperty("status", "rejected");
+                            changes.addProperty("ended_at", now);
+                            break;
+                        case "end":
+                            changes.addProperty("status", "ended");
+                            changes.addProperty("ended_at", now);
+                            break;
+                        default:
+                            return error(404, "unknown call action " + seg[2]);
+                    }
+                    return update(c, Integer.parseInt(seg[1]), changes);
+                }
+                return null;
+            case "notifications":
+                if ("GET".equals(method) && seg.length == 2 && isInt(seg[1])) {
+                    JsonArray mine = list(c, fieldEquals("user", seg[1]), params);
+                    List<JsonElement> newestFirst = new ArrayList<>();
+                    mine.forEach(newestFirst::add);
+                    JsonArray out = new JsonArray();
+                    for (int i = newestFirst.size() - 1; i >= 0; i--) out.add(newestFirst.get(i));
+                    return ok(out);
+                }
+                if ("GET".equals(method) && seg.length == 3 && "count".equals(seg[2])) {
+                    long unread = table(c).rows.values().stream()
+                            .filter(fieldEquals("user", seg[1]).and(row -> !truthy(row.get("is_read"))))
+                            .count();
+                    JsonObject r = new JsonObject();
+                    r.addProperty("unread_count", unread);
+                    return ok(r);
+                }
+                if ("POST".equals(method) && seg.length == 1) {
+                    JsonObject n = body.getAsJsonObject().deepCopy();
+                    if (!n.has("is_read")) n.addProperty("is_read", 0);
+                    return ok(insert(c, n));
+                }
+                if ("POST".equals(method) && seg.length == 2 && "fan-out".equals(seg[1])) {
+                    // One template for many recipients; an unread one about the same thing is refreshed instead
+                    JsonObject template = body.getAsJsonObject().deepCopy();
+                    JsonArray userIds = template.remove("user_ids").getAsJsonArray();
+                    int created = 0, coalesced = 0;
+                    for (JsonElement userId : userIds) {
+                        Predicate<JsonObject> same = fieldEquals("user", userId.getAsString())
+                                .and(row -> !truthy(row.get("is_read")))
+                                .and(row -> Objects.equals(row.get("type"), template.get("type")))
+                                .and(row -> Objects.equals(row.get("reference_id"), template.get("reference_id")))
+                                .and(row -> Objects.equals(row.get("reference_type"), template.get("reference_type")));
+                        JsonObject existing = template.has("reference_id") && !template.get("reference_id").isJsonNull()
+                                ? findFirst(c, same) : null;
+                        if (existing != null) {
+                            JsonObject changes = new JsonObject();
+                            changes.add("title", template.get("title"));
+                            changes.add("body", template.get("body"));
+                            changes.addProperty("created_at", LocalDateTime.now().format(TIMESTAMP));
+                            table(c).merge(existing, changes);
+                            coalesced++;
+                        } else {
+                            JsonObject n = template.deepCopy();
+                            n.add("user_id", userId);
+                            n.addProperty("is_read", 0);
+                            insert(c, n);
+                            created++;
+                        }
+                    }
+                    JsonObject r = new JsonObject();
+                    r.addProperty("created", created);
+                    r.addProperty("coalesced", coalesced);
+                    return ok(r);
+                }
+                if ("PUT".equals(method) && seg.length == 3 && "read".equals(seg[2])) {
+                    JsonObject changes = new JsonObject();
+                    changes.addProperty("is_read", 1);
+                    return update(c, Integer.parseInt(seg[1]), changes);
+                }
+                if ("PUT".equals(method) && seg.length == 3 && "read-all".equals(seg[2])) {
+                    JsonObject read = new JsonObject();
+                    read.addProperty("is_read", 1);
+                    for (JsonObject row : table(c).rows.values()) {
+                        if (fieldEquals("user", seg[1]).test(row)) table(c).merge(row, read);
+                    }
+                    return ok(status("updated"));
+                }
+                return null;
+            case "reactions":
+                if (seg.length == 5 && "check".equals(seg[1])) {
+                    JsonObject r = new JsonObject();
+                    r.addProperty("exists", findFirst(c, reactionOf(seg[2], seg[3], seg[4])) != null);
+                    return ok(r);
+                }
+                if ("POST".equals(method) && seg.length == 2 && "toggle".equals(seg[1])) {
+                    JsonObject b = body.getAsJsonObject();
+                    Predicate<JsonObject> same = reactionOf(b.get("post_id").getAsString(),
+                            b.get("user_id").getAsString(), b.get("type").getAsString());
+                    JsonObject existing = findFirst(c, same);
+                    JsonObject r = new JsonObject();
+                    if (existing != null) {
+                        table(c).remove(existing.get("id").getAsInt());
+                        r.addProperty("action", "removed");
+                    } else {
+                        r.add("reaction", insert(c, b));
+                        r.addProperty("action", "added");
+                    }
+                    return ok(r);
+                }
+                return null;
+            case "chat_room_members":
+                if ("DELETE".equals(method) && seg.length == 3) {
+                    table(c).removeIf(fieldEquals("room", seg[1]).and(fieldEquals("user", seg[2])));
+                    return ok(status("deleted"));
+                }
+                return null;
+            case "user_follows":
+                if ("PUT".equals(method) && seg.length == 2 && "accept".equals(seg[1])) {
+                    JsonObject accepted = new JsonObject();
+                    accepted.addProperty("status", "ACCEPTED");
+                    for (JsonObject row : table(c).rows.values()) {
+                        if (matching(params).test(row)) table(c).merge(row, accepted);
+                    }
+                    return ok(status("updated"));
+                }
+                return null;
+            case "offers":
+                if (seg.length == 2 && "open".equals(seg[1])) return ok(list(c, fieldEquals("status", "OPEN"), params));
+                return null;
+            case "projects":
+                return projectMembers(method, seg, body);
+            default:
+                return null;
+        }
+    }
+
+    /** {@code /projects/{id}/members[...]} and {@code /projects/{id}/department}, stored in project_members. */
+    private Reply projectMembers(String method, String[] seg, JsonElement body) {
+        if (seg.length < 3 || !isInt(seg[1])) return null;
+        String projectId = seg[1];
+        String members = "project_members";
+        if ("department".equals(seg[2]) && "PUT".equals(method)) {
+            return update("projects", Integer.parseInt(projectId), body.getAsJsonObject());
+        }
+        if (!"members".equals(seg[2])) return null;
+        Predicate<JsonObject> ofProject = fieldEquals("project", projectId);
+        if (seg.length == 3 && "GET".equals(method)) return ok(list(members, ofProject, Map.of()));
+        if (seg.length == 3 && "POST".equals(method)) {
+            JsonObject m = body.getAsJsonObject().deepCopy();
+            m.addProperty("project_id", Integer.parseInt(projectId));
+            if (findFirst(members, ofProject.and(fieldEquals("user", m.get("user_id").getAsString()))) == null) {
+                insert(members, m);
+            }
+            return ok(status("added"));
+        }
+        if (seg.length == 4 && "DELETE".equals(method)) {
+            table(members).removeIf(ofProject.and(fieldEquals("user", seg[3])));
+            return ok(status("deleted"));
+        }
+        if (seg.length == 5 && "department".equals(seg[3]) && "POST".equals(method)) {
+            int added = 0;
+            for (JsonObject user : table("users").rows.values()) {
+                if (!fieldEquals("department", seg[4]).test(user)) continue;
+                String userId = user.get("id").getAsString();
+                if (findFirst(members, ofProject.and(fieldEquals("user", userId))) != null) continue;
+                JsonObject m = new JsonObject();
+                m.addProperty("project_id", Integer.parseInt(projectId));
+                m.addProperty("user_id", Integer.parseInt(userId));
+                m.addProperty("role", "MEMBER");
+                insert(members, m);
+                added++;
+            }
+            JsonObject r = new JsonObject();
+            r.addProperty("added", added);
+            return ok(r);
+        }
+        return null;
+    }
+
+    /**
+     * {@code GET /changes/{collection}?since=N[&field=value][&view=directory]}: rows
+     * written after version N (filtered like a list) plus ids deleted after it.
+     * The new cursor is read before scanning, so a concurrent write is at worst
+     * sent twice.
+     */
+    private Reply changes(String c, Map<String, String> params) {
+        long since = params.containsKey("since") ? Long.parseLong(params.get("since")) : 0;
+        long cursor = clock.get();
+        Table t = table(c);
+        Predicate<JsonObject> filter = matching(params);
+        boolean directory = "directory".equals(params.get("view"));
+        JsonArray upserts = new JsonArray();
+        for (JsonObject row : t.rows.values()) {
+            if (t.versions.getOrDefault(row.get("id").getAsInt(), 0L) <= since || !filter.test(row)) continue;
+            JsonObject copy = row.deepCopy();
+            if (directory) HEAVY_USER_FIELDS.forEach(copy::remove);
+            upserts.add(copy);
+        }
+        JsonArray deletes = new JsonArray();
+        if (since > 0) {
+            t.tombstones.forEach((id, version) -> {
+                if (version > since) deletes.add(id);
+            });
+        }
+        JsonObject r = new JsonObject();
+        r.addProperty("cursor", String.valueOf(cursor));
+        r.addProperty("reset", since == 0);
+        r.add("upserts", upserts);
+        r.add("deletes", deletes);
+        return ok(r);
+    }
+
+    private Reply auth(String action, JsonElement body) {
+        JsonObject b = body.isJsonObject() ? body.getAsJsonObject() : new JsonObject();
+        switch (action) {
+            case "signup": {
+                if (b.has("email") && findFirst("users", fieldEquals("email", b.get("email").getAsString())) != null) {
+                    return error(409, "email already registered");
+                }
+                return ok(strip(insert("users", b)));
+            }
+            case "login": {
+                String email = b.has("email") ? b.get("email").getAsString() : "";
+                String password = b.has("password") ? b.get("password").getAsString() : "";
+                JsonObject user = findFirst("users", fieldEquals("email", email));
+                if (user == null || !passwordMatches(password, user.get("password"))) {
+                    return error(401, "invalid credentials");
+                }
+                return ok(user.deepCopy());
+            }
+            default:
+                // forgot-password, send-verification, verify-otp, reset-password: nothing to deliver offline
+                return ok(status("ok"));
+        }
+    }
+
+    /** Same wire format as {@link ApiBatch}; each inner request is dispatched in-process. */
+    private Reply batch(JsonElement body) {
+        JsonArray responses = new JsonArray();
+        JsonArray reqs = body.isJsonObject() && body.getAsJsonObject().has("requests")
+                ? body.getAsJsonObject().getAsJsonArray("requests") : new JsonArray();
+        for (JsonElement el : reqs) {
+            JsonObject r = el.getAsJsonObject();
+            String full = r.get("path").getAsString();
+            int q = full.indexOf('?');
+            String method = r.has("method") ? r.get("method").getAsString() : "GET";
+            JsonElement inner = r.has("body") ? r.get("body") : JsonNull.INSTANCE;
+            String key = r.has("idempotency_key") ? r.get("idempotency_key").getAsString() : null;
+            Reply reply = once(key, () -> dispatch(method, q < 0 ? full : full.substring(0, q),
+                    q < 0 ? null : full.substring(q + 1), inner));
+            JsonObject out = new JsonObject();
+            out.add("id", r.get("id"));
+            out.addProperty("status", reply.status());
+            out.add("body", reply.body());
+            responses.add(out);
+        }
+        JsonObject result = new JsonObject();
+        result.add("responses", responses);
+        return ok(result);
+    }
+
+    /** Run {@code action} unless {@code key} was seen before; server errors are not remembered. */
+    private Reply once(String key, Supplier<Reply> action) {
+        if (key == null || key.isBlank()) return action.get();
+        synchronized (replayed) {
+            Reply previous = replayed.get(key);
+            if (previous != null) return previous;
+            Reply reply = action.get();
+            if (reply.status() < 500) replayed.put(key, reply);
+            return reply;
+        }
+    }
+
+    private Reply bulkInsert(String c, JsonElement body) {
+        JsonArray out = new JsonArray();
+        for (JsonElement el : items(body)) out.add(insert(c, el.getAsJsonObject()));
+        return ok(out);
+    }
+
+    private Reply bulkUpdate(String c, JsonElement body) {
+        int updated = 0;
+        for (JsonElement el : items(body)) {
+            JsonObject o = el.getAsJsonObject();
+            JsonObject row = table(c).rows.get(o.get("id").getAsInt());
+            if (row != null && table(c).merge(row, o) != null) updated++;
+        }
+        JsonObject r = new JsonObject();
+        r.addProperty("updated", updated);
+        return ok(r);
+    }
+
+    private Reply bulkDelete(String c, JsonElement body) {
+        int deleted = 0;
+        JsonArray ids = body.isJsonObject() && body.getAsJsonObject().has("ids")
+                ? body.getAsJsonObject().getAsJsonArray("ids") : items(body);
+        for (JsonElement id : ids) {
+            if (table(c).remove(id.getAsInt())) deleted++;
+        }
+        JsonObject r = new JsonObject();
+        r.addProperty("deleted", deleted);
+        return ok(r);
+    }
+
+    // ═══════════════════════════════════════════
+    //  FILES
+    // ═══════════════════════════════════════════
+
+    private void handleFile(HttpExchange ex, String method, String path, byte[] raw) throws IOException {
+        if ("POST".equals(method) && "/files/upload".equals(path)) {
+            StoredFile file = parseMultipart(ex.getRequestHeaders().getFirst("Content-Type"), raw);
+            if (file == null) {
+                send(ex, 400, "application/json", "{\"detail\":\"multipart file expected\"}".getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+            String id = Integer.toString(files.size() + 1) + "-" + Long.toHexString(System.nanoTime());
+            files.put(id, file);
+            JsonObject r = new JsonObject();
+            r.addProperty("file_id", id);
+            r.addProperty("filename", file.name());
+            r.addProperty("size", file.data().length);
+            r.addProperty("content_type", file.contentType());
+            send(ex, 200, "application/json", gson.toJson(r).getBytes(StandardCharsets.UTF_8));
+            return;
+        }
+        if ("GET".equals(method) && path.startsWith("/files/download/")) {
+            StoredFile file = files.get(path.substring("/files/download/".length()));
+            if (file == null) {
+                send(ex, 404, "application/json", "{\"detail\":\"file not found\"}".getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+            send(ex, 200, file.contentType(), file.data());
+            return;
+        }
+        send(ex, 404, "application/json", "{\"detail\":\"not found\"}".getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** First part of a multipart/form-data body — enough for ApiClient.uploadFile. */
+    private static StoredFile parseMultipart(String contentType, byte[] raw) {
+        if (contentType == null || !contentType.contains("boundary=")) return null;
+        String boundary = contentType.substring(contentType.indexOf("boundary=") + "boundary=".length()).trim();
+        String text = new String(raw, StandardCharsets.ISO_8859_1); // 1:1 byte mapping
+        int headerEnd = text.indexOf("\r\n\r\n");
+        int end = text.indexOf("\r\n--" + boundary, headerEnd);
+        if (headerEnd < 0 || end < 0) return null;
+        String headers = text.substring(0, headerEnd);
+        String name = "upload";
+        int fn = headers.indexOf("filename=\"");
+        if (fn >= 0) name = headers.substring(fn + 10, headers.indexOf('"', fn + 10));
+        String type = "application/octet-stream";
+        for (String line : headers.split("\r\n")) {
+            if (line.regionMatches(true, 0, "Content-Type:", 0, 13)) type = line.substring(13).trim();
+        }
+        return new StoredFile(name, type, Arrays.copyOfRange(raw, headerEnd + 4, end));
+    }
+
+    // ═══════════════════════════════════════════
+    //  QUERY HELPERS
+    // ═══════════════════════════════════════════
+
+    /**
+     * Rows matching {@code filter}, by ascending id. {@code after_id} / {@code before_id}
+     * bound the id range; {@code limit} keeps the first rows after {@code after_id},
+     * otherwise the newest ones (the message paging contract).
+     */
+    private JsonArray list(String c, Predicate<JsonObject> filter, Map<String, String> params) {
+        NavigableMap<Integer, JsonObject> range = table(c).rows;
+        if (params.containsKey("after_id")) range = range.tailMap(Integer.parseInt(params.get("after_id")), false);
+        if (params.containsKey("before_id")) range = range.headMap(Integer.parseInt(params.get("before_id")), false);
+        List<JsonObject> rows = new ArrayList<>();
+        for (JsonObject row : range.values()) {
+            if (filter.test(row)) rows.add(row);
+        }
+        if (params.containsKey("limit")) {
+            int limit = Math.max(0, Integer.parseInt(params.get("limit")));
+            if (rows.size() > limit) {
+                rows = params.containsKey("after_id") ? rows.subList(0, limit) : rows.subList(rows.size() - limit, rows.size());
+            }
+        }
+        JsonArray out = new JsonArray();
+        for (JsonObject row : rows) out.add(row.deepCopy());
+        return out;
+    }
+
+    private Reply one(String c, int id) {
+        JsonObject row = table(c).rows.get(id);
+        return row == null ? error(404, c + " " + id + " not found") : ok(row.deepCopy());
+    }
+
+    private Reply firstOr404(String c, Predicate<JsonObject> filter) {
+        JsonObject row = findFirst(c, filter);
+        return row == null ? error(404, "not found") : ok(row.deepCopy());
+    }
+
+    private JsonObject findFirst(String c, Predicate<JsonObject> filter) {
+        for (JsonObject row : table(c).rows.values()) {
+            if (filter.test(row)) return row;
+        }
+        return null;
+    }
+
+    private Reply update(String c, int id, JsonObject changes) {
+        JsonObject row = table(c).rows.get(id);
+        JsonObject updated = row == null ? null : table(c).merge(row, changes);
+        if (updated == null) return error(404, c + " " + id + " not found");
+        return ok(updated.deepCopy());
+    }
+
+    /** Query parameters as equality filters; paging parameters are skipped. */
+    private static Predicate<JsonObject> matching(Map<String, String> params) {
+        Predicate<JsonObject> p = row -> true;
+        for (Map.Entry<String, String> e : params.entrySet()) {
+            switch (e.getKey()) {
+                case "limit":
+                case "after_id":
+                case "before_id":
+                case "since":
+                case "view":
+                    continue;
+                default:
+                    String key = e.getKey();
+                    String value = e.getValue();
+                    p = p.and(row -> valueEquals(row.get(key), value));
+            }
+        }
+        return p;
+    }
+
+    /** {@code /c/{segment}/{value}}: compares {@code segment_id} if rows have it, else {@code segment}. */
+    private static Predicate<JsonObject> fieldEquals(String segment, String value) {
+        String alias = FIELD_ALIASES.get(segment);
+        return row -> {
+            String key = alias != null ? alias : row.has(segment + "_id") ? segment + "_id" : segment;
+            return valueEquals(row.get(key), value);
+        };
+    }
+
+    private static Predicate<JsonObject> reactionOf(String postId, String userId, String type) {
+        return fieldEquals("post", postId).and(fieldEquals("user", userId))
+                .and(fieldEquals("type", type));
+    }
+
+    private static boolean valueEquals(JsonElement el, String value) {
+        if (el == null || el.isJsonNull() || !el.isJsonPrimitive()) return false;
+        JsonPrimitive p = el.getAsJsonPrimitive();
+        if (p.isNumber() && isNumeric(value)) return p.getAsDouble() == Double.parseDouble(value);
+        if (p.isBoolean()) return p.getAsBoolean() == ("true".equalsIgnoreCase(value) || "1".equals(value));
+        return p.getAsString().equalsIgnoreCase(value);
+    }
+
+    private static boolean truthy(JsonElement el) {
+        if (el == null || el.isJsonNull() || !el.isJsonPrimitive()) return false;
+        JsonPrimitive p = el.getAsJsonPrimitive();
+        if (p.isBoolean()) return p.getAsBoolean();
+        if (p.isNumber()) return p.getAsInt() != 0;
+        return "true".equalsIgnoreCase(p.getAsString()) || "1".equals(p.getAsString());
+    }
+
+    private static boolean passwordMatches(String password, JsonElement stored) {
+        if (stored == null || stored.isJsonNull()) return false;
+        String hash = stored.getAsString();
+        if (hash.startsWith("$2")) {
+            try {
+                return BCrypt.checkpw(password, hash);
+            } catch (IllegalArgumentException e) {
+                return false;
+            }
+        }
+        return hash.equals(password);
+    }
+
+    private static JsonObject strip(JsonObject user) {
+        user.remove("password");
+        return user;
+    }
+
+    private static JsonArray items(JsonElement body) {
+        if (body.isJsonArray()) return body.getAsJsonArray();
+        if (body.isJsonObject()) {
+            for (String key : List.of("items", "records", "data")) {
+                if (body.getAsJsonObject().has(key)) return body.getAsJsonObject().getAsJsonArray(key);
+            }
+        }
+        return new JsonArray();
+    }
+
+    private static Map<String, String> parseQuery(String query) {
+        Map<String, String> params = new LinkedHashMap<>();
+        if (query == null || query.isEmpty()) return params;
+        for (String pair : query.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq <= 0) continue;
+            params.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                    URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+        }
+        return params;
+    }
+
+    private static boolean isInt(String s) {
+        if (s.isEmpty() || s.length() > 9) return false;
+        for (int i = 0; i < s.length(); i++) {
+            if (!Character.isDigit(s.charAt(i))) return false;
+        }
+        return true;
+    }
+
+    private static boolean isNumeric(String s) {
+        try {
+            Double.parseDouble(s);
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private static JsonObject status(String status) {
+        JsonObject o = new JsonObject();
+        o.addProperty("status", status);
+        return o;
+    }
+
+    private static Reply ok(JsonElement body) {
+        return new Reply(200, body);
+    }
+
+    private static Reply error(int status, String detail) {
+        JsonObject o = new JsonObject();
+        o.addProperty("detail", detail);
+        return new Reply(status, o);
+    }
+}
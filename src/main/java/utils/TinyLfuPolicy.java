@@ -0,0 +1,201 @@
+package utils;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Weight-bounded W-TinyLFU eviction policy used by {@link InMemoryCache}.
+ * <p>
+ * New keys enter a small LRU <i>window</i>. When the window overflows, its
+ * oldest key becomes a candidate for the segmented-LRU <i>main</i> space
+ * (probation + protected) and is only admitted if it has been requested more
+ * often than the main space's eviction victim, according to a count-min
+ * frequency sketch. One-off loads (e.g. a room opened once) therefore can't
+ * flush hot lists like {@code users:all} out of the cache.
+ * <p>
+ * Not thread-safe — {@link InMemoryCache} calls it under its policy lock.
+ */
+final class TinyLfuPolicy {
+
+    private final long maxWeight;
+    private final long windowMax;
+    private final long protectedMax;
+
+    // access-ordered: first entry = least recently used
+    private final LinkedHashMap<String, Long> window = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<String, Long> probation = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<String, Long> protectedSeg = new LinkedHashMap<>(16, 0.75f, true);
+    private long windowWeight;
+    private long probationWeight;
+    private long protectedWeight;
+
+    private final FrequencySketch sketch = new FrequencySketch();
+
+    TinyLfuPolicy(long maxWeight) {
+        this.maxWeight = Math.max(1, maxWeight);
+        this.windowMax = Math.max(1, this.maxWeight / 100);          // 1% window
+        long mainMax = Math.max(1, this.maxWeight - windowMax);
+        this.protectedMax = Math.max(1, mainMax * 80 / 100);        // 80% of main is protected
+    }
+
+    long maxWeight() {
+        return maxWeight;
+    }
+
+    long weightedSize() {
+        return windowWeight + probationWeight + protectedWeight;
+    }
+
+    /** Record a lookup (hit or miss) for frequency, and refresh recency on a hit. */
+    void onAccess(String key) {
+        sketch.increment(key);
+        if (window.get(key) != null || protectedSeg.get(key) != null) {
+            return; // reordered by the access-ordered get
+        }
+        Long w = probation.remove(key);
+        if (w != null) {
+            probationWeight -= w;
+            protectedSeg.put(key, w);
+            protectedWeight += w;
+            // Demote protected overflow back to probation
+            while (protectedWeight > protectedMax && protectedSeg.size() > 1) {
+                Map.Entry<String, Long> lru = removeFirst(protectedSeg);
+                protectedWeight -= lru.getValue();
+                probation.put(lru.getKey(), lru.getValue());
+                probationWeight += lru.getValue();
+            }
+        }
+    }
+
+    /**
+     * Record an insert or replacement and return the keys that must be evicted
+     * to stay within the maximum weight (possibly including {@code key} itself).
+     */
+    List<String> onWrite(String key, long weight) {
+        sketch.increment(key);
+        remove(key);
+        window.put(key, weight);
+        windowWeight += weight;
+        return evictIfNeeded();
+    }
+
+    /** Forget a key removed from the cache by the caller. */
+    void remove(String key) {
+        Long w;
+        if ((w = window.remove(key)) != null) windowWeight -= w;
+        else if ((w = probation.remove(key)) != null) probationWeight -= w;
+        else if ((w = protectedSeg.remove(key)) != null) protectedWeight -= w;
+    }
+
+    void clear() {
+        window.clear();
+        probation.clear();
+        protectedSeg.clear();
+        windowWeight = probationWeight = protectedWeight = 0;
+    }
+
+    // ═══════════════════════════════════════════
+    //  ADMISSION / EVICTION
+    // ═══════════════════════════════════════════
+
+    private List<String> evictIfNeeded() {
+        List<String> evicted = new ArrayList<>();
+        long mainMax = maxWeight - windowMax;
+
+        // Window overflow: each LRU window entry competes for a place in main
+        while (windowWeight > windowMax && !window.isEmpty()) {
+            Map.Entry<String, Long> candidate = removeFirst(window);
+            windowWeight -= candidate.getValue();
+            String candidateKey = candidate.getKey();
+            long candidateWeight = candidate.getValue();
+
+            boolean admitted = true;
+            while (probationWeight + protectedWeight + candidateWeight > mainMax) {
+                LinkedHashMap<String, Long> victimSeg = !probation.isEmpty() ? probation : protectedSeg;
+                if (victimSeg.isEmpty() || candidateWeight > mainMax) {
+                    admitted = false;
+                    break;
+                }
+                String victimKey = victimSeg.keySet().iterator().next();
+                if (sketch.frequency(candidateKey) > sketch.frequency(victimKey)) {
+                    long vw = victimSeg.remove(victimKey);
+                    if (victimSeg == probation) probationWeight -= vw; else protectedWeight -= vw;
+                    evicted.add(victimKey);
+                } else {
+                    admitted = false;
+                    break;
+                }
+            }
+            if (admitted) {
+                probation.put(candidateKey, candidateWeight);
+                probationWeight += candidateWeight;
+            } else {
+                evicted.add(candidateKey);
+            }
+        }
+        return evicted;
+    }
+
+    private static Map.Entry<String, Long> removeFirst(LinkedHashMap<String, Long> seg) {
+        Iterator<Map.Entry<String, Long>> it = seg.entrySet().iterator();
+        Map.Entry<String, Long> e = it.next();
+        Map.Entry<String, Long> first = Map.entry(e.getKey(), e.getValue());
+        it.remove();
+        return first;
+    }
+
+    // ═══════════════════════════════════════════
+    //  FREQUENCY SKETCH
+    // ═══════════════════════════════════════════
+
+    /**
+     * 4-row count-min sketch with 4-bit saturating counters. All counters are
+     * halved every {@code 10 × width} increments so old popularity fades.
+     */
+    static final class FrequencySketch {
+        private static final int DEPTH = 4;
+        private static final int WIDTH = 4096; // power of two
+        private static final long[] SEEDS = {
+                0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L
+        };
+
+        private final byte[] counters = new byte[DEPTH * WIDTH];
+        private int additions;
+
+        void increment(String key) {
+            int h = spread(key.hashCode());
+            for (int i = 0; i < DEPTH; i++) {
+                int idx = i * WIDTH + indexOf(h, i);
+                if (counters[idx] < 15) counters[idx]++;
+            }
+            if (++additions >= WIDTH * 10) {
+                for (int i = 0; i < counters.length; i++) counters[i] >>= 1;
+                additions /= 2;
+            }
+        }
+
+        int frequency(String key) {
+            int h = spread(key.hashCode());
+            int min = Integer.MAX_VALUE;
+            for (int i = 0; i < DEPTH; i++) {
+                min = Math.min(min, counters[i * WIDTH + indexOf(h, i)]);
+            }
+            return min;
+        }
+
+        private static int indexOf(int h, int row) {
+            long hash = (h + SEEDS[row]) * SEEDS[row];
+            hash += hash >>> 32;
+            return (int) hash & (WIDTH - 1);
+        }
+
+        private static int spread(int x) {
+            x = ((x >>> 16) ^ x) * 0x45d9f3b;
+            x = ((x >>> 16) ^ x) * 0x45d9f3b;
+            return (x >>> 16) ^ x;
+        }
+    }
+}
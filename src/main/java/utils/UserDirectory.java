@@ -0,0 +1,259 @@
+package utils;
+
+import entities.User;
+import services.ServiceUser;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Shared id → name / role / avatar / online / department index of all users.
+ * <p>
+ * Loaded through {@link ServiceUser#getDirectory(int)}, a projection that
+ * leaves out password hashes, face vectors, bios and cover images. A full
+ * load happens at most every {@value #FULL_RELOAD_MS} ms; in between,
+ * {@link #refresh()} only asks for users newer than the highest id held and
+ * for the current set of online ids.
+ * <p>
+ * In API mode, when the backend has a users change feed
+ * ({@link ServiceUser#getDirectoryFeed()}), {@link #refresh()} applies its
+ * deltas instead — renames, role and online changes and deletions arrive
+ * within one refresh, and the periodic full reload is not needed.
+ * <p>
+ * The index is an immutable snapshot (sorted {@code int[]} of ids plus a
+ * parallel array of entries) swapped atomically, so lookups never lock.
+ * <p>
+ * Usage:
+ * <pre>
+ *   UserDirectory.refresh();                      // cheap when fresh
+ *   String name = UserDirectory.name(userId);
+ *   UserDirectory.Entry e = UserDirectory.get(userId);
+ *   for (User u : UserDirectory.users()) ...      // light User objects for legacy code
+ * </pre>
+ */
+public final class UserDirectory {
+
+    /** Full projection reload interval — picks up renames, role and avatar changes. */
+    private static final long FULL_RELOAD_MS = 5 * 60_000;
+    /** Minimum age before {@link #refresh()} asks for new users and online flags again. */
+    private static final long DELTA_MS = 15_000;
+
+    private static final ServiceUser service = new ServiceUser();
+    private static volatile Snapshot snapshot = Snapshot.EMPTY;
+    private static volatile long lastFullLoad = 0;
+    private static volatile long lastDelta = 0;
+    /** Feed view the snapshot was last built from (identity changes only when rows changed). */
+    private static volatile List<User> feedView = null;
+
+    private UserDirectory() { /* utility */ }
+
+    /** One user as shown in lists. {@code departmentId} is 0 when unassigned. */
+    public record Entry(int id, String firstName, String lastName, String email, String role,
+                        String avatarPath, boolean online, boolean active, int departmentId) {
+
+        public String displayName() {
+            return firstName + " " + lastName;
+        }
+
+        Entry withOnline(boolean value) {
+            return value == online ? this
+                    : new Entry(id, firstName, lastName, email, role, avatarPath, value, active, departmentId);
+        }
+
+        static Entry of(User u) {
+            return new Entry(u.getId(), u.getFirstName(), u.getLastName(), u.getEmail(), u.getRole(),
+                    u.getAvatarPath(), u.isOnline(), u.isActive(),
+                    u.getDepartmentId() != null ? u.getDepartmentId() : 0);
+        }
+
+        /** A {@link User} carrying only the directory fields. */
+        public User toUser() {
+            User u = new User(id, email, null, firstName, lastName, role, null, avatarPath);
+            u.setOnline(online);
+            u.setActive(active);
+            if (departmentId > 0) u.setDepartmentId(departmentId);
+            return u;
+        }
+    }
+
+    // ═══════════════════════════════════════════
+    //  LOADING
+    // ═══════════════════════════════════════════
+
+    /**
+     * Bring the directory up to date: a full projection load when it is empty
+     * or older than {@value #FULL_RELOAD_MS} ms, otherwise (at most every
+     * {@value #DELTA_MS} ms) only new users and online flags.
+     */
+    public static void refresh() {
+        ChangeFeed<User> feed = service.getDirectoryFeed();
+        if (feed != null && feed.isAvailable()) {
+            syncFromFeed(feed);
+            if (feed.isIncremental()) return;
+        }
+        long now = System.currentTimeMillis();
+        if (snapshot.isEmpty() || now - lastFullLoad >= FULL_RELOAD_MS) {
+            fullLoad();
+        } else if (now - lastDelta >= DELTA_MS) {
+            deltaLoad();
+        }
+    }
+
+    /** Reload the whole projection now. */
+    public static void forceRefresh() {
+        lastFullLoad = 0;
+        fullLoad();
+    }
+
+    private static synchronized void fullLoad() {
+        if (!snapshot.isEmpty() && System.currentTimeMillis() - lastFullLoad < FULL_RELOAD_MS) return;
+        try {
+            List<User> users = service.getDirectory(0);
+            List<Entry> entries = new ArrayList<>(users.size());
+            for (User u : users) entries.add(Entry.of(u));
+            snapshot = Snapshot.of(entries);
+            lastFullLoad = lastDelta = System.currentTimeMillis();
+        } catch (SQLException e) {
+            System.err.println("UserDirectory: failed to load users — " + e.getMessage());
+        }
+    }
+
+    private static synchronized void syncFromFeed(ChangeFeed<User> feed) {
+        List<User> users = feed.sync();
+        if (!feed.isIncremental() || users == feedView) return;
+        List<Entry> entries = new ArrayList<>(users.size());
+        for (User u : users) entries.add(Entry.of(u));
+        snapshot = Snapshot.of(entries);
+        feedView = users;
+        lastFullLoad = lastDelta = System.currentTimeMillis();
+    }
+
+    private static synchronized void deltaLoad() {
+        if (System.currentTimeMillis() - lastDelta < DELTA_MS) return;
+        try {
+            Snapshot current = snapshot;
+            List<User> added = service.getDirectory(current.maxId());
+            Set<Integer> online = service.getOnlineIds();
+
+            List<Entry> entries = new ArrayList<>(current.size() + added.size());
+            for (Entry e : current.entries) {
+                entries.add(online != null ? e.withOnline(online.contains(e.id())) : e);
+            }
+            for (User u : added) entries.add(Entry.of(u));
+            snapshot = Snapshot.of(entries);
+            lastDelta = System.currentTimeMillis();
+        } catch (SQLException e) {
+            System.err.println("UserDirectory: incremental refresh failed — " + e.getMessage());
+        }
+    }
+
+    // ═══════════════════════════════════════════
+    //  LOOKUPS
+    // ═══════════════════════════════════════════
+
+    /** Entry for a user id, or null if unknown. */
+    public static Entry get(int userId) {
+        return snapshot.get(userId);
+    }
+
+    /** Display name for a user id, or {@code "User #<id>"} if unknown. */
+    public static String name(int userId) {
+        Entry e = snapshot.get(userId);
+        return e != null ? e.displayName() : "User #" + userId;
+    }
+
+    /** All entries, ordered by id. */
+    public static List<Entry> entries() {
+        return Collections.unmodifiableList(Arrays.asList(snapshot.entries));
+    }
+
+    /** All users as light {@link User} objects (built once per snapshot). */
+    public static List<User> users() {
+        return snapshot.users();
+    }
+
+    // ═══════════════════════════════════════════
+    //  LOCAL UPDATES
+    // ═══════════════════════════════════════════
+
+    /** Flip one user's online flag (e.g. from a presence event). */
+    public static synchronized void setOnline(int userId, boolean online) {
+        Snapshot current = snapshot;
+        int idx = Arrays.binarySearch(current.ids, userId);
+        if (idx < 0 || current.entries[idx].online() == online) return;
+        Entry[] entries = current.entries.clone();
+        entries[idx] = entries[idx].withOnline(online);
+        snapshot = new Snapshot(current.ids, entries);
+    }
+
+    /** Make the next {@link #refresh()} a full reload (after user rows were edited). */
+    public static void invalidate() {
+        lastFullLoad = 0;
+        ChangeFeed<User> feed = service.getDirectoryFeed();
+        if (feed != null) feed.markStale();
+    }
+
+    /** Drop everything (e.g. on logout). */
+    public static synchronized void clear() {
+        snapshot = Snapshot.EMPTY;
+        lastFullLoad = lastDelta = 0;
+        feedView = null;
+    }
+
+    // ═══════════════════════════════════════════
+    //  INTERNALS
+    // ═══════════════════════════════════════════
+
+    /** Immutable sorted index: {@code ids[i]} belongs to {@code entries[i]}. */
+    private static final class Snapshot {
+        static final Snapshot EMPTY = new Snapshot(new int[0], new Entry[0]);
+
+        final int[] ids;
+        final Entry[] entries;
+        private volatile List<User> users;
+
+        Snapshot(int[] ids, Entry[] entries) {
+            this.ids = ids;
+            this.entries = entries;
+        }
+
+        static Snapshot of(List<Entry> list) {
+            Entry[] entries = list.toArray(new Entry[0]);
+            Arrays.sort(entries, (a, b) -> Integer.compare(a.id(), b.id()));
+            int[] ids = new int[entries.length];
+            for (int i = 0; i < entries.length; i++) ids[i] = entries[i].id();
+            return new Snapshot(ids, entries);
+        }
+
+        Entry get(int id) {
+            int idx = Arrays.binarySearch(ids, id);
+            return idx >= 0 ? entries[idx] : null;
+        }
+
+        boolean isEmpty() {
+            return ids.length == 0;
+        }
+
+        int size() {
+            return ids.length;
+        }
+
+        int maxId() {
+            return ids.length == 0 ? 0 : ids[ids.length - 1];
+        }
+
+        List<User> users() {
+            List<User> u = users;
+            if (u == null) {
+                List<User> built = new ArrayList<>(entries.length);
+                for (Entry e : entries) built.add(e.toUser());
+                users = u = Collections.unmodifiableList(built);
+            }
+            return u;
+        }
+    }
+}
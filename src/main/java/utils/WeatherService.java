@@ -16,9 +16,7 @@ import java.util.Locale;
  */
 public class WeatherService {
 
-    private static final HttpClient client = HttpClient.newBuilder()
-            .connectTimeout(Duration.ofSeconds(10))
-            .build();
+    private static final HttpClient client = HttpClients.client(HttpClients.Integration.PUBLIC_API);
 
     /** Current weather data for a city. */
     public static class CurrentWeather {
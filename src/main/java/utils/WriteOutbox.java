@@ -0,0 +1,531 @@
+package utils;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Durable queue for API writes that do not need an answer before the UI
+ * moves on (sending a chat message, editing a post, auto check-in…).
+ * <p>
+ * A plain {@code ApiClient.post} that hits a network blip logs an error and
+ * the write is gone. Writes handed to {@link #enqueue} are instead appended
+ * to a journal under {@code ~/.synergygig_cache/} (fsynced before returning)
+ * and delivered by a background sender:
+ * <ul>
+ *   <li>Entries are sent in order, up to {@code outbox.batch} (default
+ *       {@value #DEFAULT_BATCH}) per {@code POST /batch}; a backend without
+ *       the batch endpoint gets them one by one, and the batch is retried
+ *       after {@value #RETRY_UNSUPPORTED_MS} ms.</li>
+ *   <li>Every entry carries an idempotency key ({@code Idempotency-Key}
+ *       header, or {@code idempotency_key} inside a batch), so a write that
+ *       reached the server before the connection dropped is not applied twice
+ *       when it is re-sent.</li>
+ *   <li>2xx removes the entry. Network errors, 408, 429 and 5xx keep it and
+ *       retry with exponential backoff (max {@value #MAX_BACKOFF_MS} ms);
+ *       nothing after a kept entry is acknowledged, in a batch or not.
+ *       Any other 4xx can never succeed: it is logged and dropped.</li>
+ *   <li>Entries left over from a previous run (crash, no network on exit)
+ *       are sent after the next login.</li>
+ * </ul>
+ * Until an entry is delivered, {@link #pending(String, String)} lets local
+ * reads show it (see {@link RoomMessageStore#snapshot(int)}).
+ * <p>
+ * Journal: one JSON object per line, appended only —
+ * {@code {"key","method","path","body","at"}} for a write and {@code {"ack":key}}
+ * once it was delivered. It is truncated whenever the queue drains and
+ * compacted on startup.
+ * <p>
+ * Usage:
+ * <pre>
+ *   WriteOutbox.enqueue("POST", "/messages", body, reply -&gt; invalidateRoom(roomId));   // fire and forget
+ *   WriteOutbox.sendOrQueue("PUT", "/posts/" + id, body);        // false: still queued, or rejected
+ *   WriteOutbox.flush(3_000);   // on logout / exit: best effort, the rest stays on disk
+ * </pre>
+ */
+public final class WriteOutbox {
+
+    private static final int DEFAULT_BATCH = 50;
+    private static final long DEFAULT_WINDOW_MS = 150;
+    private static final long DEFAULT_AWAIT_MS = 5_000;
+    private static final long BASE_BACKOFF_MS = 500;
+    private static final long MAX_BACKOFF_MS = 30_000;
+    private static final long RETRY_UNSUPPORTED_MS = 5 * 60_000;
+
+    private static final Gson gson = new Gson();
+
+    private static final int batchSize = (int) AppConfig.getLong("outbox.batch", DEFAULT_BATCH);
+    private static final long windowMs = AppConfig.getLong("outbox.window_ms", DEFAULT_WINDOW_MS);
+    private static final long awaitMs = AppConfig.getLong("outbox.await_ms", DEFAULT_AWAIT_MS);
+
+    /** One queued write. */
+    public record Pending(String key, String method, String path, JsonObject body, long at) {}
+
+    private static final Object lock = new Object();
+    private static Journal journal;                                          // guarded by lock
+    private static final Map<String, Pending> queue = new LinkedHashMap<>(); // guarded by lock, in send order
+    private static final Map<String, Consumer<JsonElement>> callbacks = new HashMap<>(); // guarded by lock
+    /** Final status of writes a caller is waiting on; null until delivered or dropped. Guarded by lock. */
+    private static final Map<String, Integer> outcomes = new HashMap<>();
+    private static ScheduledFuture<?> scheduled;                             // guarded by lock
+    private static boolean draining;                                         // guarded by lock
+    private static int failures;                                             // guarded by lock
+    private static volatile long batchUnsupportedUntil = 0;
+
+    private WriteOutbox() { /* utility */ }
+
+    // ═══════════════════════════════════════════
+    //  PUBLIC API
+    // ═══════════════════════════════════════════
+
+    /** Load writes left over from a previous run and start sending them. */
+    public static void start() {
+        synchronized (lock) {
+            open();
+            if (!queue.isEmpty()) {
+                System.out.println("📤 WriteOutbox: " + queue.size() + " write(s) from a previous session to send");
+                schedule(0);
+            }
+        }
+    }
+
+    /** Queue a write; see {@link #enqueue(String, String, Object, Consumer)}. */
+    public static String enqueue(String method, String path, Object body) {
+        return enqueue(method, path, body, null);
+    }
+
+    /**
+     * Persist a write and schedule its delivery.
+     *
+     * @param body        request body (serialized with Gson), or null
+     * @param onDelivered gets the server's reply on the sender thread once it
+     *                    accepted the write (not after a restart); may be null
+     * @return the write's idempotency key
+     */
+    public static String enqueue(String method, String path, Object body, Consumer<JsonElement> onDelivered) {
+        return enqueue(UUID.randomUUID().toString(), method, path, body, onDelivered, false);
+    }
+
+    /**
+     * Queue a write the caller already tried under {@code idempotencyKey} with
+     * an unknown outcome (timeout, 5xx). The retry reuses the key, so the
+     * server applies it at most once.
+     */
+    public static void retryLater(String idempotencyKey, String method, String path, Object body) {
+        retryLater(idempotencyKey, method, path, body, null);
+    }
+
+    /** Same, with a callback like {@link #enqueue(String, String, Object, Consumer)}'s. */
+    public static void retryLater(String idempotencyKey, String method, String path, Object body,
+                                  Consumer<JsonElement> onDelivered) {
+        enqueue(idempotencyKey, method, path, body, onDelivered, false);
+    }
+
+    private static String enqueue(String key, String method, String path, Object body,
+                                  Consumer<JsonElement> onDelivered, boolean awaited) {
+        JsonElement tree = body == null ? null : gson.toJsonTree(body);
+        Pending p = new Pending(key, method, path,
+                tree != null && tree.isJsonObject() ? tree.getAsJsonObject() : null, System.currentTimeMillis());
+        synchronized (lock) {
+            open();
+            try {
+                journal.append(p);
+            } catch (IOException e) {
+                // Still deliver it in this session; it just won't survive a crash
+                System.err.println("⚠ WriteOutbox: journal write failed — " + e.getMessage());
+            }
+            queue.put(p.key(), p);
+            if (onDelivered != null) callbacks.put(p.key(), onDelivered);
+            if (awaited) outcomes.put(p.key(), null);
+            schedule(windowMs); // no-op while a send or backoff is already scheduled
+        }
+        return p.key();
+    }
+
+    /** Writes not yet delivered for {@code method} and {@code path}, oldest first. */
+    public static List<Pending> pending(String method, String path) {
+        return pending(p -> p.method().equals(method) && p.path().equals(path));
+    }
+
+    /** Writes not yet delivered that match {@code filter}, oldest first. */
+    public static List<Pending> pending(Predicate<Pending> filter) {
+        List<Pending> out = new ArrayList<>();
+        synchronized (lock) {
+            for (Pending p : queue.values()) {
+                if (filter.test(p)) out.add(p);
+            }
+        }
+        return out;
+    }
+
+    /** Number of writes not yet delivered. */
+    public static int size() {
+        synchronized (lock) {
+            return queue.size();
+        }
+    }
+
+    /** {@link #sendOrQueue(String, String, Object, long)} waiting up to {@code outbox.await_ms}. */
+    public static boolean sendOrQueue(String method, String path, Object body) {
+        return sendOrQueue(method, path, body, awaitMs);
+    }
+
+    /**
+     * Queue a write and try to deliver it right away, for callers that re-read
+     * the data next. Waits at most {@code timeoutMs}; if the write could not be
+     * delivered by then it stays queued and is sent later.
+     *
+     * @return true if the server accepted it; false if it is still queued or
+     *         was rejected (4xx) and dropped
+     */
+    public static boolean sendOrQueue(String method, String path, Object body, long timeoutMs) {
+        String key = enqueue(UUID.randomUUID().toString(), method, path, body, null, true);
+        try {
+            return awaitDelivery(key, timeoutMs);
+        } finally {
+            synchronized (lock) {
+                outcomes.remove(key); // still queued: nobody waits for it any more
+            }
+        }
+    }
+
+    /**
+     * Try to deliver everything now, waiting at most {@code timeoutMs}.
+     *
+     * @return true if the queue is empty
+     */
+    public static boolean flush(long timeoutMs) {
+        return awaitDelivery(null, timeoutMs);
+    }
+
+    /**
+     * Drain on the caller's thread until {@code key} (or, if null, everything) left the queue.
+     *
+     * @return for a key, true only if the server accepted it (its outcome must be tracked);
+     *         for null, true once the queue is empty
+     */
+    private static boolean awaitDelivery(String key, long timeoutMs) {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        while (true) {
+            synchronized (lock) {
+                if (key == null) {
+                    if (queue.isEmpty()) return true;
+                } else if (!queue.containsKey(key)) {
+                    Integer status = outcomes.get(key);
+                    return status != null && status < 400;
+                }
+            }
+            Boolean ok = drain();
+            if (Boolean.FALSE.equals(ok) || System.currentTimeMillis() >= deadline) return false;
+            if (ok == null) {
+                try {
+                    Thread.sleep(20); // the background sender is mid-batch
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+        }
+    }
+
+    // ═══════════════════════════════════════════
+    //  SENDER
+    // ═══════════════════════════════════════════
+
+    private static void schedule(long delayMs) {
+        if (scheduled != null && !scheduled.isDone()) return;
+        scheduled = AppThreadPool.schedule(WriteOutbox::drainInBackground, delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    private static void drainInBackground() {
+        Boolean ok = drain();
+        synchronized (lock) {
+            scheduled = null;
+            if (queue.isEmpty()) return;
+            if (ok == null) {
+                schedule(windowMs); // a caller is draining on its own thread
+            } else if (ok) {
+                schedule(0);
+            } else {
+                long cap = Math.min(MAX_BACKOFF_MS, BASE_BACKOFF_MS << Math.min(failures, 10));
+                schedule(ThreadLocalRandom.current().nextLong(cap / 2, cap + 1));
+            }
+        }
+    }
+
+    /**
+     * Send the next batch.
+     *
+     * @return false when delivery stopped on a retryable failure, null if another drain is running
+     */
+    private static Boolean drain() {
+        List<Pending> batch = new ArrayList<>();
+        synchronized (lock) {
+            if (draining) return null;
+            for (Pending p : queue.values()) {
+                if (batch.size() >= batchSize) break;
+                batch.add(p);
+            }
+            if (batch.isEmpty()) return true;
+            draining = true;
+        }
+        boolean ok = false;
+        try {
+            ok = batch.size() > 1 && System.currentTimeMillis() >= batchUnsupportedUntil
+                    ? sendBatch(batch)
+                    : sendEach(batch);
+        } finally {
+            synchronized (lock) {
+                draining = false;
+                failures = ok ? 0 : failures + 1;
+            }
+        }
+        return ok;
+    }
+
+    private static boolean sendBatch(List<Pending> batch) {
+        JsonArray requests = new JsonArray();
+        for (Pending p : batch) {
+            JsonObject r = new JsonObject();
+            r.addProperty("id", p.key());
+            r.addProperty("method", p.method());
+            r.addProperty("path", p.path());
+            if (p.body() != null) r.add("body", p.body());
+            r.addProperty("idempotency_key", p.key());
+            requests.add(r);
+        }
+        JsonObject envelope = new JsonObject();
+        envelope.add("requests", requests);
+
+        HttpResponse<String> resp;
+        try {
+            resp = ApiClient.sendWrite("POST", "/batch", envelope, null);
+        } catch (Exception e) {
+            return false;
+        }
+        int status = resp.statusCode();
+        if (status == 404 || status == 405 || status == 501) {
+            batchUnsupportedUntil = System.currentTimeMillis() + RETRY_UNSUPPORTED_MS;
+            System.err.println("⚠ WriteOutbox: backend has no /batch — sending writes one by one");
+            return sendEach(batch);
+        }
+        if (status >= 300) return false;
+
+        Map<String, JsonObject> results = new HashMap<>();
+        try {
+            JsonElement root = JsonParser.parseString(resp.body());
+            JsonArray list = root.isJsonArray() ? root.getAsJsonArray()
+                    : root.isJsonObject() && root.getAsJsonObject().has("responses")
+                    ? root.getAsJsonObject().getAsJsonArray("responses") : new JsonArray();
+            for (JsonElement e : list) {
+                JsonObject r = e.getAsJsonObject();
+                if (r.has("id")) results.put(r.get("id").getAsString(), r);
+            }
+        } catch (RuntimeException e) {
+            System.err.println("⚠ WriteOutbox: unreadable /batch reply — " + e.getMessage());
+            return false;
+        }
+        for (Pending p : batch) {
+            JsonObject r = results.get(p.key());
+            int itemStatus = r != null && r.has("status") ? r.get("status").getAsInt() : 0;
+            // Keep order like sendEach: this item and everything after it stay queued. Later
+            // items the server already ran replay under their idempotency keys to the same reply.
+            if (isRetryable(itemStatus)) return false;
+            done(p, itemStatus, r.has("body") ? r.get("body") : JsonNull.INSTANCE);
+        }
+        return true;
+    }
+
+    private static boolean sendEach(List<Pending> batch) {
+        for (Pending p : batch) {
+            HttpResponse<String> resp;
+            try {
+                resp = ApiClient.sendWrite(p.method(), p.path(), p.body(), p.key());
+            } catch (Exception e) {
+                return false; // keep order: nothing after a failed write is sent
+            }
+            if (isRetryable(resp.statusCode())) return false;
+            done(p, resp.statusCode(), parseOrNull(resp.body()));
+        }
+        return true;
+    }
+
+    /** 0 stands for "no answer for this item". */
+    private static boolean isRetryable(int status) {
+        return status == 0 || status == 408 || status == 429 || status >= 500;
+    }
+
+    private static void done(Pending p, int status, JsonElement body) {
+        if (status >= 400) {
+            System.err.println("❌ WriteOutbox: dropping " + p.method() + " " + p.path() + " → " + status + ": " + body);
+        }
+        Consumer<JsonElement> callback;
+        synchronized (lock) {
+            queue.remove(p.key());
+            callback = callbacks.remove(p.key());
+            if (outcomes.containsKey(p.key())) outcomes.put(p.key(), status);
+            try {
+                if (queue.isEmpty()) journal.truncate();
+                else journal.ack(p.key());
+            } catch (IOException e) {
+                System.err.println("⚠ WriteOutbox: journal write failed — " + e.getMessage());
+            }
+        }
+        if (callback != null && status < 400) {
+            try {
+                callback.accept(body);
+            } catch (RuntimeException e) {
+                System.err.println("⚠ WriteOutbox: delivery callback failed — " + e.getMessage());
+            }
+        }
+    }
+
+    // ═══════════════════════════════════════════
+    //  JOURNAL
+    // ═══════════════════════════════════════════
+
+    /** Called with {@link #lock} held. */
+    private static void open() {
+        if (journal != null) return;
+        String source = AppConfig.get("rest.base_url", "default");
+        Path file = Path.of(System.getProperty("user.home"), ".synergygig_cache",
+                "outbox-" + Integer.toHexString(source.hashCode()) + ".jsonl");
+        journal = new Journal(file);
+        try {
+            for (Pending p : journal.load()) queue.put(p.key(), p);
+        } catch (IOException e) {
+            System.err.println("⚠ WriteOutbox: cannot read " + file + " — " + e.getMessage());
+        }
+    }
+
+    /** Append-only journal file; not thread-safe (callers hold the outbox lock). */
+    static final class Journal {
+        private final Path file;
+        private FileChannel channel;
+
+        Journal(Path file) {
+            this.file = file;
+        }
+
+        /** Entries written and not acknowledged, in write order; rewrites the file compacted. */
+        List<Pending> load() throws IOException {
+            Map<String, Pending> live = new LinkedHashMap<>();
+            if (Files.isRegularFile(file)) {
+                try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                    String line;
+                    while ((line = in.readLine()) != null) {
+                        if (line.isBlank()) continue;
+                        JsonObject o;
+                        try {
+                            o = JsonParser.parseString(line).getAsJsonObject();
+                        } catch (RuntimeException e) {
+                            continue; // torn last line after a crash
+                        }
+                        if (o.has("ack")) {
+                            live.remove(o.get("ack").getAsString());
+                        } else if (o.has("key")) {
+                            JsonElement body = o.get("body");
+                            live.put(o.get("key").getAsString(), new Pending(o.get("key").getAsString(),
+                                    o.get("method").getAsString(), o.get("path").getAsString(),
+                                    body != null && body.isJsonObject() ? body.getAsJsonObject() : null,
+                                    o.has("at") ? o.get("at").getAsLong() : 0));
+                        }
+                    }
+                }
+            }
+            List<Pending> entries = new ArrayList<>(live.values());
+            compact(entries);
+            return entries;
+        }
+
+        void append(Pending p) throws IOException {
+            JsonObject o = new JsonObject();
+            o.addProperty("key", p.key());
+            o.addProperty("method", p.method());
+            o.addProperty("path", p.path());
+            if (p.body() != null) o.add("body", p.body());
+            o.addProperty("at", p.at());
+            write(o);
+        }
+
+        void ack(String key) throws IOException {
+            JsonObject o = new JsonObject();
+            o.addProperty("ack", key);
+            write(o);
+        }
+
+        void truncate() throws IOException {
+            channel().truncate(0);
+        }
+
+        void close() throws IOException {
+            if (channel != null) channel.close();
+            channel = null;
+        }
+
+        private void write(JsonObject o) throws IOException {
+            ByteBuffer line = ByteBuffer.wrap((o + "\n").getBytes(StandardCharsets.UTF_8));
+            FileChannel ch = channel();
+            while (line.hasRemaining()) ch.write(line);
+            ch.force(false);
+        }
+
+        private FileChannel channel() throws IOException {
+            if (channel == null) {
+                Files.createDirectories(file.getParent());
+                channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.APPEND);
+            }
+            return channel;
+        }
+
+        /** Rewrite the file with only {@code entries} (temp file + atomic move). */
+        private void compact(Collection<Pending> entries) throws IOException {
+            close();
+            if (entries.isEmpty()) {
+                Files.deleteIfExists(file);
+                return;
+            }
+            Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            Files.deleteIfExists(tmp);
+            Journal rewritten = new Journal(tmp);
+            for (Pending p : entries) rewritten.append(p);
+            rewritten.close();
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
+    private static JsonElement parseOrNull(String body) {
+        try {
+            return body == null || body.isBlank() ? JsonNull.INSTANCE : JsonParser.parseString(body);
+        } catch (RuntimeException e) {
+            return JsonNull.INSTANCE;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package services;
+
+import com.google.gson.JsonParser;
+import entities.Post;
+import org.junit.jupiter.api.*;
+import utils.AppConfig;
+import utils.StandInServer;
+
+import java.nio.file.Files;
+import java.sql.SQLException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/** ServicePost in API mode, through ApiClient and the change feed, against the in-process stand-in. */
+class ServicePostApiTest {
+
+    static StandInServer server;
+    static ServicePost service;
+
+    @BeforeAll
+    static void setup() throws Exception {
+        // Before ApiClient and WriteOutbox load: they read these once
+        System.setProperty("user.home", Files.createTempDirectory("standin-home").toString());
+        AppConfig.set("app.mode", "api");
+        AppConfig.set("rest.base_url", "standin");
+        server = StandInServer.shared();
+        service = new ServicePost();
+    }
+
+    @AfterAll
+    static void teardown() {
+        StandInServer.stopShared();
+    }
+
+    @Test
+    void testRecupererFollowsWritesThroughTheChangeFeed() throws SQLException {
+        server.insert("posts", JsonParser.parseString("{\"author_id\":1,\"content\":\"first\"}"));
+        server.insert("posts", JsonParser.parseString("{\"author_id\":2,\"content\":\"second\"}"));
+
+        List<Post> posts = service.recuperer();
+        assertEquals(2, posts.size());
+        assertEquals("second", posts.get(0).getContent(), "Newest post first");
+
+        Post first = posts.get(1);
+        first.setContent("first, edited");
+        service.modifier(first);
+        assertEquals("first, edited", server.rows("posts").get(0).get("content").getAsString());
+
+        service.supprimer(posts.get(0).getId());
+        posts = service.recuperer();
+        assertEquals(1, posts.size(), "The delete should reach the replica as a tombstone");
+        assertEquals("first, edited", posts.get(0).getContent());
+    }
+}
@@ -0,0 +1,75 @@
+package utils;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.*;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ApiResilienceTest {
+
+    private static HttpServer server;
+    private static final AtomicInteger hits = new AtomicInteger();
+    private static final HttpClient client = HttpClient.newHttpClient();
+
+    @BeforeAll
+    static void start() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/broken", ex -> {
+            hits.incrementAndGet();
+            ex.sendResponseHeaders(500, -1);
+            ex.close();
+        });
+        server.createContext("/busy", ex -> {
+            hits.incrementAndGet();
+            ex.sendResponseHeaders(503, -1);
+            ex.close();
+        });
+        server.start();
+    }
+
+    @AfterAll
+    static void stop() {
+        server.stop(0);
+    }
+
+    @BeforeEach
+    void reset() {
+        ApiResilience.reset();
+        hits.set(0);
+    }
+
+    private static HttpResponse<String> get(String path) throws Exception {
+        HttpRequest req = HttpRequest.newBuilder(
+                URI.create("http://127.0.0.1:" + server.getAddress().getPort() + path)).GET().build();
+        return ApiResilience.send(client, "GET", path, req, HttpResponse.BodyHandlers.ofString());
+    }
+
+    @Test
+    void testBreakerOpensAfterConsecutiveFailures() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            assertEquals(500, get("/broken/" + i).statusCode());
+        }
+        assertEquals(ApiResilience.State.OPEN, ApiResilience.state("GET", "/broken/7"));
+        assertThrows(ApiResilience.CircuitOpenException.class, () -> get("/broken/1"));
+        assertEquals(5, hits.get(), "Open circuit must not reach the server");
+
+        ApiResilience.EndpointStats stats = ApiResilience.endpoints().get(0);
+        assertEquals("GET /broken/{id}", stats.endpoint());
+        assertEquals(5, stats.errors());
+        assertEquals(1, stats.rejected());
+    }
+
+    @Test
+    void testGetRetriedOnServiceUnavailable() throws Exception {
+        assertEquals(503, get("/busy").statusCode());
+        assertEquals(3, hits.get(), "One attempt plus two retries");
+        assertEquals(ApiResilience.State.CLOSED, ApiResilience.state("GET", "/busy"));
+    }
+}
@@ -0,0 +1,55 @@
+package utils;
+
+import org.junit.jupiter.api.*;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DbMetricsTest {
+
+    @BeforeEach
+    void reset() {
+        DbMetrics.reset();
+    }
+
+    @Test
+    void testStatementsAreGroupedByNormalizedSql() {
+        DbMetrics.recordStatement("SELECT *\n  FROM users WHERE id=?", 2_000_000, 0, false);
+        DbMetrics.recordStatement("SELECT * FROM users   WHERE id=?", 4_000_000, 0, false);
+        DbMetrics.recordRows("SELECT * FROM users WHERE id=?", 3);
+
+        List<DbMetrics.SqlStats> all = DbMetrics.statements();
+        assertEquals(1, all.size(), "Whitespace differences should map to one statement");
+        DbMetrics.SqlStats s = all.get(0);
+        assertEquals(2, s.count());
+        assertEquals(3, s.rows());
+        assertEquals(6.0, s.totalMillis(), 0.001);
+        assertEquals(4.0, s.maxMillis(), 0.001);
+    }
+
+    @Test
+    void testPlaceholderListsShareOneShapeAndShapesAreCapped() {
+        DbMetrics.recordStatement("SELECT * FROM reactions WHERE post_id IN (?)", 1_000_000, 0, false);
+        DbMetrics.recordStatement("SELECT * FROM reactions WHERE post_id IN (?, ?, ?)", 1_000_000, 0, false);
+        DbMetrics.recordStatement("INSERT INTO payrolls (a, b) VALUES (?, ?)", 1_000_000, 1, false);
+        DbMetrics.recordStatement("INSERT INTO payrolls (a, b) VALUES (?, ?), (?, ?), (?,?)", 1_000_000, 3, false);
+        assertEquals(3, DbMetrics.statements().size(), "IN lists fold to one shape; multi-row VALUES to another");
+        assertEquals("SELECT * FROM reactions WHERE post_id IN (?…)",
+                DbMetrics.normalize("SELECT * FROM reactions WHERE post_id in(?,?)"));
+
+        for (int i = 0; i < 2_000; i++) DbMetrics.recordStatement("SELECT " + i, 1_000, 0, false);
+        assertTrue(DbMetrics.statements().size() <= 512, "Distinct SQL texts must not grow the map without bound");
+    }
+
+    @Test
+    void testPercentilesFollowBuckets() {
+        for (int i = 0; i < 98; i++) DbMetrics.recordStatement("SELECT 1", 200_000, 1, false);   // 0.2 ms
+        DbMetrics.recordStatement("SELECT 1", 900_000_000, 1, false);                         // 900 ms
+        DbMetrics.recordStatement("SELECT 1", 900_000_000, 1, false);
+        DbMetrics.SqlStats s = DbMetrics.statements().get(0);
+        assertTrue(s.p50Millis() <= 0.25, "Median should sit in the fastest bucket");
+        assertEquals(900.0, s.p99Millis(), 0.001, "p99 falls in the open bucket, capped at the max");
+        assertEquals(2, DbMetrics.slowQueryCount(), "Only the 900 ms runs exceed the default threshold");
+    }
+}
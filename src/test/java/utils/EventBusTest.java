@@ -0,0 +1,87 @@
+package utils;
+
+import com.google.gson.JsonObject;
+import org.junit.jupiter.api.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EventBusTest {
+
+    private final List<Runnable> pending = new ArrayList<>();
+    private Executor previous;
+
+    @BeforeEach
+    void holdDispatch() {
+        previous = EventBus.dispatcher;
+        EventBus.dispatcher = pending::add; // a UI thread that has not caught up yet
+    }
+
+    @AfterEach
+    void restore() {
+        EventBus.dispatcher = previous;
+    }
+
+    private static JsonObject event(String type, long seq) {
+        JsonObject data = new JsonObject();
+        data.addProperty("n", seq);
+        JsonObject msg = new JsonObject();
+        msg.addProperty("type", type);
+        msg.addProperty("from", 2);
+        if (seq > 0) msg.addProperty("seq", seq);
+        msg.add("data", data);
+        return msg;
+    }
+
+    private void runPending() {
+        List<Runnable> tasks = new ArrayList<>(pending);
+        pending.clear();
+        tasks.forEach(Runnable::run);
+    }
+
+    @Test
+    void testBurstIsDeliveredInOrderInOneDispatch() {
+        List<Integer> seen = new ArrayList<>();
+        EventBus.Subscription sub = EventBus.subscribe(EventBus.Topic.NOTIFICATIONS,
+                ev -> seen.add(ev.data().get("n").getAsInt()), null);
+        for (int i = 0; i < 5; i++) EventBus.deliver(event("notification", 0));
+        EventBus.deliver(event("unrelated", 0));
+        assertEquals(1, pending.size());
+        runPending();
+        assertEquals(5, seen.size());
+        sub.cancel();
+    }
+
+    @Test
+    void testOverflowDropsBacklogAndResyncsOnce() {
+        List<String> seen = new ArrayList<>();
+        EventBus.Subscription sub = EventBus.subscribe(EventBus.Topic.FEED_UPDATES,
+                ev -> seen.add("event"), () -> seen.add("resync"));
+        for (int i = 0; i < 1000; i++) EventBus.deliver(event("feed-update", 0));
+        runPending();
+        assertEquals(List.of("resync"), seen);
+
+        EventBus.deliver(event("feed-update", 0));
+        runPending();
+        assertEquals(List.of("resync", "event"), seen);
+        sub.cancel();
+    }
+
+    @Test
+    void testReplayedSequenceNumbersAreDeliveredOnce() {
+        List<Integer> seen = new ArrayList<>();
+        EventBus.Subscription sub = EventBus.subscribe(EventBus.Topic.CALL_STATE,
+                ev -> seen.add(ev.data().get("n").getAsInt()), null);
+        EventBus.deliver(event("call-state", 1));
+        EventBus.deliver(event("call-state", 2));
+        EventBus.deliver(event("call-state", 1)); // server replays after a reconnect
+        EventBus.deliver(event("call-state", 2));
+        EventBus.deliver(event("call-state", 3));
+        runPending();
+        assertEquals(List.of(1, 2, 3), seen);
+        sub.cancel();
+    }
+}
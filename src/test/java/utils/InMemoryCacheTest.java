@@ -0,0 +1,206 @@
+package utils;
+
+import org.junit.jupiter.api.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InMemoryCacheTest {
+
+    @BeforeEach
+    void reset() {
+        InMemoryCache.clear();
+    }
+
+    @Test
+    void testGetOrLoadCachesValue() {
+        AtomicInteger calls = new AtomicInteger();
+        assertEquals("v", InMemoryCache.getOrLoad("k", 60, () -> { calls.incrementAndGet(); return "v"; }));
+        assertEquals("v", InMemoryCache.getOrLoad("k", 60, () -> { calls.incrementAndGet(); return "other"; }));
+        assertEquals(1, calls.get(), "Loader should only run on the first miss");
+    }
+
+    @Test
+    void testConcurrentMissesShareOneLoad() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        List<Future<String>> results = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            results.add(pool.submit(() -> InMemoryCache.getOrLoad("hot", 60, () -> {
+                calls.incrementAndGet();
+                try { release.await(5, TimeUnit.SECONDS); } catch (InterruptedException ignored) {}
+                return "shared";
+            })));
+        }
+        Thread.sleep(200);
+        release.countDown();
+        for (Future<String> f : results) {
+            assertEquals("shared", f.get(5, TimeUnit.SECONDS));
+        }
+        pool.shutdownNow();
+        assertEquals(1, calls.get(), "Concurrent misses should run the loader once");
+    }
+
+    @Test
+    void testWaitersSeeLeaderFailure() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Object> leader = CompletableFuture.supplyAsync(() -> {
+            try {
+                return InMemoryCache.getOrLoadChecked("failing", 60, () -> {
+                    started.countDown();
+                    release.await(5, TimeUnit.SECONDS);
+                    throw new java.sql.SQLException("boom");
+                });
+            } catch (Exception e) {
+                return e;
+            }
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        CompletableFuture<Object> waiter = CompletableFuture.supplyAsync(() -> {
+            try {
+                return InMemoryCache.getOrLoadChecked("failing", 60, () -> "unused");
+            } catch (Exception e) {
+                return e;
+            }
+        });
+        Thread.sleep(100);
+        release.countDown();
+        assertInstanceOf(java.sql.SQLException.class, leader.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(java.sql.SQLException.class, waiter.get(5, TimeUnit.SECONDS));
+        // Failures are not cached
+        assertEquals("ok", InMemoryCache.getOrLoad("failing", 60, () -> "ok"));
+    }
+
+    @Test
+    void testGetOrLoadAsyncJoinsInFlightLoad() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<String> a = InMemoryCache.getOrLoadAsync("async", 60, () -> {
+            calls.incrementAndGet();
+            release.await(5, TimeUnit.SECONDS);
+            return "value";
+        });
+        CompletableFuture<String> b = InMemoryCache.getOrLoadAsync("async", 60, () -> {
+            calls.incrementAndGet();
+            return "duplicate";
+        });
+        release.countDown();
+        assertEquals("value", a.get(5, TimeUnit.SECONDS));
+        assertEquals("value", b.get(5, TimeUnit.SECONDS));
+        assertEquals(1, calls.get());
+        assertEquals("value", InMemoryCache.getOrLoadAsync("async", 60, () -> "reload").get());
+    }
+
+    @Test
+    void testGetOrLoadFutureSharesPendingLoad() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        CompletableFuture<String> pending = new CompletableFuture<>();
+        CompletableFuture<String> a = InMemoryCache.getOrLoadFuture("future", 0, 60, () -> {
+            calls.incrementAndGet();
+            return pending;
+        });
+        CompletableFuture<String> b = InMemoryCache.getOrLoadFuture("future", 0, 60, () -> {
+            calls.incrementAndGet();
+            return CompletableFuture.completedFuture("duplicate");
+        });
+        assertFalse(a.isDone(), "Loader future has not completed yet");
+        pending.complete("value");
+        assertEquals("value", a.get(5, TimeUnit.SECONDS));
+        assertEquals("value", b.get(5, TimeUnit.SECONDS));
+        assertEquals(1, calls.get());
+        assertEquals("value", InMemoryCache.getOrLoad("future", 60, () -> "reload"));
+    }
+
+    @Test
+    void testStatsCountHitsMissesAndLoads() {
+        InMemoryCache.Stats before = InMemoryCache.stats();
+        InMemoryCache.getOrLoad("stats", 60, () -> "v");
+        InMemoryCache.getOrLoad("stats", 60, () -> "v");
+        InMemoryCache.Stats after = InMemoryCache.stats();
+        assertEquals(1, after.misses() - before.misses());
+        assertEquals(1, after.hits() - before.hits());
+        assertEquals(1, after.loadSuccesses() - before.loadSuccesses());
+        assertTrue(after.weightedSize() > 0);
+    }
+
+    @Test
+    void testEvictRemovesEntry() {
+        InMemoryCache.getOrLoad("users:all", 60, () -> "v");
+        InMemoryCache.getOrLoad("users:1", 60, () -> "v");
+        InMemoryCache.getOrLoad("posts:all", 60, () -> "v");
+        InMemoryCache.evictByPrefix("users:");
+        assertEquals(1, InMemoryCache.size());
+        InMemoryCache.evict("posts:all");
+        assertEquals(0, InMemoryCache.size());
+        assertEquals(0, InMemoryCache.weightedSize());
+    }
+
+    @Test
+    void testInvalidateTagOnlyDropsTaggedKeys() {
+        InMemoryCache.getOrLoad("messages:room:1", 60, List.of("room:1"), () -> "a");
+        InMemoryCache.getOrLoad("room_members:room:1", 60, List.of("room:1"), () -> "b");
+        InMemoryCache.getOrLoad("messages:room:2", 60, List.of("room:2"), () -> "c");
+        InMemoryCache.invalidateTag("room:1");
+        assertEquals(1, InMemoryCache.size());
+        AtomicInteger calls = new AtomicInteger();
+        InMemoryCache.getOrLoad("messages:room:2", 60, () -> { calls.incrementAndGet(); return "x"; });
+        assertEquals(0, calls.get(), "Other rooms should stay cached");
+    }
+
+    @Test
+    void testNamespaceInvalidation() {
+        InMemoryCache.getOrLoad("messages:room:1", 60, () -> "a");
+        InMemoryCache.getOrLoad("messages:count", 60, () -> 3);
+        InMemoryCache.getOrLoad("posts:all", 60, () -> "p");
+        InMemoryCache.invalidateTag("messages");
+        assertEquals(1, InMemoryCache.size());
+        InMemoryCache.getOrLoad("posts:recent", 60, () -> "r");
+        InMemoryCache.evictByPrefix("posts:");
+        assertEquals(0, InMemoryCache.size());
+        assertEquals(0, InMemoryCache.weightedSize());
+    }
+
+    @Test
+    void testInvalidationDuringLoadIsNotLost() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        Future<String> loading = pool.submit(() -> InMemoryCache.getOrLoad("messages:room:1", 60, List.of("room:1"), () -> {
+            started.countDown();
+            try { release.await(5, TimeUnit.SECONDS); } catch (InterruptedException ignored) {}
+            return "read before the write";
+        }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        InMemoryCache.invalidateTag("room:1"); // a write lands while the read is in flight
+        release.countDown();
+        assertEquals("read before the write", loading.get(5, TimeUnit.SECONDS), "The caller still gets its value");
+        pool.shutdownNow();
+
+        AtomicInteger calls = new AtomicInteger();
+        assertEquals("fresh", InMemoryCache.getOrLoad("messages:room:1", 60, () -> { calls.incrementAndGet(); return "fresh"; }));
+        assertEquals(1, calls.get(), "A load that raced an invalidation must not be cached");
+    }
+
+    @Test
+    void testStaleValueServedWhileRefreshing() throws Exception {
+        AtomicInteger version = new AtomicInteger();
+        assertEquals(0, (int) InMemoryCache.getOrLoadStale("swr", 1, 60, version::getAndIncrement));
+        Thread.sleep(1_100);
+        // Past the soft TTL: stale value returned at once, refresh runs in background
+        assertEquals(0, (int) InMemoryCache.getOrLoadStale("swr", 1, 60, version::getAndIncrement));
+        long deadline = System.currentTimeMillis() + 5_000;
+        int seen = 0;
+        while (seen == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+            seen = InMemoryCache.getOrLoadStale("swr", 1, 60, version::getAndIncrement);
+        }
+        assertEquals(1, seen, "Background refresh should replace the stale value");
+        assertEquals(2, version.get(), "Exactly one refresh should have run");
+    }
+}
@@ -0,0 +1,55 @@
+package utils;
+
+import com.google.gson.JsonObject;
+import entities.Message;
+import org.junit.jupiter.api.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MessagePushTest {
+
+    private static JsonObject event(String type, int from, int roomId, Integer senderId) {
+        JsonObject data = new JsonObject();
+        data.addProperty("id", 42);
+        data.addProperty("room_id", roomId);
+        if (senderId != null) {
+            data.addProperty("sender_id", senderId);
+            data.addProperty("content", "hello");
+            data.addProperty("timestamp", 1_700_000_000_000L);
+        }
+        JsonObject ev = new JsonObject();
+        ev.addProperty("type", type);
+        ev.addProperty("from", from);
+        ev.add("data", data);
+        return ev;
+    }
+
+    @Test
+    void testAcceptsMessageFromItsSenderInOwnRoom() {
+        Message m = MessagePush.apply(event(MessagePush.MESSAGE, 7, 3, 7), roomId -> roomId == 3);
+        assertNotNull(m);
+        assertEquals(42, m.getId());
+        assertEquals(3, m.getRoomId());
+        assertEquals(7, m.getSenderId());
+        assertEquals("hello", m.getContent());
+        assertEquals(1_700_000_000_000L, m.getTimestamp().getTime());
+    }
+
+    @Test
+    void testRejectsSpoofedSenderAndForeignRooms() {
+        assertNull(MessagePush.apply(event(MessagePush.MESSAGE, 8, 3, 7), roomId -> true),
+                "sender_id must match the signaling sender");
+        assertNull(MessagePush.apply(event(MessagePush.EDITED, 8, 3, 7), roomId -> true));
+        assertNull(MessagePush.apply(event(MessagePush.MESSAGE, 7, 4, 7), roomId -> roomId == 3),
+                "events for rooms we are not in are dropped");
+        assertNull(MessagePush.apply(event(MessagePush.DELETED, 7, 4, null), roomId -> roomId == 3));
+        assertNotNull(MessagePush.apply(event(MessagePush.DELETED, 7, 3, null), roomId -> roomId == 3));
+    }
+
+    @Test
+    void testMalformedEventIsIgnored() {
+        JsonObject ev = event(MessagePush.MESSAGE, 7, 3, 7);
+        ev.getAsJsonObject("data").remove("sender_id");
+        assertNull(MessagePush.apply(ev, roomId -> true));
+    }
+}
@@ -0,0 +1,33 @@
+package utils;
+
+import javafx.beans.property.ReadOnlyObjectProperty;
+import org.junit.jupiter.api.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PresenceTest {
+
+    @Test
+    void testDiffsUpdateStateAndNotifyOnlyOnChange() {
+        int user = 90_001;
+        ReadOnlyObjectProperty<Presence.Status> prop = Presence.statusProperty(user);
+        assertEquals(Presence.Status.OFFLINE, prop.get()); // unknown to the directory
+
+        List<Presence.Status> seen = new ArrayList<>();
+        prop.addListener((obs, old, status) -> seen.add(status));
+
+        Presence.apply(user, Presence.Status.ONLINE, 1_000);
+        Presence.apply(user, Presence.Status.ONLINE, 2_000); // same status: no re-render
+        Presence.apply(user, Presence.Status.IDLE, 3_000);
+
+        assertEquals(List.of(Presence.Status.ONLINE, Presence.Status.IDLE), seen);
+        assertTrue(Presence.isOnline(user));
+        assertEquals(3_000, Presence.state(user).lastSeen());
+
+        Presence.apply(user, Presence.Status.OFFLINE, 4_000);
+        assertFalse(Presence.isOnline(user));
+    }
+}
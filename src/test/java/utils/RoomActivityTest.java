@@ -0,0 +1,35 @@
+package utils;
+
+import org.junit.jupiter.api.*;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RoomActivityTest {
+
+    @BeforeEach
+    void clear() {
+        RoomActivity.clear();
+    }
+
+    @Test
+    void testRecencyOrderAndUnreadCounters() {
+        assertTrue(RoomActivity.record(1, 1_000, false));
+        assertTrue(RoomActivity.record(2, 2_000, false));
+        assertTrue(RoomActivity.record(3, 3_000, true));
+        assertEquals(List.of(3, 2, 1), RoomActivity.recent());
+
+        assertTrue(RoomActivity.record(1, 4_000, true));
+        assertFalse(RoomActivity.record(1, 500, false)); // stale sweep result: ignored
+        assertEquals(List.of(1, 3, 2), RoomActivity.recent());
+        assertEquals(4_000, RoomActivity.lastAt(1));
+        assertEquals(1, RoomActivity.unread(1));
+
+        assertFalse(RoomActivity.record(1, 4_000, true)); // same instant, one more unread, no move
+        assertEquals(2, RoomActivity.unread(1));
+        RoomActivity.markRead(1);
+        assertEquals(0, RoomActivity.unread(1));
+        assertEquals(List.of(1, 3, 2), RoomActivity.recent());
+    }
+}
@@ -0,0 +1,47 @@
+package utils;
+
+import org.junit.jupiter.api.*;
+
+import java.net.ServerSocket;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SignalingServiceTest {
+
+    @Test
+    void testBackoffIsJitteredWithinCappedWindow() {
+        boolean varied = false;
+        long first = SignalingService.backoff(3);
+        for (int i = 0; i < 200; i++) {
+            long d = SignalingService.backoff(3);
+            assertTrue(d >= 0 && d <= 8_000, "attempt 3 stays within base·2^3");
+            if (d != first) varied = true;
+            assertTrue(SignalingService.backoff(40) <= 30_000, "never beyond the cap");
+        }
+        assertTrue(varied);
+    }
+
+    @Test
+    void testReconnectKeepsRetryingAfterRepeatedFailures() throws Exception {
+        int closedPort;
+        try (ServerSocket probe = new ServerSocket(0)) {
+            closedPort = probe.getLocalPort();
+        }
+        AppConfig.set("rest.base_url", "http://127.0.0.1:" + closedPort + "/api");
+        AppConfig.set("signaling.backoff_base_ms", "5");
+        AppConfig.set("signaling.backoff_max_ms", "20");
+        SignalingService sig = SignalingService.getInstance();
+        long before = sig.stats().failedAttempts();
+        try {
+            sig.connect(77_001);
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (sig.stats().failedAttempts() - before < 5 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+            }
+            assertTrue(sig.stats().failedAttempts() - before >= 5, "still reconnecting after several failures");
+        } finally {
+            sig.disconnect();
+            AppConfig.reload();
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package utils;
+
+import entities.User;
+import org.junit.jupiter.api.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SnapshotCacheTest {
+
+    @AfterEach
+    void cleanup() {
+        InMemoryCache.clear();
+    }
+
+    @Test
+    void testRoundTripKeepsEntitiesAndDropsSecrets() throws Exception {
+        User u = new User("a@b.c", "secret", "Ada", "Lovelace", "EMPLOYEE");
+        u.setCreatedAt(new Timestamp(1_700_000_000_123L));
+        Path file = Files.createTempDirectory("snap").resolve("snapshot-1.bin");
+
+        SnapshotCache.write(file, List.of(
+                new InMemoryCache.Exported("users:all", List.of(u), 0, 120, new String[]{"team"}),
+                new InMemoryCache.Exported("messages:count", 42, 0, 30, new String[0])));
+        List<InMemoryCache.Exported> read = SnapshotCache.read(file);
+
+        assertEquals(1, read.size(), "Only list values should be persisted");
+        InMemoryCache.Exported e = read.get(0);
+        assertEquals("users:all", e.key());
+        assertEquals(120, e.ttlSecs());
+        assertArrayEquals(new String[]{"team"}, e.tags());
+        User back = (User) ((List<?>) e.value()).get(0);
+        assertEquals("Ada", back.getFirstName());
+        assertEquals(1_700_000_000_123L, back.getCreatedAt().getTime());
+        assertNull(back.getPassword(), "Passwords must never reach the disk");
+    }
+
+    @Test
+    void testPrimedEntryIsServedThenRevalidated() throws Exception {
+        InMemoryCache.prime(new InMemoryCache.Exported("users:all", List.of("cached"), 0, 120, new String[0]));
+
+        Object first = InMemoryCache.getOrLoad("users:all", 120, () -> List.of("fresh"));
+        assertEquals(List.of("cached"), first, "First read should come from the snapshot");
+
+        // The background revalidation replaces the snapshot value
+        for (int i = 0; i < 50 && !List.of("fresh").equals(InMemoryCache.getOrLoad("users:all", 120, () -> List.of("x"))); i++) {
+            Thread.sleep(20);
+        }
+        assertEquals(List.of("fresh"), InMemoryCache.getOrLoad("users:all", 120, () -> List.of("x")));
+    }
+}
@@ -0,0 +1,164 @@
+package utils;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.jupiter.api.*;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StandInServerTest {
+
+    private static StandInServer server;
+    private static final HttpClient client = HttpClient.newHttpClient();
+
+    @BeforeAll
+    static void start() throws Exception {
+        server = StandInServer.start(0);
+    }
+
+    @AfterAll
+    static void stop() {
+        server.stop();
+    }
+
+    @BeforeEach
+    void clear() {
+        server.clear();
+    }
+
+    private static HttpResponse<String> call(String method, String path, String json) throws Exception {
+        HttpRequest req = HttpRequest.newBuilder(URI.create(server.baseUrl() + path))
+                .header("Content-Type", "application/json")
+                .method(method, json == null ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofString(json))
+                .build();
+        return client.send(req, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static JsonElement json(HttpResponse<String> resp) {
+        return JsonParser.parseString(resp.body());
+    }
+
+    @Test
+    void testCrudAndMessagePaging() throws Exception {
+        for (int i = 1; i <= 5; i++) {
+            call("POST", "/messages", "{\"room_id\":7,\"sender_id\":1,\"content\":\"m" + i + "\"}");
+        }
+        call("POST", "/messages", "{\"room_id\":8,\"sender_id\":1,\"content\":\"other room\"}");
+
+        JsonArray room = json(call("GET", "/messages/room/7", null)).getAsJsonArray();
+        assertEquals(5, room.size());
+
+        JsonArray latest = json(call("GET", "/messages/room/7?limit=2", null)).getAsJsonArray();
+        assertEquals(4, latest.get(0).getAsJsonObject().get("id").getAsInt());
+        assertEquals(5, latest.get(1).getAsJsonObject().get("id").getAsInt());
+
+        JsonArray after = json(call("GET", "/messages/room/7?after_id=1&limit=2", null)).getAsJsonArray();
+        assertEquals(2, after.get(0).getAsJsonObject().get("id").getAsInt());
+
+        JsonObject edited = json(call("PUT", "/messages/3", "{\"content\":\"edited\"}")).getAsJsonObject();
+        assertEquals("edited", edited.get("content").getAsString());
+        assertEquals(200, call("DELETE", "/messages/3", null).statusCode());
+        assertEquals(404, call("GET", "/messages/3", null).statusCode());
+    }
+
+    @Test
+    void testLatestMessagePerRoom() throws Exception {
+        call("POST", "/messages", "{\"room_id\":7,\"sender_id\":1,\"content\":\"a\"}");
+        call("POST", "/messages", "{\"room_id\":8,\"sender_id\":1,\"content\":\"b\"}");
+        call("POST", "/messages", "{\"room_id\":7,\"sender_id\":1,\"content\":\"c\"}");
+        call("POST", "/messages", "{\"room_id\":9,\"sender_id\":1,\"content\":\"d\"}");
+
+        JsonArray latest = json(call("GET", "/messages/latest?room_ids=7,8", null)).getAsJsonArray();
+        assertEquals(2, latest.size());
+        for (JsonElement row : latest) {
+            JsonObject r = row.getAsJsonObject();
+            assertEquals(r.get("room_id").getAsInt() == 7 ? 3 : 2, r.get("id").getAsInt());
+            assertTrue(r.has("timestamp"));
+        }
+    }
+
+    @Test
+    void testBatchAndNotificationCount() throws Exception {
+        server.insert("notifications", JsonParser.parseString("{\"user_id\":4,\"title\":\"a\",\"is_read\":0}"));
+        server.insert("notifications", JsonParser.parseString("{\"user_id\":4,\"title\":\"b\",\"is_read\":0}"));
+        call("PUT", "/notifications/1/read", "{}");
+
+        JsonObject count = json(call("GET", "/notifications/4/count", null)).getAsJsonObject();
+        assertEquals(1, count.get("unread_count").getAsInt());
+
+        int before = server.requestCount();
+        JsonObject batch = json(call("POST", "/batch", "{\"requests\":["
+                + "{\"id\":\"0\",\"method\":\"GET\",\"path\":\"/notifications/4\"},"
+                + "{\"id\":\"1\",\"method\":\"GET\",\"path\":\"/nothing/here/at/all\"}]}")).getAsJsonObject();
+        assertEquals(before + 1, server.requestCount());
+        JsonArray responses = batch.getAsJsonArray("responses");
+        assertEquals(2, responses.get(0).getAsJsonObject().getAsJsonArray("body").size());
+        assertEquals(404, responses.get(1).getAsJsonObject().get("status").getAsInt());
+    }
+
+    @Test
+    void testNotificationFanOutCoalescesUnread() throws Exception {
+        String template = "\"type\":\"MESSAGE\",\"reference_id\":9,\"reference_type\":\"CHAT\"";
+        call("POST", "/notifications/fan-out", "{\"user_ids\":[1,2,3]," + template + ",\"title\":\"first\"}");
+        call("PUT", "/notifications/3/read", "{}"); // user 3 has read it
+
+        JsonObject r = json(call("POST", "/notifications/fan-out",
+                "{\"user_ids\":[1,2,3]," + template + ",\"title\":\"second\"}")).getAsJsonObject();
+        assertEquals(1, r.get("created").getAsInt());
+        assertEquals(2, r.get("coalesced").getAsInt());
+
+        JsonArray forUser1 = json(call("GET", "/notifications/1", null)).getAsJsonArray();
+        assertEquals(1, forUser1.size());
+        assertEquals("second", forUser1.get(0).getAsJsonObject().get("title").getAsString());
+        assertEquals(2, json(call("GET", "/notifications/3", null)).getAsJsonArray().size());
+    }
+
+    @Test
+    void testChangeFeedSendsOnlyDeltasAndTombstones() throws Exception {
+        call("POST", "/posts", "{\"author_id\":1,\"content\":\"a\"}");
+        call("POST", "/posts", "{\"author_id\":1,\"content\":\"b\"}");
+        call("POST", "/posts", "{\"author_id\":2,\"content\":\"c\"}");
+
+        JsonObject first = json(call("GET", "/changes/posts?since=0", null)).getAsJsonObject();
+        assertTrue(first.get("reset").getAsBoolean());
+        assertEquals(3, first.getAsJsonArray("upserts").size());
+        String cursor = first.get("cursor").getAsString();
+
+        call("PUT", "/posts/2", "{\"content\":\"b2\"}");
+        call("DELETE", "/posts/3", null);
+
+        JsonObject delta = json(call("GET", "/changes/posts?since=" + cursor, null)).getAsJsonObject();
+        assertFalse(delta.get("reset").getAsBoolean());
+        JsonArray upserts = delta.getAsJsonArray("upserts");
+        assertEquals(1, upserts.size());
+        assertEquals("b2", upserts.get(0).getAsJsonObject().get("content").getAsString());
+        assertEquals(3, delta.getAsJsonArray("deletes").get(0).getAsInt());
+
+        JsonObject filtered = json(call("GET", "/changes/posts?since=0&author_id=1", null)).getAsJsonObject();
+        assertEquals(2, filtered.getAsJsonArray("upserts").size());
+    }
+
+    @Test
+    void testIdempotencyKeyAppliesWriteOnce() throws Exception {
+        HttpRequest req = HttpRequest.newBuilder(URI.create(server.baseUrl() + "/messages"))
+                .header("Content-Type", "application/json")
+                .header("Idempotency-Key", "k-1")
+                .POST(HttpRequest.BodyPublishers.ofString("{\"room_id\":7,\"sender_id\":1,\"content\":\"hi\"}"))
+                .build();
+        JsonObject first = json(client.send(req, HttpResponse.BodyHandlers.ofString())).getAsJsonObject();
+        JsonObject retry = json(client.send(req, HttpResponse.BodyHandlers.ofString())).getAsJsonObject();
+        assertEquals(first.get("id"), retry.get("id"));
+
+        call("POST", "/batch", "{\"requests\":["
+                + "{\"id\":\"0\",\"method\":\"POST\",\"path\":\"/messages\",\"idempotency_key\":\"k-2\",\"body\":{\"room_id\":7,\"content\":\"x\"}},"
+                + "{\"id\":\"1\",\"method\":\"POST\",\"path\":\"/messages\",\"idempotency_key\":\"k-2\",\"body\":{\"room_id\":7,\"content\":\"x\"}}]}");
+        assertEquals(2, server.rows("messages").size());
+    }
+}
@@ -0,0 +1,54 @@
+package utils;
+
+import org.junit.jupiter.api.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TinyLfuPolicyTest {
+
+    @Test
+    void testStaysWithinMaxWeight() {
+        TinyLfuPolicy policy = new TinyLfuPolicy(100);
+        for (int i = 0; i < 1_000; i++) {
+            policy.onWrite("k" + i, 1);
+        }
+        assertTrue(policy.weightedSize() <= 100, "Weighted size should never exceed the bound");
+    }
+
+    @Test
+    void testFrequentKeySurvivesScan() {
+        TinyLfuPolicy policy = new TinyLfuPolicy(100);
+        policy.onWrite("users:all", 10);
+        for (int i = 0; i < 20; i++) {
+            policy.onAccess("users:all");
+        }
+        List<String> evicted = new ArrayList<>();
+        // A one-off scan of cold keys must not flush the hot entry
+        for (int i = 0; i < 500; i++) {
+            evicted.addAll(policy.onWrite("messages:room:" + i, 5));
+        }
+        assertFalse(evicted.contains("users:all"), "Hot key should be retained over one-hit wonders");
+    }
+
+    @Test
+    void testOversizedEntryIsRejected() {
+        TinyLfuPolicy policy = new TinyLfuPolicy(100);
+        List<String> evicted = policy.onWrite("posts:all", 500);
+        assertTrue(evicted.contains("posts:all"));
+        assertEquals(0, policy.weightedSize());
+    }
+
+    @Test
+    void testRemoveReleasesWeight() {
+        TinyLfuPolicy policy = new TinyLfuPolicy(100);
+        policy.onWrite("a", 30);
+        policy.onWrite("b", 20);
+        policy.remove("a");
+        assertEquals(20, policy.weightedSize());
+        policy.clear();
+        assertEquals(0, policy.weightedSize());
+    }
+}
@@ -0,0 +1,103 @@
+package utils;
+
+import com.google.gson.JsonObject;
+import org.junit.jupiter.api.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+class WriteOutboxTest {
+
+    private static StandInServer server;
+
+    @BeforeAll
+    static void pointAtStandIn() throws Exception {
+        // Before WriteOutbox and ApiClient load: journal in a temp home, writes to the stand-in,
+        // and no background sender racing the test's own flushes
+        System.setProperty("user.home", Files.createTempDirectory("outbox-home").toString());
+        AppConfig.set("rest.base_url", "standin");
+        AppConfig.set("outbox.window_ms", "60000");
+        server = StandInServer.shared();
+    }
+
+    @AfterAll
+    static void stop() {
+        StandInServer.stopShared();
+    }
+
+    private static WriteOutbox.Pending write(String key, String content) {
+        JsonObject body = new JsonObject();
+        body.addProperty("content", content);
+        return new WriteOutbox.Pending(key, "POST", "/messages", body, 1_700_000_000_000L);
+    }
+
+    @Test
+    void testJournalReplaysUnacknowledgedWritesInOrder() throws Exception {
+        Path file = Files.createTempDirectory("outbox").resolve("outbox.jsonl");
+        WriteOutbox.Journal journal = new WriteOutbox.Journal(file);
+        journal.append(write("a", "one"));
+        journal.append(write("b", "two"));
+        journal.append(write("c", "three"));
+        journal.ack("b");
+        journal.close();
+        // A crash mid-append leaves a torn last line
+        Files.writeString(file, "{\"key\":\"d\",\"meth", StandardOpenOption.APPEND);
+
+        List<WriteOutbox.Pending> replayed = new WriteOutbox.Journal(file).load();
+        assertEquals(List.of("a", "c"), replayed.stream().map(WriteOutbox.Pending::key).toList());
+        assertEquals("three", replayed.get(1).body().get("content").getAsString());
+        assertEquals(2, Files.readAllLines(file).size(), "load() should compact acks and torn lines away");
+
+        WriteOutbox.Journal reopened = new WriteOutbox.Journal(file);
+        reopened.load();
+        reopened.ack("a");
+        reopened.ack("c");
+        reopened.close();
+        assertTrue(new WriteOutbox.Journal(file).load().isEmpty());
+        assertFalse(Files.exists(file), "An empty journal should be removed");
+    }
+
+    @Test
+    @Order(1)
+    void testSendOrQueueReportsRejectedWritesAsNotDelivered() {
+        assertTrue(WriteOutbox.sendOrQueue("POST", "/messages", message("hello"), 2_000));
+        assertFalse(WriteOutbox.sendOrQueue("DELETE", "/messages/999", null, 2_000),
+                "A write the server rejected with 404 is dropped, not delivered");
+        assertEquals(0, WriteOutbox.size());
+    }
+
+    @Test
+    @Order(2) // leaves a write that can never be delivered at the head of the queue
+    void testBatchKeepsOrderAtFirstRetryableItemAndReplaysUnderSameKeys() {
+        server.clear();
+        WriteOutbox.enqueue("POST", "/messages", message("a"));
+        WriteOutbox.enqueue("DELETE", "/messages/999", null);                  // 404: dropped
+        String stuck = WriteOutbox.enqueue("POST", "/ai/chat", message("?"));  // 501: retryable
+        String after = WriteOutbox.enqueue("POST", "/messages", message("d"));
+
+        assertFalse(WriteOutbox.flush(2_000));
+        // The server ran every item, but nothing after the retryable one is acknowledged
+        assertEquals(List.of(stuck, after),
+                WriteOutbox.pending(p -> true).stream().map(WriteOutbox.Pending::key).toList());
+        assertEquals(2, server.rows("messages").size());
+
+        int before = server.requestCount();
+        assertFalse(WriteOutbox.flush(2_000));
+        assertEquals(before + 1, server.requestCount(), "The replay should go out as one /batch");
+        assertEquals(2, server.rows("messages").size(), "A replayed item must not be applied twice");
+        assertEquals(2, WriteOutbox.size());
+    }
+
+    private static JsonObject message(String content) {
+        JsonObject body = new JsonObject();
+        body.addProperty("room_id", 7);
+        body.addProperty("sender_id", 1);
+        body.addProperty("content", content);
+        return body;
+    }
+}